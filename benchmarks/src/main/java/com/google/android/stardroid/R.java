@@ -0,0 +1,57 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid;
+
+/**
+ * The subset of the generated resource ids referenced by the sources the
+ * benchmarks compile (currently just {@link
+ * com.google.android.stardroid.provider.ephemeris.Planet}).  The values are
+ * placeholders; nothing here is looked up.
+ */
+public final class R {
+  private R() {}
+
+  public static final class drawable {
+    public static final int jupiter = 0x7f020000;
+    public static final int mars = 0x7f020001;
+    public static final int mercury = 0x7f020002;
+    public static final int moon0 = 0x7f020003;
+    public static final int moon1 = 0x7f020004;
+    public static final int moon2 = 0x7f020005;
+    public static final int moon3 = 0x7f020006;
+    public static final int moon4 = 0x7f020007;
+    public static final int moon5 = 0x7f020008;
+    public static final int moon6 = 0x7f020009;
+    public static final int moon7 = 0x7f02000a;
+    public static final int neptune = 0x7f02000b;
+    public static final int pluto = 0x7f02000c;
+    public static final int saturn = 0x7f02000d;
+    public static final int sun = 0x7f02000e;
+    public static final int uranus = 0x7f02000f;
+    public static final int venus = 0x7f020010;
+  }
+
+  public static final class string {
+    public static final int jupiter = 0x7f050000;
+    public static final int mars = 0x7f050001;
+    public static final int mercury = 0x7f050002;
+    public static final int moon = 0x7f050003;
+    public static final int neptune = 0x7f050004;
+    public static final int pluto = 0x7f050005;
+    public static final int saturn = 0x7f050006;
+    public static final int sun = 0x7f050007;
+    public static final int uranus = 0x7f050008;
+    public static final int venus = 0x7f050009;
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.provider.ephemeris.Almanac;
+import com.google.android.stardroid.units.LatLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rise, set and transit times of every planet for a day, computed afresh and
+ * looked up again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlmanacBenchmark {
+  private final Almanac almanac = new Almanac();
+  private final LatLong location = new LatLong(37.4f, -122.1f);
+  private long timeMillis = 1262304000000L;  // 2010-01-01T00:00:00Z
+
+  @Benchmark
+  public Almanac.Day computeDay() {
+    // A new day every time, so the cache never hits.
+    timeMillis += TimeConstants.MILLISECONDS_PER_DAY;
+    return almanac.getDay(location, timeMillis);
+  }
+
+  @Benchmark
+  public Almanac.Day lookUpDay() {
+    return almanac.getDay(location, 1262304000000L);
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.control.AstronomerModel.Pointing;
+import com.google.android.stardroid.control.AstronomerModelImpl;
+import com.google.android.stardroid.control.ThreadConfinedAstronomerModel;
+import com.google.android.stardroid.control.ZeroMagneticDeclinationCalculator;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Vector3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AstronomerModelImpl#getPointing}, which runs for every frame, and
+ * {@link ThreadConfinedAstronomerModel#update}, which calls it on every
+ * simulation tick.  The sensor values change on every call, as they do on
+ * the device, and gc.alloc.rate.norm should be zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AstronomerModelBenchmark {
+  private AstronomerModelImpl model;
+  private ThreadConfinedAstronomerModel confinedModel;
+  private Vector3 acceleration;
+  private Vector3 magneticField;
+  private float wobble;
+
+  @Setup
+  public void setUp() {
+    model = new AstronomerModelImpl(new ZeroMagneticDeclinationCalculator());
+    model.setLocation(new LatLong(37.4f, -122.1f));
+    acceleration = new Vector3(0.5f, -9.6f, -1.2f);
+    magneticField = new Vector3(8.0f, -20.0f, -35.0f);
+    // Brings the celestial axes up to date, as the activity does every frame.
+    model.getZenith();
+
+    confinedModel = new ThreadConfinedAstronomerModel(new ZeroMagneticDeclinationCalculator());
+    confinedModel.setLocation(new LatLong(37.4f, -122.1f));
+    // Makes this thread the owner, as the simulation thread is.
+    confinedModel.update();
+  }
+
+  @Benchmark
+  public Pointing getPointing() {
+    wobble = -wobble + 0.01f;
+    acceleration.x = 0.5f + wobble;
+    magneticField.z = -35.0f + wobble;
+    model.setPhoneSensorValues(acceleration, magneticField);
+    return model.getPointing();
+  }
+
+  @Benchmark
+  public void update() {
+    wobble = -wobble + 0.01f;
+    acceleration.x = 0.5f + wobble;
+    magneticField.z = -35.0f + wobble;
+    confinedModel.setPhoneSensorValues(acceleration, magneticField);
+    confinedModel.update();
+  }
+}
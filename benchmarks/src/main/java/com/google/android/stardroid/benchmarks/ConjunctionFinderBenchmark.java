@@ -0,0 +1,73 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.provider.ephemeris.ConjunctionFinder;
+import com.google.android.stardroid.provider.ephemeris.ConjunctionFinder.Event;
+import com.google.android.stardroid.provider.ephemeris.ConjunctionFinder.Star;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds a year of approaches of the Moon and planets to each other and to a
+ * catalog the size of stars.binary, on one thread and on several.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConjunctionFinderBenchmark {
+  private static final long START_MILLIS = 1262304000000L;  // 2010-01-01T00:00:00Z
+  private static final int STAR_COUNT = 9000;
+
+  @Param({"1", "4"})
+  int threads;
+
+  private ConjunctionFinder finder;
+
+  @Setup
+  public void setUp() {
+    // Spread evenly over the sky.
+    Random random = new Random(1);
+    List<Star> stars = new ArrayList<Star>(STAR_COUNT);
+    for (int i = 0; i < STAR_COUNT; i++) {
+      float dec = (float) Math.toDegrees(Math.asin(2 * random.nextFloat() - 1));
+      stars.add(new Star("star" + i, 360 * random.nextFloat(), dec));
+    }
+    finder = new ConjunctionFinder(stars, threads);
+  }
+
+  @Benchmark
+  public List<Event> yearOfApproaches() throws InterruptedException {
+    return finder.find(START_MILLIS, START_MILLIS + 365 * TimeConstants.MILLISECONDS_PER_DAY, 1);
+  }
+}
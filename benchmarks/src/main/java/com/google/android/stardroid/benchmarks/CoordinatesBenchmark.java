@@ -0,0 +1,89 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.util.Geometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinate conversions.  {@link GeocentricCoordinates#updateFromLatLong} is
+ * run once per continent vertex whenever the continent layer updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinatesBenchmark {
+  private static final int NUM_VERTICES = 1000;
+
+  private Date time;
+  private LatLong observer;
+  private LatLong[] targets;
+  private GeocentricCoordinates scratch;
+  private RaDec raDec;
+
+  @Setup
+  public void setUp() {
+    // A fixed instant so that runs are comparable.
+    time = new Date(1262304000000L);  // 2010-01-01T00:00:00Z
+    observer = new LatLong(37.4f, -122.1f);
+    Random random = new Random(42);
+    targets = new LatLong[NUM_VERTICES];
+    for (int i = 0; i < NUM_VERTICES; i++) {
+      targets[i] = new LatLong(180 * random.nextFloat() - 90, 360 * random.nextFloat() - 180);
+    }
+    scratch = new GeocentricCoordinates(0, 0, 0);
+    raDec = new RaDec(83.8f, -5.4f);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_VERTICES)
+  public GeocentricCoordinates updateFromLatLong() {
+    for (LatLong target : targets) {
+      scratch.updateFromLatLong(time, observer, target);
+    }
+    return scratch;
+  }
+
+  @Benchmark
+  public GeocentricCoordinates updateFromRaDec() {
+    scratch.updateFromRaDec(raDec);
+    return scratch;
+  }
+
+  @Benchmark
+  public RaDec calculateRADecOfZenith() {
+    return Geometry.calculateRADecOfZenith(time, observer);
+  }
+}
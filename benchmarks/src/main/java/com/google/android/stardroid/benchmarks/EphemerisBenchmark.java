@@ -0,0 +1,87 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.provider.ephemeris.Planet;
+import com.google.android.stardroid.provider.ephemeris.Planet.RiseSetIndicator;
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.RaDec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planetary positions and rise/set times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EphemerisBenchmark {
+  @Param({"Mars", "Moon", "Sun"})
+  public String planetName;
+
+  private Planet planet;
+  private Date time;
+  private Calendar calendar;
+  private LatLong location;
+  private HeliocentricCoordinates earth;
+
+  @Setup
+  public void setUp() {
+    planet = Planet.valueOf(planetName);
+    time = new Date(1262304000000L);  // 2010-01-01T00:00:00Z
+    calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+    calendar.setTime(time);
+    location = new LatLong(37.4f, -122.1f);
+    earth = HeliocentricCoordinates.getInstance(Planet.Sun, time);
+  }
+
+  @Benchmark
+  public RaDec raDecGivenEarth() {
+    return RaDec.getInstance(planet, time, earth);
+  }
+
+  @Benchmark
+  public RaDec raDecIncludingEarth() {
+    return RaDec.getInstance(planet, time, HeliocentricCoordinates.getInstance(Planet.Sun, time));
+  }
+
+  @Benchmark
+  public HeliocentricCoordinates heliocentricCoordinates() {
+    return HeliocentricCoordinates.getInstance(planet, time);
+  }
+
+  @Benchmark
+  public Calendar calcNextRiseSetTime() {
+    return planet.calcNextRiseSetTime(calendar, location, RiseSetIndicator.RISE);
+  }
+}
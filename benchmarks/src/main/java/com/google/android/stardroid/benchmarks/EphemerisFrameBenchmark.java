@@ -0,0 +1,92 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.provider.ephemeris.EphemerisCache;
+import com.google.android.stardroid.provider.ephemeris.EphemerisFrame;
+import com.google.android.stardroid.provider.ephemeris.Planet;
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.units.Vector3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positions of all the planets at a new time, computed body by body as
+ * PlanetSource used to, in one pass through an {@link EphemerisFrame}, and
+ * from the polynomials fitted by an {@link EphemerisCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EphemerisFrameBenchmark {
+  private static final Planet[] PLANETS = Planet.values();
+
+  // Advanced on every call so that the frame cache never hits.
+  private long timeMillis = 1262304000000L;  // 2010-01-01T00:00:00Z
+  private final EphemerisCache cache = new EphemerisCache();
+  private final Vector3 position = new Vector3(0, 0, 0);
+
+  @Setup
+  public void setUp() throws InterruptedException {
+    // Wait for the window around timeMillis to be fitted.
+    while (!cache.getPosition(Planet.Sun, timeMillis, position)) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Benchmark
+  public void perPlanet(Blackhole blackhole) {
+    Date time = new Date(++timeMillis);
+    for (Planet planet : PLANETS) {
+      HeliocentricCoordinates earth = HeliocentricCoordinates.getInstance(Planet.Sun, time);
+      blackhole.consume(RaDec.getInstance(planet, time, earth));
+    }
+  }
+
+  @Benchmark
+  public void frame(Blackhole blackhole) {
+    EphemerisFrame frame = EphemerisFrame.forTime(++timeMillis);
+    for (Planet planet : PLANETS) {
+      blackhole.consume(frame.getRa(planet));
+      blackhole.consume(frame.getDec(planet));
+    }
+  }
+
+  @Benchmark
+  public void cache(Blackhole blackhole) {
+    // Stays inside the fitted window for the length of a run.
+    long time = ++timeMillis;
+    for (Planet planet : PLANETS) {
+      cache.getPosition(planet, time, position);
+      blackhole.consume(position.x);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.provider.ephemeris.EventSearch;
+import com.google.android.stardroid.provider.ephemeris.EventSearch.Event;
+import com.google.android.stardroid.provider.ephemeris.EventSearch.EventType;
+import com.google.android.stardroid.provider.ephemeris.Planet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches for lunar phases, conjunctions, oppositions and elongations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSearchBenchmark {
+  private static final long START_MILLIS = 1262304000000L;  // 2010-01-01T00:00:00Z
+
+  @Benchmark
+  public List<Event> yearOfEvents() {
+    return EventSearch.findEvents(START_MILLIS, START_MILLIS + 365 * TimeConstants.MILLISECONDS_PER_DAY);
+  }
+
+  @Benchmark
+  public Event nextFullMoon() {
+    return EventSearch.findNext(EventType.FULL_MOON, Planet.Moon, START_MILLIS);
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.units.Matrix33;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.Matrix4x4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matrix products and rotations as used by the renderer (4x4) and the
+ * astronomer model (3x3).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+  private Matrix4x4 view;
+  private Matrix4x4 projection;
+  private Matrix33 phoneToCelestial;
+  private Matrix33 celestialToPhone;
+  private Vector3 vector;
+  private Vector3 vectorResult;
+  private Matrix33 matrixResult;
+  private Vector3 axis;
+  private float degrees;
+
+  @Setup
+  public void setUp() {
+    Vector3 lookDir = new Vector3(0.6f, 0.0f, 0.8f);
+    Vector3 up = new Vector3(-0.8f, 0.0f, 0.6f);
+    Vector3 right = new Vector3(0, 1, 0);
+    view = Matrix4x4.createView(lookDir, up, right);
+    projection = Matrix4x4.createPerspectiveProjection(480, 800, 45 * Geometry.DEGREES_TO_RADIANS);
+    phoneToCelestial = new Matrix33(0.36f, 0.48f, -0.8f,
+                                    -0.8f, 0.6f, 0.0f,
+                                    0.48f, 0.64f, 0.6f);
+    celestialToPhone = phoneToCelestial.getInverse();
+    vector = new Vector3(0.2f, 0.3f, 0.93f);
+    vectorResult = new Vector3(0, 0, 0);
+    matrixResult = new Matrix33();
+    axis = new Vector3(0.0f, 0.6f, 0.8f);
+    degrees = 37.5f;
+  }
+
+  @Benchmark
+  public Matrix4x4 multiplyMM() {
+    return Matrix4x4.multiplyMM(projection, view);
+  }
+
+  @Benchmark
+  public Vector3 multiplyMV() {
+    return Matrix4x4.multiplyMV(view, vector);
+  }
+
+  @Benchmark
+  public Vector3 transformVector() {
+    return Matrix4x4.transformVector(projection, vector);
+  }
+
+  @Benchmark
+  public Matrix4x4 createRotation() {
+    return Matrix4x4.createRotation(degrees * Geometry.DEGREES_TO_RADIANS, axis);
+  }
+
+  @Benchmark
+  public Matrix33 calculateRotationMatrix() {
+    return Geometry.calculateRotationMatrix(degrees, axis);
+  }
+
+  @Benchmark
+  public Matrix33 calculateRotationMatrixInto() {
+    return Geometry.calculateRotationMatrix(degrees, axis, matrixResult);
+  }
+
+  @Benchmark
+  public Matrix33 matrixMultiply33() {
+    return Geometry.matrixMultiply(phoneToCelestial, celestialToPhone);
+  }
+
+  @Benchmark
+  public Matrix33 matrixMultiply33Into() {
+    return Geometry.matrixMultiply(phoneToCelestial, celestialToPhone, matrixResult);
+  }
+
+  @Benchmark
+  public Vector3 matrixVectorMultiply33() {
+    return Geometry.matrixVectorMultiply(phoneToCelestial, vector);
+  }
+
+  @Benchmark
+  public Vector3 matrixVectorMultiply33Into() {
+    return Geometry.matrixVectorMultiply(phoneToCelestial, vector, vectorResult);
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.provider.ephemeris.MinorPlanetCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagating a main belt sized catalog of asteroids, as the minor planet
+ * layer does when it picks the brightest, against propagating just the
+ * selection, as it does every hour of model time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinorPlanetCatalogBenchmark {
+  private static final int BODIES = 30000;
+  private static final long START_MILLIS = 1262304000000L;  // 2010-01-01T00:00:00Z
+
+  private MinorPlanetCatalog catalog;
+  private int[] selection;
+  private final float[] directions = new float[3 * BODIES];
+  private final float[] magnitudes = new float[BODIES];
+  private long timeMillis = START_MILLIS;
+
+  @Setup
+  public void setUp() throws IOException, InterruptedException {
+    // Random main belt orbits, in the columns of MPCORB.DAT.
+    Random random = new Random(42);
+    StringBuilder file = new StringBuilder();
+    for (int i = 0; i < BODIES; i++) {
+      double a = 2.1 + 1.2 * random.nextDouble();
+      double n = 0.9856076686 / Math.pow(a, 1.5);
+      file.append(String.format(Locale.US,
+          "%-7d %5.2f  0.15 K1013 %9.5f  %9.5f  %9.5f  %9.5f  %9.7f %11.8f %11.7f",
+          i + 1, 8 + 5 * random.nextDouble(), 360 * random.nextDouble(),
+          360 * random.nextDouble(), 360 * random.nextDouble(), 20 * random.nextDouble(),
+          0.3 * random.nextDouble(), n, a)).append('\n');
+    }
+    catalog = MinorPlanetCatalog.read(new BufferedReader(new StringReader(file.toString())), 99);
+    catalog.propagate(START_MILLIS, null, directions, magnitudes);
+    selection = MinorPlanetCatalog.selectBrightest(magnitudes, catalog.size(), 14, 2000);
+  }
+
+  @Benchmark
+  public float[] propagateAll() throws InterruptedException {
+    timeMillis += TimeConstants.MILLISECONDS_PER_HOUR;
+    catalog.propagate(timeMillis, null, directions, magnitudes);
+    return directions;
+  }
+
+  @Benchmark
+  public float[] propagateSelection() throws InterruptedException {
+    timeMillis += TimeConstants.MILLISECONDS_PER_HOUR;
+    catalog.propagate(timeMillis, selection, directions, magnitudes);
+    return directions;
+  }
+}
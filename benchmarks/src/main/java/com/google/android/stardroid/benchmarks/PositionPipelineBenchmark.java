@@ -0,0 +1,85 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.provider.ephemeris.EphemerisCache;
+import com.google.android.stardroid.provider.ephemeris.Planet;
+import com.google.android.stardroid.provider.ephemeris.PositionPipeline;
+import com.google.android.stardroid.units.Vector3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The simulation thread's work per tick to move the planets during time
+ * travel: looking everything up in a filled {@link PositionPipeline}, against
+ * evaluating the {@link EphemerisCache} and working out the Moon's phase.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionPipelineBenchmark {
+  private static final long START_MILLIS = 1262304000000L;  // 2010-01-01T00:00:00Z
+  private static final long DAY = TimeConstants.MILLISECONDS_PER_DAY;
+  // Between two samples, so lookups interpolate.
+  private static final long TIME_MILLIS = START_MILLIS + DAY + DAY / 2;
+
+  private final EphemerisCache ephemeris = new EphemerisCache();
+  private final PositionPipeline pipeline = new PositionPipeline(ephemeris);
+  private final Vector3 position = new Vector3(0, 0, 0);
+  private final Vector3 earthPosition = new Vector3(0, 0, 0);
+
+  @Setup
+  public void setUp() throws InterruptedException {
+    // Travel at a day a step, then wait for both to be filled.
+    pipeline.getMoonImageId(START_MILLIS);
+    pipeline.getMoonImageId(START_MILLIS + DAY);
+    while (pipeline.getMoonImageId(TIME_MILLIS) == -1
+        || !ephemeris.getPosition(Planet.Moon, TIME_MILLIS, position)) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Benchmark
+  public int pipeline() {
+    for (Planet planet : Planet.values()) {
+      pipeline.getPosition(planet, TIME_MILLIS, position, earthPosition);
+    }
+    return pipeline.getMoonImageId(TIME_MILLIS);
+  }
+
+  @Benchmark
+  public int cache() {
+    for (Planet planet : Planet.values()) {
+      ephemeris.getPosition(planet, TIME_MILLIS, position);
+      ephemeris.getEarthPosition(TIME_MILLIS, earthPosition);
+    }
+    return Planet.Moon.getImageResourceId(new Date(TIME_MILLIS));
+  }
+}
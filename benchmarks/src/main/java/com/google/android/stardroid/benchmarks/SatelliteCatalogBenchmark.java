@@ -0,0 +1,82 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.provider.ephemeris.SatelliteCatalog;
+import com.google.android.stardroid.provider.ephemeris.Sgp4;
+import com.google.android.stardroid.units.LatLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagating a catalog the size of the active satellite catalog, as the
+ * satellite layer does once a second.  The satellites are copies of the ISS
+ * spread around its orbit and around the equator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SatelliteCatalogBenchmark {
+  private static final String LINE1 =
+      "1 25544U 98067A   16245.51373032  .00004223  00000-0  71043-4 0  9990";
+  private static final String LINE2 =
+      "2 25544  51.6445 178.4567 0002690 331.5328 143.0786 15.54393853 16451";
+
+  @Param({"1000", "10000"})
+  int satellites;
+
+  private final LatLong observer = new LatLong(37.4f, -122.1f);
+  private SatelliteCatalog catalog;
+  private float[] directions;
+  private long timeMillis;
+
+  @Setup
+  public void setUp() {
+    List<Sgp4> orbits = new ArrayList<Sgp4>(satellites);
+    for (int i = 0; i < satellites; i++) {
+      String node = String.format(Locale.US, "%8.4f", (178.4567 + i * 1.9) % 360);
+      String anomaly = String.format(Locale.US, "%8.4f", (143.0786 + i * 7.3) % 360);
+      String line2 = LINE2.substring(0, 17) + node + LINE2.substring(25, 43) + anomaly
+          + LINE2.substring(51);
+      orbits.add(new Sgp4("SAT " + i, LINE1, line2));
+    }
+    catalog = new SatelliteCatalog(orbits);
+    directions = new float[3 * satellites];
+    timeMillis = orbits.get(0).getEpochMillis();
+  }
+
+  @Benchmark
+  public int propagate() throws InterruptedException {
+    timeMillis += 1000;
+    return catalog.propagate(timeMillis, observer, directions);
+  }
+}
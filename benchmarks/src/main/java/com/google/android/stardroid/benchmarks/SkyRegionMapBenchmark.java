@@ -0,0 +1,81 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.renderer.util.SkyRegionMap;
+import com.google.android.stardroid.renderer.util.SkyRegionMap.ActiveRegionData;
+import com.google.android.stardroid.units.GeocentricCoordinates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region assignment for objects (done once per object whenever a layer is
+ * reloaded) and active region selection (done every frame).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkyRegionMapBenchmark {
+  // Roughly the size of the bundled star catalog.
+  private static final int NUM_POINTS = 1600;
+
+  private GeocentricCoordinates[] points;
+  private GeocentricCoordinates lookDir;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    points = new GeocentricCoordinates[NUM_POINTS];
+    for (int i = 0; i < NUM_POINTS; i++) {
+      points[i] = GeocentricCoordinates.getInstance(360 * random.nextFloat(),
+                                                    180 * random.nextFloat() - 90);
+    }
+    lookDir = GeocentricCoordinates.getInstance(83.8f, -5.4f);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_POINTS)
+  public void getObjectRegionData(Blackhole bh) {
+    for (GeocentricCoordinates point : points) {
+      bh.consume(SkyRegionMap.getObjectRegionData(point));
+    }
+  }
+
+  @Benchmark
+  public ActiveRegionData getActiveRegionsNarrowField() {
+    return SkyRegionMap.getActiveRegions(lookDir, 20, 0.6f);
+  }
+
+  @Benchmark
+  public ActiveRegionData getActiveRegionsWideField() {
+    return SkyRegionMap.getActiveRegions(lookDir, 90, 0.6f);
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.util.TimeFrame;
+import com.google.android.stardroid.util.TimeUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Julian day and sidereal time conversions, which every ephemeris and
+ * zenith calculation starts with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeBenchmark {
+  private Date time;
+  private long timeMillis;
+
+  @Setup
+  public void setUp() {
+    time = new Date(1262304000000L);  // 2010-01-01T00:00:00Z
+    timeMillis = time.getTime();
+  }
+
+  @Benchmark
+  public double calculateJulianDay() {
+    return TimeUtil.calculateJulianDay(time);
+  }
+
+  @Benchmark
+  public double julianCenturies() {
+    return TimeUtil.julianCenturies(time);
+  }
+
+  @Benchmark
+  public float meanSiderealTime() {
+    return TimeUtil.meanSiderealTime(time, -122.1f);
+  }
+
+  /** A new timestamp every call, so a new frame is built every time. */
+  @Benchmark
+  public float timeFrameNewTime() {
+    timeMillis += 1000;
+    return TimeFrame.forTime(timeMillis).getLocalSiderealTime(-122.1f);
+  }
+
+  /** The same timestamp every call, as for the vertices of one layer update. */
+  @Benchmark
+  public float timeFrameSameTime() {
+    return TimeFrame.forTime(1262304000000L).getLocalSiderealTime(-122.1f);
+  }
+}
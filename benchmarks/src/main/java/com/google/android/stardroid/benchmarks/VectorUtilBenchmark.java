@@ -0,0 +1,101 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.benchmarks;
+
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.VectorUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link VectorUtil} helpers.  Most return a new {@link Vector3}, which
+ * is what the gc profiler numbers will show; the *Into variants write into a
+ * caller's vector and shouldn't allocate at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorUtilBenchmark {
+  private Vector3 v1;
+  private Vector3 v2;
+  private Vector3 unitNormal;
+  private Vector3 result;
+
+  @Setup
+  public void setUp() {
+    v1 = new Vector3(0.3f, -1.2f, 2.5f);
+    v2 = new Vector3(-0.7f, 0.4f, 0.1f);
+    unitNormal = VectorUtil.normalized(new Vector3(1, 1, 1));
+    result = new Vector3(0, 0, 0);
+  }
+
+  @Benchmark
+  public float dotProduct() {
+    return VectorUtil.dotProduct(v1, v2);
+  }
+
+  @Benchmark
+  public Vector3 crossProduct() {
+    return VectorUtil.crossProduct(v1, v2);
+  }
+
+  @Benchmark
+  public Vector3 crossProductInto() {
+    return VectorUtil.crossProduct(v1, v2, result);
+  }
+
+  @Benchmark
+  public Vector3 normalized() {
+    return VectorUtil.normalized(v1);
+  }
+
+  @Benchmark
+  public float angleBetween() {
+    return VectorUtil.angleBetween(v1, v2);
+  }
+
+  @Benchmark
+  public Vector3 projectOntoPlane() {
+    return VectorUtil.projectOntoPlane(v1, unitNormal);
+  }
+
+  @Benchmark
+  public Vector3 projectOntoPlaneInto() {
+    return VectorUtil.projectOntoPlane(v1, unitNormal, result);
+  }
+
+  @Benchmark
+  public Vector3 sum() {
+    return VectorUtil.sum(v1, v2);
+  }
+
+  @Benchmark
+  public Vector3 sumInto() {
+    return VectorUtil.sum(v1, v2, result);
+  }
+}
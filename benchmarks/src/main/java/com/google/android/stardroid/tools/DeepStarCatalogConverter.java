@@ -0,0 +1,127 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.android.stardroid.tools;
+
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts the Hipparcos main catalog (hip_main.dat, CDS catalog I/239) into
+ * the tiled deep star catalog that NewStarsLayer pages in as the user zooms
+ * in.  Stars bright enough to be in stars.binary are left out, so that they
+ * aren't drawn twice.  Run with:
+ *
+ *   java -cp target/benchmarks.jar \
+ *       com.google.android.stardroid.tools.DeepStarCatalogConverter \
+ *       hip_main.dat.gz ../assets/stars_deep.tiles
+ *
+ * The asset must be stored uncompressed (aapt's -0 tiles) to be mapped.
+ */
+public class DeepStarCatalogConverter {
+  // stars.binary holds the stars up to this magnitude.
+  static final float STANDARD_CATALOG_LIMIT = 5.0f;
+  static final float[] BAND_LIMITS = {6.0f, 7.0f, 8.0f, 9.0f};
+
+  // Fields of the '|' separated hip_main.dat records.
+  private static final int VMAG_FIELD = 5;
+  private static final int RA_DEGREES_FIELD = 8;
+  private static final int DEC_DEGREES_FIELD = 9;
+
+  private DeepStarCatalogConverter() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: DeepStarCatalogConverter <hip_main.dat[.gz]> <output.tiles>");
+      System.exit(1);
+    }
+    InputStream in = new FileInputStream(args[0]);
+    if (args[0].endsWith(".gz")) {
+      in = new GZIPInputStream(in);
+    }
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(args[1]));
+      int numStars = convert(new BufferedReader(new InputStreamReader(in, "US-ASCII")), out);
+      System.out.println("Wrote " + numStars + " stars to " + args[1]);
+    } finally {
+      in.close();
+      if (out != null) {
+        out.close();
+      }
+    }
+  }
+
+  /** Converts hip_main.dat records, returning the number of stars written. */
+  static int convert(BufferedReader reader, OutputStream out) throws IOException {
+    float maxMagnitude = BAND_LIMITS[BAND_LIMITS.length - 1];
+    float[] xyz = new float[3 * 4096];
+    int[] colors = new int[4096];
+    float[] magnitudes = new float[4096];
+    int numStars = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = line.split("\\|", DEC_DEGREES_FIELD + 2);
+      if (fields.length <= DEC_DEGREES_FIELD) {
+        continue;
+      }
+      String vmag = fields[VMAG_FIELD].trim();
+      String ra = fields[RA_DEGREES_FIELD].trim();
+      String dec = fields[DEC_DEGREES_FIELD].trim();
+      // A few entries have no position or magnitude.
+      if (vmag.length() == 0 || ra.length() == 0 || dec.length() == 0) {
+        continue;
+      }
+      float magnitude = Float.parseFloat(vmag);
+      if (magnitude <= STANDARD_CATALOG_LIMIT || magnitude > maxMagnitude) {
+        continue;
+      }
+      if (numStars == magnitudes.length) {
+        xyz = Arrays.copyOf(xyz, 6 * numStars);
+        colors = Arrays.copyOf(colors, 2 * numStars);
+        magnitudes = Arrays.copyOf(magnitudes, 2 * numStars);
+      }
+      double raRadians = Math.toRadians(Double.parseDouble(ra));
+      double decRadians = Math.toRadians(Double.parseDouble(dec));
+      xyz[3 * numStars] = (float) (Math.cos(raRadians) * Math.cos(decRadians));
+      xyz[3 * numStars + 1] = (float) (Math.sin(raRadians) * Math.cos(decRadians));
+      xyz[3 * numStars + 2] = (float) Math.sin(decRadians);
+      colors[numStars] = getColor(magnitude);
+      magnitudes[numStars] = magnitude;
+      numStars++;
+    }
+    TiledStarCatalog.write(Arrays.copyOf(xyz, 3 * numStars), Arrays.copyOf(colors, numStars),
+        Arrays.copyOf(magnitudes, numStars), BAND_LIMITS, out);
+    return numStars;
+  }
+
+  /**
+   * Returns a gray for the given magnitude on StarAttributeCalculator's scale,
+   * which goes black at magnitude 8, but kept visible for the faintest stars.
+   */
+  static int getColor(float magnitude) {
+    float shade = Math.max(0.2f, 1.0f - magnitude / 8.0f);
+    int value = (int) (shade * 0xFF);
+    return 0xFF000000 | (value << 16) | (value << 8) | value;
+  }
+}
@@ -14,15 +14,17 @@
 package com.google.android.stardroid;
 
 import com.google.android.stardroid.activities.DynamicStarMapActivity;
-import com.google.android.stardroid.control.AstronomerModel;
-import com.google.android.stardroid.control.AstronomerModelImpl;
+import com.google.android.stardroid.control.ThreadConfinedAstronomerModel;
 import com.google.android.stardroid.control.ZeroMagneticDeclinationCalculator;
+import com.google.android.stardroid.layers.AbstractFileBasedLayer;
 import com.google.android.stardroid.layers.EclipticLayer;
 import com.google.android.stardroid.layers.GridLayer;
 import com.google.android.stardroid.layers.HorizonLayer;
 import com.google.android.stardroid.layers.ContinentLayer;
+import com.google.android.stardroid.layers.IssLayer;
 import com.google.android.stardroid.layers.LayerManager;
 import com.google.android.stardroid.layers.MeteorShowerLayer;
+import com.google.android.stardroid.layers.MinorPlanetLayer;
 import com.google.android.stardroid.layers.NewConstellationsLayer;
 import com.google.android.stardroid.layers.NewMessierLayer;
 import com.google.android.stardroid.layers.NewStarsLayer;
@@ -45,6 +47,7 @@ import android.content.res.Resources;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import java.io.File;
 import java.util.Calendar;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -63,7 +66,7 @@ public class StardroidApplication extends Application {
   // fields.  This is necessary so that the content provider can access the
   // things it needs; there seems to be no easy way for a ContentProvider
   // to access its Application object.
-  private static AstronomerModel model;
+  private static ThreadConfinedAstronomerModel model;
   private static LayerManager layerManager;
   private static ExecutorService backgroundExecutor;
 
@@ -166,6 +169,16 @@ public class StardroidApplication extends Application {
     }
   }
 
+  /**
+   * Returns when this copy of Sky Map was installed or last updated, in
+   * milliseconds, or 0 if unknown.
+   */
+  public long getInstallTime() {
+    // PackageInfo.lastUpdateTime needs API level 9; the APK's timestamp is
+    // the same thing.
+    return new File(getApplicationInfo().sourceDir).lastModified();
+  }
+
   /**
    * Get the catalog.
    * This should return relatively quickly, with the catalogs initializing
@@ -178,9 +191,20 @@ public class StardroidApplication extends Application {
     if (layerManager == null) {
       Log.i(TAG, "Initializing LayerManager");
       layerManager = new LayerManager(preferences, getModel());
-      layerManager.addLayer(new NewStarsLayer(assetManager, resources));
-      layerManager.addLayer(new NewMessierLayer(assetManager, resources));
-      layerManager.addLayer(new NewConstellationsLayer(assetManager, resources));
+      // The geometry of the catalogs is cached between runs, until the app
+      // (and so its assets) is updated.
+      File snapshotDirectory = new File(context.getCacheDir(), "geometry");
+      long installTime = ((StardroidApplication) context.getApplicationContext()).getInstallTime();
+      AbstractFileBasedLayer[] catalogLayers = {
+          new NewStarsLayer(assetManager, resources),
+          new NewMessierLayer(assetManager, resources),
+          new NewConstellationsLayer(assetManager, resources)};
+      for (AbstractFileBasedLayer layer : catalogLayers) {
+        if (installTime != 0) {
+          layer.setSnapshotDirectory(snapshotDirectory, installTime);
+        }
+        layerManager.addLayer(layer);
+      }
       layerManager.addLayer(new PlanetsLayer(getModel(), resources, preferences));
       layerManager.addLayer(new MeteorShowerLayer(getModel(), resources));
       layerManager.addLayer(new GridLayer(resources, 24, 19));
@@ -188,7 +212,10 @@ public class StardroidApplication extends Application {
       layerManager.addLayer(new ContinentLayer(getModel(), assetManager, resources));
       layerManager.addLayer(new EclipticLayer(resources));
       //layerManager.addLayer(new SkyGradientLayer(getModel(), resources));
-      // layerManager.addLayer(new IssLayer(resources, getModel()));
+      layerManager.addLayer(new IssLayer(assetManager, resources, getModel(),
+          new File(context.getFilesDir(), IssLayer.ASSET_NAME)));
+      layerManager.addLayer(new MinorPlanetLayer(assetManager, resources, getModel(),
+          context.getFilesDir()));
       layerManager.initialize();
     } else {
       Log.i(TAG, "LayerManager already initialized.");
@@ -199,9 +226,9 @@ public class StardroidApplication extends Application {
   /**
    * Return the model.
    */
-  public static synchronized AstronomerModel getModel() {
+  public static synchronized ThreadConfinedAstronomerModel getModel() {
     if (model == null) {
-      model = new AstronomerModelImpl(new ZeroMagneticDeclinationCalculator());
+      model = new ThreadConfinedAstronomerModel(new ZeroMagneticDeclinationCalculator());
     }
     return model;
   }
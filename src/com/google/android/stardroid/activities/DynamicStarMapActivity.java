@@ -23,11 +23,14 @@ import com.google.android.stardroid.control.AstronomerModel;
 import com.google.android.stardroid.control.AstronomerModel.Pointing;
 import com.google.android.stardroid.control.ControllerGroup;
 import com.google.android.stardroid.control.MagneticDeclinationCalculatorSwitcher;
+import com.google.android.stardroid.control.ThreadConfinedAstronomerModel;
 import com.google.android.stardroid.kml.KmlManager;
 import com.google.android.stardroid.layers.LayerManager;
 import com.google.android.stardroid.renderer.RendererController;
 import com.google.android.stardroid.renderer.SkyRenderer;
-import com.google.android.stardroid.renderer.util.AbstractUpdateClosure;
+import com.google.android.stardroid.renderer.util.FrameSnapshot;
+import com.google.android.stardroid.renderer.util.SimulationThread;
+import com.google.android.stardroid.renderer.util.TripleBuffer;
 import com.google.android.stardroid.search.SearchResult;
 import com.google.android.stardroid.touch.DragRotateZoomGestureDetector;
 import com.google.android.stardroid.touch.GestureInterpreter;
@@ -82,41 +85,49 @@ import java.util.List;
  */
 public class DynamicStarMapActivity extends Activity implements OnSharedPreferenceChangeListener {
   private static final int TIME_DISPLAY_DELAY_MILLIS = 1000;
+  // The model and layers are updated at the display's frame rate.
+  private static final long SIMULATION_TICK_MILLIS = 16;
 
   /**
-   * Passed to the renderer to get per-frame updates from the model.
+   * Updates the model at the start of every simulation tick, making the
+   * simulation thread its owner, and publishes the view from it to the
+   * renderer at the end, once the layers have been updated too.
    *
    * @author John Taylor
    */
-  private static final class RendererModelUpdateClosure extends AbstractUpdateClosure {
-    private RendererController rendererController;
-    private AstronomerModel model;
+  private static final class ModelTickListener implements SimulationThread.TickListener {
+    private final ThreadConfinedAstronomerModel model;
+    private final RendererController rendererController;
+    private final TripleBuffer<FrameSnapshot> frames;
 
-    public RendererModelUpdateClosure(AstronomerModel model,
-        RendererController rendererController) {
+    public ModelTickListener(ThreadConfinedAstronomerModel model,
+        RendererController rendererController, TripleBuffer<FrameSnapshot> frames) {
       this.model = model;
       this.rendererController = rendererController;
+      this.frames = frames;
     }
 
     @Override
-    public void run() {
-      Pointing pointing = model.getPointing();
-      float directionX = pointing.getLineOfSightX();
-      float directionY = pointing.getLineOfSightY();
-      float directionZ = pointing.getLineOfSightZ();
-
-      float upX = pointing.getPerpendicularX();
-      float upY = pointing.getPerpendicularY();
-      float upZ = pointing.getPerpendicularZ();
+    public void onTickStart() {
+      model.update();
+    }
 
-      rendererController.queueSetViewOrientation(directionX, directionY, directionZ, upX, upY, upZ);
+    @Override
+    public void onTickEnd() {
+      FrameSnapshot frame = frames.getBack();
+      Pointing pointing = model.getPointing();
+      frame.lookDir.assign(pointing.getLineOfSightX(), pointing.getLineOfSightY(),
+          pointing.getLineOfSightZ());
+      frame.upDir.assign(pointing.getPerpendicularX(), pointing.getPerpendicularY(),
+          pointing.getPerpendicularZ());
 
       Vector3 acceleration = model.getPhoneAcceleration();
-      rendererController.queueTextAngle(MathUtil.atan2(-acceleration.x, -acceleration.y));
-      rendererController.queueViewerUpDirection(model.getZenith().copy());
-
-      float fieldOfView = model.getFieldOfView();
-      rendererController.queueFieldOfView(fieldOfView);
+      frame.textAngle = MathUtil.atan2(-acceleration.x, -acceleration.y);
+      frame.zenith.assign(model.getZenith());
+      frame.fieldOfView = model.getFieldOfView();
+      frame.timeMillis = model.getTimeMillis();
+      frame.atomicSections = rendererController.getAtomicSectionsQueued();
+      frames.publish();
     }
   }
 
@@ -136,8 +147,9 @@ public class DynamicStarMapActivity extends Activity implements OnSharedPreferen
   private ImageButton cancelSearchButton;
   private ControllerGroup controller;
   private GestureDetector gestureDetector;
-  private AstronomerModel model;
+  private ThreadConfinedAstronomerModel model;
   private RendererController rendererController;
+  private SimulationThread simulationThread;
   private boolean nightMode = false;
   private boolean searchMode = false;
   private GeocentricCoordinates searchTarget = GeocentricCoordinates.getInstance(0, 0);
@@ -369,6 +381,7 @@ public class DynamicStarMapActivity extends Activity implements OnSharedPreferen
     skyView.onResume();
     Log.i(TAG, "Starting controller");
     controller.start();
+    simulationThread.start();
     activityLightLevelManager.onResume();
     for (Runnable runnable : runnables) {
       handler.post(runnable);
@@ -434,6 +447,7 @@ public class DynamicStarMapActivity extends Activity implements OnSharedPreferen
       handler.removeCallbacks(runnable);
     }
     activityLightLevelManager.onPause();
+    simulationThread.stop();
     controller.stop();
     skyView.onPause();
     wakeLock.release();
@@ -518,9 +532,15 @@ public class DynamicStarMapActivity extends Activity implements OnSharedPreferen
     skyView.setRenderer(renderer);
 
     rendererController = new RendererController(renderer, skyView);
-    // The renderer will now call back every frame to get model updates.
-    rendererController.addUpdateClosure(
-        new RendererModelUpdateClosure(model, rendererController));
+    // The model and layers are updated on a thread of their own, which hands
+    // the view to the renderer through a triple buffer, so the render thread
+    // only has to draw.
+    TripleBuffer<FrameSnapshot> frames = new TripleBuffer<FrameSnapshot>(
+        new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot());
+    simulationThread = new SimulationThread(SIMULATION_TICK_MILLIS);
+    rendererController.setSimulationThread(simulationThread);
+    rendererController.queueFrameSnapshots(frames);
+    simulationThread.setTickListener(new ModelTickListener(model, rendererController, frames));
 
     Log.i(TAG, "Setting layers @ " + System.currentTimeMillis());
     layerManager.registerWithRenderer(rendererController);
@@ -46,6 +46,7 @@ public class Lists {
    * List, then the Iterable is returned directly. Otherwise a new List is
    * created with the same elements as the given Iterable.
    */
+  @SuppressWarnings("unchecked")  // An Iterable<E> which is a List is a List<E>.
   public static <E> List<E> asList(Iterable<E> iterable) {
     if (iterable instanceof List) {
       return (List<E>) iterable;
@@ -61,6 +62,7 @@ public class Lists {
   /**
    * Converts a user specified set of objects into a {@link List} of that type.
    */
+  @SuppressWarnings("unchecked")  // Only reads the array; @SafeVarargs needs Java 7.
   public static <E> List<E> asList(E... objects) {
     return Arrays.asList(objects);
   }
@@ -194,4 +194,11 @@ public interface AstronomerModel {
   void setMagneticDeclinationCalculator(MagneticDeclinationCalculator calculator);
 
   long getTimeMillis();
+
+  /**
+   * Runs the given command where it can use the model without racing any
+   * other thread using it.  Reads and changes which depend on each other,
+   * such as turning the pointing by an angle, should be made this way.
+   */
+  void queueCommand(Runnable command);
 }
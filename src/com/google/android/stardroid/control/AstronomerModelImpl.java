@@ -14,22 +14,19 @@
 
 package com.google.android.stardroid.control;
 
-import static com.google.android.stardroid.util.Geometry.addVectors;
-import static com.google.android.stardroid.util.Geometry.calculateRADecOfZenith;
 import static com.google.android.stardroid.util.Geometry.matrixMultiply;
 import static com.google.android.stardroid.util.Geometry.matrixVectorMultiply;
-import static com.google.android.stardroid.util.Geometry.scalarProduct;
-import static com.google.android.stardroid.util.Geometry.scaleVector;
 import static com.google.android.stardroid.util.Geometry.vectorProduct;
 
 import com.google.android.stardroid.ApplicationConstants;
 import com.google.android.stardroid.units.GeocentricCoordinates;
 import com.google.android.stardroid.units.LatLong;
 import com.google.android.stardroid.units.Matrix33;
-import com.google.android.stardroid.units.RaDec;
 import com.google.android.stardroid.units.Vector3;
 import com.google.android.stardroid.util.Geometry;
 import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.TimeFrame;
+import com.google.android.stardroid.util.VectorUtil;
 
 import java.util.Date;
 
@@ -64,7 +61,12 @@ import java.util.Date;
  * <p>where the latter vector is trivial to calculate.
  *
  * <p>Implementation note: this class isn't making defensive copies and
- * so is vulnerable to clients changing its internal state.
+ * so is vulnerable to clients changing its internal state.  Nor is it thread
+ * safe, even for reads: {@link #getPointing} is called for every frame, so it
+ * and the horizon getters work in scratch vectors and matrices owned by the
+ * model rather than allocating.  It must only ever be used from one thread;
+ * the app shares it through a {@link ThreadConfinedAstronomerModel}, which
+ * confines it to the simulation thread.
  *
  * @author John Taylor
  */
@@ -72,7 +74,6 @@ public class AstronomerModelImpl implements AstronomerModel {
   private static final String TAG = MiscUtil.getTag(AstronomerModelImpl.class);
   private static final Vector3 POINTING_DIR_IN_PHONE_COORDS = new Vector3(0, 0, -1);
   private static final Vector3 SCREEN_UP_IN_PHONE_COORDS = new Vector3(0, 1, 0);
-  private static final Vector3 AXIS_OF_EARTHS_ROTATION = new Vector3(0, 0, 1);
   private static final long MINIMUM_TIME_BETWEEN_CELESTIAL_COORD_UPDATES_MILLIS = 60000L;
 
   private MagneticDeclinationCalculator magneticDeclinationCalculator;
@@ -90,25 +91,40 @@ public class AstronomerModelImpl implements AstronomerModel {
   private Pointing pointing = new Pointing();
 
   /** The sensor acceleration in the phone's coordinate system. */
-  private Vector3 acceleration = ApplicationConstants.INITIAL_DOWN;
+  private final Vector3 acceleration = ApplicationConstants.INITIAL_DOWN.copy();
 
   /** The sensor magnetic field in the phone's coordinate system. */
-  private Vector3 magneticField = ApplicationConstants.INITIAL_SOUTH;
+  private final Vector3 magneticField = ApplicationConstants.INITIAL_SOUTH.copy();
 
   /** North along the ground in celestial coordinates. */
-  private Vector3 trueNorthCelestial = new Vector3(1, 0, 0);
+  private final GeocentricCoordinates trueNorthCelestial = new GeocentricCoordinates(1, 0, 0);
 
   /** Up in celestial coordinates. */
-  private Vector3 upCelestial = new Vector3(0, 1, 0);
+  private final GeocentricCoordinates upCelestial = new GeocentricCoordinates(0, 1, 0);
+
+  /** The Earth's axis of date, which precesses about the J2000 pole. */
+  private final Vector3 axisOfEarthsRotation = new Vector3(0, 0, 1);
 
   /** East in celestial coordinates. */
-  private Vector3 trueEastCelestial = AXIS_OF_EARTHS_ROTATION;
+  private final GeocentricCoordinates trueEastCelestial = new GeocentricCoordinates(0, 0, 1);
 
   /** [North, Up, East]^-1 in phone coordinates. */
-  private Matrix33 axesPhoneInverseMatrix = Matrix33.getIdMatrix();
+  private final Matrix33 axesPhoneInverseMatrix = Matrix33.getIdMatrix();
 
   /** [North, Up, East] in celestial coordinates. */
-  private Matrix33 axesMagneticCelestialMatrix = Matrix33.getIdMatrix();
+  private final Matrix33 axesMagneticCelestialMatrix = Matrix33.getIdMatrix();
+
+  // Scratch storage for the pointing calculations.
+  private final Vector3 downPhone = new Vector3(0, 0, 0);
+  private final Vector3 upPhone = new Vector3(0, 0, 0);
+  private final Vector3 magneticNorthPhone = new Vector3(0, 0, 0);
+  private final Vector3 magneticEastPhone = new Vector3(0, 0, 0);
+  private final Vector3 magneticNorthCelestial = new Vector3(0, 0, 0);
+  private final Vector3 magneticEastCelestial = new Vector3(0, 0, 0);
+  private final Vector3 viewInSpaceSpace = new Vector3(0, 0, 0);
+  private final Vector3 screenUpInSpaceSpace = new Vector3(0, 0, 0);
+  private final Matrix33 phoneToCelestialTransform = new Matrix33();
+  private final Matrix33 declinationRotation = new Matrix33();
 
   /**
    * @param magneticDeclinationCalculator A calculator that will provide the
@@ -169,8 +185,9 @@ public class AstronomerModelImpl implements AstronomerModel {
   @Override
   public GeocentricCoordinates getSouth() {
     calculateLocalNorthAndUpInCelestialCoords(false);
-    return GeocentricCoordinates.getInstanceFromVector3(Geometry.scaleVector(trueNorthCelestial,
-                                                                             -1));
+    GeocentricCoordinates south = GeocentricCoordinates.getInstanceFromVector3(trueNorthCelestial);
+    south.scale(-1);
+    return south;
   }
 
   @Override
@@ -182,7 +199,9 @@ public class AstronomerModelImpl implements AstronomerModel {
   @Override
   public GeocentricCoordinates getNadir() {
     calculateLocalNorthAndUpInCelestialCoords(false);
-    return GeocentricCoordinates.getInstanceFromVector3(Geometry.scaleVector(upCelestial, -1));
+    GeocentricCoordinates nadir = GeocentricCoordinates.getInstanceFromVector3(upCelestial);
+    nadir.scale(-1);
+    return nadir;
   }
 
   @Override
@@ -194,8 +213,9 @@ public class AstronomerModelImpl implements AstronomerModel {
   @Override
   public GeocentricCoordinates getWest() {
     calculateLocalNorthAndUpInCelestialCoords(false);
-    return GeocentricCoordinates.getInstanceFromVector3(Geometry.scaleVector(trueEastCelestial,
-                                                                             -1));
+    GeocentricCoordinates west = GeocentricCoordinates.getInstanceFromVector3(trueEastCelestial);
+    west.scale(-1);
+    return west;
   }
 
   @Override
@@ -217,10 +237,11 @@ public class AstronomerModelImpl implements AstronomerModel {
       return;
     }
 
-    Matrix33 transform = matrixMultiply(axesMagneticCelestialMatrix, axesPhoneInverseMatrix);
+    Matrix33 transform = matrixMultiply(axesMagneticCelestialMatrix, axesPhoneInverseMatrix,
+                                        phoneToCelestialTransform);
 
-    Vector3 viewInSpaceSpace = matrixVectorMultiply(transform, POINTING_DIR_IN_PHONE_COORDS);
-    Vector3 screenUpInSpaceSpace = matrixVectorMultiply(transform, SCREEN_UP_IN_PHONE_COORDS);
+    matrixVectorMultiply(transform, POINTING_DIR_IN_PHONE_COORDS, viewInSpaceSpace);
+    matrixVectorMultiply(transform, SCREEN_UP_IN_PHONE_COORDS, screenUpInSpaceSpace);
 
     pointing.updateLineOfSight(viewInSpaceSpace);
     pointing.updatePerpendicular(screenUpInSpaceSpace);
@@ -239,27 +260,27 @@ public class AstronomerModelImpl implements AstronomerModel {
     }
     celestialCoordsLastUpdated = currentTime;
     updateMagneticCorrection();
-    RaDec up = calculateRADecOfZenith(getTime(), location);
-    upCelestial = GeocentricCoordinates.getInstance(up);
-    Vector3 z = AXIS_OF_EARTHS_ROTATION;
-    float zDotu = scalarProduct(upCelestial, z);
-    trueNorthCelestial = addVectors(z, scaleVector(upCelestial, -zDotu));
+    TimeFrame frame = TimeFrame.forTime(currentTime);
+    frame.getZenith(location, upCelestial);
+    frame.getPole(axisOfEarthsRotation);
+    // North along the ground is the Earth's axis less its component along up.
+    VectorUtil.projectOntoPlane(axisOfEarthsRotation, upCelestial, trueNorthCelestial);
     trueNorthCelestial.normalize();
-    trueEastCelestial = Geometry.vectorProduct(trueNorthCelestial, upCelestial);
+    vectorProduct(trueNorthCelestial, upCelestial, trueEastCelestial);
 
     // Apply magnetic correction.  Rather than correct the phone's axes for
     // the magnetic declination, it's more efficient to rotate the
     // celestial axes by the same amount in the opposite direction.
     Matrix33 rotationMatrix = Geometry.calculateRotationMatrix(
-        magneticDeclinationCalculator.getDeclination(), upCelestial);
+        magneticDeclinationCalculator.getDeclination(), upCelestial, declinationRotation);
 
-    Vector3 magneticNorthCelestial = Geometry.matrixVectorMultiply(rotationMatrix,
-                                                                   trueNorthCelestial);
-    Vector3 magneticEastCelestial = vectorProduct(magneticNorthCelestial, upCelestial);
+    matrixVectorMultiply(rotationMatrix, trueNorthCelestial, magneticNorthCelestial);
+    vectorProduct(magneticNorthCelestial, upCelestial, magneticEastCelestial);
 
-    axesMagneticCelestialMatrix = new Matrix33(magneticNorthCelestial,
-                                               upCelestial,
-                                               magneticEastCelestial);
+    axesMagneticCelestialMatrix.assign(magneticNorthCelestial,
+                                       upCelestial,
+                                       magneticEastCelestial,
+                                       true);
   }
 
   /**
@@ -267,24 +288,21 @@ public class AstronomerModelImpl implements AstronomerModel {
    * frame.
    */
   private void calculateLocalNorthAndUpInPhoneCoords() {
-    // TODO(johntaylor): we can reduce the number of vector copies done in here.
-    Vector3 down = acceleration.copy();
-    down.normalize();
+    downPhone.assign(acceleration);
+    downPhone.normalize();
     // Magnetic field goes *from* North to South, so reverse it.
-    Vector3 magneticFieldToNorth = magneticField.copy();
-    magneticFieldToNorth.scale(-1);
-    magneticFieldToNorth.normalize();
+    VectorUtil.scale(magneticField, -1, magneticNorthPhone);
+    magneticNorthPhone.normalize();
     // This is the vector to magnetic North *along the ground*.
-    Vector3 magneticNorthPhone = addVectors(magneticFieldToNorth,
-                                 scaleVector(down, -scalarProduct(magneticFieldToNorth, down)));
+    VectorUtil.projectOntoPlane(magneticNorthPhone, downPhone, magneticNorthPhone);
     magneticNorthPhone.normalize();
-    Vector3 upPhone = scaleVector(down, -1);
-    Vector3 magneticEastPhone = vectorProduct(magneticNorthPhone, upPhone);
+    VectorUtil.scale(downPhone, -1, upPhone);
+    vectorProduct(magneticNorthPhone, upPhone, magneticEastPhone);
 
     // The matrix is orthogonal, so transpose it to find its inverse.
     // Easiest way to do that is to construct it from row vectors instead
     // of column vectors.
-    axesPhoneInverseMatrix = new Matrix33(magneticNorthPhone, upPhone, magneticEastPhone, false);
+    axesPhoneInverseMatrix.assign(magneticNorthPhone, upPhone, magneticEastPhone, false);
   }
 
   /**
@@ -321,4 +339,25 @@ public class AstronomerModelImpl implements AstronomerModel {
   public long getTimeMillis() {
     return clock.getTimeInMillisSinceEpoch();
   }
+
+  /** Runs the command straight away, as the model isn't thread safe anyway. */
+  @Override
+  public void queueCommand(Runnable command) {
+    command.run();
+  }
+
+  Clock getClock() {
+    return clock;
+  }
+
+  /**
+   * Copies local North, Up and East in celestial coordinates into the given
+   * vectors, without allocating.
+   */
+  void getLocalAxes(Vector3 north, Vector3 up, Vector3 east) {
+    calculateLocalNorthAndUpInCelestialCoords(false);
+    north.assign(trueNorthCelestial);
+    up.assign(upCelestial);
+    east.assign(trueEastCelestial);
+  }
 }
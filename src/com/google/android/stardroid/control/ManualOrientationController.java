@@ -25,7 +25,8 @@ import android.util.Log;
 
 /**
  * Allows user-input elements such as touch screens and trackballs to move the
- * map.
+ * map.  Each move is made as a single command on the model, so that moves
+ * made in quick succession all take effect.
  *
  * @author John Taylor
  */
@@ -48,22 +49,27 @@ public class ManualOrientationController extends AbstractController {
    * @param radians the angular change in the pointing in radians (only
    * accurate in the limit as radians tends to 0.)
    */
-  public void changeRightLeft(float radians) {
+  public void changeRightLeft(final float radians) {
     // TODO(johntaylor): Some of the Math in here perhaps belongs in
     // AstronomerModel.
     if (!enabled) {
       return;
     }
-    Pointing pointing = model.getPointing();
-    GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
-    GeocentricCoordinates topXyz = pointing.getPerpendicular();
-    Vector3 horizontalXyz = Geometry.vectorProduct(pointingXyz, topXyz);
-    Vector3 deltaXyz = Geometry.scaleVector(horizontalXyz, radians);
-
-    Vector3 newPointingXyz = Geometry.addVectors(pointingXyz, deltaXyz);
-    newPointingXyz.normalize();
-
-    model.setPointing(newPointingXyz, topXyz);
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        Pointing pointing = model.getPointing();
+        GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
+        GeocentricCoordinates topXyz = pointing.getPerpendicular();
+        Vector3 horizontalXyz = Geometry.vectorProduct(pointingXyz, topXyz);
+        Vector3 deltaXyz = Geometry.scaleVector(horizontalXyz, radians);
+
+        Vector3 newPointingXyz = Geometry.addVectors(pointingXyz, deltaXyz);
+        newPointingXyz.normalize();
+
+        model.setPointing(newPointingXyz, topXyz);
+      }
+    });
   }
 
   /**
@@ -72,45 +78,55 @@ public class ManualOrientationController extends AbstractController {
    * @param radians the angular change in the pointing in radians (only
    * accurate in the limit as radians tends to 0.)
    */
-  public void changeUpDown(float radians) {
+  public void changeUpDown(final float radians) {
     if (!enabled) {
       return;
     }
     // Log.d(TAG, "Scrolling up down");
-    Pointing pointing = model.getPointing();
-    GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
-    // Log.d(TAG, "Current view direction " + viewDir);
-    GeocentricCoordinates topXyz = pointing.getPerpendicular();
-
-    Vector3 deltaXyz = Geometry.scaleVector(topXyz, -radians);
-    Vector3 newPointingXyz = Geometry.addVectors(pointingXyz, deltaXyz);
-    newPointingXyz.normalize();
-
-    Vector3 deltaUpXyz = Geometry.scaleVector(pointingXyz, radians);
-    Vector3 newUpXyz = Geometry.addVectors(topXyz, deltaUpXyz);
-    newUpXyz.normalize();
-
-    model.setPointing(newPointingXyz, newUpXyz);
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        Pointing pointing = model.getPointing();
+        GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
+        // Log.d(TAG, "Current view direction " + viewDir);
+        GeocentricCoordinates topXyz = pointing.getPerpendicular();
+
+        Vector3 deltaXyz = Geometry.scaleVector(topXyz, -radians);
+        Vector3 newPointingXyz = Geometry.addVectors(pointingXyz, deltaXyz);
+        newPointingXyz.normalize();
+
+        Vector3 deltaUpXyz = Geometry.scaleVector(pointingXyz, radians);
+        Vector3 newUpXyz = Geometry.addVectors(topXyz, deltaUpXyz);
+        newUpXyz.normalize();
+
+        model.setPointing(newPointingXyz, newUpXyz);
+      }
+    });
   }
 
   /**
    * Rotates the astronomer's view.
    */
-  public void rotate(float degrees) {
+  public void rotate(final float degrees) {
     if (!enabled) {
       return;
     }
     Log.d(TAG, "Rotating by " + degrees);
-    Pointing pointing = model.getPointing();
-    GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        Pointing pointing = model.getPointing();
+        GeocentricCoordinates pointingXyz = pointing.getLineOfSight();
 
-    Matrix33 rotation = Geometry.calculateRotationMatrix(degrees, pointingXyz);
+        Matrix33 rotation = Geometry.calculateRotationMatrix(degrees, pointingXyz);
 
-    GeocentricCoordinates topXyz = pointing.getPerpendicular();
+        GeocentricCoordinates topXyz = pointing.getPerpendicular();
 
-    Vector3 newUpXyz = Geometry.matrixVectorMultiply(rotation, topXyz);
-    newUpXyz.normalize();
+        Vector3 newUpXyz = Geometry.matrixVectorMultiply(rotation, topXyz);
+        newUpXyz.normalize();
 
-    model.setPointing(pointingXyz, newUpXyz);
+        model.setPointing(pointingXyz, newUpXyz);
+      }
+    });
   }
 }
@@ -38,22 +38,27 @@ public class TeleportingController extends AbstractController {
    */
   public void teleport(final GeocentricCoordinates targetXyz) {
     Log.d(TAG, "Teleporting to target " + targetXyz);
-    Pointing pointing = model.getPointing();
-    final GeocentricCoordinates hereXyz = pointing.getLineOfSight();
-    if (targetXyz.equals(hereXyz)) {
-      return;
-    }
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        Pointing pointing = model.getPointing();
+        final GeocentricCoordinates hereXyz = pointing.getLineOfSight();
+        if (targetXyz.equals(hereXyz)) {
+          return;
+        }
 
-    // Here we calculate the new direction of 'up' along the screen in
-    // celestial coordinates.  This is not uniquely defined - it just needs
-    // to be perpendicular to the target (which is effectively the normal into
-    // the screen in celestial coordinates.)
-    Vector3 hereTopXyz = pointing.getPerpendicular();
-    hereTopXyz.normalize();
-    final Vector3 normal = VectorUtil.crossProduct(hereXyz, hereTopXyz);
-    Vector3 newUpXyz = VectorUtil.crossProduct(normal, targetXyz);
+        // Here we calculate the new direction of 'up' along the screen in
+        // celestial coordinates.  This is not uniquely defined - it just
+        // needs to be perpendicular to the target (which is effectively the
+        // normal into the screen in celestial coordinates.)
+        Vector3 hereTopXyz = pointing.getPerpendicular();
+        hereTopXyz.normalize();
+        final Vector3 normal = VectorUtil.crossProduct(hereXyz, hereTopXyz);
+        Vector3 newUpXyz = VectorUtil.crossProduct(normal, targetXyz);
 
-    model.setPointing(targetXyz, newUpXyz);
+        model.setPointing(targetXyz, newUpXyz);
+      }
+    });
   }
 
   @Override
@@ -0,0 +1,271 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.control;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Vector3;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An {@link AstronomerModel} which can be shared between threads, as only one
+ * of them ever touches the {@link AstronomerModelImpl} it wraps.
+ *
+ * <p>That thread is whichever calls {@link #update}, which must be done
+ * regularly; in the app, the simulation thread does so at the start of every
+ * tick.  On that thread the model is used directly.  Changes made on other
+ * threads are queued as commands and made by the next update, and reads
+ * return a copy of the model's state as of the last update.  Sensor readings
+ * aren't queued: only the latest is passed on.
+ */
+public class ThreadConfinedAstronomerModel implements AstronomerModel {
+  private final AstronomerModelImpl model;
+  private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+  // The thread which last updated the model.
+  private volatile Thread owner = null;
+
+  // The latest sensor readings, if they haven't been passed on yet.  Guarded
+  // by pendingAcceleration.
+  private final Vector3 pendingAcceleration = new Vector3(0, 0, 0);
+  private final Vector3 pendingMagneticField = new Vector3(0, 0, 0);
+  private boolean sensorValuesPending = false;
+
+  // The model's state as of the last update, for the other threads.  The
+  // vectors are guarded by published.
+  private final Object published = new Object();
+  private final Vector3 lineOfSight = new Vector3(1, 0, 0);
+  private final Vector3 perpendicular = new Vector3(0, 1, 0);
+  private final Vector3 north = new Vector3(1, 0, 0);
+  private final Vector3 up = new Vector3(0, 1, 0);
+  private final Vector3 east = new Vector3(0, 0, 1);
+  private final Vector3 acceleration = new Vector3(0, 0, 0);
+  private volatile float fieldOfView;
+  private volatile LatLong location;
+  private volatile Clock clock;
+
+  public ThreadConfinedAstronomerModel(MagneticDeclinationCalculator calculator) {
+    model = new AstronomerModelImpl(calculator);
+    publish();
+  }
+
+  /**
+   * Makes the changes queued since the last update, and publishes the
+   * model's state for the other threads.  The calling thread then owns the
+   * model until another one calls this.
+   */
+  public void update() {
+    owner = Thread.currentThread();
+    Runnable command;
+    while ((command = commands.poll()) != null) {
+      command.run();
+    }
+    synchronized (pendingAcceleration) {
+      if (sensorValuesPending) {
+        model.setPhoneSensorValues(pendingAcceleration, pendingMagneticField);
+        sensorValuesPending = false;
+      }
+    }
+    publish();
+  }
+
+  private void publish() {
+    Pointing pointing = model.getPointing();
+    synchronized (published) {
+      lineOfSight.assign(pointing.getLineOfSightX(), pointing.getLineOfSightY(),
+          pointing.getLineOfSightZ());
+      perpendicular.assign(pointing.getPerpendicularX(), pointing.getPerpendicularY(),
+          pointing.getPerpendicularZ());
+      model.getLocalAxes(north, up, east);
+      acceleration.assign(model.getPhoneAcceleration());
+    }
+    fieldOfView = model.getFieldOfView();
+    location = model.getLocation();
+    clock = model.getClock();
+  }
+
+  private boolean isOwner() {
+    return Thread.currentThread() == owner;
+  }
+
+  /**
+   * Runs the command on the thread which owns the model: straight away if
+   * that's this one, otherwise on the next update.
+   */
+  @Override
+  public void queueCommand(Runnable command) {
+    if (isOwner()) {
+      command.run();
+    } else {
+      commands.add(command);
+    }
+  }
+
+  @Override
+  public void setAutoUpdatePointing(final boolean autoUpdatePointing) {
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setAutoUpdatePointing(autoUpdatePointing);
+      }
+    });
+  }
+
+  @Override
+  public float getFieldOfView() {
+    return isOwner() ? model.getFieldOfView() : fieldOfView;
+  }
+
+  @Override
+  public void setFieldOfView(final float degrees) {
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setFieldOfView(degrees);
+      }
+    });
+  }
+
+  @Override
+  public Date getTime() {
+    return new Date(getTimeMillis());
+  }
+
+  @Override
+  public long getTimeMillis() {
+    // The clock is safe to read from any thread.
+    return isOwner() ? model.getTimeMillis() : clock.getTimeInMillisSinceEpoch();
+  }
+
+  @Override
+  public void setClock(final Clock clock) {
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setClock(clock);
+      }
+    });
+  }
+
+  @Override
+  public LatLong getLocation() {
+    return isOwner() ? model.getLocation() : location;
+  }
+
+  @Override
+  public void setLocation(final LatLong location) {
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setLocation(location);
+      }
+    });
+  }
+
+  @Override
+  public Pointing getPointing() {
+    if (isOwner()) {
+      return model.getPointing();
+    }
+    synchronized (published) {
+      return new Pointing(GeocentricCoordinates.getInstanceFromVector3(lineOfSight),
+          GeocentricCoordinates.getInstanceFromVector3(perpendicular));
+    }
+  }
+
+  @Override
+  public void setPointing(Vector3 lineOfSight, Vector3 perpendicular) {
+    // The caller may reuse the vectors before the command runs.
+    final Vector3 lineOfSightCopy = lineOfSight.copy();
+    final Vector3 perpendicularCopy = perpendicular.copy();
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setPointing(lineOfSightCopy, perpendicularCopy);
+      }
+    });
+  }
+
+  @Override
+  public Vector3 getPhoneAcceleration() {
+    if (isOwner()) {
+      return model.getPhoneAcceleration();
+    }
+    synchronized (published) {
+      return acceleration.copy();
+    }
+  }
+
+  @Override
+  public void setPhoneSensorValues(Vector3 acceleration, Vector3 magneticField) {
+    if (isOwner()) {
+      model.setPhoneSensorValues(acceleration, magneticField);
+      return;
+    }
+    synchronized (pendingAcceleration) {
+      pendingAcceleration.assign(acceleration);
+      pendingMagneticField.assign(magneticField);
+      sensorValuesPending = true;
+    }
+  }
+
+  @Override
+  public GeocentricCoordinates getNorth() {
+    return isOwner() ? model.getNorth() : getPublished(north, 1);
+  }
+
+  @Override
+  public GeocentricCoordinates getSouth() {
+    return isOwner() ? model.getSouth() : getPublished(north, -1);
+  }
+
+  @Override
+  public GeocentricCoordinates getZenith() {
+    return isOwner() ? model.getZenith() : getPublished(up, 1);
+  }
+
+  @Override
+  public GeocentricCoordinates getNadir() {
+    return isOwner() ? model.getNadir() : getPublished(up, -1);
+  }
+
+  @Override
+  public GeocentricCoordinates getEast() {
+    return isOwner() ? model.getEast() : getPublished(east, 1);
+  }
+
+  @Override
+  public GeocentricCoordinates getWest() {
+    return isOwner() ? model.getWest() : getPublished(east, -1);
+  }
+
+  private GeocentricCoordinates getPublished(Vector3 direction, float sign) {
+    synchronized (published) {
+      return new GeocentricCoordinates(
+          sign * direction.x, sign * direction.y, sign * direction.z);
+    }
+  }
+
+  @Override
+  public void setMagneticDeclinationCalculator(final MagneticDeclinationCalculator calculator) {
+    queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        model.setMagneticDeclinationCalculator(calculator);
+      }
+    });
+  }
+}
@@ -60,9 +60,15 @@ public class ZoomController extends AbstractController {
     // Nothing to do
   }
 
-  public void zoomBy(float ratio) {
-    float zoomDegrees = model.getFieldOfView();
-    zoomDegrees = Math.min(zoomDegrees * ratio, MAX_ZOOM_OUT);
-    setFieldOfView(zoomDegrees);
+  public void zoomBy(final float ratio) {
+    // Read and set together, so zooms in quick succession all take effect.
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        float zoomDegrees = model.getFieldOfView();
+        zoomDegrees = Math.min(zoomDegrees * ratio, MAX_ZOOM_OUT);
+        setFieldOfView(zoomDegrees);
+      }
+    });
   }
 }
@@ -15,42 +15,75 @@
 package com.google.android.stardroid.layers;
 
 import com.google.android.stardroid.base.Closeables;
-import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
+import com.google.android.stardroid.source.AbstractAstronomicalSource;
 import com.google.android.stardroid.source.AstronomicalSource;
+import com.google.android.stardroid.source.LineSource;
+import com.google.android.stardroid.source.PointSource;
+import com.google.android.stardroid.source.impl.LineSourceImpl;
+import com.google.android.stardroid.source.impl.PointSourceImpl;
 import com.google.android.stardroid.source.proto.ProtobufAstronomicalSource;
 import com.google.android.stardroid.source.proto.SourceProto.AstronomicalSourceProto;
 import com.google.android.stardroid.source.proto.SourceProto.AstronomicalSourcesProto;
+import com.google.android.stardroid.units.GeocentricCoordinates;
 import com.google.android.stardroid.util.Blog;
 import com.google.android.stardroid.util.MiscUtil;
 import com.google.android.stardroid.util.StopWatch;
 import com.google.android.stardroid.util.StopWatchImpl;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 
 import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.EnumSet;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Implementation of the {@link Layer} interface which reads its data from
  * a file during the {@link Layer#initialize} method.
  *
+ * <p>Sources are read from the file one at a time, and subclasses can split
+ * them into tiers (see {@link #getTier}).  Each tier is sent to the renderer
+ * as soon as it has been read, so if the file is sorted by tier the first
+ * objects show up without waiting for the rest of the file.
+ *
+ * <p>If given a snapshot directory, the points and lines built from the file
+ * are saved there, and on later runs are drawn straight from the saved
+ * {@link GeometrySnapshot} instead of being rebuilt.  Alongside it is saved
+ * an index: the file's sources without their points and lines, which is all
+ * the layer's labels and search need.  While both are valid only the index
+ * is read, not the file.  They are rebuilt whenever the app is installed or
+ * updated, which is the only way the file can change.
+ *
+ * <p>The file is read on the calling thread; the {@link LayerManager} calls
+ * {@link #initialize} from a background thread.
+ *
  * @author Brent Bryan
  * @author John Taylor
  */
 
 public abstract class AbstractFileBasedLayer extends AbstractSourceLayer {
   private static final String TAG = MiscUtil.getTag(AbstractFileBasedLayer.class);
-  private static final Executor BACKGROUND_EXECUTOR = Executors.newFixedThreadPool(1);
 
   private final AssetManager assetManager;
   private final String fileName;
   private final ArrayList<AstronomicalSource> fileSources = new ArrayList<AstronomicalSource>();
+  private File snapshotFile = null;
+  private File indexFile = null;
+  private long snapshotVersion;
 
   public AbstractFileBasedLayer(AssetManager assetManager, Resources resources, String fileName) {
     super(resources, false);
@@ -58,14 +91,20 @@ public abstract class AbstractFileBasedLayer extends AbstractSourceLayer {
     this.fileName = fileName;
   }
 
+  /**
+   * Caches the geometry of this layer in the given directory.  The version
+   * must change whenever the file might have, for example the time the APK
+   * was installed.  Call before {@link #initialize}.
+   */
+  public void setSnapshotDirectory(File directory, long version) {
+    this.snapshotFile = new File(directory, fileName + ".snapshot");
+    this.indexFile = new File(directory, fileName + ".index");
+    this.snapshotVersion = version;
+  }
+
   @Override
   public void initialize() {
-    BACKGROUND_EXECUTOR.execute(new Runnable() {
-      public void run() {
-        readSourceFile(fileName);
-        AbstractFileBasedLayer.super.initialize();
-      }
-    });
+    readSourceFile(fileName);
   }
 
   @Override
@@ -73,30 +112,238 @@ public abstract class AbstractFileBasedLayer extends AbstractSourceLayer {
     sources.addAll(fileSources);
   }
 
+  /**
+   * Returns the tier of the given source.  A tier is only shown once all of
+   * the sources in the file before it have been read, so lower tiers should
+   * be the ones that are most important to get on screen quickly.  By
+   * default everything is in a single tier.
+   */
+  protected int getTier(AstronomicalSourceProto proto) {
+    return 0;
+  }
+
   private void readSourceFile(String sourceFilename) {
     StopWatch watch = new StopWatchImpl().start();
 
     Log.d(TAG, "Loading Proto File: " + sourceFilename + "...");
     InputStream in = null;
+    ArrayList<AstronomicalSource> tierSources = new ArrayList<AstronomicalSource>();
+    boolean firstTier = true;
     try {
-      in = assetManager.open(sourceFilename, AssetManager.ACCESS_BUFFER);
-      AstronomicalSourcesProto.Builder builder = AstronomicalSourcesProto.newBuilder();
-      builder.mergeFrom(in);
+      AstronomicalSourcesProto.Builder index = null;
+      if (snapshotFile != null) {
+        GeometrySnapshot snapshot = openSnapshot(snapshotVersion);
+        AstronomicalSourcesProto indexProto = snapshot == null ? null : readIndex(snapshotVersion);
+        if (indexProto != null) {
+          setGeometrySnapshot(snapshot);
+          publishIndex(indexProto, snapshot, sourceFilename, watch);
+          return;
+        }
+        index = AstronomicalSourcesProto.newBuilder();
+      }
+
+      in = assetManager.open(sourceFilename, AssetManager.ACCESS_STREAMING);
+      // Rather than parsing the whole AstronomicalSourcesProto up front, read
+      // its sources one by one so that each tier can be shown as soon as it
+      // has been read.
+      CodedInputStream input = CodedInputStream.newInstance(in);
+      int currentTier = Integer.MIN_VALUE;
+      int numSources = 0;
+      int tag;
+      while ((tag = input.readTag()) != 0) {
+        if (WireFormat.getTagFieldNumber(tag) != AstronomicalSourcesProto.SOURCE_FIELD_NUMBER) {
+          input.skipField(tag);
+          continue;
+        }
+        AstronomicalSourceProto.Builder builder = AstronomicalSourceProto.newBuilder();
+        input.readMessage(builder, ExtensionRegistryLite.getEmptyRegistry());
+        AstronomicalSourceProto proto = builder.build();
 
-      for (AstronomicalSourceProto proto : builder.build().getSourceList()) {
-        fileSources.add(new ProtobufAstronomicalSource(proto, getResources()));
+        int tier = getTier(proto);
+        if (tier > currentTier) {
+          if (!tierSources.isEmpty()) {
+            publishTier(tierSources, firstTier, sourceFilename, watch);
+            firstTier = false;
+            tierSources = new ArrayList<AstronomicalSource>();
+          }
+          currentTier = tier;
+        }
+        tierSources.add(new ProtobufAstronomicalSource(proto, getResources()));
+        numSources++;
+        if (index != null && (proto.getNameIdsCount() > 0 || proto.getLabelCount() > 0)) {
+          index.addSource(AstronomicalSourceProto.newBuilder(proto).clearPoint().clearLine());
+        }
       }
-      Log.d(TAG, "Found: " + fileSources.size() + " sources");
+      if (!tierSources.isEmpty() || firstTier) {
+        publishTier(tierSources, firstTier, sourceFilename, watch);
+      }
+      tierSources = null;
+
+      Log.d(TAG, "Found: " + numSources + " sources");
       String s = String.format("Finished Loading: %s > %s | Found %s sourcs.\n",
-          sourceFilename, watch.end(), fileSources.size());
-       Blog.d(this, s);
+          sourceFilename, watch.end(), numSources);
+      Blog.d(this, s);
 
-       refreshSources(EnumSet.of(UpdateType.Reset));
+      if (index != null) {
+        // The index is written first, as it's only used with a valid snapshot.
+        writeIndex(snapshotVersion, index.build());
+        writeSnapshot(snapshotVersion);
+      }
     } catch (IOException e) {
       Log.e(TAG, "Unable to open " + sourceFilename);
+      // Show whatever was read, and initialize the layer even if that was
+      // nothing, as it would have been had the file been read in one go.
+      if (tierSources != null && (!tierSources.isEmpty() || firstTier)) {
+        publishTier(tierSources, firstTier, sourceFilename, watch);
+      }
+    } finally {
+      Closeables.closeSilently(in);
+    }
+  }
+
+  private GeometrySnapshot openSnapshot(long version) {
+    StopWatch watch = new StopWatchImpl().start();
+    try {
+      GeometrySnapshot snapshot = GeometrySnapshot.map(snapshotFile, version);
+      Blog.d(this, String.format("Geometry snapshot %s: %s > %s", snapshotFile,
+          snapshot == null ? "missing or stale" : "mapped", watch.end()));
+      return snapshot;
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to read " + snapshotFile + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Reads the index saved with the snapshot.  Returns null if there isn't one,
+   * or if it's for a different version.
+   */
+  private AstronomicalSourcesProto readIndex(long version) {
+    if (!indexFile.exists()) {
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      if (in.readLong() != version) {
+        return null;
+      }
+      return AstronomicalSourcesProto.parseFrom(in);
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to read " + indexFile + ": " + e.getMessage());
+      return null;
     } finally {
       Closeables.closeSilently(in);
     }
+  }
 
+  /**
+   * Writes the index, under a temporary name which is then renamed as
+   * {@link GeometrySnapshot#write} does.
+   */
+  private void writeIndex(long version, AstronomicalSourcesProto index) {
+    File temp = new File(indexFile.getPath() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      File directory = indexFile.getParentFile();
+      if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create " + directory);
+      }
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      out.writeLong(version);
+      index.writeTo(out);
+      out.close();
+      out = null;
+      if (!temp.renameTo(indexFile)) {
+        temp.delete();
+        throw new IOException("Unable to rename " + temp + " to " + indexFile);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write " + indexFile + ": " + e.getMessage());
+    } finally {
+      Closeables.closeSilently(out);
+    }
+  }
+
+  /**
+   * Shows the sources of the index, in one go, with the geometry drawn from
+   * the snapshot.
+   */
+  private void publishIndex(AstronomicalSourcesProto index, GeometrySnapshot snapshot,
+      String sourceFilename, StopWatch watch) {
+    ArrayList<AstronomicalSource> sources =
+        new ArrayList<AstronomicalSource>(index.getSourceCount() + 1);
+    for (AstronomicalSourceProto proto : index.getSourceList()) {
+      sources.add(new ProtobufAstronomicalSource(proto, getResources()));
+    }
+    sources.add(new SnapshotSource(snapshot));
+    publishTier(sources, true, sourceFilename, watch);
+    Blog.d(this, String.format("Finished Loading: %s from snapshot > %s | Found %s sources",
+        sourceFilename, watch.end(), index.getSourceCount()));
+  }
+
+  private void writeSnapshot(long version) {
+    StopWatch watch = new StopWatchImpl().start();
+    try {
+      GeometrySnapshot.write(snapshotFile, version, buildGeometrySnapshot());
+      Blog.d(this, String.format("Wrote geometry snapshot %s > %s", snapshotFile, watch.end()));
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write " + snapshotFile + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Sends a tier of sources to the renderer.  The first tier initializes the
+   * layer; later ones are appended to it.
+   */
+  private void publishTier(ArrayList<AstronomicalSource> tierSources, boolean firstTier,
+      String sourceFilename, StopWatch watch) {
+    if (firstTier) {
+      fileSources.clear();
+      fileSources.addAll(tierSources);
+      super.initialize();
+    } else {
+      fileSources.addAll(tierSources);
+      appendSources(tierSources);
+    }
+    Blog.d(this, String.format("Loaded tier: %s > %s | %s sources",
+        sourceFilename, watch.formatTime(), tierSources.size()));
+  }
+
+  /**
+   * Stands in for the points and lines of a layer drawn from a snapshot.  The
+   * managers ignore the sources they're given once they have a snapshot, but
+   * are only created, and reset to the snapshot, when given some.
+   */
+  private static class SnapshotSource extends AbstractAstronomicalSource {
+    private final List<PointSource> points;
+    private final List<LineSource> lines;
+
+    SnapshotSource(GeometrySnapshot snapshot) {
+      GeocentricCoordinates location = new GeocentricCoordinates(1, 0, 0);
+      if (snapshot.getMeshes(GeometrySnapshot.TYPE_POINTS).isEmpty()) {
+        points = Collections.emptyList();
+      } else {
+        points = Collections.<PointSource>singletonList(new PointSourceImpl(location, 0, 1));
+      }
+      if (snapshot.getMeshes(GeometrySnapshot.TYPE_LINES).isEmpty()) {
+        lines = Collections.emptyList();
+      } else {
+        ArrayList<GeocentricCoordinates> vertices = new ArrayList<GeocentricCoordinates>();
+        vertices.add(location);
+        vertices.add(location);
+        lines = Collections.<LineSource>singletonList(new LineSourceImpl(0, vertices, 1));
+      }
+    }
+
+    @Override
+    public List<? extends PointSource> getPoints() {
+      return points;
+    }
+
+    @Override
+    public List<? extends LineSource> getLines() {
+      return lines;
+    }
   }
 }
@@ -18,8 +18,12 @@ import com.google.android.stardroid.base.Maps;
 import com.google.android.stardroid.renderer.RendererController;
 import com.google.android.stardroid.renderer.RendererControllerBase;
 import com.google.android.stardroid.renderer.RendererController.AtomicSection;
+import com.google.android.stardroid.renderer.RendererControllerBase.LineManager;
+import com.google.android.stardroid.renderer.RendererControllerBase.PointManager;
 import com.google.android.stardroid.renderer.RendererControllerBase.RenderManager;
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
 import com.google.android.stardroid.renderer.util.UpdateClosure;
 import com.google.android.stardroid.search.SearchResult;
 import com.google.android.stardroid.source.ImageSource;
@@ -27,6 +31,7 @@ import com.google.android.stardroid.source.LineSource;
 import com.google.android.stardroid.source.PointSource;
 import com.google.android.stardroid.source.TextSource;
 import com.google.android.stardroid.util.Blog;
+import com.google.android.stardroid.util.Matrix4x4;
 import com.google.android.stardroid.util.MiscUtil;
 
 import android.content.res.Resources;
@@ -55,6 +60,10 @@ public abstract class AbstractLayer implements Layer {
   private final Resources resources;
 
   private RendererController renderer;
+  private TiledStarCatalog tiledStarCatalog;
+  private GeometrySnapshot geometrySnapshot;
+  private Matrix4x4 lineModelMatrix;
+  private volatile boolean visible = true;
 
   public AbstractLayer(Resources resources) {
     this.resources = resources;
@@ -75,6 +84,8 @@ public abstract class AbstractLayer implements Layer {
 
   @Override
   public void setVisible(boolean visible) {
+    boolean changed = this.visible != visible;
+    this.visible = visible;
     renderMapLock.lock();
     try {
       if (renderer == null) {
@@ -90,6 +101,90 @@ public abstract class AbstractLayer implements Layer {
     } finally {
       renderMapLock.unlock();
     }
+    if (changed) {
+      onVisibilityChanged(visible);
+    }
+  }
+
+  /** Returns whether the layer was last set to be visible. */
+  protected boolean isVisible() {
+    return visible;
+  }
+
+  /**
+   * Called after the layer is shown or hidden, without any locks held.
+   * Layers which do work every frame should stop doing it while hidden.
+   */
+  protected void onVisibilityChanged(boolean visible) {
+  }
+
+  /**
+   * Draws the stars of the given catalog along with this layer's points,
+   * paging them in as they come into view.  Pass null to remove the catalog.
+   */
+  protected void setTiledStarCatalog(TiledStarCatalog catalog) {
+    renderMapLock.lock();
+    try {
+      tiledStarCatalog = catalog;
+      PointManager manager = (PointManager) renderMap.get(PointSource.class);
+      if (manager != null) {
+        AtomicSection atomic = renderer.createAtomic();
+        manager.queueTiledCatalog(catalog, atomic);
+        renderer.queueAtomic(atomic);
+      }
+      // Otherwise it's set when the point manager is created.
+    } finally {
+      renderMapLock.unlock();
+    }
+  }
+
+  /**
+   * Draws this layer's points and lines from the given snapshot instead of
+   * building them from its sources.  Must be called before the layer's
+   * sources are first drawn.
+   */
+  protected void setGeometrySnapshot(GeometrySnapshot snapshot) {
+    renderMapLock.lock();
+    try {
+      geometrySnapshot = snapshot;
+      PointManager pointManager = (PointManager) renderMap.get(PointSource.class);
+      LineManager lineManager = (LineManager) renderMap.get(LineSource.class);
+      if (pointManager != null || lineManager != null) {
+        AtomicSection atomic = renderer.createAtomic();
+        if (pointManager != null) {
+          pointManager.queueGeometrySnapshot(snapshot, atomic);
+        }
+        if (lineManager != null) {
+          lineManager.queueGeometrySnapshot(snapshot, atomic);
+        }
+        renderer.queueAtomic(atomic);
+      }
+      // Otherwise it's set when the managers are created.
+    } finally {
+      renderMapLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the rotation from the coordinates of this layer's lines to celestial
+   * coordinates, or null if they are in celestial coordinates.  Lines fixed
+   * to the Earth can then be built once and rotated as time passes, rather
+   * than rebuilt.  The matrix mustn't be changed afterwards.
+   */
+  protected void setLineModelMatrix(Matrix4x4 matrix) {
+    renderMapLock.lock();
+    try {
+      lineModelMatrix = matrix;
+      LineManager manager = (LineManager) renderMap.get(LineSource.class);
+      if (manager != null) {
+        AtomicSection atomic = renderer.createAtomic();
+        manager.queueModelMatrix(matrix, atomic);
+        renderer.queueAtomic(atomic);
+      }
+      // Otherwise it's set when the line manager is created.
+    } finally {
+      renderMapLock.unlock();
+    }
   }
 
   protected void addUpdateClosure(UpdateClosure closure) {
@@ -162,7 +257,8 @@ public abstract class AbstractLayer implements Layer {
     @SuppressWarnings("unchecked")
     RenderManager<E> manager = (RenderManager<E>) renderMap.get(clazz);
     if (sources == null || sources.isEmpty()) {
-      if (manager != null) {
+      // Appending nothing leaves the existing objects alone.
+      if (manager != null && !updateType.contains(UpdateType.Append)) {
         // TODO(brent): we should really just disable this layer, but in a
         // manner that it will automatically be reenabled when appropriate.
         Blog.d(this, "       " + clazz.getSimpleName());
@@ -188,10 +284,24 @@ public abstract class AbstractLayer implements Layer {
       return (RenderManager<E>) controller.createLabelManager(getLayerId());
 
     } else if (clazz.equals(LineSource.class)) {
-      return (RenderManager<E>) controller.createLineManager(getLayerId());
+      LineManager manager = controller.createLineManager(getLayerId());
+      if (geometrySnapshot != null) {
+        manager.queueGeometrySnapshot(geometrySnapshot, controller);
+      }
+      if (lineModelMatrix != null) {
+        manager.queueModelMatrix(lineModelMatrix, controller);
+      }
+      return (RenderManager<E>) manager;
 
     } else if (clazz.equals(PointSource.class)) {
-      return (RenderManager<E>) controller.createPointManager(getLayerId());
+      PointManager manager = controller.createPointManager(getLayerId());
+      if (tiledStarCatalog != null) {
+        manager.queueTiledCatalog(tiledStarCatalog, controller);
+      }
+      if (geometrySnapshot != null) {
+        manager.queueGeometrySnapshot(geometrySnapshot, controller);
+      }
+      return (RenderManager<E>) manager;
     }
     throw new IllegalStateException("Unknown source type: " + clazz);
   }
@@ -210,6 +320,11 @@ public abstract class AbstractLayer implements Layer {
     return Collections.emptySet();
   }
 
+  @Override
+  public int getInitializationPriority() {
+    return NORMAL_PRIORITY;
+  }
+
   /**
    * Provides a string ID to the internationalized name of this layer.
    */
@@ -226,6 +341,12 @@ public abstract class AbstractLayer implements Layer {
     return "source_provider." + layerNameId;
   }
 
+  /** Layers are shown by default; override to hide one until it's turned on. */
+  @Override
+  public boolean isVisibleByDefault() {
+    return true;
+  }
+
   @Override
   public String getLayerName() {
     return getStringFromId(getLayerNameId());
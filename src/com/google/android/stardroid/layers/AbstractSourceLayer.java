@@ -14,8 +14,13 @@
 
 package com.google.android.stardroid.layers;
 
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.control.AstronomerModel;
+import com.google.android.stardroid.renderer.PointObjectManager;
+import com.google.android.stardroid.renderer.PolyLineObjectManager;
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
 import com.google.android.stardroid.renderer.util.AbstractUpdateClosure;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
 import com.google.android.stardroid.renderer.util.UpdateClosure;
 import com.google.android.stardroid.search.PrefixStore;
 import com.google.android.stardroid.search.SearchResult;
@@ -32,10 +37,18 @@ import android.content.res.Resources;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Layer for objects which are {@link AstronomicalSource}s.
@@ -46,48 +59,198 @@ import java.util.Set;
 public abstract class AbstractSourceLayer extends AbstractLayer {
   private static final String TAG = MiscUtil.getTag(AbstractSourceLayer.class);
 
-  private final ArrayList<TextSource> textSources = new ArrayList<TextSource>();
-  private final ArrayList<ImageSource> imageSources = new ArrayList<ImageSource>();
-  private final ArrayList<PointSource> pointSources = new ArrayList<PointSource>();
-  private final ArrayList<LineSource> lineSources = new ArrayList<LineSource>();
-  private final ArrayList<AstronomicalSource> astroSources = new ArrayList<AstronomicalSource>();
+  // How long a layer must stay hidden before its renderer buffers are freed.
+  // Long enough that flicking a layer off and on again doesn't rebuild it.
+  private static final long RELEASE_DELAY_MS = 30L * TimeConstants.MILLISECONDS_PER_SECOND;
+  private static final ScheduledExecutorService RELEASE_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor();
 
-  private HashMap<String, SearchResult> searchIndex = new HashMap<String, SearchResult>();
-  private PrefixStore prefixStore = new PrefixStore();
+  /**
+   * An immutable set of the layer's sources.  Once published, a set and its
+   * lists are never modified: changes are made by building a new set and
+   * swapping it in, so threads drawing the layer never wait for a thread
+   * loading it.
+   */
+  private static final class SourceSet {
+    static final SourceSet EMPTY = new SourceSet();
+
+    final ArrayList<AstronomicalSource> astroSources = new ArrayList<AstronomicalSource>();
+    final ArrayList<TextSource> textSources = new ArrayList<TextSource>();
+    final ArrayList<ImageSource> imageSources = new ArrayList<ImageSource>();
+    final ArrayList<PointSource> pointSources = new ArrayList<PointSource>();
+    final ArrayList<LineSource> lineSources = new ArrayList<LineSource>();
+
+    /** Returns a copy of this set with the given sources added. */
+    SourceSet plus(List<AstronomicalSource> newAstroSources, List<Sources> newSources) {
+      SourceSet result = new SourceSet();
+      result.astroSources.addAll(astroSources);
+      result.textSources.addAll(textSources);
+      result.imageSources.addAll(imageSources);
+      result.pointSources.addAll(pointSources);
+      result.lineSources.addAll(lineSources);
+
+      result.astroSources.addAll(newAstroSources);
+      for (Sources sources : newSources) {
+        result.textSources.addAll(sources.getLabels());
+        result.imageSources.addAll(sources.getImages());
+        result.pointSources.addAll(sources.getPoints());
+        result.lineSources.addAll(sources.getLines());
+      }
+      return result;
+    }
+  }
+
+  private final AtomicReference<SourceSet> sourceSet =
+      new AtomicReference<SourceSet>(SourceSet.EMPTY);
+  // Serializes the threads changing the sources.
+  private final Object writeLock = new Object();
+  // Held while the sources are being updated and sent to the renderer, so
+  // that updates from different threads reach the renderer in order.
+  private final ReentrantLock refreshLock = new ReentrantLock();
+  // Number of times the update closure skipped a frame because another
+  // thread was refreshing the layer.
+  private final AtomicInteger refreshContentionCount = new AtomicInteger();
+
+  // Only used for searching, so guarded by searchIndex rather than the locks above.
+  private final HashMap<String, SearchResult> searchIndex = new HashMap<String, SearchResult>();
+  private final PrefixStore prefixStore = new PrefixStore();
   private final boolean shouldUpdate;
+  // If set, sources are only updated when the scheduler says they're due;
+  // otherwise every source is polled every frame.
+  private final AstronomerModel model;
+  // Guarded by refreshLock.
+  private final SourceUpdateScheduler scheduler = new SourceUpdateScheduler();
+  private final EnumSet<UpdateType> scratchUpdateTypes = EnumSet.noneOf(UpdateType.class);
   private SourceUpdateClosure closure;
+  // Guarded by writeLock.
+  private ScheduledFuture<?> pendingRelease;
+  // Whether the renderer's copy of the layer has been freed while hidden.
+  // Guarded by refreshLock.
+  private boolean released;
 
   public AbstractSourceLayer(Resources resources, boolean shouldUpdate) {
     super(resources);
     this.shouldUpdate = shouldUpdate;
+    this.model = null;
+  }
+
+  /**
+   * Creates a layer whose sources change with time.  Each frame, only the
+   * sources due an update at the model's current time are updated.
+   */
+  public AbstractSourceLayer(Resources resources, AstronomerModel model) {
+    super(resources);
+    this.shouldUpdate = true;
+    this.model = model;
   }
 
   @Override
-  public synchronized void initialize() {
-    astroSources.clear();
+  public void initialize() {
+    // Loading the sources can be slow, so it's done before taking any locks.
+    ArrayList<AstronomicalSource> newAstroSources = new ArrayList<AstronomicalSource>();
+    initializeAstroSources(newAstroSources);
+    ArrayList<Sources> newSources = new ArrayList<Sources>(newAstroSources.size());
+    for (AstronomicalSource astroSource : newAstroSources) {
+      newSources.add(astroSource.initialize());
+    }
+
+    synchronized (writeLock) {
+      sourceSet.set(SourceSet.EMPTY.plus(newAstroSources, newSources));
+      synchronized (searchIndex) {
+        for (AstronomicalSource astroSource : newAstroSources) {
+          indexNames(astroSource);
+        }
+      }
+
+      // update the renderer
+      updateLayerForControllerChange();
+    }
+  }
 
-    initializeAstroSources(astroSources);
+  /**
+   * Adds more {@link AstronomicalSource}s to an initialized layer.  New points
+   * and labels are appended to what the renderer already has; if any of the
+   * sources have lines or images the whole layer is redrawn instead, as
+   * those managers can't be appended to.
+   */
+  protected void appendSources(ArrayList<AstronomicalSource> newAstroSources) {
+    ArrayList<Sources> newSources = new ArrayList<Sources>(newAstroSources.size());
+    ArrayList<TextSource> newTextSources = new ArrayList<TextSource>();
+    ArrayList<PointSource> newPointSources = new ArrayList<PointSource>();
+    boolean needsReset = false;
 
-    for (AstronomicalSource astroSource : astroSources) {
+    for (AstronomicalSource astroSource : newAstroSources) {
       Sources sources = astroSource.initialize();
+      newSources.add(sources);
+
+      newTextSources.addAll(sources.getLabels());
+      newPointSources.addAll(sources.getPoints());
+      needsReset |= !sources.getImages().isEmpty() || !sources.getLines().isEmpty();
+    }
 
-      textSources.addAll(sources.getLabels());
-      imageSources.addAll(sources.getImages());
-      pointSources.addAll(sources.getPoints());
-      lineSources.addAll(sources.getLines());
-
-      List<String> names = astroSource.getNames();
-      if (!names.isEmpty()) {
-        GeocentricCoordinates searchLoc = astroSource.getSearchLocation();
-        for (String name : names) {
-          searchIndex.put(name.toLowerCase(), new SearchResult(name, searchLoc));
-          prefixStore.add(name.toLowerCase());
+    synchronized (writeLock) {
+      synchronized (searchIndex) {
+        for (AstronomicalSource astroSource : newAstroSources) {
+          indexNames(astroSource);
         }
       }
+
+      refreshLock.lock();
+      try {
+        SourceSet set = sourceSet.get().plus(newAstroSources, newSources);
+        sourceSet.set(set);
+        if (needsReset) {
+          redraw(set, EnumSet.of(UpdateType.Reset));
+        } else if (!released) {
+          super.redraw(newTextSources, newPointSources, null, null, EnumSet.of(UpdateType.Append));
+        }
+      } finally {
+        refreshLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the layer's sources as loaded so far.  The list is a snapshot and
+   * doesn't change as more sources are loaded.
+   */
+  protected List<AstronomicalSource> getAstroSources() {
+    return Collections.unmodifiableList(sourceSet.get().astroSources);
+  }
+
+  /**
+   * Builds the meshes that the renderer would build for this layer's points
+   * and lines, for saving in a {@link GeometrySnapshot}.
+   */
+  protected List<GeometrySnapshot.Mesh> buildGeometrySnapshot() {
+    SourceSet set = sourceSet.get();
+    ArrayList<GeometrySnapshot.Mesh> meshes = new ArrayList<GeometrySnapshot.Mesh>(
+        PointObjectManager.buildSnapshotMeshes(set.pointSources));
+    GeometrySnapshot.Mesh lineMesh = PolyLineObjectManager.buildSnapshotMesh(set.lineSources);
+    if (lineMesh != null) {
+      meshes.add(lineMesh);
+    }
+    return meshes;
+  }
+
+  private void indexNames(AstronomicalSource astroSource) {
+    List<String> names = astroSource.getNames();
+    if (!names.isEmpty()) {
+      GeocentricCoordinates searchLoc = astroSource.getSearchLocation();
+      for (String name : names) {
+        searchIndex.put(name.toLowerCase(), new SearchResult(name, searchLoc));
+        prefixStore.add(name.toLowerCase());
+      }
     }
+  }
 
-    // update the renderer
-    updateLayerForControllerChange();
+  /**
+   * Returns the number of times the layer's update closure has skipped an
+   * update because another thread was refreshing the layer at the time,
+   * rather than hold up the other updates.
+   */
+  public int getRefreshContentionCount() {
+    return refreshContentionCount.get();
   }
 
   @Override
@@ -97,7 +260,74 @@ public abstract class AbstractSourceLayer extends AbstractLayer {
       if (closure == null) {
         closure = new SourceUpdateClosure(this);
       }
-      addUpdateClosure(closure);
+      if (isVisible()) {
+        addUpdateClosure(closure);
+      }
+    }
+  }
+
+  /**
+   * Hidden layers stop updating their sources, and once they've been hidden
+   * for {@link #RELEASE_DELAY_MS} the renderer's buffers for them are freed.
+   * The sources themselves are kept, so showing the layer again only has to
+   * rebuild the buffers (or reload them from the layer's geometry snapshot).
+   */
+  @Override
+  protected void onVisibilityChanged(boolean visible) {
+    synchronized (writeLock) {
+      if (pendingRelease != null) {
+        pendingRelease.cancel(false);
+        pendingRelease = null;
+      }
+      if (!visible) {
+        if (closure != null) {
+          removeUpdateClosure(closure);
+        }
+        pendingRelease = RELEASE_EXECUTOR.schedule(new Runnable() {
+          @Override
+          public void run() {
+            releaseIfHidden();
+          }
+        }, RELEASE_DELAY_MS, TimeUnit.MILLISECONDS);
+        return;
+      }
+
+      refreshLock.lock();
+      try {
+        // Catch up on whatever changed while the layer was hidden.
+        EnumSet<UpdateType> updateTypes = EnumSet.noneOf(UpdateType.class);
+        if (released) {
+          released = false;
+          updateTypes.add(UpdateType.Reset);
+          Log.d(TAG, "Restoring " + getLayerName());
+        }
+        refreshSources(sourceSet.get(), updateTypes);
+      } finally {
+        refreshLock.unlock();
+      }
+      if (closure != null) {
+        addUpdateClosure(closure);
+      }
+    }
+  }
+
+  private void releaseIfHidden() {
+    synchronized (writeLock) {
+      if (isVisible()) {
+        return;
+      }
+      refreshLock.lock();
+      try {
+        if (!released) {
+          Log.d(TAG, "Releasing " + getLayerName());
+          // Resetting the renderer's managers to nothing frees their
+          // vertex buffers and label texture on the GL thread.
+          super.redraw(null, null, null, null, EnumSet.of(UpdateType.Reset));
+          released = true;
+        }
+      } finally {
+        refreshLock.unlock();
+      }
     }
   }
 
@@ -121,13 +351,52 @@ public abstract class AbstractSourceLayer extends AbstractLayer {
    * the current state of the
    * {@link com.google.android.stardroid.control.AstronomerModel}.
    */
-  protected synchronized void refreshSources(EnumSet<UpdateType> updateTypes) {
-    for (AstronomicalSource astroSource : astroSources) {
+  protected void refreshSources(EnumSet<UpdateType> updateTypes) {
+    refreshLock.lock();
+    try {
+      refreshSources(sourceSet.get(), updateTypes);
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+
+  /**
+   * As {@link #refreshSources()}, but gives up rather than wait if another
+   * thread is already refreshing the layer.  Used from the update closure.
+   */
+  private void tryRefreshSources() {
+    if (!refreshLock.tryLock()) {
+      refreshContentionCount.incrementAndGet();
+      return;
+    }
+    try {
+      SourceSet set = sourceSet.get();
+      if (model == null || scheduler.getSources() != set.astroSources) {
+        refreshSources(set, EnumSet.noneOf(UpdateType.class));
+        return;
+      }
+      // Most frames nothing is due, so don't allocate unless something is.
+      scheduler.updateDueSources(model.getTimeMillis(), scratchUpdateTypes);
+      if (!scratchUpdateTypes.isEmpty()) {
+        EnumSet<UpdateType> updateTypes = EnumSet.copyOf(scratchUpdateTypes);
+        scratchUpdateTypes.clear();
+        redraw(set, updateTypes);
+      }
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+
+  private void refreshSources(SourceSet set, EnumSet<UpdateType> updateTypes) {
+    for (AstronomicalSource astroSource : set.astroSources) {
       updateTypes.addAll(astroSource.update());
     }
+    if (model != null) {
+      scheduler.reset(set.astroSources);
+    }
 
     if (!updateTypes.isEmpty()) {
-      redraw(updateTypes);
+      redraw(set, updateTypes);
     }
   }
 
@@ -140,15 +409,23 @@ public abstract class AbstractSourceLayer extends AbstractLayer {
     refreshSources(EnumSet.of(UpdateType.Reset));
   }
 
-  private final void redraw(EnumSet<UpdateType> updateTypes) {
-    super.redraw(textSources, pointSources, lineSources, imageSources, updateTypes);
+  private final void redraw(SourceSet set, EnumSet<UpdateType> updateTypes) {
+    if (released) {
+      // Rebuilt from scratch when the layer is shown again.
+      return;
+    }
+    super.redraw(set.textSources, set.pointSources, set.lineSources, set.imageSources,
+        updateTypes);
   }
 
   @Override
   public List<SearchResult> searchByObjectName(String name) {
     Log.d(TAG, "Search planets layer for " + name);
     List<SearchResult> matches = new ArrayList<SearchResult>();
-    SearchResult searchResult = searchIndex.get(name.toLowerCase());
+    SearchResult searchResult;
+    synchronized (searchIndex) {
+      searchResult = searchIndex.get(name.toLowerCase());
+    }
     if (searchResult != null) {
       matches.add(searchResult);
     }
@@ -159,7 +436,10 @@ public abstract class AbstractSourceLayer extends AbstractLayer {
   @Override
   public Set<String> getObjectNamesMatchingPrefix(String prefix) {
     Log.d(TAG, "Searching planets layer for prefix " + prefix);
-    Set<String> results = prefixStore.queryByPrefix(prefix);
+    Set<String> results;
+    synchronized (searchIndex) {
+      results = prefixStore.queryByPrefix(prefix);
+    }
     Log.d(TAG, "Got " + results.size() + " results for prefix " + prefix + " in " + getLayerName());
     return results;
   }
@@ -174,7 +454,7 @@ public abstract class AbstractSourceLayer extends AbstractLayer {
 
     @Override
     public void run() {
-      layer.refreshSources();
+      layer.tryRefreshSources();
     }
   }
 }
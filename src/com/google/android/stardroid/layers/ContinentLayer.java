@@ -18,8 +18,11 @@ import com.google.android.stardroid.source.proto.SourceProto.AstronomicalSourceP
 import com.google.android.stardroid.source.proto.SourceProto.AstronomicalSourcesProto;
 import com.google.android.stardroid.units.GeocentricCoordinates;
 import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Matrix33;
 import com.google.android.stardroid.util.Blog;
+import com.google.android.stardroid.util.Matrix4x4;
 import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.TimeFrame;
 
 import android.content.res.AssetManager;
 import android.content.res.Resources;
@@ -37,6 +40,10 @@ import java.util.List;
 /**
  * Creates outlines of the continents
  *
+ * <p>The outlines are built in Earth-fixed coordinates, which only change
+ * with the user's location, and the renderer rotates them with the Earth as
+ * time passes.
+ *
  * @author Matthew Dockrey
  */
 public class ContinentLayer extends AbstractSourceLayer {
@@ -45,14 +52,19 @@ public class ContinentLayer extends AbstractSourceLayer {
   private final AssetManager assetManager;
 
   public ContinentLayer(AstronomerModel model, AssetManager assetManager, Resources resources) {
-    super(resources, true);
+    super(resources, model);
     this.model = model;
     this.assetManager = assetManager;
   }
 
   @Override
   protected void initializeAstroSources(ArrayList<AstronomicalSource> sources) {
-    sources.add(new ContinentSource(model, assetManager, getResources()));
+    sources.add(new ContinentSource(this, model, assetManager, getResources()));
+  }
+
+  @Override
+  public int getInitializationPriority() {
+    return LOW_PRIORITY;
   }
 
   @Override
@@ -80,15 +92,24 @@ public class ContinentLayer extends AbstractSourceLayer {
     // Due to a bug in the G1 rendering code text and lines render in different
     // colors.
     private static final int LINE_COLOR = Color.argb(120, 86, 176, 245);
-    private static final long UPDATE_FREQ_MS = 3600 * TimeConstants.MILLISECONDS_PER_SECOND;
+    // Rotating the outlines is cheap, so do it often enough that the Earth
+    // turns smoothly: it turns by 0.04 degrees in 10 seconds.
+    private static final long UPDATE_FREQ_MS = 10 * TimeConstants.MILLISECONDS_PER_SECOND;
 
     private ArrayList<List> latlongs = new ArrayList<List>();
     private final ArrayList<LineSource> lineSources = new ArrayList<LineSource>();
+    private final ContinentLayer layer;
     private final AstronomerModel model;
+    private final Matrix33 earthRotation = new Matrix33();
 
     private long lastUpdateTimeMs = 0L;
+    // The location the outlines were built for.
+    private float latitude = 0;
+    private float longitude = 0;
 
-    public ContinentSource(AstronomerModel model, AssetManager assetManager, Resources res) {
+    public ContinentSource(ContinentLayer layer, AstronomerModel model, AssetManager assetManager,
+        Resources res) {
+      this.layer = layer;
       this.model = model;
 
       InputStream coastlines = null;	
@@ -136,27 +157,36 @@ public class ContinentLayer extends AbstractSourceLayer {
       
     }
 
-    private void updateCoords() {
+    /**
+     * Rotates the outlines to the model time, first rebuilding them if the
+     * location has changed.  Returns whether they were rebuilt.
+     */
+    private boolean updateCoords() {
       //Blog.d(this, "Updating Coords: " + (model.getTime().getTime() - lastUpdateTimeMs));
+      this.lastUpdateTimeMs = model.getTimeMillis();
+      TimeFrame.forTime(lastUpdateTimeMs).getEarthRotation(earthRotation);
+      layer.setLineModelMatrix(Matrix4x4.createRotation(earthRotation));
 
     	LatLong loc = model.getLocation();
 
     	// Location defaults to 0,0
     	// At the risk of breaking this feature while standing exactly there, we won't update at those coords
-    	// (Can't update regularly, too slow.)
-    	if (loc.latitude != 0 || loc.longitude != 0)
-    	{
-    		this.lastUpdateTimeMs = model.getTime().getTime();
-
-    		for (int i = 0; i < lineSources.size(); i++) {
-    			List<GeocentricCoordinates> verticesCelestial = lineSources.get(i).getVertices();
-    			List<LatLong> verticesTerrestial = latlongs.get(i);
-          
-    			for (int j = 0; j < verticesCelestial.size(); j++) {
-    				verticesCelestial.get(j).updateFromLatLong(model.getTime(), loc, verticesTerrestial.get(j));
-    			}
+    	if ((loc.latitude == 0 && loc.longitude == 0)
+    	    || (loc.latitude == latitude && loc.longitude == longitude)) {
+    	  return false;
+    	}
+    	latitude = loc.latitude;
+    	longitude = loc.longitude;
+
+    	for (int i = 0; i < lineSources.size(); i++) {
+    		List<GeocentricCoordinates> verticesEarthFixed = lineSources.get(i).getVertices();
+    		List<LatLong> verticesTerrestial = latlongs.get(i);
+
+    		for (int j = 0; j < verticesEarthFixed.size(); j++) {
+    			verticesEarthFixed.get(j).updateFromLatLong(loc, verticesTerrestial.get(j));
     		}
     	}
+    	return true;
     }
 
     @Override
@@ -169,14 +199,24 @@ public class ContinentLayer extends AbstractSourceLayer {
     public EnumSet<UpdateType> update() {
       EnumSet<UpdateType> updateTypes = EnumSet.noneOf(UpdateType.class);
 
-      if (Math.abs(model.getTime().getTime() - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
-        updateCoords();
+      if (Math.abs(model.getTimeMillis() - lastUpdateTimeMs) > UPDATE_FREQ_MS
+          && updateCoords()) {
         updateTypes.add(UpdateType.UpdatePositions);
       }
 
       return updateTypes;
     }
 
+    @Override
+    public long getNextUpdateTimeMillis() {
+      return lastUpdateTimeMs + UPDATE_FREQ_MS + 1;
+    }
+
+    @Override
+    public long getPreviousUpdateTimeMillis() {
+      return lastUpdateTimeMs - UPDATE_FREQ_MS - 1;
+    }
+
     @Override
     public List<? extends LineSource> getLines() {
       return lineSources;
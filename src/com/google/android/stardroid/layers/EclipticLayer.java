@@ -46,6 +46,11 @@ public class EclipticLayer extends AbstractSourceLayer {
     sources.add(new EclipticSource(getResources()));
   }
 
+  @Override
+  public int getInitializationPriority() {
+    return LOW_PRIORITY;
+  }
+
   @Override
   public int getLayerId() {
     return -104;
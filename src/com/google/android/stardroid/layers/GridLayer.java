@@ -53,6 +53,11 @@ public class GridLayer extends AbstractSourceLayer {
     sources.add(new GridSource(getResources(), numRaSources, numDecSources));
   }
 
+  @Override
+  public int getInitializationPriority() {
+    return LOW_PRIORITY;
+  }
+
   @Override
   public int getLayerId() {
     return -104;
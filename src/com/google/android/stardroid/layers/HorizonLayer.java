@@ -45,7 +45,7 @@ public class HorizonLayer extends AbstractSourceLayer {
   private final AstronomerModel model;
 
   public HorizonLayer(AstronomerModel model, Resources resources) {
-    super(resources, true);
+    super(resources, model);
     this.model = model;
   }
 
@@ -54,6 +54,11 @@ public class HorizonLayer extends AbstractSourceLayer {
     sources.add(new HorizonSource(model, getResources()));
   }
 
+  @Override
+  public int getInitializationPriority() {
+    return LOW_PRIORITY;
+  }
+
   @Override
   public int getLayerId() {
     return -105;
@@ -141,6 +146,16 @@ public class HorizonLayer extends AbstractSourceLayer {
       return updateTypes;
     }
 
+    @Override
+    public long getNextUpdateTimeMillis() {
+      return lastUpdateTimeMs + UPDATE_FREQ_MS + 1;
+    }
+
+    @Override
+    public long getPreviousUpdateTimeMillis() {
+      return lastUpdateTimeMs - UPDATE_FREQ_MS - 1;
+    }
+
     @Override
     public List<? extends TextSource> getLabels() {
       return textSources;
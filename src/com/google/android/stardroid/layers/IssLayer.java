@@ -19,7 +19,8 @@ import com.google.android.stardroid.base.Closeables;
 import com.google.android.stardroid.base.Lists;
 import com.google.android.stardroid.base.TimeConstants;
 import com.google.android.stardroid.control.AstronomerModel;
-import com.google.android.stardroid.provider.ephemeris.OrbitalElements;
+import com.google.android.stardroid.provider.ephemeris.SatelliteCatalog;
+import com.google.android.stardroid.provider.ephemeris.Sgp4;
 import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
 import com.google.android.stardroid.source.AbstractAstronomicalSource;
 import com.google.android.stardroid.source.AstronomicalSource;
@@ -29,210 +30,362 @@ import com.google.android.stardroid.source.TextSource;
 import com.google.android.stardroid.source.impl.PointSourceImpl;
 import com.google.android.stardroid.source.impl.TextSourceImpl;
 import com.google.android.stardroid.units.GeocentricCoordinates;
-import com.google.android.stardroid.util.Blog;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.FileDownloader;
 import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.TimeFrame;
 
+import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.util.Log;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Earth satellites, propagated from two-line element sets.
+ *
+ * <p>The elements are read from a file in the app's storage, or failing that
+ * from an asset, if one is bundled with the app.  While the layer is shown,
+ * the file is downloaded again from CelesTrak once it is a day old, and
+ * checked for changes every hour.  Satellites are propagated on the same
+ * background thread, and each update copies the latest positions into the
+ * layer's points, so the renderer never waits for the propagation.  Only the
+ * ISS is labelled.
+ *
+ * <p>The layer is hidden by default, as turning it on downloads data.
+ *
  * @author Brent Bryan
  */
 public class IssLayer extends AbstractSourceLayer {
-  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-  private final AstronomerModel model;
-
-  private IssSource issSource;
+  private static final String TAG = MiscUtil.getTag(IssLayer.class);
+  /** Name of the bundled asset used when there's no element file. */
+  public static final String ASSET_NAME = "satellites.tle";
+  // The brightest few hundred satellites.
+  private static final String ELEMENTS_URL =
+      "https://celestrak.org/NORAD/elements/gp.php?GROUP=visual&FORMAT=tle";
+  private static final long RELOAD_FREQ_MS = TimeConstants.MILLISECONDS_PER_HOUR;
+  // Low satellites drift from their elements by kilometers a day.
+  private static final long REFRESH_AGE_MS = TimeConstants.MILLISECONDS_PER_DAY;
 
-  public IssLayer(Resources resources, AstronomerModel model) {
-    super(resources, true);
+  private final AstronomerModel model;
+  private final AssetManager assetManager;
+  private final File elementsFile;
+  // Modification time of the element file last read, or 0 if it was the asset.
+  private volatile long elementsModified;
+  private volatile boolean initialized = false;
+  // Downloads, reads and propagates the elements while the layer is shown
+  // and initialized, and is shut down otherwise.  Guarded by this.
+  private ScheduledExecutorService worker = null;
+
+  // Hands propagation to the worker, or refuses it if there's no worker.
+  private final Executor propagationExecutor = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      synchronized (IssLayer.this) {
+        if (worker == null) {
+          throw new RejectedExecutionException("Satellite layer is hidden");
+        }
+        worker.execute(command);
+      }
+    }
+  };
+
+  /**
+   * Creates a layer showing the satellites in the given element file, or in
+   * the bundled asset if there's no such file.
+   */
+  public IssLayer(AssetManager assetManager, Resources resources, AstronomerModel model,
+      File elementsFile) {
+    super(resources, model);
     this.model = model;
+    this.assetManager = assetManager;
+    this.elementsFile = elementsFile;
   }
 
   @Override
-  protected void initializeAstroSources(ArrayList<AstronomicalSource> sources) {
-    this.issSource = new IssSource(model, getResources());
-    sources.add(issSource);
-
-    scheduler.scheduleAtFixedRate(
-        new OrbitalElementsGrabber(issSource), 0, 60, TimeUnit.SECONDS);
+  public void initialize() {
+    super.initialize();
+    initialized = true;
+    updateWorker();
   }
 
   @Override
-  public int getLayerId() {
-    return -110;
+  protected void onVisibilityChanged(boolean visible) {
+    super.onVisibilityChanged(visible);
+    updateWorker();
   }
 
-  @Override
-  protected int getLayerNameId() {
-    // TODO(brent): Update to different preference
-    return R.string.show_hubble_layer_pref;
+  /** Starts or stops the worker, so that it only runs while it's needed. */
+  private synchronized void updateWorker() {
+    boolean needed = initialized && isVisible();
+    if (needed && worker == null) {
+      worker = Executors.newSingleThreadScheduledExecutor();
+      worker.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          refreshElements();
+          if (elementsFile.lastModified() != elementsModified) {
+            Log.d(TAG, "Element file changed; reloading satellites");
+            initialize();
+          }
+        }
+      }, 0, RELOAD_FREQ_MS, TimeUnit.MILLISECONDS);
+    } else if (!needed && worker != null) {
+      // Lets a propagation in progress finish, but cancels the checks.
+      worker.shutdown();
+      worker = null;
+    }
   }
 
-  /** Thread Runnable which parses the orbital elements out of the Url. */
-  static class OrbitalElementsGrabber implements Runnable {
-    private static final long UPDATE_FREQ_MS = TimeConstants.MILLISECONDS_PER_HOUR;
-    private static final String TAG = MiscUtil.getTag(OrbitalElementsGrabber.class);
-    private static final String URL_STRING = "http://spaceflight.nasa.gov/realdata/" +
-        "sightings/SSapplications/Post/JavaSSOP/orbit/ISS/SVPOST.html";
-
-    private final IssSource source;
-    private long lastSuccessfulUpdateMs = -1L;
-
-    public OrbitalElementsGrabber(IssSource source) {
-      this.source = source;
-    }
-
-    /**
-     * Parses the OrbitalElements from the given BufferedReader.  Factored out
-     * of {@link #getOrbitalElements} to simplify testing.
-     */
-    OrbitalElements parseOrbitalElements(BufferedReader in) throws IOException {
-      String s;
-      while ((s = in.readLine()) != null && !s.contains("M50 Keplerian")) {}
-
-      // Skip the dashed line
-      in.readLine();
-
-      float[] params = new float[9];
-      int i = 0;
-      for (; i < params.length && (s = in.readLine()) != null; i++) {
-        s = s.substring(46).trim();
-        String[] tokens = s.split("\\s+");
-        params[i] = Float.parseFloat(tokens[2]);
+  /** Downloads the elements again if the file is missing or out of date. */
+  private void refreshElements() {
+    if (!FileDownloader.isStale(elementsFile, REFRESH_AGE_MS)) {
+      return;
+    }
+    FileDownloader.download(ELEMENTS_URL, elementsFile, new FileDownloader.Validator() {
+      @Override
+      public boolean isValid(File file) {
+        return readCatalog(file).size() > 0;
       }
+    });
+  }
 
-
-      if (i == params.length) {  // we read all the data.
-        // TODO(serafini): Add magic here to create orbital elements or whatever.
-        StringBuilder sb = new StringBuilder();
-        for (int pi = 0; pi < params.length; pi++) {
-          sb.append(" " + params[pi]);
-        }
-        Blog.d(this, "Params: " + sb);
-      }
-      return null;
+  @Override
+  protected void initializeAstroSources(ArrayList<AstronomicalSource> sources) {
+    long modified = elementsFile.lastModified();
+    SatelliteCatalog catalog = readCatalog(modified != 0 ? elementsFile : null);
+    elementsModified = modified;
+    if (catalog.size() > 0) {
+      sources.add(new SatelliteSource(model, getResources(), catalog, propagationExecutor));
     }
+  }
 
-    /**
-     * Reads the given URL and returns the OrbitalElements associated with the object
-     * described therein.
-     */
-    OrbitalElements getOrbitalElements(String urlString) {
-      BufferedReader in = null;
-      try {
-        URLConnection connection = new URL(urlString).openConnection();
-        in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        return parseOrbitalElements(in);
-      } catch (IOException e) {
-        Log.e(TAG, "Error reading Orbital Elements");
-      } finally {
-        Closeables.closeSilently(in);
+  /** Reads the given element file, or the asset if it's null. */
+  private SatelliteCatalog readCatalog(File file) {
+    InputStream in = null;
+    try {
+      if (file != null) {
+        in = new FileInputStream(file);
+      } else {
+        in = assetManager.open(ASSET_NAME, AssetManager.ACCESS_STREAMING);
       }
-      return null;
+      return SatelliteCatalog.read(new BufferedReader(new InputStreamReader(in)));
+    } catch (FileNotFoundException e) {
+      Log.d(TAG, "No satellite elements in " + elementsFile + " or the assets");
+    } catch (IOException e) {
+      Log.e(TAG, "Error reading satellite elements", e);
+    } finally {
+      Closeables.closeSilently(in);
     }
+    return new SatelliteCatalog(Collections.<Sgp4>emptyList());
+  }
 
-    @Override
-    public void run() {
-      long currentTimeMs = System.currentTimeMillis();
-      if ((currentTimeMs - lastSuccessfulUpdateMs) > UPDATE_FREQ_MS) {
-        Blog.d(this, "Fetching ISS data...");
-        OrbitalElements elements = getOrbitalElements(URL_STRING);
-        if (elements == null) {
-          Log.d(TAG, "Error downloading ISS orbital data");
-        } else {
-          lastSuccessfulUpdateMs = currentTimeMs;
-          source.setOrbitalElements(elements);
-        }
-      }
-    }
+  @Override
+  public int getLayerId() {
+    return -110;
+  }
+
+  @Override
+  public String getPreferenceId() {
+    return "source_provider.11";
+  }
+
+  @Override
+  protected int getLayerNameId() {
+    return R.string.show_satellites_pref;
   }
 
-  /** AstronomicalSource corresponding to the International Space Station. */
-  static class IssSource extends AbstractAstronomicalSource {
+  @Override
+  public boolean isVisibleByDefault() {
+    return false;
+  }
+
+  /**
+   * AstronomicalSource for all the satellites in a catalog.  Positions are
+   * propagated for the model time on the given executor; updates pick up
+   * the most recent ones and ask for the next.
+   */
+  static class SatelliteSource extends AbstractAstronomicalSource {
     private static final long UPDATE_FREQ_MS = 1L * TimeConstants.MILLISECONDS_PER_SECOND;
+    private static final int ISS_CATALOG_NUMBER = 25544;
     private static final int ISS_COLOR = Color.YELLOW;
+    private static final int SATELLITE_COLOR = Color.rgb(0xC0, 0xC0, 0x80);
 
-    private final GeocentricCoordinates coords = new GeocentricCoordinates(1f, 0f, 0f);
+    private final SatelliteCatalog catalog;
+    private final AstronomerModel model;
+    private final Executor executor;
+    private final GeocentricCoordinates[] coords;
     private final ArrayList<PointSource> pointSources = new ArrayList<PointSource>();
     private final ArrayList<TextSource> textSources = new ArrayList<TextSource>();
-    private final AstronomerModel model;
-    private final String name;
-
-    private OrbitalElements orbitalElements = null;
-    private boolean orbitalElementsChanged;
-    private long lastUpdateTimeMs = 0L;
-
-    public IssSource(AstronomerModel model, Resources resources) {
+    private final List<String> names;
+    private final GeocentricCoordinates searchLocation;
+
+    // The positions most recently propagated and the model time they're for.
+    // Guarded by this.
+    private float[] ready;
+    private long readyTimeMs;
+    // Positions being propagated, or free for the next propagation.
+    private float[] spare;
+    private long requestedTimeMs;
+    private long appliedTimeMs;
+    private boolean inFlight;
+
+    public SatelliteSource(AstronomerModel model, Resources resources, SatelliteCatalog catalog,
+        Executor executor) {
       this.model = model;
-      this.name = resources.getString(R.string.space_station);
-
-      pointSources.add(new PointSourceImpl(coords, ISS_COLOR, 5));
-      textSources.add(new TextSourceImpl(coords, name, ISS_COLOR));
-    }
-
-    public synchronized void setOrbitalElements(OrbitalElements elements) {
-      this.orbitalElements = elements;
-      orbitalElementsChanged = true;
+      this.catalog = catalog;
+      this.executor = executor;
+      int n = catalog.size();
+      coords = new GeocentricCoordinates[n];
+      ready = new float[3 * n];
+      spare = new float[3 * n];
+
+      GeocentricCoordinates iss = null;
+      for (int i = 0; i < n; i++) {
+        coords[i] = new GeocentricCoordinates(1, 0, 0);
+        if (catalog.get(i).getCatalogNumber() == ISS_CATALOG_NUMBER) {
+          iss = coords[i];
+          pointSources.add(new PointSourceImpl(coords[i], ISS_COLOR, 5));
+        } else {
+          pointSources.add(new PointSourceImpl(coords[i], SATELLITE_COLOR, 2));
+        }
+      }
+      if (iss != null) {
+        String name = resources.getString(R.string.space_station);
+        textSources.add(new TextSourceImpl(iss, name, ISS_COLOR));
+        names = Lists.asList(name);
+        searchLocation = iss;
+      } else {
+        names = Collections.emptyList();
+        searchLocation = coords[0];
+      }
     }
 
     @Override
     public List<String> getNames() {
-      return Lists.asList(name);
+      return names;
     }
 
     @Override
     public GeocentricCoordinates getSearchLocation() {
-      return coords;
-    }
-
-    private void updateCoords(Date time) {
-      lastUpdateTimeMs = time.getTime();
-      orbitalElementsChanged = false;
-
-      if (orbitalElements == null) {
-        return;
-      }
-      // TODO(serafini): Update coords of Iss from OrbitalElements.
-      // issCoords.assign(...);
+      return searchLocation;
     }
 
     @Override
     public Sources initialize() {
-      updateCoords(model.getTime());
+      // The first positions are worked out here, so the satellites never
+      // appear at their placeholder positions.
+      long timeMs = model.getTimeMillis();
+      propagate(timeMs, model.getLocation(), ready);
+      synchronized (this) {
+        readyTimeMs = timeMs;
+        requestedTimeMs = timeMs;
+        apply();
+      }
       return this;
     }
 
     @Override
     public synchronized EnumSet<UpdateType> update() {
       EnumSet<UpdateType> updateTypes = EnumSet.noneOf(UpdateType.class);
-
-      Date modelTime = model.getTime();
-      if (orbitalElementsChanged ||
-          Math.abs(modelTime.getTime() - lastUpdateTimeMs) > UPDATE_FREQ_MS) {
-
-        updateCoords(modelTime);
-        if (orbitalElements != null) {
-          updateTypes.add(UpdateType.UpdatePositions);
+      if (appliedTimeMs != readyTimeMs) {
+        apply();
+        updateTypes.add(UpdateType.UpdatePositions);
+      }
+      long modelTimeMs = model.getTimeMillis();
+      if (!inFlight && Math.abs(modelTimeMs - requestedTimeMs) >= UPDATE_FREQ_MS) {
+        inFlight = true;
+        requestedTimeMs = modelTimeMs;
+        final long timeMs = modelTimeMs;
+        final LatLong location = model.getLocation();
+        final float[] directions = spare;
+        try {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              if (propagate(timeMs, location, directions)) {
+                finish(timeMs, directions);
+              }
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          // The layer is being hidden; try again when it's shown.
+          inFlight = false;
         }
       }
       return updateTypes;
     }
 
+    private boolean propagate(long timeMs, LatLong location, float[] directions) {
+      try {
+        catalog.propagate(timeMs, location, directions);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      // Satellites without positions, which have most likely decayed, are
+      // hidden below the observer.
+      Vector3 zenith = TimeFrame.forTime(timeMs).getZenith(location, new Vector3(0, 0, 0));
+      for (int i = 0; i < directions.length; i += 3) {
+        if (Float.isNaN(directions[i])) {
+          directions[i] = -zenith.x;
+          directions[i + 1] = -zenith.y;
+          directions[i + 2] = -zenith.z;
+        }
+      }
+      return true;
+    }
+
+    private synchronized void finish(long timeMs, float[] directions) {
+      spare = ready;
+      ready = directions;
+      readyTimeMs = timeMs;
+      inFlight = false;
+    }
+
+    // Copies the ready positions into the points.  Must hold the lock.
+    private void apply() {
+      float[] directions = ready;
+      for (int i = 0; i < coords.length; i++) {
+        coords[i].assign(directions[3 * i], directions[3 * i + 1], directions[3 * i + 2]);
+      }
+      appliedTimeMs = readyTimeMs;
+    }
+
+    @Override
+    public synchronized long getNextUpdateTimeMillis() {
+      // While positions are on their way, check every frame for them.
+      if (inFlight || appliedTimeMs != readyTimeMs) {
+        return requestedTimeMs;
+      }
+      return requestedTimeMs + UPDATE_FREQ_MS;
+    }
+
+    @Override
+    public synchronized long getPreviousUpdateTimeMillis() {
+      if (inFlight || appliedTimeMs != readyTimeMs) {
+        return requestedTimeMs;
+      }
+      return requestedTimeMs - UPDATE_FREQ_MS;
+    }
+
     @Override
     public List<? extends TextSource> getLabels() {
       return textSources;
@@ -243,6 +396,4 @@ public class IssLayer extends AbstractSourceLayer {
       return pointSources;
     }
   }
-
-
 }
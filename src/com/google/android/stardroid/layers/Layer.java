@@ -29,14 +29,29 @@ import java.util.Set;
  * @author Brent Bryan
  */
 public interface Layer {
+  /** Initialization priority of the layers users look for first. */
+  int HIGH_PRIORITY = 10;
+  /** Initialization priority of most layers. */
+  int NORMAL_PRIORITY = 0;
+  /** Initialization priority of reference layers, like the grid. */
+  int LOW_PRIORITY = -10;
+
   /**
    * Initializes the layer; reading data and computing locations as necessary.
-   * This method should return quickly - use a background thread if necessary.
-   * This method is typically called before the {@link #registerWithRenderer}
-   * method, but may not be.
+   * The {@link LayerManager} calls this on a background thread, alongside
+   * other layers, so it may block while reading data.  This method is
+   * typically called before the {@link #registerWithRenderer} method, but may
+   * not be: layers which are turned off aren't initialized until they are
+   * first turned on.
    */
    void initialize();
 
+  /**
+   * Returns how important it is to get this layer on screen quickly.  Layers
+   * with a higher priority are initialized first.
+   */
+  int getInitializationPriority();
+
   /**
    * Registers this layer with the given {@link RendererController}.  None of
    * the objects in this layer can be displayed until this method is called.
@@ -53,6 +68,12 @@ public interface Layer {
    */
   String getPreferenceId();
 
+  /**
+   * Returns whether the layer is shown when the user hasn't set its
+   * preference.  Must match the preference's default on the settings screen.
+   */
+  boolean isVisibleByDefault();
+
   /**
    * Returns the name associated with this layer.
    */
@@ -0,0 +1,110 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.layers;
+
+import com.google.android.stardroid.util.Blog;
+import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.StopWatch;
+import com.google.android.stardroid.util.StopWatchImpl;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initializes a group of {@link Layer}s on a small pool of background threads.
+ *
+ * <p>Layers don't depend on each other, so they are loaded in parallel, and
+ * the time until they are all on screen is that of the slowest layer rather
+ * than the sum of all of them.  Layers are started in order of their
+ * {@link Layer#getInitializationPriority}, so when there are more layers than
+ * threads the important ones aren't kept waiting by the others.  The time
+ * taken by each layer is logged.
+ */
+class LayerInitializer {
+  private static final String TAG = MiscUtil.getTag(LayerInitializer.class);
+  // Glass is dual core, and layers spend much of their time reading assets.
+  private static final int MAX_THREADS = 3;
+
+  private static final Comparator<Layer> HIGHEST_PRIORITY_FIRST = new Comparator<Layer>() {
+    @Override
+    public int compare(Layer l1, Layer l2) {
+      int p1 = l1.getInitializationPriority();
+      int p2 = l2.getInitializationPriority();
+      return p1 > p2 ? -1 : (p1 == p2 ? 0 : 1);
+    }
+  };
+
+  private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "LayerInitializer-" + count.incrementAndGet());
+      // Don't compete with the UI thread.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      return thread;
+    }
+  };
+
+  /**
+   * Starts initializing the given layers, and returns without waiting for
+   * them to finish.
+   */
+  public void initialize(List<Layer> layers) {
+    final List<Layer> ordered = new ArrayList<Layer>(layers);
+    if (ordered.isEmpty()) {
+      return;
+    }
+    // The sort is stable, so layers of equal priority start in the order
+    // they were added.
+    Collections.sort(ordered, HIGHEST_PRIORITY_FIRST);
+
+    int numThreads = Math.min(ordered.size(),
+        Math.min(MAX_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors())));
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads, THREAD_FACTORY);
+    final StopWatch totalWatch = new StopWatchImpl().start();
+    final AtomicInteger remaining = new AtomicInteger(ordered.size());
+    for (final Layer layer : ordered) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          StopWatch watch = new StopWatchImpl().start();
+          try {
+            layer.initialize();
+          } catch (RuntimeException e) {
+            // Don't let one broken layer stop the others from loading.
+            Log.e(TAG, "Unable to initialize " + layer.getClass().getSimpleName(), e);
+          }
+          Blog.d(LayerInitializer.this, String.format("Initialized layer %s (priority %d) > %s",
+              layer.getClass().getSimpleName(), layer.getInitializationPriority(), watch.end()));
+          if (remaining.decrementAndGet() == 0) {
+            Blog.d(LayerInitializer.this, String.format("Initialized %d layers > %s",
+                ordered.size(), totalWatch.end()));
+          }
+        }
+      });
+    }
+    // The threads exit once the queued layers are done.
+    executor.shutdown();
+  }
+}
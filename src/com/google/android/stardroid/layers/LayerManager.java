@@ -25,6 +25,7 @@ import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -35,6 +36,8 @@ import java.util.Set;
 public class LayerManager implements OnSharedPreferenceChangeListener {
   private static final String TAG = MiscUtil.getTag(LayerManager.class);
   private final ArrayList<Layer> layers = new ArrayList<Layer>();
+  // Layers which are turned off, and so haven't been initialized yet.
+  private final ArrayList<Layer> uninitializedLayers = new ArrayList<Layer>();
   private final SharedPreferences sharedPreferences;
 
   // TODO(johntaylor): delete the model parameter
@@ -47,18 +50,30 @@ public class LayerManager implements OnSharedPreferenceChangeListener {
     this.layers.add(layer);
   }
 
+  /**
+   * Starts initializing the visible layers on background threads, most
+   * important layers first.  Returns without waiting for them to finish.
+   * Layers which are turned off aren't loaded until they are first turned on.
+   */
   public void initialize() {
-    for (Layer layer : layers) {
-      layer.initialize();
+    ArrayList<Layer> visibleLayers = new ArrayList<Layer>();
+    synchronized (uninitializedLayers) {
+      for (Layer layer : layers) {
+        if (isLayerVisible(layer)) {
+          visibleLayers.add(layer);
+        } else {
+          uninitializedLayers.add(layer);
+        }
+      }
     }
+    Log.i(TAG, "Initializing " + visibleLayers.size() + " of " + layers.size() + " layers");
+    new LayerInitializer().initialize(visibleLayers);
   }
 
   public void registerWithRenderer(RendererController renderer) {
     for (Layer layer : layers) {
       layer.registerWithRenderer(renderer);
-      String prefId = layer.getPreferenceId();
-      boolean visible = sharedPreferences.getBoolean(prefId, true);
-      layer.setVisible(visible);
+      layer.setVisible(isLayerVisible(layer));
     }
   }
 
@@ -66,12 +81,29 @@ public class LayerManager implements OnSharedPreferenceChangeListener {
   public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
     for (Layer layer : layers) {
       if (layer.getPreferenceId().equals(key)) {
-        boolean visible = prefs.getBoolean(key, true);
+        boolean visible = prefs.getBoolean(key, layer.isVisibleByDefault());
+        if (visible) {
+          initializeIfNeeded(layer);
+        }
         layer.setVisible(visible);
       }
     }
   }
 
+  /**
+   * Starts loading the given layer in the background if it was skipped by
+   * {@link #initialize} because it was turned off.  It appears once loaded.
+   */
+  private void initializeIfNeeded(Layer layer) {
+    synchronized (uninitializedLayers) {
+      if (!uninitializedLayers.remove(layer)) {
+        return;
+      }
+    }
+    Log.i(TAG, "Initializing " + layer.getLayerName() + " now that it has been turned on");
+    new LayerInitializer().initialize(Collections.singletonList(layer));
+  }
+
   /**
    * Returns the name of this object.
    */
@@ -116,6 +148,8 @@ public class LayerManager implements OnSharedPreferenceChangeListener {
   }
 
   private boolean isLayerVisible(Layer layer) {
-    return sharedPreferences.getBoolean(layer.getPreferenceId(), true);
+    // Preferences the user hasn't touched aren't stored, not even after an
+    // upgrade which adds them, so the layer knows its own default.
+    return sharedPreferences.getBoolean(layer.getPreferenceId(), layer.isVisibleByDefault());
   }
 }
@@ -73,7 +73,7 @@ public class MeteorShowerLayer extends AbstractSourceLayer {
   private static final double METEOR_THRESHOLD_PER_HR = 10;
 
   public MeteorShowerLayer(AstronomerModel model, Resources resources) {
-    super(resources, true);
+    super(resources, model);
     this.model = model;
     initializeShowers();
   }
@@ -269,6 +269,16 @@ public class MeteorShowerLayer extends AbstractSourceLayer {
       return updateTypes;
     }
 
+    @Override
+    public long getNextUpdateTimeMillis() {
+      return lastUpdateTimeMs + UPDATE_FREQ_MS + 1;
+    }
+
+    @Override
+    public long getPreviousUpdateTimeMillis() {
+      return lastUpdateTimeMs - UPDATE_FREQ_MS - 1;
+    }
+
     @Override
     public List<? extends ImageSource> getImages() {
       return imageSources;
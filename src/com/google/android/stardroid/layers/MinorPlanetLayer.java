@@ -0,0 +1,520 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.layers;
+
+import com.google.android.stardroid.R;
+import com.google.android.stardroid.base.Closeables;
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.control.AstronomerModel;
+import com.google.android.stardroid.provider.ephemeris.MinorPlanetCatalog;
+import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
+import com.google.android.stardroid.search.PrefixStore;
+import com.google.android.stardroid.search.SearchResult;
+import com.google.android.stardroid.source.AbstractAstronomicalSource;
+import com.google.android.stardroid.source.AstronomicalSource;
+import com.google.android.stardroid.source.PointSource;
+import com.google.android.stardroid.source.Sources;
+import com.google.android.stardroid.source.TextSource;
+import com.google.android.stardroid.source.impl.PointSourceImpl;
+import com.google.android.stardroid.source.impl.TextSourceImpl;
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.util.FileDownloader;
+import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.StarAttributeCalculator;
+
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asteroids and comets, from Minor Planet Center element files.
+ *
+ * <p>Each file is read from the given directory, or failing that from the
+ * assets.  While the layer is shown, the comets' elements are downloaded
+ * again from the Minor Planet Center once they are a week old.  The
+ * asteroids' elements aren't downloaded, as the full MPCORB.DAT is too big
+ * for a phone; a cut down one, such as the bright asteroids' file the Minor
+ * Planet Center publishes each year, can be put in the directory or bundled
+ * as an asset.
+ *
+ * <p>The whole catalog, which may be tens of thousands of bodies, is
+ * propagated, and only the brightest bodies are turned into points.  Their
+ * brightness is encoded in their color, so the renderer drops the fainter
+ * ones when zoomed out and those out of view, as it does for stars.  The
+ * selection is remade when the model time has moved on far enough for the
+ * bodies' brightness to have changed.  Reading the files and selecting the
+ * bodies happen on the layer's own background thread, which only runs while
+ * the layer is shown, as does propagating the selected bodies.
+ *
+ * <p>The layer is hidden by default, as turning it on downloads data.
+ */
+public class MinorPlanetLayer extends AbstractSourceLayer {
+  private static final String TAG = MiscUtil.getTag(MinorPlanetLayer.class);
+  /** Names of the element files, as published by the Minor Planet Center. */
+  public static final String[] FILE_NAMES = {"MPCORB.DAT", "CometEls.txt"};
+  // Where each of FILE_NAMES is refreshed from, or null if it isn't.
+  private static final String[] FILE_URLS = {
+      null, "https://minorplanetcenter.net/iau/MPCORB/CometEls.txt"};
+  private static final long REFRESH_AGE_MS = TimeConstants.MILLISECONDS_PER_WEEK;
+  // Bodies fainter than this aren't shown at all.
+  private static final float MAGNITUDE_LIMIT = 14;
+  private static final int MAX_BODIES = 2000;
+  // Asteroids intrinsically fainter than this are dropped as the file is
+  // read.  Only those which come very close to the Earth could get brighter
+  // than the magnitude limit, and the full file has over a million of them.
+  private static final float ABSOLUTE_MAGNITUDE_LIMIT = 13;
+  private static final long RESELECT_MS = 5 * TimeConstants.MILLISECONDS_PER_DAY;
+
+  private final AstronomerModel model;
+  private final AssetManager assetManager;
+  private final File directory;
+  private volatile boolean initialized = false;
+  // Read by the worker; null until then or if it couldn't be read.
+  private volatile MinorPlanetCatalog catalog;
+  // The current selection, or null until the worker has made one.
+  private volatile MinorPlanetSource selected;
+
+  // Reads the catalog and makes the selections while the layer is shown and
+  // initialized, and is shut down otherwise.  Guarded by this.
+  private ExecutorService worker = null;
+  private boolean selectionQueued = false;
+
+  // Runs the selected bodies' propagations on the worker, or rejects them
+  // while the layer is hidden.
+  private final Executor propagationExecutor = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      synchronized (MinorPlanetLayer.this) {
+        if (worker == null) {
+          throw new RejectedExecutionException("Minor planet layer is hidden");
+        }
+        worker.execute(command);
+      }
+    }
+  };
+
+  public MinorPlanetLayer(AssetManager assetManager, Resources resources, AstronomerModel model,
+      File directory) {
+    super(resources, model);
+    this.model = model;
+    this.assetManager = assetManager;
+    this.directory = directory;
+  }
+
+  /**
+   * Sets the layer up without any bodies, which the worker then reads and
+   * selects in the background.
+   */
+  @Override
+  public void initialize() {
+    super.initialize();
+    initialized = true;
+    updateWorker();
+  }
+
+  @Override
+  protected void onVisibilityChanged(boolean visible) {
+    super.onVisibilityChanged(visible);
+    updateWorker();
+  }
+
+  /** Starts or stops the worker, so that it only runs while it's needed. */
+  private synchronized void updateWorker() {
+    boolean needed = initialized && isVisible();
+    if (needed && worker == null) {
+      worker = Executors.newSingleThreadExecutor();
+      worker.execute(new Runnable() {
+        @Override
+        public void run() {
+          load();
+        }
+      });
+    } else if (!needed && worker != null) {
+      // Interrupts any propagation in progress, which will be redone when
+      // the layer is shown again.
+      worker.shutdownNow();
+      worker = null;
+      selectionQueued = false;
+      MinorPlanetSource source = selected;
+      if (source != null) {
+        source.cancel();
+      }
+    }
+  }
+
+  /**
+   * Reads the catalog, first downloading the files again if they're out of
+   * date, and selects the bodies to show if that hasn't been done yet.
+   */
+  private void load() {
+    boolean changed = refreshFiles();
+    if (changed || catalog == null) {
+      catalog = readCatalog(null);
+    }
+    MinorPlanetSource source = selected;
+    if (changed || source == null || isSelectionStale(source, model.getTimeMillis())) {
+      select();
+    }
+  }
+
+  /**
+   * Downloads the element files again if they're missing or out of date.
+   * Returns true if any of them changed.
+   */
+  private boolean refreshFiles() {
+    boolean changed = false;
+    for (int i = 0; i < FILE_NAMES.length; i++) {
+      File file = new File(directory, FILE_NAMES[i]);
+      if (FILE_URLS[i] == null || !FileDownloader.isStale(file, REFRESH_AGE_MS)) {
+        continue;
+      }
+      changed |= FileDownloader.download(FILE_URLS[i], file,
+          new FileDownloader.Validator() {
+            @Override
+            public boolean isValid(File download) {
+              MinorPlanetCatalog downloaded = readCatalog(new File[] {download});
+              return downloaded != null && downloaded.size() > 0;
+            }
+          });
+    }
+    return changed;
+  }
+
+  /**
+   * Asks the worker to remake the selection for the current model time.
+   * Does nothing if the layer is hidden, or a selection is already queued.
+   */
+  private synchronized void reselect() {
+    if (worker == null || selectionQueued) {
+      return;
+    }
+    selectionQueued = true;
+    worker.execute(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (MinorPlanetLayer.this) {
+          selectionQueued = false;
+        }
+        select();
+      }
+    });
+  }
+
+  private static boolean isSelectionStale(MinorPlanetSource source, long timeMs) {
+    return Math.abs(timeMs - source.selectedTimeMs) > RESELECT_MS;
+  }
+
+  /** Selects the brightest bodies for the model time, and shows them. */
+  private void select() {
+    MinorPlanetCatalog catalog = this.catalog;
+    if (catalog == null || catalog.size() == 0) {
+      return;
+    }
+    long timeMs = model.getTimeMillis();
+    float[] directions = new float[3 * catalog.size()];
+    float[] magnitudes = new float[catalog.size()];
+    try {
+      catalog.propagate(timeMs, null, directions, magnitudes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    int[] selection = MinorPlanetCatalog.selectBrightest(
+        magnitudes, catalog.size(), MAGNITUDE_LIMIT, MAX_BODIES);
+    Log.d(TAG, "Showing " + selection.length + " of " + catalog.size() + " minor planets");
+    selected = new MinorPlanetSource(this, catalog, selection, directions, magnitudes, timeMs);
+    super.initialize();
+  }
+
+  @Override
+  protected void initializeAstroSources(ArrayList<AstronomicalSource> sources) {
+    MinorPlanetSource source = selected;
+    if (source != null && source.coords.length > 0) {
+      sources.add(source);
+    }
+  }
+
+  /**
+   * Reads the given element files, or if files is null, those in the
+   * directory or the assets.
+   */
+  private MinorPlanetCatalog readCatalog(File[] files) {
+    ArrayList<InputStream> streams = new ArrayList<InputStream>();
+    try {
+      if (files != null) {
+        for (File file : files) {
+          streams.add(new FileInputStream(file));
+        }
+      } else {
+        for (String name : FILE_NAMES) {
+          File file = new File(directory, name);
+          try {
+            streams.add(file.exists() ? new FileInputStream(file)
+                : assetManager.open(name, AssetManager.ACCESS_STREAMING));
+          } catch (FileNotFoundException e) {
+            Log.d(TAG, "No " + name + " in " + directory + " or the assets");
+          }
+        }
+      }
+      // The files end with newlines, so they can simply be read one after
+      // the other.
+      InputStream in = new SequenceInputStream(Collections.enumeration(streams));
+      return MinorPlanetCatalog.read(
+          new BufferedReader(new InputStreamReader(in)), ABSOLUTE_MAGNITUDE_LIMIT);
+    } catch (IOException e) {
+      Log.e(TAG, "Error reading minor planet elements", e);
+      return null;
+    } finally {
+      for (InputStream stream : streams) {
+        Closeables.closeSilently(stream);
+      }
+    }
+  }
+
+  // Each body is found at its own position, so the bodies' names are indexed
+  // here rather than by AbstractSourceLayer, which has one position per
+  // source.
+  @Override
+  public List<SearchResult> searchByObjectName(String name) {
+    MinorPlanetSource source = selected;
+    GeocentricCoordinates coords = source == null ? null
+        : source.searchIndex.get(name.toLowerCase());
+    if (coords == null) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(new SearchResult(name, coords));
+  }
+
+  @Override
+  public Set<String> getObjectNamesMatchingPrefix(String prefix) {
+    MinorPlanetSource source = selected;
+    if (source == null) {
+      return Collections.emptySet();
+    }
+    return source.prefixStore.queryByPrefix(prefix);
+  }
+
+  @Override
+  public int getLayerId() {
+    return -107;
+  }
+
+  @Override
+  public String getPreferenceId() {
+    return "source_provider.12";
+  }
+
+  @Override
+  protected int getLayerNameId() {
+    return R.string.show_minor_planets_pref;
+  }
+
+  @Override
+  public boolean isVisibleByDefault() {
+    return false;
+  }
+
+  /** AstronomicalSource for the selected bodies. */
+  private static class MinorPlanetSource extends AbstractAstronomicalSource {
+    private static final long UPDATE_FREQ_MS = TimeConstants.MILLISECONDS_PER_HOUR;
+    private static final int ASTEROID_COLOR = Color.rgb(0xFF, 0xE0, 0xC0);
+    private static final int COMET_COLOR = Color.rgb(0xC0, 0xFF, 0xFF);
+    // Only this many of the brightest are labelled.
+    private static final int MAX_LABELS = 20;
+
+    private final MinorPlanetLayer layer;
+    private final MinorPlanetCatalog catalog;
+    private final int[] selection;
+    private final GeocentricCoordinates[] coords;
+    // Only used by the propagations, one at a time.
+    private final float[] magnitudes;
+    private final ArrayList<PointSource> pointSources = new ArrayList<PointSource>();
+    private final ArrayList<TextSource> textSources = new ArrayList<TextSource>();
+    // The bodies' positions by lower case name, and their names' prefixes.
+    // Not changed once constructed.
+    private final HashMap<String, GeocentricCoordinates> searchIndex =
+        new HashMap<String, GeocentricCoordinates>();
+    private final PrefixStore prefixStore = new PrefixStore();
+    private final long selectedTimeMs;
+
+    // The positions most recently propagated and the model time they're for.
+    // Guarded by this.
+    private float[] ready;
+    private long readyTimeMs;
+    // Positions being propagated, or free for the next propagation.
+    private float[] spare;
+    private long requestedTimeMs;
+    private long appliedTimeMs;
+    private boolean inFlight;
+
+    MinorPlanetSource(MinorPlanetLayer layer, MinorPlanetCatalog catalog, int[] selection,
+        float[] allDirections, float[] allMagnitudes, long timeMs) {
+      this.layer = layer;
+      this.catalog = catalog;
+      this.selection = selection;
+      this.selectedTimeMs = timeMs;
+      this.readyTimeMs = timeMs;
+      this.requestedTimeMs = timeMs;
+      this.appliedTimeMs = timeMs;
+      coords = new GeocentricCoordinates[selection.length];
+      ready = new float[3 * selection.length];
+      spare = new float[3 * selection.length];
+      magnitudes = new float[selection.length];
+
+      for (int j = 0; j < selection.length; j++) {
+        int i = selection[j];
+        coords[j] = new GeocentricCoordinates(
+            allDirections[3 * i], allDirections[3 * i + 1], allDirections[3 * i + 2]);
+        int baseColor = catalog.isComet(i) ? COMET_COLOR : ASTEROID_COLOR;
+        // The brightest minor planets are around magnitude 6, so their range
+        // is squeezed into the 0 to 5 the renderer uses for stars.
+        float shade = Math.max(0, 5 * (allMagnitudes[i] - 6) / (MAGNITUDE_LIMIT - 6));
+        pointSources.add(new PointSourceImpl(coords[j],
+            StarAttributeCalculator.getColor(shade, baseColor), 2));
+        String name = catalog.getName(i);
+        searchIndex.put(name.toLowerCase(), coords[j]);
+        prefixStore.add(name.toLowerCase());
+        if (j < MAX_LABELS) {
+          textSources.add(new TextSourceImpl(coords[j], name, baseColor));
+        }
+      }
+    }
+
+    // Names are indexed by the layer, each at its body's position.
+    @Override
+    public List<String> getNames() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public GeocentricCoordinates getSearchLocation() {
+      return coords[0];
+    }
+
+    @Override
+    public Sources initialize() {
+      return this;
+    }
+
+    @Override
+    public synchronized EnumSet<UpdateType> update() {
+      EnumSet<UpdateType> updateTypes = EnumSet.noneOf(UpdateType.class);
+      if (appliedTimeMs != readyTimeMs) {
+        float[] directions = ready;
+        for (int j = 0; j < coords.length; j++) {
+          coords[j].assign(directions[3 * j], directions[3 * j + 1], directions[3 * j + 2]);
+        }
+        appliedTimeMs = readyTimeMs;
+        updateTypes.add(UpdateType.UpdatePositions);
+      }
+      long modelTimeMs = layer.model.getTimeMillis();
+      if (inFlight || Math.abs(modelTimeMs - requestedTimeMs) < UPDATE_FREQ_MS) {
+        return updateTypes;
+      }
+      if (isSelectionStale(this, modelTimeMs)) {
+        // Which bodies are brightest has changed; this source will be replaced.
+        layer.reselect();
+      }
+      inFlight = true;
+      requestedTimeMs = modelTimeMs;
+      final long timeMs = modelTimeMs;
+      final float[] directions = spare;
+      try {
+        layer.propagationExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              catalog.propagate(timeMs, selection, directions, magnitudes);
+            } catch (InterruptedException e) {
+              // The layer is being hidden, and has cancelled this.
+              Thread.currentThread().interrupt();
+              return;
+            }
+            finish(timeMs, directions);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The layer is being hidden; try again when it's shown.
+        inFlight = false;
+      }
+      return updateTypes;
+    }
+
+    private synchronized void finish(long timeMs, float[] directions) {
+      if (directions != spare) {
+        // Cancelled, but finished anyway.
+        return;
+      }
+      spare = ready;
+      ready = directions;
+      readyTimeMs = timeMs;
+      inFlight = false;
+    }
+
+    /**
+     * Forgets any propagation in progress, which is redone on the next
+     * update.  Called as the worker is shut down.
+     */
+    synchronized void cancel() {
+      if (inFlight) {
+        // The cancelled propagation may still be writing to the spare.
+        spare = new float[spare.length];
+        requestedTimeMs = appliedTimeMs;
+        inFlight = false;
+      }
+    }
+
+    @Override
+    public synchronized long getNextUpdateTimeMillis() {
+      return requestedTimeMs + UPDATE_FREQ_MS;
+    }
+
+    @Override
+    public synchronized long getPreviousUpdateTimeMillis() {
+      return requestedTimeMs - UPDATE_FREQ_MS;
+    }
+
+    @Override
+    public List<? extends TextSource> getLabels() {
+      return textSources;
+    }
+
+    @Override
+    public List<? extends PointSource> getPoints() {
+      return pointSources;
+    }
+  }
+}
@@ -15,20 +15,127 @@
 package com.google.android.stardroid.layers;
 
 import com.google.android.stardroid.R;
+import com.google.android.stardroid.base.Closeables;
+import com.google.android.stardroid.provider.ephemeris.ConjunctionFinder;
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
+import com.google.android.stardroid.source.AstronomicalSource;
+import com.google.android.stardroid.source.proto.SourceProto.AstronomicalSourceProto;
+import com.google.android.stardroid.source.proto.SourceProto.PointElementProto;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.StarAttributeCalculator;
 
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An implementation of the {@link AbstractFileBasedLayer} for displaying stars
  * in the Renderer.
  *
+ * <p>The stars are loaded in brightness tiers, brightest first, so that the
+ * familiar stars are on screen after reading only a couple of hundred
+ * objects.  This relies on stars.binary being sorted by brightness, as the
+ * catalog has always been; a star out of order still loads, but only with
+ * the tier being read when it turns up.
+ *
+ * <p>If the APK includes a tiled catalog of fainter stars, those are paged in
+ * as the user zooms in (see {@link TiledStarCatalog}).
+ *
  * @author John Taylor
  * @author Brent Bryan
  */
 public class NewStarsLayer extends AbstractFileBasedLayer {
+  private static final String TAG = MiscUtil.getTag(NewStarsLayer.class);
+  // Optional.  Must be stored uncompressed so that it can be memory mapped.
+  private static final String TILED_CATALOG_FILE = "stars_deep.tiles";
+
+  // Upper magnitude limits of all but the faintest tier.  The catalog goes
+  // down to about magnitude 5.
+  private static final float[] TIER_MAGNITUDE_LIMITS = {3.0f, 4.0f};
+
+  private final AssetManager assetManager;
+
   public NewStarsLayer(AssetManager assetManager, Resources resources) {
     super(assetManager, resources, "stars.binary");
+    this.assetManager = assetManager;
+  }
+
+  @Override
+  public void initialize() {
+    super.initialize();
+    TiledStarCatalog catalog = openTiledCatalog();
+    if (catalog != null) {
+      setTiledStarCatalog(catalog);
+    }
+  }
+
+  private TiledStarCatalog openTiledCatalog() {
+    AssetFileDescriptor descriptor = null;
+    FileInputStream in = null;
+    try {
+      descriptor = assetManager.openFd(TILED_CATALOG_FILE);
+      in = descriptor.createInputStream();
+      // The mapping stays valid after the file is closed.
+      return TiledStarCatalog.map(in.getChannel(), descriptor.getStartOffset(),
+                                  descriptor.getLength());
+    } catch (IOException e) {
+      Log.d(TAG, "No tiled star catalog: " + e.getMessage());
+      return null;
+    } finally {
+      Closeables.closeSilently(in);
+      if (descriptor != null) {
+        try {
+          descriptor.close();
+        } catch (IOException e) {
+          Log.w(TAG, "Unable to close " + TILED_CATALOG_FILE);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the named stars loaded so far, for finding the Moon and planets'
+   * approaches to them with a {@link ConjunctionFinder}.
+   */
+  public List<ConjunctionFinder.Star> getNamedStars() {
+    List<AstronomicalSource> sources = getAstroSources();
+    List<ConjunctionFinder.Star> stars = new ArrayList<ConjunctionFinder.Star>(sources.size());
+    for (AstronomicalSource source : sources) {
+      List<String> names = source.getNames();
+      if (!names.isEmpty()) {
+        RaDec raDec = RaDec.getInstance(source.getSearchLocation());
+        stars.add(new ConjunctionFinder.Star(names.get(0), raDec.ra, raDec.dec));
+      }
+    }
+    return stars;
+  }
+
+  @Override
+  protected int getTier(AstronomicalSourceProto proto) {
+    // The catalog doesn't store magnitudes, but they can be recovered from
+    // the stars' colors.
+    float magnitude = Float.POSITIVE_INFINITY;
+    for (PointElementProto point : proto.getPointList()) {
+      magnitude = Math.min(magnitude, StarAttributeCalculator.getMagnitude(point.getColor()));
+    }
+    for (int i = 0; i < TIER_MAGNITUDE_LIMITS.length; i++) {
+      if (magnitude < TIER_MAGNITUDE_LIMITS[i]) {
+        return i;
+      }
+    }
+    return TIER_MAGNITUDE_LIMITS.length;
+  }
+
+  @Override
+  public int getInitializationPriority() {
+    return HIGH_PRIORITY;
   }
 
   @Override
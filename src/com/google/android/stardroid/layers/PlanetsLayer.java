@@ -16,8 +16,10 @@ package com.google.android.stardroid.layers;
 
 import com.google.android.stardroid.R;
 import com.google.android.stardroid.control.AstronomerModel;
+import com.google.android.stardroid.provider.ephemeris.EphemerisCache;
 import com.google.android.stardroid.provider.ephemeris.Planet;
 import com.google.android.stardroid.provider.ephemeris.PlanetSource;
+import com.google.android.stardroid.provider.ephemeris.PositionPipeline;
 import com.google.android.stardroid.source.AstronomicalSource;
 
 import android.content.SharedPreferences;
@@ -27,7 +29,10 @@ import java.util.ArrayList;
 
 /**
  * An implementation of the {@link Layer} interface for displaying planets in
- * the Renderer.
+ * the Renderer.  The planets read their positions from a {@link PositionPipeline}
+ * computing them ahead of time travel, or from an {@link EphemerisCache}
+ * shared by the layer, or, for times neither covers yet, from the same
+ * {@link com.google.android.stardroid.provider.ephemeris.EphemerisFrame}.
  *
  * @author John Taylor
  * @author Brent Bryan
@@ -35,9 +40,11 @@ import java.util.ArrayList;
 public class PlanetsLayer extends AbstractSourceLayer {
   private final SharedPreferences preferences;
   private final AstronomerModel model;
+  private final EphemerisCache ephemeris = new EphemerisCache();
+  private final PositionPipeline pipeline = new PositionPipeline(ephemeris);
 
   public PlanetsLayer(AstronomerModel model, Resources resources, SharedPreferences preferences) {
-    super(resources, true);
+    super(resources, model);
     this.preferences = preferences;
     this.model = model;
   }
@@ -45,7 +52,8 @@ public class PlanetsLayer extends AbstractSourceLayer {
   @Override
   protected void initializeAstroSources(ArrayList<AstronomicalSource> sources) {
     for (Planet planet : Planet.values()) {
-      sources.add(new PlanetSource(planet, getResources(), model, preferences));
+      sources.add(new PlanetSource(planet, getResources(), model, ephemeris, pipeline,
+          preferences));
     }
   }
 
@@ -55,6 +63,11 @@ public class PlanetsLayer extends AbstractSourceLayer {
     return "source_provider.3";
   }
 
+  @Override
+  public int getInitializationPriority() {
+    return HIGH_PRIORITY;
+  }
+
   @Override
   public int getLayerId() {
     // TODO(brent): refactor these to a common location.
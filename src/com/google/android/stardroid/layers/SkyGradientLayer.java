@@ -58,6 +58,11 @@ public class SkyGradientLayer implements Layer {
   @Override
   public void initialize() {}
 
+  @Override
+  public int getInitializationPriority() {
+    return NORMAL_PRIORITY;
+  }
+
   @Override
   public void registerWithRenderer(RendererController controller) {
     this.renderer = controller;
@@ -105,6 +110,10 @@ public class SkyGradientLayer implements Layer {
     return "source_provider." + getLayerNameId();
   }
 
+  public boolean isVisibleByDefault() {
+    return true;
+  }
+
   public String getLayerName() {
     return resources.getString(getLayerNameId());
   }
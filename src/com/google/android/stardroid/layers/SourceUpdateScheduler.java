@@ -0,0 +1,168 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.layers;
+
+import com.google.android.stardroid.renderer.RendererObjectManager.UpdateType;
+import com.google.android.stardroid.source.AstronomicalSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Decides which of a layer's {@link AstronomicalSource}s are due an update,
+ * so that a layer only calls {@link AstronomicalSource#update} on those
+ * rather than polling every source every frame.
+ *
+ * <p>Each source is kept in two heaps: one ordered by the model time at
+ * which it next needs updating as time runs forwards, the other by the time
+ * at which it needs updating as time runs backwards. A frame in which
+ * nothing is due costs two peeks, whichever way the user time travels.
+ * Sources are re-queued with a new generation after each update; stale heap
+ * entries are dropped as they reach the top, or swept out when they start
+ * to outnumber the live ones.
+ *
+ * <p>Not thread safe; callers must serialize access.
+ */
+class SourceUpdateScheduler {
+  private static final class Entry {
+    final AstronomicalSource source;
+    int generation;
+
+    Entry(AstronomicalSource source) {
+      this.source = source;
+    }
+  }
+
+  private static final class Deadline {
+    final Entry entry;
+    final long timeMs;
+    final int generation;
+
+    Deadline(Entry entry, long timeMs) {
+      this.entry = entry;
+      this.timeMs = timeMs;
+      this.generation = entry.generation;
+    }
+
+    boolean isStale() {
+      return generation != entry.generation;
+    }
+  }
+
+  private static final Comparator<Deadline> EARLIEST_FIRST = new Comparator<Deadline>() {
+    @Override
+    public int compare(Deadline a, Deadline b) {
+      return a.timeMs < b.timeMs ? -1 : (a.timeMs == b.timeMs ? 0 : 1);
+    }
+  };
+
+  private static final Comparator<Deadline> LATEST_FIRST = new Comparator<Deadline>() {
+    @Override
+    public int compare(Deadline a, Deadline b) {
+      return EARLIEST_FIRST.compare(b, a);
+    }
+  };
+
+  private final PriorityQueue<Deadline> forward =
+      new PriorityQueue<Deadline>(16, EARLIEST_FIRST);
+  private final PriorityQueue<Deadline> backward =
+      new PriorityQueue<Deadline>(16, LATEST_FIRST);
+  // Sources updated this pass, re-queued once the pass is over so that a
+  // source which is still due isn't updated twice in one frame.
+  private final ArrayList<Entry> updated = new ArrayList<Entry>();
+  private List<AstronomicalSource> sources;
+
+  /** Returns the list of sources currently being scheduled, or null if none. */
+  List<AstronomicalSource> getSources() {
+    return sources;
+  }
+
+  /**
+   * Schedules the given sources, replacing any previously scheduled. The
+   * sources should have just been updated, as they are scheduled from the
+   * times they report.
+   */
+  void reset(List<AstronomicalSource> newSources) {
+    forward.clear();
+    backward.clear();
+    sources = newSources;
+    for (AstronomicalSource source : newSources) {
+      schedule(new Entry(source));
+    }
+  }
+
+  /**
+   * Updates the sources which are due at the given model time, adding the
+   * changes they require to updateTypes.
+   */
+  void updateDueSources(long nowMs, EnumSet<UpdateType> updateTypes) {
+    if (sources == null) {
+      return;
+    }
+    while (!forward.isEmpty() && forward.peek().timeMs <= nowMs) {
+      update(forward.poll(), updateTypes);
+    }
+    while (!backward.isEmpty() && backward.peek().timeMs >= nowMs) {
+      update(backward.poll(), updateTypes);
+    }
+    for (int i = 0; i < updated.size(); i++) {
+      schedule(updated.get(i));
+    }
+    updated.clear();
+
+    // While time runs one way, the deadlines superseded in the other heap
+    // never reach the top, so sweep them out once they pile up.
+    if (forward.size() + backward.size() > 4 * sources.size() + 16) {
+      removeStale(forward);
+      removeStale(backward);
+    }
+  }
+
+  private static void removeStale(PriorityQueue<Deadline> queue) {
+    Iterator<Deadline> it = queue.iterator();
+    while (it.hasNext()) {
+      if (it.next().isStale()) {
+        it.remove();
+      }
+    }
+  }
+
+  private void update(Deadline deadline, EnumSet<UpdateType> updateTypes) {
+    if (deadline.isStale()) {
+      return;
+    }
+    Entry entry = deadline.entry;
+    // Invalidates the entry's deadline in the other heap.
+    entry.generation++;
+    updateTypes.addAll(entry.source.update());
+    updated.add(entry);
+  }
+
+  private void schedule(Entry entry) {
+    long next = entry.source.getNextUpdateTimeMillis();
+    if (next != AstronomicalSource.NEVER) {
+      forward.add(new Deadline(entry, next));
+    }
+    long previous = entry.source.getPreviousUpdateTimeMillis();
+    if (previous != Long.MIN_VALUE) {
+      backward.add(new Deadline(entry, previous));
+    }
+  }
+}
@@ -46,7 +46,7 @@ public class StarOfBethlehemLayer extends AbstractSourceLayer {
   private final AstronomerModel model;
 
   public StarOfBethlehemLayer(AstronomerModel model, Resources resources) {
-    super(resources, true);
+    super(resources, model);
     this.model = model;
   }
 
@@ -138,6 +138,16 @@ public class StarOfBethlehemLayer extends AbstractSourceLayer {
       return updateTypes;
     }
 
+    @Override
+    public long getNextUpdateTimeMillis() {
+      return lastUpdateTimeMs + UPDATE_FREQ_MS + 1;
+    }
+
+    @Override
+    public long getPreviousUpdateTimeMillis() {
+      return lastUpdateTimeMs - UPDATE_FREQ_MS - 1;
+    }
+
     @Override
     public List<? extends ImageSource> getImages() {
       return imageSources;
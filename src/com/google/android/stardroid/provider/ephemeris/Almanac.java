@@ -0,0 +1,402 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.MathUtil;
+import com.google.android.stardroid.util.TimeFrame;
+import com.google.android.stardroid.util.TimeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rise, set and transit times of the solar system bodies, a UT day at a time.
+ *
+ * <p>A day is computed in one pass: the positions of every body are taken from
+ * one {@link EphemerisFrame} per hour, each body's altitude and hour angle are
+ * scanned for crossings, and each crossing is refined against positions
+ * interpolated between the two hours either side of it.  Scanning the altitude
+ * rather than solving for the hour angle means bodies which stay up or down all
+ * day, as they do at high latitudes, are simply reported as such.
+ *
+ * <p>Days are cached by UT day and by location, rounded to a cell a tenth of a
+ * degree across; times are those at the center of the cell, which is at most
+ * about 15 seconds out.  Fixed objects such as stars don't need a scan, and
+ * {@link Day} computes their times directly.
+ *
+ * <p>Hour angles are measured from the equinox of date, so positions are
+ * precessed from J2000 to the middle of the day first; precession moves them
+ * by well under an arcsecond in a day.
+ */
+public class Almanac {
+  /** Returned for an event which doesn't happen during the day. */
+  public static final long NONE = Long.MIN_VALUE;
+
+  private static final Planet[] PLANETS = Planet.values();
+  private static final long STEP_MS = TimeConstants.MILLISECONDS_PER_HOUR;
+  private static final int STEPS = 24;
+  private static final float CELL_DEGREES = 0.1f;
+  private static final int CACHE_SIZE = 32;
+  // Stop refining a rise or set once it's known to within this.
+  private static final float TOLERANCE = 1.0f / 3600;  // Of a step.
+  private static final int MAX_ITERATIONS = 20;
+  // The most rises, or sets, of one body recorded in a day.  Only a body
+  // grazing the horizon crosses it more than twice in the same direction.
+  private static final int MAX_CROSSINGS = 4;
+  // Degrees of hour angle per millisecond of time.
+  private static final double SIDEREAL_RATE = 360.98564736629 / TimeConstants.MILLISECONDS_PER_DAY;
+
+  private final LinkedHashMap<Long, Day> days = new LinkedHashMap<Long, Day>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Day> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /** The events of one UT day at one location. */
+  public static final class Day {
+    private final long startMillis;
+    private final float latitude;
+    private final float longitude;
+    // Greenwich mean sidereal time at the start of the day, in degrees.
+    private final double startSiderealTime;
+    // Precesses celestial coordinates to those of the middle of the day.
+    private final TimeFrame frame;
+    // Indexed by Planet.ordinal().  Rises and sets have MAX_CROSSINGS slots
+    // per body, in time order, with unused ones NONE.
+    private final long[] riseTimes = new long[PLANETS.length * MAX_CROSSINGS];
+    private final long[] setTimes = new long[PLANETS.length * MAX_CROSSINGS];
+    private final long[] transitTimes = new long[PLANETS.length];
+    private final boolean[] alwaysUp = new boolean[PLANETS.length];
+    private final boolean[] alwaysDown = new boolean[PLANETS.length];
+
+    private Day(long startMillis, float latitude, float longitude) {
+      this.startMillis = startMillis;
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.startSiderealTime = TimeUtil.greenwichMeanSiderealTime(startMillis);
+      this.frame = TimeFrame.forTime(startMillis + TimeConstants.MILLISECONDS_PER_DAY / 2);
+      Arrays.fill(riseTimes, NONE);
+      Arrays.fill(setTimes, NONE);
+      Arrays.fill(transitTimes, NONE);
+    }
+
+    /** Returns the start of the day, in milliseconds since the Unix epoch. */
+    public long getStartMillis() {
+      return startMillis;
+    }
+
+    /** Returns when the body first rises during the day, or {@link #NONE}. */
+    public long getRiseTime(Planet planet) {
+      return riseTimes[planet.ordinal() * MAX_CROSSINGS];
+    }
+
+    /** Returns when the body first sets during the day, or {@link #NONE}. */
+    public long getSetTime(Planet planet) {
+      return setTimes[planet.ordinal() * MAX_CROSSINGS];
+    }
+
+    /**
+     * Returns when the body first rises during the day after the given time,
+     * or {@link #NONE}.  A body can rise twice in a day, as one which rises
+     * just after the day starts rises again a few minutes before it ends.
+     */
+    public long getRiseTimeAfter(Planet planet, long timeMillis) {
+      return getCrossingAfter(riseTimes, planet, timeMillis);
+    }
+
+    /**
+     * Returns when the body first sets during the day after the given time,
+     * or {@link #NONE}.
+     */
+    public long getSetTimeAfter(Planet planet, long timeMillis) {
+      return getCrossingAfter(setTimes, planet, timeMillis);
+    }
+
+    private static long getCrossingAfter(long[] times, Planet planet, long timeMillis) {
+      int start = planet.ordinal() * MAX_CROSSINGS;
+      for (int i = start; i < start + MAX_CROSSINGS && times[i] != NONE; i++) {
+        if (times[i] > timeMillis) {
+          return times[i];
+        }
+      }
+      return NONE;
+    }
+
+    /** Returns when the body first crosses the meridian, or {@link #NONE}. */
+    public long getTransitTime(Planet planet) {
+      return transitTimes[planet.ordinal()];
+    }
+
+    /** Returns true if the body is above the horizon all day. */
+    public boolean isAlwaysUp(Planet planet) {
+      return alwaysUp[planet.ordinal()];
+    }
+
+    /** Returns true if the body is below the horizon all day. */
+    public boolean isAlwaysDown(Planet planet) {
+      return alwaysDown[planet.ordinal()];
+    }
+
+    /** Returns when a fixed object first crosses the meridian. */
+    public long getTransitTime(RaDec raDec) {
+      return transitTimeOfDate(frame.toDate(raDec));
+    }
+
+    /** Returns when a fixed object first rises during the day, or {@link #NONE}. */
+    public long getRiseTime(RaDec raDec) {
+      return getHorizonCrossing(frame.toDate(raDec), -1);
+    }
+
+    /** Returns when a fixed object first sets during the day, or {@link #NONE}. */
+    public long getSetTime(RaDec raDec) {
+      return getHorizonCrossing(frame.toDate(raDec), 1);
+    }
+
+    private long transitTimeOfDate(RaDec raDec) {
+      // A sidereal day is shorter than a day, so there is always one.
+      double hourAngle = TimeUtil.normalizeAngle(startSiderealTime + longitude - raDec.ra);
+      return startMillis + (long) ((360.0 - hourAngle) % 360.0 / SIDEREAL_RATE);
+    }
+
+    private long getHorizonCrossing(RaDec raDec, int sign) {
+      float cosHourAngle = cosHourAngle(0, latitude, raDec.dec);
+      if (cosHourAngle < -1 || cosHourAngle > 1) {
+        return NONE;  // Never sets or never rises.
+      }
+      long offset = (long) (sign * MathUtil.acos(cosHourAngle) * Geometry.RADIANS_TO_DEGREES
+          / SIDEREAL_RATE);
+      long time = transitTimeOfDate(raDec) + offset;
+      long siderealDay = (long) (360.0 / SIDEREAL_RATE);
+      if (time >= startMillis + siderealDay) {
+        time -= siderealDay;
+      } else if (time < startMillis) {
+        time += siderealDay;
+      }
+      return time < startMillis + TimeConstants.MILLISECONDS_PER_DAY ? time : NONE;
+    }
+
+    // Hour angle of the given right ascension at the given fraction of a step
+    // after the start of the day, in degrees in [-180, 180).
+    private float hourAngle(float ra, float steps) {
+      double gmst = startSiderealTime + SIDEREAL_RATE * steps * STEP_MS;
+      return (float) (TimeUtil.normalizeAngle(gmst + longitude - ra + 180.0) - 180.0);
+    }
+
+    // The sine of the altitude, which is all the scan needs to compare
+    // altitudes and is much cheaper than the altitude itself.
+    private float sinAltitude(float ra, float dec, float steps) {
+      float hourAngle = hourAngle(ra, steps) * Geometry.DEGREES_TO_RADIANS;
+      float lat = latitude * Geometry.DEGREES_TO_RADIANS;
+      float decRadians = dec * Geometry.DEGREES_TO_RADIANS;
+      return MathUtil.sin(lat) * MathUtil.sin(decRadians)
+          + MathUtil.cos(lat) * MathUtil.cos(decRadians) * MathUtil.cos(hourAngle);
+    }
+  }
+
+  /**
+   * Returns the events of the UT day containing the given time, at the given
+   * location.
+   */
+  public synchronized Day getDay(LatLong location, long timeMillis) {
+    long day = timeMillis / TimeConstants.MILLISECONDS_PER_DAY;
+    if (timeMillis % TimeConstants.MILLISECONDS_PER_DAY < 0) {
+      day--;
+    }
+    long latitudeCell = Math.round(location.latitude / CELL_DEGREES);
+    long longitudeCell = Math.round(location.longitude / CELL_DEGREES);
+    // The day goes in the low bits, which vary most, so that keys hash well.
+    long cell = (latitudeCell + 900) * 3601 + longitudeCell + 1800;
+    Long key = (cell << 40) | (day & ((1L << 40) - 1));
+    Day result = days.get(key);
+    if (result == null) {
+      result = computeDay(day * TimeConstants.MILLISECONDS_PER_DAY,
+          latitudeCell * CELL_DEGREES, longitudeCell * CELL_DEGREES);
+      days.put(key, result);
+    }
+    return result;
+  }
+
+  /** Returns the events of count consecutive UT days, starting with the given time's. */
+  public List<Day> getDays(LatLong location, long startMillis, int count) {
+    List<Day> result = new ArrayList<Day>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(getDay(location, startMillis + i * TimeConstants.MILLISECONDS_PER_DAY));
+    }
+    return result;
+  }
+
+  private static Day computeDay(long startMillis, float latitude, float longitude) {
+    Day day = new Day(startMillis, latitude, longitude);
+    int n = PLANETS.length;
+    float[] ra = new float[(STEPS + 1) * n];
+    float[] dec = new float[(STEPS + 1) * n];
+    for (int k = 0; k <= STEPS; k++) {
+      EphemerisFrame frame = new EphemerisFrame(startMillis + k * STEP_MS);
+      for (Planet planet : PLANETS) {
+        RaDec raDec = day.frame.toDate(new RaDec(frame.getRa(planet), frame.getDec(planet)));
+        ra[k * n + planet.ordinal()] = raDec.ra;
+        dec[k * n + planet.ordinal()] = raDec.dec;
+      }
+    }
+
+    for (Planet planet : PLANETS) {
+      int b = planet.ordinal();
+      // Allow for the size of the Sun and Moon, and for refraction.
+      float horizon = (planet == Planet.Sun || planet == Planet.Moon) ? -0.83f : 0.0f;
+      // Altitudes relative to the horizon are compared by their sines.
+      horizon = MathUtil.sin(horizon * Geometry.DEGREES_TO_RADIANS);
+      float previousAltitude = day.sinAltitude(ra[b], dec[b], 0) - horizon;
+      float previousHourAngle = day.hourAngle(ra[b], 0);
+      boolean everUp = previousAltitude > 0;
+      boolean everDown = !everUp;
+      for (int k = 1; k <= STEPS; k++) {
+        int i = k * n + b;
+        float altitude = day.sinAltitude(ra[i], dec[i], k) - horizon;
+        float hourAngle = day.hourAngle(ra[i], k);
+        everUp |= altitude > 0;
+        everDown |= altitude <= 0;
+
+        // Altitude peaks or bottoms out as the hour angle passes 0 or 180.  If
+        // that happens during this step, a body grazing the horizon may rise
+        // and set within it, so look either side of the extremum separately.
+        float extremum = -1;
+        if (previousHourAngle < 0 && hourAngle >= 0) {
+          extremum = -previousHourAngle / (hourAngle - previousHourAngle);
+          if (day.transitTimes[b] == NONE) {
+            day.transitTimes[b] = startMillis + (long) ((k - 1 + extremum) * STEP_MS);
+          }
+        } else if (previousHourAngle > 0 && hourAngle < 0) {
+          extremum = (180 - previousHourAngle) / (hourAngle + 360 - previousHourAngle);
+        }
+        Step step = new Step(day, ra[i - n], dec[i - n], ra[i], dec[i], k - 1, horizon);
+        if (extremum > 0 && extremum < 1) {
+          float extremeAltitude = step.altitude(extremum);
+          everUp |= extremeAltitude > 0;
+          everDown |= extremeAltitude <= 0;
+          step.findCrossing(b, 0, extremum, previousAltitude, extremeAltitude);
+          step.findCrossing(b, extremum, 1, extremeAltitude, altitude);
+        } else {
+          step.findCrossing(b, 0, 1, previousAltitude, altitude);
+        }
+        previousAltitude = altitude;
+        previousHourAngle = hourAngle;
+      }
+      day.alwaysUp[b] = !everDown;
+      day.alwaysDown[b] = !everUp;
+    }
+    return day;
+  }
+
+  /**
+   * One step of the scan for one body, with its position interpolated
+   * linearly across the step.
+   */
+  private static final class Step {
+    private final Day day;
+    private final float ra;
+    private final float raChange;
+    private final float dec;
+    private final float decChange;
+    private final int k;
+    private final float horizon;
+
+    Step(Day day, float ra0, float dec0, float ra1, float dec1, int k, float horizon) {
+      this.day = day;
+      this.ra = ra0;
+      // Right ascension may wrap between the steps.
+      float change = ra1 - ra0;
+      if (change > 180) {
+        change -= 360;
+      } else if (change < -180) {
+        change += 360;
+      }
+      this.raChange = change;
+      this.dec = dec0;
+      this.decChange = dec1 - dec0;
+      this.k = k;
+      this.horizon = horizon;
+    }
+
+    // Sine of the altitude, less that of the horizon, a fraction of the way
+    // through the step.
+    float altitude(float fraction) {
+      return day.sinAltitude(ra + fraction * raChange, dec + fraction * decChange, k + fraction)
+          - horizon;
+    }
+
+    /**
+     * Records a rise or set of body b if its altitude changes sign between the
+     * given fractions of the step, found by false position.
+     */
+    void findCrossing(int b, float lower, float upper, float fLower, float fUpper) {
+      if ((fLower > 0) == (fUpper > 0)) {
+        return;
+      }
+      long[] times = fUpper > 0 ? day.riseTimes : day.setTimes;
+      int slot = b * MAX_CROSSINGS;
+      while (times[slot] != NONE) {
+        if (++slot == (b + 1) * MAX_CROSSINGS) {
+          return;
+        }
+      }
+      float fraction = lower;
+      // Which end moved last: -1 for lower, 1 for upper.
+      int side = 0;
+      for (int i = 0; i < MAX_ITERATIONS && upper - lower > TOLERANCE; i++) {
+        fraction = (lower * fUpper - upper * fLower) / (fUpper - fLower);
+        float f = altitude(fraction);
+        if (f == 0) {
+          break;
+        }
+        // The Illinois modification: when the same end moves twice running,
+        // halve the other's value so that it moves too.
+        if ((f > 0) == (fLower > 0)) {
+          lower = fraction;
+          fLower = f;
+          if (side == -1) {
+            fUpper /= 2;
+          }
+          side = -1;
+        } else {
+          upper = fraction;
+          fUpper = f;
+          if (side == 1) {
+            fLower /= 2;
+          }
+          side = 1;
+        }
+      }
+      times[slot] = day.startMillis + (long) ((k + fraction) * STEP_MS);
+    }
+  }
+
+  // cos of the hour angle at which a body with the given declination is at
+  // the given altitude.  Outside [-1, 1] if it never reaches that altitude.
+  private static float cosHourAngle(float altitude, float latitude, float declination) {
+    float altRads = altitude * Geometry.DEGREES_TO_RADIANS;
+    float latRads = latitude * Geometry.DEGREES_TO_RADIANS;
+    float decRads = declination * Geometry.DEGREES_TO_RADIANS;
+    return (MathUtil.sin(altRads) - MathUtil.sin(latRads) * MathUtil.sin(decRads))
+        / (MathUtil.cos(latRads) * MathUtil.cos(decRads));
+  }
+}
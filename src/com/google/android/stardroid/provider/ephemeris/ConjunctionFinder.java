@@ -0,0 +1,427 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.MathUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds close approaches of the Moon and planets to each other and to stars,
+ * including occultations of stars and planets by the Moon.
+ *
+ * <p>The time range is split into chunks which are searched in parallel.  Each
+ * chunk steps through time an hour at a time with one {@link EphemerisFrame}
+ * per step, and looks for steps at which the distance between two bodies, or a
+ * body and a star, is at a minimum.  Only stars near each body are
+ * considered: the stars within the band of the ecliptic which the bodies move
+ * in are binned by ecliptic longitude, so each body looks at a few bins.  Each
+ * minimum is refined by fitting a parabola to the squared distances either
+ * side of it, which is exact for bodies moving in straight lines.
+ *
+ * <p>Positions are geocentric.  The Moon is close enough to shift by up to a
+ * degree depending on where it's seen from, so an occultation here may be a
+ * near miss in some places.
+ */
+public class ConjunctionFinder {
+  private static final Planet[] PLANETS = Planet.values();
+  private static final long STEP_MS = TimeConstants.MILLISECONDS_PER_HOUR;
+  private static final long CHUNK_MS = 30 * TimeConstants.MILLISECONDS_PER_DAY;
+  // Further than any body moves in a step.  The Moon moves about 0.55 degrees
+  // an hour.
+  private static final float MAX_STEP_MOTION = 0.75f;
+  // Approaches of the same pair this close together are one approach.  When
+  // a planet is stationary against the stars, rounding errors in its position
+  // can give the shallow minimum several dips.  Real repeat approaches, such
+  // as the three passes of a retrograde loop, are weeks apart.
+  private static final long MERGE_MS = 10 * TimeConstants.MILLISECONDS_PER_DAY;
+  // Half the width of the band of stars indexed.  Pluto strays furthest from
+  // the ecliptic, by about 17 degrees.
+  private static final float BAND_LATITUDE = 20;
+  // Degrees of ecliptic longitude per bin.
+  private static final int BINS = 360;
+  // The Moon's angular radius, in degrees.
+  private static final float MOON_RADIUS = 0.26f;
+  private static final float COS_OBLIQUITY = MathUtil.cos(HeliocentricCoordinates.OBLIQUITY);
+  private static final float SIN_OBLIQUITY = MathUtil.sin(HeliocentricCoordinates.OBLIQUITY);
+
+  private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "ConjunctionFinder-" + count.incrementAndGet());
+      // Don't compete with the UI thread.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      return thread;
+    }
+  };
+
+  /** A fixed object, such as a star, which the bodies may pass. */
+  public static final class Star {
+    private final String name;
+    private final float ra;
+    private final float dec;
+
+    /** Right ascension and declination are in degrees. */
+    public Star(String name, float ra, float dec) {
+      this.name = name;
+      this.ra = ra;
+      this.dec = dec;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  /**
+   * A close approach of a body to another body or to a star.  If one of the
+   * bodies is the Moon, it's the first.
+   */
+  public static final class Event implements Comparable<Event> {
+    private final Planet planet;
+    private final Planet otherPlanet;
+    private final Star star;
+    private final long timeMillis;
+    private final float separation;
+
+    Event(Planet planet, Planet otherPlanet, Star star, long timeMillis, float separation) {
+      this.planet = planet;
+      this.otherPlanet = otherPlanet;
+      this.star = star;
+      this.timeMillis = timeMillis;
+      this.separation = separation;
+    }
+
+    public Planet getPlanet() {
+      return planet;
+    }
+
+    /** Returns the other body, or null if this is an approach to a star. */
+    public Planet getOtherPlanet() {
+      return otherPlanet;
+    }
+
+    /** Returns the star, or null if this is an approach to another body. */
+    public Star getStar() {
+      return star;
+    }
+
+    public long getTimeMillis() {
+      return timeMillis;
+    }
+
+    /** Returns the separation at closest approach, in degrees. */
+    public float getSeparation() {
+      return separation;
+    }
+
+    /** Returns true if the Moon passes in front of the other object. */
+    public boolean isOccultation() {
+      return planet == Planet.Moon && separation < MOON_RADIUS;
+    }
+
+    boolean isSamePair(Event other) {
+      return planet == other.planet && otherPlanet == other.otherPlanet && star == other.star;
+    }
+
+    /** Closest first. */
+    @Override
+    public int compareTo(Event other) {
+      return Float.compare(separation, other.separation);
+    }
+
+    @Override
+    public String toString() {
+      return planet + " " + (star != null ? star.getName() : otherPlanet.toString()) + " "
+          + timeMillis + " " + separation;
+    }
+  }
+
+  private final List<Star> stars;
+  // Equatorial unit vectors of the stars, three floats per star.
+  private final float[] starPositions;
+  // The stars in the ecliptic band, by degree of ecliptic longitude.
+  private final int[][] bins = new int[BINS][];
+  private final int maxThreads;
+
+  public ConjunctionFinder(List<Star> stars) {
+    this(stars, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ConjunctionFinder(List<Star> stars, int maxThreads) {
+    this.stars = new ArrayList<Star>(stars);
+    this.maxThreads = Math.max(1, maxThreads);
+    starPositions = new float[3 * stars.size()];
+    int[] binSizes = new int[BINS];
+    int[] starBins = new int[stars.size()];
+    for (int i = 0; i < stars.size(); i++) {
+      Star star = stars.get(i);
+      setUnitVector(star.ra, star.dec, starPositions, 3 * i);
+      starBins[i] = -1;
+      if (Math.abs(eclipticLatitude(starPositions, 3 * i)) <= BAND_LATITUDE) {
+        starBins[i] = bin(eclipticLongitude(starPositions, 3 * i));
+        binSizes[starBins[i]]++;
+      }
+    }
+    for (int b = 0; b < BINS; b++) {
+      bins[b] = new int[binSizes[b]];
+      binSizes[b] = 0;
+    }
+    for (int i = 0; i < stars.size(); i++) {
+      if (starBins[i] >= 0) {
+        bins[starBins[i]][binSizes[starBins[i]]++] = i;
+      }
+    }
+  }
+
+  /**
+   * Returns the approaches closer than maxSeparation degrees between the
+   * given times, closest first.  Approaches to the Sun aren't included.
+   */
+  public List<Event> find(long startMillis, long endMillis, final float maxSeparation)
+      throws InterruptedException {
+    int chunks = (int) ((endMillis - startMillis + CHUNK_MS - 1) / CHUNK_MS);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(chunks, maxThreads)), THREAD_FACTORY);
+    try {
+      List<Future<List<Event>>> results = new ArrayList<Future<List<Event>>>(chunks);
+      for (long start = startMillis; start < endMillis; start += CHUNK_MS) {
+        final long chunkStart = start;
+        final long chunkEnd = Math.min(start + CHUNK_MS, endMillis);
+        results.add(executor.submit(new Callable<List<Event>>() {
+          @Override
+          public List<Event> call() {
+            return findInChunk(chunkStart, chunkEnd, maxSeparation);
+          }
+        }));
+      }
+      List<Event> events = new ArrayList<Event>();
+      for (Future<List<Event>> result : results) {
+        try {
+          events.addAll(result.get());
+        } catch (ExecutionException e) {
+          throw new RuntimeException(e.getCause());
+        }
+      }
+      events = merge(events);
+      Collections.sort(events);
+      return events;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Finds the approaches whose closest step falls in [chunkStart, chunkEnd).
+   * Positions are kept for the steps either side of the current one.
+   */
+  private List<Event> findInChunk(long chunkStart, long chunkEnd, float maxSeparation) {
+    List<Event> events = new ArrayList<Event>();
+    int n = PLANETS.length;
+    float[][] positions = new float[3][3 * n];
+    float[] longitudes = new float[n];
+    setPositions(new EphemerisFrame(chunkStart - STEP_MS), positions[0]);
+    setPositions(new EphemerisFrame(chunkStart), positions[1]);
+    float chord = 2 * MathUtil.sin(maxSeparation * Geometry.DEGREES_TO_RADIANS / 2);
+    float maxChordSquared = chord * chord;
+    // Stars further than this at a step can't come within maxSeparation
+    // during the steps either side.
+    float searchRadius = maxSeparation + MAX_STEP_MOTION;
+    float searchChord = 2 * MathUtil.sin(searchRadius * Geometry.DEGREES_TO_RADIANS / 2);
+    float searchChordSquared = searchChord * searchChord;
+
+    for (long time = chunkStart; time < chunkEnd; time += STEP_MS) {
+      float[] before = positions[0];
+      float[] now = positions[1];
+      float[] after = positions[2];
+      setPositions(new EphemerisFrame(time + STEP_MS), after);
+
+      for (Planet planet : PLANETS) {
+        if (planet == Planet.Sun) {
+          continue;
+        }
+        int a = 3 * planet.ordinal();
+        for (int b = planet.ordinal() + 1; b < n; b++) {
+          if (PLANETS[b] == Planet.Sun) {
+            continue;
+          }
+          float d0 = chordSquared(before, a, before, 3 * b);
+          float d1 = chordSquared(now, a, now, 3 * b);
+          float d2 = chordSquared(after, a, after, 3 * b);
+          if (d1 <= d0 && d1 < d2 && d1 < searchChordSquared) {
+            long closest = vertex(time, d0, d1, d2);
+            EphemerisFrame frame = new EphemerisFrame(closest);
+            float separation = separation(frame, planet, PLANETS[b]);
+            if (separation <= maxSeparation) {
+              // Name the Moon first: it's the one that passes the other.
+              if (PLANETS[b] == Planet.Moon) {
+                events.add(new Event(Planet.Moon, planet, null, closest, separation));
+              } else {
+                events.add(new Event(planet, PLANETS[b], null, closest, separation));
+              }
+            }
+          }
+        }
+
+        // Stars near the body now.
+        longitudes[planet.ordinal()] = eclipticLongitude(now, a);
+        float latitude = eclipticLatitude(now, a);
+        if (Math.abs(latitude) > BAND_LATITUDE + searchRadius) {
+          continue;
+        }
+        // A degree of longitude is narrower away from the ecliptic.
+        float width = searchRadius / MathUtil.cos(
+            Math.min(Math.abs(latitude) + searchRadius, 80) * Geometry.DEGREES_TO_RADIANS);
+        int firstBin = (int) Math.floor(longitudes[planet.ordinal()] - width);
+        int lastBin = (int) Math.floor(longitudes[planet.ordinal()] + width);
+        for (int bin = firstBin; bin <= lastBin; bin++) {
+          for (int s : bins[(bin % BINS + BINS) % BINS]) {
+            float d1 = chordSquared(now, a, starPositions, 3 * s);
+            if (d1 >= searchChordSquared) {
+              continue;
+            }
+            float d0 = chordSquared(before, a, starPositions, 3 * s);
+            float d2 = chordSquared(after, a, starPositions, 3 * s);
+            if (d1 <= d0 && d1 < d2) {
+              long closest = vertex(time, d0, d1, d2);
+              float[] position = new float[3];
+              EphemerisFrame frame = new EphemerisFrame(closest);
+              setUnitVector(frame.getRa(planet), frame.getDec(planet), position, 0);
+              float distance = chordSquared(position, 0, starPositions, 3 * s);
+              if (distance <= maxChordSquared) {
+                events.add(new Event(planet, null, stars.get(s), closest,
+                    chordToDegrees(distance)));
+              }
+            }
+          }
+        }
+      }
+      // Rotate the buffers.
+      positions[0] = now;
+      positions[1] = after;
+      positions[2] = before;
+    }
+    return events;
+  }
+
+  /**
+   * Returns the events, in time order, with approaches of the same pair less
+   * than {@link #MERGE_MS} apart replaced by the closest of them.
+   */
+  private static List<Event> merge(List<Event> events) {
+    Collections.sort(events, new Comparator<Event>() {
+      @Override
+      public int compare(Event e1, Event e2) {
+        return e1.timeMillis < e2.timeMillis ? -1 : (e1.timeMillis == e2.timeMillis ? 0 : 1);
+      }
+    });
+    List<Event> merged = new ArrayList<Event>(events.size());
+    for (Event event : events) {
+      boolean duplicate = false;
+      for (int i = merged.size() - 1;
+           i >= 0 && event.timeMillis - merged.get(i).timeMillis < MERGE_MS; i--) {
+        Event previous = merged.get(i);
+        if (previous.isSamePair(event)) {
+          if (event.separation < previous.separation) {
+            // Keep the list in time order.
+            merged.remove(i);
+            merged.add(event);
+          }
+          duplicate = true;
+          break;
+        }
+      }
+      if (!duplicate) {
+        merged.add(event);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Returns the time of the minimum of the parabola through squared distances
+   * d0, d1 and d2 at a step before, at and after the given time.
+   */
+  private static long vertex(long time, float d0, float d1, float d2) {
+    float curvature = d0 - 2 * d1 + d2;
+    if (curvature <= 0) {
+      return time;
+    }
+    float offset = (d0 - d2) / (2 * curvature);
+    return time + (long) (offset * STEP_MS);
+  }
+
+  private static float separation(EphemerisFrame frame, Planet p1, Planet p2) {
+    float[] v = new float[6];
+    setUnitVector(frame.getRa(p1), frame.getDec(p1), v, 0);
+    setUnitVector(frame.getRa(p2), frame.getDec(p2), v, 3);
+    return chordToDegrees(chordSquared(v, 0, v, 3));
+  }
+
+  private static float chordToDegrees(float chordSquared) {
+    return 2 * MathUtil.asin(MathUtil.sqrt(chordSquared) / 2) * Geometry.RADIANS_TO_DEGREES;
+  }
+
+  private static float chordSquared(float[] v1, int i1, float[] v2, int i2) {
+    float dx = v1[i1] - v2[i2];
+    float dy = v1[i1 + 1] - v2[i2 + 1];
+    float dz = v1[i1 + 2] - v2[i2 + 2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  private static void setPositions(EphemerisFrame frame, float[] positions) {
+    for (Planet planet : PLANETS) {
+      setUnitVector(frame.getRa(planet), frame.getDec(planet), positions, 3 * planet.ordinal());
+    }
+  }
+
+  private static void setUnitVector(float ra, float dec, float[] result, int i) {
+    float raRadians = ra * Geometry.DEGREES_TO_RADIANS;
+    float decRadians = dec * Geometry.DEGREES_TO_RADIANS;
+    result[i] = MathUtil.cos(raRadians) * MathUtil.cos(decRadians);
+    result[i + 1] = MathUtil.sin(raRadians) * MathUtil.cos(decRadians);
+    result[i + 2] = MathUtil.sin(decRadians);
+  }
+
+  // Ecliptic longitude of an equatorial unit vector, in degrees in [0, 360).
+  private static float eclipticLongitude(float[] v, int i) {
+    float y = v[i + 1] * COS_OBLIQUITY + v[i + 2] * SIN_OBLIQUITY;
+    return Geometry.mod2pi(MathUtil.atan2(y, v[i])) * Geometry.RADIANS_TO_DEGREES;
+  }
+
+  private static float eclipticLatitude(float[] v, int i) {
+    float z = -v[i + 1] * SIN_OBLIQUITY + v[i + 2] * COS_OBLIQUITY;
+    return MathUtil.asin(Math.max(-1, Math.min(1, z))) * Geometry.RADIANS_TO_DEGREES;
+  }
+
+  private static int bin(float longitude) {
+    return Math.min(BINS - 1, (int) longitude);
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.MiscUtil;
+
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves planetary positions from Chebyshev polynomials fitted over a window
+ * of time around the model time, so that time travel doesn't re-solve every
+ * orbit each time a planet moves.
+ *
+ * <p>The window is divided into fixed-length segments, and within each one
+ * every body's geocentric direction (and the Earth's heliocentric position)
+ * is fitted by a polynomial in time sampled from {@link EphemerisFrame}s.
+ * Fitting happens on a background thread: a time outside the window is a miss,
+ * which the caller answers from an {@link EphemerisFrame} instead, and which
+ * starts fitting a new window centered on it.  A time nearing either end of
+ * the window starts fitting the next one early, keeping the segments that
+ * overlap, so that steady time travel keeps hitting.
+ */
+public class EphemerisCache {
+  private static final String TAG = MiscUtil.getTag(EphemerisCache.class);
+  private static final Executor FITTER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "EphemerisCache");
+      // Don't compete with the UI or simulation threads.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private static final Planet[] PLANETS = Planet.values();
+  // The Earth's heliocentric position is fitted after the planets'.
+  private static final int EARTH = PLANETS.length;
+  private static final int BODY_COUNT = PLANETS.length + 1;
+
+  // Short enough for the Moon, which moves about 50 degrees in a segment.
+  private static final long SEGMENT_MS = 4 * TimeConstants.MILLISECONDS_PER_DAY;
+  // Polynomial terms per coordinate per segment.
+  private static final int TERMS = 11;
+  private static final int SEGMENT_COUNT = 90;
+  // Start fitting the next window when the time is this close to an end.
+  private static final int PREFETCH_SEGMENTS = SEGMENT_COUNT / 4;
+
+  private static final int SEGMENT_STRIDE = BODY_COUNT * 3 * TERMS;
+
+  /** Fitted coefficients for SEGMENT_COUNT segments.  Immutable once published. */
+  private static final class Table {
+    final long firstSegment;
+    // Indexed by segment, then body, then coordinate, then term.
+    final float[] coefficients = new float[SEGMENT_COUNT * SEGMENT_STRIDE];
+
+    Table(long firstSegment) {
+      this.firstSegment = firstSegment;
+    }
+
+    boolean contains(long segment) {
+      return segment >= firstSegment && segment < firstSegment + SEGMENT_COUNT;
+    }
+  }
+
+  private volatile Table table = null;
+  // Guarded by this.
+  private boolean fitPending = false;
+
+  /**
+   * Writes the planet's geocentric direction at the given time, as a unit
+   * vector in equatorial coordinates, into result.  Returns false, leaving
+   * result unchanged, if the time isn't covered yet.
+   */
+  public boolean getPosition(Planet planet, long timeMillis, Vector3 result) {
+    if (!evaluate(planet.ordinal(), timeMillis, result)) {
+      return false;
+    }
+    float length = result.length();
+    result.assign(result.x / length, result.y / length, result.z / length);
+    return true;
+  }
+
+  /**
+   * Writes the Earth's heliocentric ecliptic position at the given time into
+   * result.  Returns false, leaving result unchanged, if the time isn't covered
+   * yet.
+   */
+  public boolean getEarthPosition(long timeMillis, Vector3 result) {
+    return evaluate(EARTH, timeMillis, result);
+  }
+
+  private boolean evaluate(int body, long timeMillis, Vector3 result) {
+    long segment = segmentOf(timeMillis);
+    Table current = table;
+    if (current == null || !current.contains(segment)) {
+      requestFit(segment, current);
+      return false;
+    }
+    if (segment < current.firstSegment + PREFETCH_SEGMENTS
+        || segment >= current.firstSegment + SEGMENT_COUNT - PREFETCH_SEGMENTS) {
+      requestFit(segment, current);
+    }
+
+    // Scale the time to [-1, 1] across the segment.
+    float u = (float) (2.0 * (timeMillis - segment * SEGMENT_MS) / SEGMENT_MS - 1.0);
+    int offset = (int) (segment - current.firstSegment) * SEGMENT_STRIDE + body * 3 * TERMS;
+    float[] c = current.coefficients;
+    result.assign(clenshaw(c, offset, u),
+                  clenshaw(c, offset + TERMS, u),
+                  clenshaw(c, offset + 2 * TERMS, u));
+    return true;
+  }
+
+  // Sums the Chebyshev series with coefficients c[offset, offset + TERMS) at u.
+  private static float clenshaw(float[] c, int offset, float u) {
+    float b1 = 0;
+    float b2 = 0;
+    for (int j = TERMS - 1; j >= 1; j--) {
+      float b0 = 2 * u * b1 - b2 + c[offset + j];
+      b2 = b1;
+      b1 = b0;
+    }
+    return u * b1 - b2 + c[offset];
+  }
+
+  private static long segmentOf(long timeMillis) {
+    long segment = timeMillis / SEGMENT_MS;
+    if (timeMillis % SEGMENT_MS < 0) {
+      segment--;
+    }
+    return segment;
+  }
+
+  private synchronized void requestFit(long centerSegment, final Table previous) {
+    if (fitPending) {
+      return;
+    }
+    fitPending = true;
+    final long firstSegment = centerSegment - SEGMENT_COUNT / 2;
+    FITTER.execute(new Runnable() {
+      public void run() {
+        Table fitted = fit(firstSegment, previous);
+        synchronized (EphemerisCache.this) {
+          table = fitted;
+          fitPending = false;
+        }
+      }
+    });
+  }
+
+  private static Table fit(long firstSegment, Table previous) {
+    long start = System.currentTimeMillis();
+    Table fitted = new Table(firstSegment);
+    int reused = 0;
+    // Chebyshev nodes in [-1, 1], the polynomials' values at them, and
+    // samples of every coordinate at them.
+    double[] nodes = new double[TERMS];
+    double[][] basis = new double[TERMS][TERMS];
+    for (int k = 0; k < TERMS; k++) {
+      nodes[k] = Math.cos(Math.PI * (k + 0.5) / TERMS);
+      for (int j = 0; j < TERMS; j++) {
+        basis[j][k] = Math.cos(Math.PI * j * (k + 0.5) / TERMS);
+      }
+    }
+    double[][] samples = new double[BODY_COUNT * 3][TERMS];
+    Vector3 earth = new Vector3(0, 0, 0);
+
+    for (int s = 0; s < SEGMENT_COUNT; s++) {
+      long segment = firstSegment + s;
+      if (previous != null && previous.contains(segment)) {
+        System.arraycopy(previous.coefficients,
+            (int) (segment - previous.firstSegment) * SEGMENT_STRIDE,
+            fitted.coefficients, s * SEGMENT_STRIDE, SEGMENT_STRIDE);
+        reused++;
+        continue;
+      }
+
+      for (int k = 0; k < TERMS; k++) {
+        long time = segment * SEGMENT_MS + (long) ((nodes[k] + 1) / 2 * SEGMENT_MS);
+        EphemerisFrame frame = new EphemerisFrame(time);
+        for (Planet planet : PLANETS) {
+          double ra = frame.getRa(planet) * Geometry.DEGREES_TO_RADIANS;
+          double dec = frame.getDec(planet) * Geometry.DEGREES_TO_RADIANS;
+          int row = planet.ordinal() * 3;
+          samples[row][k] = Math.cos(ra) * Math.cos(dec);
+          samples[row + 1][k] = Math.sin(ra) * Math.cos(dec);
+          samples[row + 2][k] = Math.sin(dec);
+        }
+        frame.getEarthPosition(earth);
+        samples[EARTH * 3][k] = earth.x;
+        samples[EARTH * 3 + 1][k] = earth.y;
+        samples[EARTH * 3 + 2][k] = earth.z;
+      }
+
+      int offset = s * SEGMENT_STRIDE;
+      for (int row = 0; row < BODY_COUNT * 3; row++) {
+        for (int j = 0; j < TERMS; j++) {
+          double sum = 0;
+          for (int k = 0; k < TERMS; k++) {
+            sum += samples[row][k] * basis[j][k];
+          }
+          fitted.coefficients[offset + row * TERMS + j] =
+              (float) (sum * (j == 0 ? 1.0 : 2.0) / TERMS);
+        }
+      }
+    }
+    Log.d(TAG, "Fitted " + (SEGMENT_COUNT - reused) + " segments in "
+        + (System.currentTimeMillis() - start) + "ms");
+    return fitted;
+  }
+}
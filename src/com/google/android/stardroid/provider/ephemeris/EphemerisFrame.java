@@ -0,0 +1,162 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.MathUtil;
+import com.google.android.stardroid.util.TimeFrame;
+import com.google.android.stardroid.util.TimeUtil;
+
+import java.util.Date;
+
+/**
+ * The positions of every {@link Planet} at one instant.
+ *
+ * <p>All bodies are computed together in a single pass: the Earth's orbit is
+ * solved once and shared rather than once per body, and the results are kept
+ * in primitive arrays indexed by {@link Planet#ordinal()}.  As with
+ * {@link com.google.android.stardroid.util.TimeFrame}, {@link #forTime}
+ * computes a frame once per distinct timestamp and hands the same one to each
+ * planet being updated at that time.  Frames are immutable and safe to use
+ * from any thread.
+ */
+public final class EphemerisFrame {
+  private static final float COS_OBLIQUITY = MathUtil.cos(HeliocentricCoordinates.OBLIQUITY);
+  private static final float SIN_OBLIQUITY = MathUtil.sin(HeliocentricCoordinates.OBLIQUITY);
+  private static final Planet[] PLANETS = Planet.values();
+
+  // The most recently requested frame.
+  private static volatile EphemerisFrame latest = null;
+
+  private final long timeMillis;
+
+  // Heliocentric ecliptic coordinates.  For the Sun these are the
+  // Earth's, following the convention of Planet.getOrbitalElements.  Unused
+  // for the Moon.
+  private final float[] helioX = new float[PLANETS.length];
+  private final float[] helioY = new float[PLANETS.length];
+  private final float[] helioZ = new float[PLANETS.length];
+
+  // Geocentric equatorial coordinates (degrees).
+  private final float[] ra = new float[PLANETS.length];
+  private final float[] dec = new float[PLANETS.length];
+
+  // Builds a frame without caching it; callers outside this package use forTime.
+  EphemerisFrame(long timeMillis) {
+    this.timeMillis = timeMillis;
+    float jc = (float) TimeUtil.julianCenturies(timeMillis);
+    float[] elements = new float[OrbitalElements.ELEMENT_COUNT];
+    for (Planet planet : PLANETS) {
+      if (planet != Planet.Moon) {
+        planet.getOrbitalElements(jc, elements);
+        setHeliocentric(planet.ordinal(), elements);
+      }
+    }
+
+    int earth = Planet.Sun.ordinal();
+    for (Planet planet : PLANETS) {
+      int i = planet.ordinal();
+      if (planet == Planet.Moon) {
+        // The lunar theory gives coordinates of date; everything else is J2000.
+        RaDec moon = TimeFrame.forTime(timeMillis).toCelestial(
+            Planet.calculateLunarGeocentricLocation(new Date(timeMillis)));
+        ra[i] = moon.ra;
+        dec[i] = moon.dec;
+        continue;
+      }
+      // Position relative to the Earth; for the Sun that's just the Earth's
+      // position reversed.
+      float x;
+      float y;
+      float z;
+      if (planet == Planet.Sun) {
+        x = -helioX[earth];
+        y = -helioY[earth];
+        z = -helioZ[earth];
+      } else {
+        x = helioX[i] - helioX[earth];
+        y = helioY[i] - helioY[earth];
+        z = helioZ[i] - helioZ[earth];
+      }
+      // Rotate from ecliptic to equatorial coordinates.
+      float yEq = y * COS_OBLIQUITY - z * SIN_OBLIQUITY;
+      float zEq = y * SIN_OBLIQUITY + z * COS_OBLIQUITY;
+      ra[i] = Geometry.mod2pi(MathUtil.atan2(yEq, x)) * Geometry.RADIANS_TO_DEGREES;
+      dec[i] = MathUtil.atan(zEq / MathUtil.sqrt(x * x + yEq * yEq))
+          * Geometry.RADIANS_TO_DEGREES;
+    }
+  }
+
+  // Same as HeliocentricCoordinates.getInstance(OrbitalElements).
+  private void setHeliocentric(int i, float[] elements) {
+    float ecc = elements[OrbitalElements.ECCENTRICITY];
+    float per = elements[OrbitalElements.PERIHELION];
+    float asc = elements[OrbitalElements.ASCENDING_NODE];
+    float inc = elements[OrbitalElements.INCLINATION];
+    float anomaly = OrbitalElements.calculateTrueAnomaly(
+        elements[OrbitalElements.MEAN_LONGITUDE] - per, ecc);
+    float radius = elements[OrbitalElements.DISTANCE] * (1 - ecc * ecc)
+        / (1 + ecc * MathUtil.cos(anomaly));
+
+    float cosAsc = MathUtil.cos(asc);
+    float sinAsc = MathUtil.sin(asc);
+    float cosArg = MathUtil.cos(anomaly + per - asc);
+    float sinArg = MathUtil.sin(anomaly + per - asc);
+    float cosInc = MathUtil.cos(inc);
+    helioX[i] = radius * (cosAsc * cosArg - sinAsc * sinArg * cosInc);
+    helioY[i] = radius * (sinAsc * cosArg + cosAsc * sinArg * cosInc);
+    helioZ[i] = radius * (sinArg * MathUtil.sin(inc));
+  }
+
+  /**
+   * Returns the frame for the given time in milliseconds since the Unix
+   * epoch, reusing the last one if the time hasn't changed.
+   */
+  public static EphemerisFrame forTime(long timeMillis) {
+    EphemerisFrame frame = latest;
+    if (frame == null || frame.timeMillis != timeMillis) {
+      frame = new EphemerisFrame(timeMillis);
+      latest = frame;
+    }
+    return frame;
+  }
+
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  /** Returns the planet's geocentric right ascension in degrees. */
+  public float getRa(Planet planet) {
+    return ra[planet.ordinal()];
+  }
+
+  /** Returns the planet's geocentric declination in degrees. */
+  public float getDec(Planet planet) {
+    return dec[planet.ordinal()];
+  }
+
+  /**
+   * Writes the Earth's heliocentric ecliptic position into result, and
+   * returns it.
+   */
+  public Vector3 getEarthPosition(Vector3 result) {
+    int earth = Planet.Sun.ordinal();
+    result.assign(helioX[earth], helioY[earth], helioZ[earth]);
+    return result;
+  }
+}
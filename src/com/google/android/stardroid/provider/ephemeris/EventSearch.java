@@ -0,0 +1,342 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.base.TimeConstants;
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.util.Geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the times of lunar phases, conjunctions, oppositions and greatest
+ * elongations.
+ *
+ * <p>Each event is the time at which some function of the positions changes
+ * sign: the difference in ecliptic longitude between a body and the Sun, less
+ * 0 or 180 degrees, or the rate of change of a planet's elongation from the
+ * Sun.  The search steps through time a day at a time, computing one
+ * {@link EphemerisFrame} per step for all bodies, brackets the sign changes,
+ * and refines each with Brent's method.  A year of events for every body takes
+ * a few milliseconds.
+ */
+public class EventSearch {
+  /** The kinds of event found. */
+  public enum EventType {
+    NEW_MOON,
+    FULL_MOON,
+    /** The planet and the Sun at the same ecliptic longitude. */
+    CONJUNCTION,
+    /** The planet opposite the Sun in ecliptic longitude. */
+    OPPOSITION,
+    /** The planet at its greatest angular distance from the Sun. */
+    GREATEST_ELONGATION
+  }
+
+  /** An event: what happened, to which body, and when. */
+  public static final class Event implements Comparable<Event> {
+    private final EventType type;
+    private final Planet planet;
+    private final long timeMillis;
+
+    Event(EventType type, Planet planet, long timeMillis) {
+      this.type = type;
+      this.planet = planet;
+      this.timeMillis = timeMillis;
+    }
+
+    public EventType getType() {
+      return type;
+    }
+
+    public Planet getPlanet() {
+      return planet;
+    }
+
+    public long getTimeMillis() {
+      return timeMillis;
+    }
+
+    @Override
+    public int compareTo(Event other) {
+      return timeMillis < other.timeMillis ? -1 : (timeMillis == other.timeMillis ? 0 : 1);
+    }
+
+    @Override
+    public String toString() {
+      return type + " " + planet + " " + timeMillis;
+    }
+  }
+
+  private static final Planet[] PLANETS = Planet.values();
+  private static final long STEP_MS = TimeConstants.MILLISECONDS_PER_DAY;
+  // Half the interval over which elongation rates are measured.
+  private static final long RATE_INTERVAL_MS = TimeConstants.MILLISECONDS_PER_HOUR;
+  private static final double TOLERANCE_MS = TimeConstants.MILLISECONDS_PER_MINUTE;
+  private static final int MAX_ITERATIONS = 60;
+  // How far findNext looks before giving up.  Every body has each of its
+  // events at least once in this time.
+  private static final long MAX_SEARCH_MS = 2 * 366 * TimeConstants.MILLISECONDS_PER_DAY;
+  private static final double COS_OBLIQUITY = Math.cos(HeliocentricCoordinates.OBLIQUITY);
+  private static final double SIN_OBLIQUITY = Math.sin(HeliocentricCoordinates.OBLIQUITY);
+
+  private EventSearch() {}
+
+  /** Returns every event between the given times, in time order. */
+  public static List<Event> findEvents(long startMillis, long endMillis) {
+    return findEvents(null, startMillis, endMillis);
+  }
+
+  /**
+   * Returns the events of the given body, or of every body if it's null,
+   * between the given times, in time order.
+   */
+  public static List<Event> findEvents(Planet planet, long startMillis, long endMillis) {
+    List<Event> events = new ArrayList<Event>();
+    int n = PLANETS.length;
+    // Longitude of each body less the Sun's, and elongation, at the previous
+    // step and at the one before that.
+    double[] previousDifference = new double[n];
+    double[] difference = new double[n];
+    double[] olderElongation = new double[n];
+    double[] previousElongation = new double[n];
+    double[] elongation = new double[n];
+
+    int k = 0;
+    long olderTime = startMillis;
+    long previousTime = startMillis;
+    for (long time = startMillis; ; time += STEP_MS, k++) {
+      // The last step may be short.
+      long stepTime = Math.min(time, endMillis);
+      EphemerisFrame frame = new EphemerisFrame(stepTime);
+      double sunLongitude = eclipticLongitude(frame, Planet.Sun);
+      for (Planet body : PLANETS) {
+        if (body == Planet.Sun || (planet != null && body != planet)) {
+          continue;
+        }
+        int b = body.ordinal();
+        difference[b] = wrap(eclipticLongitude(frame, body) - sunLongitude);
+        if (hasElongations(body)) {
+          elongation[b] = elongation(frame, body);
+        }
+        if (k > 0) {
+          findCrossings(body, previousTime, stepTime, previousDifference[b], difference[b],
+              events);
+        }
+        if (k > 1 && hasElongations(body) && previousElongation[b] > olderElongation[b]
+            && previousElongation[b] >= elongation[b]) {
+          Event event = findGreatestElongation(body, olderTime, stepTime);
+          if (event != null) {
+            events.add(event);
+          }
+        }
+        previousDifference[b] = difference[b];
+        olderElongation[b] = previousElongation[b];
+        previousElongation[b] = elongation[b];
+      }
+      if (stepTime == endMillis) {
+        break;
+      }
+      olderTime = previousTime;
+      previousTime = stepTime;
+    }
+    Collections.sort(events);
+    return events;
+  }
+
+  /**
+   * Returns the next event of the given type for the given body after the
+   * given time, or null if there isn't one within two years.
+   */
+  public static Event findNext(EventType type, Planet planet, long afterMillis) {
+    // Search a few months at a time, since most events are frequent.
+    long window = 64 * TimeConstants.MILLISECONDS_PER_DAY;
+    for (long start = afterMillis; start < afterMillis + MAX_SEARCH_MS; start += window) {
+      for (Event event : findEvents(planet, start, start + window)) {
+        if (event.getType() == type && event.getTimeMillis() > afterMillis) {
+          return event;
+        }
+      }
+    }
+    return null;
+  }
+
+  // Only the inferior planets have elongations worth finding.
+  private static boolean hasElongations(Planet planet) {
+    return planet == Planet.Mercury || planet == Planet.Venus;
+  }
+
+  private static void findCrossings(final Planet body, long time0, long time1,
+      double difference0, double difference1, List<Event> events) {
+    double[] targets = {0, 180};
+    for (final double target : targets) {
+      double f0 = wrap(difference0 - target);
+      double f1 = wrap(difference1 - target);
+      // A jump of more than a quarter turn is the wrap at 180 degrees.
+      if ((f0 < 0) == (f1 < 0) || Math.abs(f1 - f0) > 90) {
+        continue;
+      }
+      EventType type = eventType(body, target);
+      if (type == null) {
+        continue;
+      }
+      long time = solve(new Function() {
+        public double valueAt(long timeMillis) {
+          return wrap(longitudeDifference(new EphemerisFrame(timeMillis), body) - target);
+        }
+      }, time0, time1, f0, f1);
+      events.add(new Event(type, body, time));
+    }
+  }
+
+  private static EventType eventType(Planet body, double target) {
+    if (body == Planet.Moon) {
+      return target == 0 ? EventType.NEW_MOON : EventType.FULL_MOON;
+    }
+    if (target == 0) {
+      return EventType.CONJUNCTION;
+    }
+    // The inferior planets are never opposite the Sun.
+    return hasElongations(body) ? null : EventType.OPPOSITION;
+  }
+
+  private static Event findGreatestElongation(final Planet body, long time0, long time1) {
+    Function rate = new Function() {
+      public double valueAt(long timeMillis) {
+        return elongation(new EphemerisFrame(timeMillis + RATE_INTERVAL_MS), body)
+            - elongation(new EphemerisFrame(timeMillis - RATE_INTERVAL_MS), body);
+      }
+    };
+    double f0 = rate.valueAt(time0);
+    double f1 = rate.valueAt(time1);
+    if (f0 <= 0 || f1 > 0) {
+      return null;
+    }
+    return new Event(EventType.GREATEST_ELONGATION, body, solve(rate, time0, time1, f0, f1));
+  }
+
+  // The body's ecliptic longitude less the Sun's, in degrees in [-180, 180).
+  private static double longitudeDifference(EphemerisFrame frame, Planet body) {
+    return wrap(eclipticLongitude(frame, body) - eclipticLongitude(frame, Planet.Sun));
+  }
+
+  private static double eclipticLongitude(EphemerisFrame frame, Planet body) {
+    double ra = frame.getRa(body) * Geometry.DEGREES_TO_RADIANS;
+    double dec = frame.getDec(body) * Geometry.DEGREES_TO_RADIANS;
+    double x = Math.cos(dec) * Math.cos(ra);
+    double y = Math.cos(dec) * Math.sin(ra);
+    double z = Math.sin(dec);
+    return Math.toDegrees(Math.atan2(y * COS_OBLIQUITY + z * SIN_OBLIQUITY, x));
+  }
+
+  // The angle between the body and the Sun, in degrees.
+  private static double elongation(EphemerisFrame frame, Planet body) {
+    double ra1 = frame.getRa(body) * Geometry.DEGREES_TO_RADIANS;
+    double dec1 = frame.getDec(body) * Geometry.DEGREES_TO_RADIANS;
+    double ra2 = frame.getRa(Planet.Sun) * Geometry.DEGREES_TO_RADIANS;
+    double dec2 = frame.getDec(Planet.Sun) * Geometry.DEGREES_TO_RADIANS;
+    double cos = Math.sin(dec1) * Math.sin(dec2)
+        + Math.cos(dec1) * Math.cos(dec2) * Math.cos(ra1 - ra2);
+    return Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, cos))));
+  }
+
+  private static double wrap(double degrees) {
+    double wrapped = (degrees + 180) % 360;
+    if (wrapped < 0) {
+      wrapped += 360;
+    }
+    return wrapped - 180;
+  }
+
+  private interface Function {
+    double valueAt(long timeMillis);
+  }
+
+  /**
+   * Finds a root of f between a and b, where it has values fa and fb of
+   * opposite signs, by Brent's method.
+   */
+  private static long solve(Function f, long a, long b, double fa, double fb) {
+    // Times are offsets from a, so that doubles hold them exactly.
+    long origin = a;
+    double lower = 0;
+    double upper = b - a;
+    if (Math.abs(fa) < Math.abs(fb)) {
+      double swap = lower;
+      lower = upper;
+      upper = swap;
+      swap = fa;
+      fa = fb;
+      fb = swap;
+    }
+    double c = lower;
+    double fc = fa;
+    double d = 0;
+    boolean bisected = true;
+    for (int i = 0; i < MAX_ITERATIONS && fb != 0
+        && Math.abs(upper - lower) > TOLERANCE_MS; i++) {
+      double s;
+      if (fa != fc && fb != fc) {
+        // Inverse quadratic interpolation.
+        s = lower * fb * fc / ((fa - fb) * (fa - fc))
+            + upper * fa * fc / ((fb - fa) * (fb - fc))
+            + c * fa * fb / ((fc - fa) * (fc - fb));
+      } else {
+        // Secant.
+        s = upper - fb * (upper - lower) / (fb - fa);
+      }
+      double quarter = (3 * lower + upper) / 4;
+      if ((s - quarter) * (s - upper) >= 0
+          || (bisected && Math.abs(s - upper) >= Math.abs(upper - c) / 2)
+          || (!bisected && Math.abs(s - upper) >= Math.abs(c - d) / 2)
+          || (bisected && Math.abs(upper - c) < TOLERANCE_MS)
+          || (!bisected && Math.abs(c - d) < TOLERANCE_MS)) {
+        s = (lower + upper) / 2;
+        bisected = true;
+      } else {
+        bisected = false;
+      }
+      double fs = f.valueAt(origin + (long) s);
+      // The interpolation converges on one end of the bracket while the
+      // other may stay put, so stop once the steps are small enough too.
+      boolean converged = !bisected && Math.abs(s - upper) < TOLERANCE_MS;
+      d = c;
+      c = upper;
+      fc = fb;
+      if (fa * fs < 0) {
+        upper = s;
+        fb = fs;
+      } else {
+        lower = s;
+        fa = fs;
+      }
+      // Keep upper as the better estimate.
+      if (Math.abs(fa) < Math.abs(fb)) {
+        double swap = lower;
+        lower = upper;
+        upper = swap;
+        swap = fa;
+        fa = fb;
+        fb = swap;
+      }
+      if (converged) {
+        break;
+      }
+    }
+    return origin + (long) upper;
+  }
+}
@@ -0,0 +1,483 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.units.HeliocentricCoordinates;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.TimeUtil;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asteroids and comets read from Minor Planet Center element files, in the
+ * formats of MPCORB.DAT and CometEls.txt.
+ *
+ * <p>The elements are kept in one primitive array per element rather than
+ * an object per body, and the orbit's orientation is worked out once, when
+ * the file is read, as the two unit vectors towards perihelion and 90 degrees
+ * on from it in celestial coordinates.  Propagating a body is then solving
+ * Kepler's equation and adding two scaled vectors.  Bodies are propagated in
+ * batches on a pool with a thread per core, and each batch solves Kepler's
+ * equation for all its elliptical orbits together, a Newton step for every
+ * orbit in turn until they have all converged.  The few parabolic and
+ * hyperbolic comets are kept at the end of the arrays and solved one at a
+ * time.
+ *
+ * <p>Positions are geometric (no allowance is made for light time, which is
+ * under an arcminute for main belt asteroids) and geocentric.
+ */
+public class MinorPlanetCatalog {
+  private static final String TAG = MiscUtil.getTag(MinorPlanetCatalog.class);
+  // The Gaussian gravitational constant, in radians per day.
+  private static final double GAUSS = 0.01720209895;
+  private static final double DEGREES_TO_RADIANS = Math.PI / 180;
+  private static final int BATCH_SIZE = 1024;
+  private static final int MAX_ITERATIONS = 30;
+  private static final double TOLERANCE = 1e-10;
+  private static final double COS_OBLIQUITY = Math.cos(HeliocentricCoordinates.OBLIQUITY);
+  private static final double SIN_OBLIQUITY = Math.sin(HeliocentricCoordinates.OBLIQUITY);
+
+  private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MinorPlanetCatalog-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      // Don't compete with the UI thread.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      return thread;
+    }
+  };
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(), THREAD_FACTORY);
+
+  /** An orbit as read from a file, before it's packed into the arrays. */
+  private static final class Orbit {
+    String name;
+    boolean comet;
+    // Days since J2000.0.
+    double perihelionDay;
+    double perihelionDistance;
+    double eccentricity;
+    double perihelion;
+    double node;
+    double inclination;
+    float magnitude;
+    float slope;
+  }
+
+  private final int size;
+  // Orbits before this index are elliptical.
+  private final int ellipticalCount;
+  private final String[] names;
+  private final boolean[] comets;
+  private final double[] perihelionDays;
+  // Radians per day, for elliptical and hyperbolic orbits.
+  private final double[] meanMotions;
+  // Semi-major axis in AU; for hyperbolic orbits its magnitude.
+  private final double[] semiMajorAxes;
+  private final double[] perihelionDistances;
+  private final double[] eccentricities;
+  // Unit vectors towards perihelion, and 90 degrees on in the direction of
+  // motion, in celestial coordinates.
+  private final double[] px;
+  private final double[] py;
+  private final double[] pz;
+  private final double[] qx;
+  private final double[] qy;
+  private final double[] qz;
+  // H and G for asteroids, H and K for comets.
+  private final float[] magnitudes;
+  private final float[] slopes;
+  // 0 to size - 1, made when first needed.
+  private int[] allIndices;
+
+  private MinorPlanetCatalog(List<Orbit> orbits) {
+    size = orbits.size();
+    names = new String[size];
+    comets = new boolean[size];
+    perihelionDays = new double[size];
+    meanMotions = new double[size];
+    semiMajorAxes = new double[size];
+    perihelionDistances = new double[size];
+    eccentricities = new double[size];
+    px = new double[size];
+    py = new double[size];
+    pz = new double[size];
+    qx = new double[size];
+    qy = new double[size];
+    qz = new double[size];
+    magnitudes = new float[size];
+    slopes = new float[size];
+
+    int elliptical = 0;
+    int open = size;
+    for (Orbit orbit : orbits) {
+      int i = orbit.eccentricity < 1 ? elliptical++ : --open;
+      names[i] = orbit.name;
+      comets[i] = orbit.comet;
+      perihelionDays[i] = orbit.perihelionDay;
+      perihelionDistances[i] = orbit.perihelionDistance;
+      eccentricities[i] = orbit.eccentricity;
+      double a = orbit.perihelionDistance / Math.abs(1 - orbit.eccentricity);
+      semiMajorAxes[i] = a;
+      meanMotions[i] = GAUSS / Math.sqrt(a * a * a);
+      magnitudes[i] = orbit.magnitude;
+      slopes[i] = orbit.slope;
+
+      double cosPerihelion = Math.cos(orbit.perihelion);
+      double sinPerihelion = Math.sin(orbit.perihelion);
+      double cosNode = Math.cos(orbit.node);
+      double sinNode = Math.sin(orbit.node);
+      double cosInclination = Math.cos(orbit.inclination);
+      double sinInclination = Math.sin(orbit.inclination);
+      // In ecliptic coordinates, then rotated to equatorial ones.
+      double x = cosPerihelion * cosNode - sinPerihelion * sinNode * cosInclination;
+      double y = cosPerihelion * sinNode + sinPerihelion * cosNode * cosInclination;
+      double z = sinPerihelion * sinInclination;
+      px[i] = x;
+      py[i] = y * COS_OBLIQUITY - z * SIN_OBLIQUITY;
+      pz[i] = y * SIN_OBLIQUITY + z * COS_OBLIQUITY;
+      x = -sinPerihelion * cosNode - cosPerihelion * sinNode * cosInclination;
+      y = -sinPerihelion * sinNode + cosPerihelion * cosNode * cosInclination;
+      z = cosPerihelion * sinInclination;
+      qx[i] = x;
+      qy[i] = y * COS_OBLIQUITY - z * SIN_OBLIQUITY;
+      qz[i] = y * SIN_OBLIQUITY + z * COS_OBLIQUITY;
+    }
+    ellipticalCount = elliptical;
+  }
+
+  /**
+   * Reads asteroids in the MPCORB.DAT format and comets in the CometEls.txt
+   * format, which may be mixed.  Headers and lines which can't be parsed are
+   * skipped, as are asteroids with absolute magnitudes fainter than the
+   * given limit.
+   */
+  public static MinorPlanetCatalog read(BufferedReader in, float maxAbsoluteMagnitude)
+      throws IOException {
+    ArrayList<Orbit> orbits = new ArrayList<Orbit>();
+    int skipped = 0;
+    String line;
+    while ((line = in.readLine()) != null) {
+      try {
+        Orbit orbit = isComet(line) ? parseComet(line) : parseAsteroid(line);
+        if (orbit != null) {
+          if (orbit.comet || orbit.magnitude <= maxAbsoluteMagnitude) {
+            orbits.add(orbit);
+          }
+        } else {
+          skipped++;
+        }
+      } catch (NumberFormatException e) {
+        skipped++;
+      }
+    }
+    Log.d(TAG, "Read " + orbits.size() + " orbits, skipped " + skipped + " lines");
+    return new MinorPlanetCatalog(orbits);
+  }
+
+  private static boolean isComet(String line) {
+    return line.length() >= 102 && "CPDXIA".indexOf(line.charAt(4)) >= 0
+        && Character.isDigit(line.charAt(14)) && line.charAt(18) == ' ';
+  }
+
+  private static Orbit parseAsteroid(String line) {
+    if (line.length() < 103 || line.substring(8, 13).trim().length() == 0) {
+      return null;  // Headers, and asteroids without magnitudes.
+    }
+    Orbit orbit = new Orbit();
+    orbit.magnitude = Float.parseFloat(line.substring(8, 13).trim());
+    String slope = line.substring(14, 19).trim();
+    orbit.slope = slope.length() > 0 ? Float.parseFloat(slope) : 0.15f;
+    double epoch = unpackEpoch(line.substring(20, 25));
+    double meanAnomaly = Double.parseDouble(line.substring(26, 35).trim()) * DEGREES_TO_RADIANS;
+    orbit.perihelion = Double.parseDouble(line.substring(37, 46).trim()) * DEGREES_TO_RADIANS;
+    orbit.node = Double.parseDouble(line.substring(48, 57).trim()) * DEGREES_TO_RADIANS;
+    orbit.inclination = Double.parseDouble(line.substring(59, 68).trim()) * DEGREES_TO_RADIANS;
+    orbit.eccentricity = Double.parseDouble(line.substring(70, 79).trim());
+    double meanMotion = Double.parseDouble(line.substring(80, 91).trim()) * DEGREES_TO_RADIANS;
+    double a = Double.parseDouble(line.substring(92, 103).trim());
+    if (orbit.eccentricity >= 1 || meanMotion <= 0) {
+      return null;
+    }
+    orbit.perihelionDistance = a * (1 - orbit.eccentricity);
+    orbit.perihelionDay = epoch - meanAnomaly / meanMotion;
+    String name = line.length() > 166 ? line.substring(166, Math.min(194, line.length())).trim()
+        : "";
+    if (name.startsWith("(") && name.indexOf(") ") > 0) {
+      name = name.substring(name.indexOf(") ") + 2);  // "(1) Ceres" is searched as "Ceres".
+    }
+    orbit.name = name.length() > 0 ? name : line.substring(0, 7).trim();
+    return orbit;
+  }
+
+  private static Orbit parseComet(String line) {
+    Orbit orbit = new Orbit();
+    orbit.comet = true;
+    int year = Integer.parseInt(line.substring(14, 18).trim());
+    int month = Integer.parseInt(line.substring(19, 21).trim());
+    double day = Double.parseDouble(line.substring(22, 29).trim());
+    orbit.perihelionDay = daysSinceJ2000(year, month, 1) + day - 1;
+    orbit.perihelionDistance = Double.parseDouble(line.substring(30, 39).trim());
+    orbit.eccentricity = Double.parseDouble(line.substring(41, 49).trim());
+    orbit.perihelion = Double.parseDouble(line.substring(51, 59).trim()) * DEGREES_TO_RADIANS;
+    orbit.node = Double.parseDouble(line.substring(61, 69).trim()) * DEGREES_TO_RADIANS;
+    orbit.inclination = Double.parseDouble(line.substring(71, 79).trim()) * DEGREES_TO_RADIANS;
+    String magnitude = line.substring(91, 95).trim();
+    if (magnitude.length() == 0 || orbit.perihelionDistance <= 0) {
+      return null;
+    }
+    orbit.magnitude = Float.parseFloat(magnitude);
+    orbit.slope = Float.parseFloat(line.substring(96, 100).trim());
+    orbit.name = line.substring(102, Math.min(158, line.length())).trim();
+    return orbit;
+  }
+
+  // Unpacks an epoch such as "K194R" (2019 April 27).
+  private static double unpackEpoch(String packed) {
+    int century = packed.charAt(0) - 'A' + 10;
+    int year = century * 100 + Integer.parseInt(packed.substring(1, 3));
+    return daysSinceJ2000(year, unpackDigit(packed.charAt(3)), unpackDigit(packed.charAt(4)));
+  }
+
+  private static int unpackDigit(char c) {
+    return c <= '9' ? c - '0' : c - 'A' + 10;
+  }
+
+  private static double daysSinceJ2000(int year, int month, int day) {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.clear();
+    calendar.set(year, month - 1, day);
+    return toDaysSinceJ2000(calendar.getTimeInMillis());
+  }
+
+  private static double toDaysSinceJ2000(long timeMillis) {
+    return TimeUtil.calculateJulianDay(timeMillis) - TimeUtil.JULIAN_DAY_J2000;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getName(int index) {
+    return names[index];
+  }
+
+  public boolean isComet(int index) {
+    return comets[index];
+  }
+
+  /**
+   * Works out where the given bodies are at the given time, as seen from the
+   * center of the Earth.  Body indices[j] has its direction written into
+   * directions at 3 * j, as a unit vector in celestial coordinates, and its
+   * visual magnitude into magnitudes at j.  Pass null for indices to
+   * propagate every body.
+   */
+  public void propagate(long timeMillis, int[] indices, float[] directions, float[] magnitudes)
+      throws InterruptedException {
+    final int[] bodies = indices != null ? indices : allIndices();
+    final double day = toDaysSinceJ2000(timeMillis);
+    Vector3 earth = EphemerisFrame.forTime(timeMillis).getEarthPosition(new Vector3(0, 0, 0));
+    final double earthX = earth.x;
+    final double earthY = earth.y * COS_OBLIQUITY - earth.z * SIN_OBLIQUITY;
+    final double earthZ = earth.y * SIN_OBLIQUITY + earth.z * COS_OBLIQUITY;
+    final float[] directionsOut = directions;
+    final float[] magnitudesOut = magnitudes;
+
+    List<Callable<Void>> batches = new ArrayList<Callable<Void>>();
+    for (int start = 0; start < bodies.length; start += BATCH_SIZE) {
+      final int from = start;
+      final int to = Math.min(bodies.length, start + BATCH_SIZE);
+      batches.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          propagate(bodies, from, to, day, earthX, earthY, earthZ, directionsOut, magnitudesOut);
+          return null;
+        }
+      });
+    }
+    for (Future<Void> batch : EXECUTOR.invokeAll(batches)) {
+      try {
+        batch.get();
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+  }
+
+  private synchronized int[] allIndices() {
+    if (allIndices == null) {
+      allIndices = new int[size];
+      for (int i = 0; i < size; i++) {
+        allIndices[i] = i;
+      }
+    }
+    return allIndices;
+  }
+
+  private void propagate(int[] bodies, int from, int to, double day,
+      double earthX, double earthY, double earthZ, float[] directions, float[] magnitudesOut) {
+    int n = to - from;
+    // Position of each body in the plane of its orbit, x towards perihelion.
+    double[] x = new double[n];
+    double[] y = new double[n];
+    double[] meanAnomaly = new double[n];
+    double[] anomaly = new double[n];
+    double[] e = new double[n];
+
+    // Kepler's equation for the elliptical orbits, all together.
+    for (int j = 0; j < n; j++) {
+      int i = bodies[from + j];
+      if (i < ellipticalCount) {
+        double m = meanMotions[i] * (day - perihelionDays[i]);
+        m = m - 2 * Math.PI * Math.floor((m + Math.PI) / (2 * Math.PI));
+        meanAnomaly[j] = m;
+        e[j] = eccentricities[i];
+        // Starting from pi converges for any eccentricity (Danby, 1987).
+        anomaly[j] = e[j] > 0.8 ? (m < 0 ? -Math.PI : Math.PI) : m + e[j] * Math.sin(m);
+      }
+    }
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      double largestStep = 0;
+      for (int j = 0; j < n; j++) {
+        if (bodies[from + j] < ellipticalCount) {
+          double step = (anomaly[j] - e[j] * Math.sin(anomaly[j]) - meanAnomaly[j])
+              / (1 - e[j] * Math.cos(anomaly[j]));
+          anomaly[j] -= step;
+          largestStep = Math.max(largestStep, Math.abs(step));
+        }
+      }
+      if (largestStep < TOLERANCE) {
+        break;
+      }
+    }
+    for (int j = 0; j < n; j++) {
+      int i = bodies[from + j];
+      if (i < ellipticalCount) {
+        double a = semiMajorAxes[i];
+        x[j] = a * (Math.cos(anomaly[j]) - e[j]);
+        y[j] = a * Math.sqrt(1 - e[j] * e[j]) * Math.sin(anomaly[j]);
+      } else {
+        setOpenOrbitPosition(i, day, x, y, j);
+      }
+    }
+
+    for (int j = 0; j < n; j++) {
+      int i = bodies[from + j];
+      double helioX = px[i] * x[j] + qx[i] * y[j];
+      double helioY = py[i] * x[j] + qy[i] * y[j];
+      double helioZ = pz[i] * x[j] + qz[i] * y[j];
+      double geoX = helioX - earthX;
+      double geoY = helioY - earthY;
+      double geoZ = helioZ - earthZ;
+      double r = Math.sqrt(helioX * helioX + helioY * helioY + helioZ * helioZ);
+      double delta = Math.sqrt(geoX * geoX + geoY * geoY + geoZ * geoZ);
+      int k = from + j;
+      directions[3 * k] = (float) (geoX / delta);
+      directions[3 * k + 1] = (float) (geoY / delta);
+      directions[3 * k + 2] = (float) (geoZ / delta);
+      magnitudesOut[k] = comets[i]
+          ? (float) (magnitudes[i] + 5 * Math.log10(delta) + 2.5 * slopes[i] * Math.log10(r))
+          : asteroidMagnitude(magnitudes[i], slopes[i], r, delta,
+              earthX * earthX + earthY * earthY + earthZ * earthZ);
+    }
+  }
+
+  // Parabolic and hyperbolic orbits.
+  private void setOpenOrbitPosition(int i, double day, double[] x, double[] y, int j) {
+    double e = eccentricities[i];
+    double q = perihelionDistances[i];
+    double t = day - perihelionDays[i];
+    if (e == 1) {
+      // Barker's equation, which has a closed form solution.
+      double w = 3 * GAUSS / Math.sqrt(2 * q * q * q) * t;
+      double c = Math.cbrt(w / 2 + Math.sqrt(w * w / 4 + 1));
+      double s = c - 1 / c;  // The tangent of half the true anomaly.
+      x[j] = q * (1 - s * s);
+      y[j] = 2 * q * s;
+      return;
+    }
+    double a = semiMajorAxes[i];
+    double m = meanMotions[i] * t;
+    double h = asinh(m / e);
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      double step = (e * Math.sinh(h) - h - m) / (e * Math.cosh(h) - 1);
+      h -= step;
+      if (Math.abs(step) < TOLERANCE) {
+        break;
+      }
+    }
+    x[j] = a * (e - Math.cosh(h));
+    y[j] = a * Math.sqrt(e * e - 1) * Math.sinh(h);
+  }
+
+  private static double asinh(double x) {
+    return Math.log(x + Math.sqrt(x * x + 1));
+  }
+
+  // The H, G magnitude system (Bowell et al., 1989).
+  private static float asteroidMagnitude(float h, float g, double r, double delta,
+      double sunDistanceSquared) {
+    double cosPhase = (r * r + delta * delta - sunDistanceSquared) / (2 * r * delta);
+    double phase = Math.acos(Math.max(-1, Math.min(1, cosPhase)));
+    double tanHalfPhase = Math.tan(phase / 2);
+    double phi1 = Math.exp(-3.33 * Math.pow(tanHalfPhase, 0.63));
+    double phi2 = Math.exp(-1.87 * Math.pow(tanHalfPhase, 1.22));
+    return (float) (h + 5 * Math.log10(r * delta)
+        - 2.5 * Math.log10((1 - g) * phi1 + g * phi2));
+  }
+
+  /**
+   * Returns the indices of the bodies with the given magnitudes which are
+   * brighter than the limit, brightest first and at most maxCount of them.
+   */
+  public static int[] selectBrightest(float[] magnitudes, int count, float limit, int maxCount) {
+    long[] keys = new long[count];
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      if (magnitudes[i] <= limit) {
+        // Sorting the magnitude and index together avoids boxing.  The
+        // magnitudes are small enough to order by their bits.
+        keys[n++] = ((long) Float.floatToIntBits(magnitudes[i] + 100) << 32) | i;
+      }
+    }
+    Arrays.sort(keys, 0, n);
+    int[] result = new int[Math.min(n, maxCount)];
+    for (int j = 0; j < result.length; j++) {
+      result[j] = (int) keys[j];
+    }
+    return result;
+  }
+}
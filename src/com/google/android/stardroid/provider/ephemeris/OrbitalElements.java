@@ -42,6 +42,16 @@ public class OrbitalElements {
   // calculation error
   private final static float EPSILON = 1.0e-6f;
 
+  // Indices of the elements when they are packed into a float[], in the same
+  // order as the constructor arguments.
+  static final int DISTANCE = 0;
+  static final int ECCENTRICITY = 1;
+  static final int INCLINATION = 2;
+  static final int ASCENDING_NODE = 3;
+  static final int PERIHELION = 4;
+  static final int MEAN_LONGITUDE = 5;
+  static final int ELEMENT_COUNT = 6;
+
   public final float distance;       // Mean distance (AU)
   public final float eccentricity;   // Eccentricity of orbit
   public final float inclination;    // Inclination of orbit (AngleUtils.RADIANS)
@@ -66,7 +76,7 @@ public class OrbitalElements {
   // m - mean anomaly in radians
   // e - orbit eccentricity
   // Return value is in radians.
-  private static float calculateTrueAnomaly(float m, float e) {
+  static float calculateTrueAnomaly(float m, float e) {
     // initial approximation of eccentric anomaly
     float e0 = m + e * MathUtil.sin(m) * (1.0f + e * MathUtil.cos(m));
     float e1;
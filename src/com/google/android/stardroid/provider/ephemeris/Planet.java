@@ -30,7 +30,6 @@ import com.google.android.stardroid.util.TimeUtil;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 
 public enum Planet {
   Mercury(R.drawable.mercury, R.string.mercury, 1L * TimeConstants.MILLISECONDS_PER_DAY),
@@ -124,9 +123,21 @@ public enum Planet {
   // TODO(serafini): Update the numbers so we can extend the approximation to cover 
   // 3000 BC to 3000 AD.
   public OrbitalElements getOrbitalElements(Date date) {
-    // Centuries since J2000
-    float jc = (float) TimeUtil.julianCenturies(date);
+    float[] elements = new float[OrbitalElements.ELEMENT_COUNT];
+    getOrbitalElements((float) TimeUtil.julianCenturies(date), elements);
+    return new OrbitalElements(elements[OrbitalElements.DISTANCE],
+        elements[OrbitalElements.ECCENTRICITY], elements[OrbitalElements.INCLINATION],
+        elements[OrbitalElements.ASCENDING_NODE], elements[OrbitalElements.PERIHELION],
+        elements[OrbitalElements.MEAN_LONGITUDE]);
+  }
 
+  /**
+   * Writes the orbital elements at jc Julian centuries since J2000 into
+   * elements, indexed by the constants in {@link OrbitalElements}.  Used by
+   * {@link EphemerisFrame} to avoid allocating an {@link OrbitalElements} per
+   * body.
+   */
+  void getOrbitalElements(float jc, float[] elements) {
     switch (this) {
       case Mercury: {
         float a = 0.38709927f + 0.00000037f * jc;
@@ -136,7 +147,8 @@ public enum Planet {
             Geometry.mod2pi((252.25032350f + 149472.67411175f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (77.45779628f + 0.16047689f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (48.33076593f - 0.12534081f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Venus: {
@@ -147,7 +159,8 @@ public enum Planet {
             Geometry.mod2pi((181.97909950f + 58517.81538729f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (131.60246718f + 0.00268329f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (76.67984255f - 0.27769418f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       // Note that this is the orbital data for Earth.
@@ -159,7 +172,8 @@ public enum Planet {
             Geometry.mod2pi((100.46457166f + 35999.37244981f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (102.93768193f + 0.32327364f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = 0.0f;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Mars: {
@@ -170,7 +184,8 @@ public enum Planet {
             Geometry.mod2pi((-4.55343205f + 19140.30268499f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (-23.94362959f + 0.44441088f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (49.55953891f - 0.29257343f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Jupiter: {
@@ -181,7 +196,8 @@ public enum Planet {
             Geometry.mod2pi((34.39644051f + 3034.74612775f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (14.72847983f + 0.21252668f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (100.47390909f + 0.20469106f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Saturn: {
@@ -192,7 +208,8 @@ public enum Planet {
             Geometry.mod2pi((49.95424423f + 1222.49362201f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (92.59887831f - 0.41897216f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (113.66242448f - 0.28867794f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Uranus: {
@@ -203,7 +220,8 @@ public enum Planet {
             Geometry.mod2pi((313.23810451f + 428.48202785f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (170.95427630f + 0.40805281f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (74.01692503f + 0.04240589f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Neptune: {
@@ -214,7 +232,8 @@ public enum Planet {
             Geometry.mod2pi((-55.12002969f + 218.45945325f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (44.96476227f - 0.32241464f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (131.78422574f - 0.00508664f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       case Pluto: {
@@ -225,7 +244,8 @@ public enum Planet {
             Geometry.mod2pi((238.92903833f + 145.20780515f * jc) * Geometry.DEGREES_TO_RADIANS);
         float w = (224.06891629f - 0.04062942f * jc) * Geometry.DEGREES_TO_RADIANS;
         float o = (110.30393684f - 0.01183482f * jc) * Geometry.DEGREES_TO_RADIANS;
-        return new OrbitalElements(a, e, i, o, w, l);
+        setElements(elements, a, e, i, o, w, l);
+        return;
       }
 
       default:
@@ -233,6 +253,16 @@ public enum Planet {
     }
   }
 
+  private static void setElements(float[] elements, float a, float e, float i, float o, float w,
+      float l) {
+    elements[OrbitalElements.DISTANCE] = a;
+    elements[OrbitalElements.ECCENTRICITY] = e;
+    elements[OrbitalElements.INCLINATION] = i;
+    elements[OrbitalElements.ASCENDING_NODE] = o;
+    elements[OrbitalElements.PERIHELION] = w;
+    elements[OrbitalElements.MEAN_LONGITUDE] = l;
+  }
+
 
   // TODO(serafini): We need to correct the Ra/Dec for the user's location. The
   // current calculation is probably accurate to a degree or two, but we can,
@@ -342,17 +372,27 @@ public enum Planet {
   /**
    * Return the date of the next full moon after today.
    */
-  // TODO(serafini): This could also be error prone right around the time
-  // of the full and new moons...
   public static Date getNextFullMoon(Date now) {
+    EventSearch.Event fullMoon =
+        EventSearch.findNext(EventSearch.EventType.FULL_MOON, Moon, now.getTime());
+    if (fullMoon == null) {
+      // The search should always find one within a month, but callers expect
+      // a date, so fall back to estimating it from the current phase.
+      Log.w(TAG, "No full moon found after " + now);
+      return estimateNextFullMoon(now);
+    }
+    return new Date(fullMoon.getTimeMillis());
+  }
+
+  // Estimates the next full moon from the Moon's phase and the mean length of
+  // the lunar cycle; good to within a day or so.
+  private static Date estimateNextFullMoon(Date now) {
     // First, get the moon's current phase.
     float phase = Moon.calculatePhaseAngle(now);
 
     // Next, figure out if the moon is waxing or waning.
-    boolean isWaxing = false;
-    Date later = new Date(now.getTime() + 1 * 3600 * 1000);
-    float phase2 = Moon.calculatePhaseAngle(later);
-    isWaxing = phase2 > phase;
+    Date later = new Date(now.getTime() + TimeConstants.MILLISECONDS_PER_HOUR);
+    boolean isWaxing = Moon.calculatePhaseAngle(later) > phase;
 
     // If moon is waxing, next full moon is (180.0 - phase)/360.0 * 29.53.
     // If moon is waning, next full moon is (360.0 - phase)/360.0 * 29.53.
@@ -360,29 +400,7 @@ public enum Planet {
     float baseAngle = (isWaxing ? 180.0f : 360.0f);
     float numDays = (baseAngle - phase) / 360.0f * LUNAR_CYCLE;
 
-    return new Date(now.getTime() + (long) (numDays * 24.0 * 3600.0 * 1000.0));
-  }
-  
-  /**
-   * Return the date of the next full moon after today.
-   * Slow incremental version, only correct to within an hour.
-   */
-  public static Date getNextFullMoonSlow(Date now) {
-    Date fullMoon = new Date(now.getTime());
-    float phase = Moon.calculatePhaseAngle(now);
-    boolean waxing = false;
-    
-    while (true) {
-      fullMoon.setTime(fullMoon.getTime() + TimeConstants.MILLISECONDS_PER_HOUR);
-      float nextPhase = Moon.calculatePhaseAngle(fullMoon);
-      if (waxing && nextPhase < phase) {
-        fullMoon.setTime(fullMoon.getTime() - TimeConstants.MILLISECONDS_PER_HOUR);
-        return fullMoon;
-      }
-      waxing = (nextPhase > phase);
-      phase = nextPhase;
-      Log.d(TAG, "Phase: " + phase + "\tDate:" + fullMoon);
-    }
+    return new Date(now.getTime() + (long) (numDays * TimeConstants.MILLISECONDS_PER_DAY));
   }
 
   /**
@@ -487,9 +505,11 @@ public enum Planet {
    */
   public enum RiseSetIndicator { RISE, SET }
 
-  // Maximum number of times to calculate rise/set times. If we cannot
-  // converge after this many iteretions, we will fail.
-  private final static int MAX_ITERATIONS = 25;
+  // Shared by all planets, so that asking for a second rise or set time in
+  // the same place and day is a lookup.
+  private static class AlmanacHolder {
+    static final Almanac ALMANAC = new Almanac();
+  }
 
   /**
    * Calculates the next rise or set time of this planet from a given observer.
@@ -503,102 +523,23 @@ public enum Planet {
    */
   public Calendar calcNextRiseSetTime(Calendar now, LatLong loc,
                                       RiseSetIndicator indicator) {
-    // Make a copy of the calendar to return.
-    Calendar riseSetTime = Calendar.getInstance();
-    double riseSetUt = calcRiseSetTime(now.getTime(), loc, indicator);
-    // Early out if no nearby rise set time.
-    if (riseSetUt < 0) {
-      return null;
-    }
-    
-    // Find the start of this day in the local time zone. The (a / b) * b
-    // formulation looks weird, it's using the properties of int arithmetic
-    // so that (a / b) is really floor(a / b).
-    long dayStart = (now.getTimeInMillis() / TimeConstants.MILLISECONDS_PER_DAY)
-                    * TimeConstants.MILLISECONDS_PER_DAY - riseSetTime.get(Calendar.ZONE_OFFSET);
-    long riseSetUtMillis = (long) (calcRiseSetTime(now.getTime(), loc, indicator)
-                                  * TimeConstants.MILLISECONDS_PER_HOUR);
-    long newTime = dayStart + riseSetUtMillis + riseSetTime.get(Calendar.ZONE_OFFSET);
-    // If the newTime is before the current time, go forward 1 day.
-    if (newTime < now.getTimeInMillis()) {
-      Log.d(TAG, "Nearest Rise/Set is in the past. Adding one day.");
-      newTime += TimeConstants.MILLISECONDS_PER_DAY;
-    }
-    riseSetTime.setTimeInMillis(newTime);
-    if (!riseSetTime.after(now)) {
-      Log.e(TAG, "Next rise set time (" + riseSetTime.toString()
-                 + ") should be after current time (" + now.toString() + ")");
-    }
-    return riseSetTime;
-  }
-
-  // Internally calculate the rise and set time of an object.
-  // Returns a double, the number of hours through the day in UT.
-  private double calcRiseSetTime(Date d, LatLong loc,
-                                 RiseSetIndicator indicator) {
-    Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UT"));
-    cal.setTime(d);
-
-    float sign = (indicator == RiseSetIndicator.RISE ? 1.0f : -1.0f);
-    float delta = 5.0f;
-    float ut = 12.0f;
-
-    int counter = 0;
-    while ((Math.abs(delta) > 0.008) && counter < MAX_ITERATIONS) {
-      cal.set(Calendar.HOUR_OF_DAY, (int) MathUtil.floor(ut));
-      float minutes = (ut - MathUtil.floor(ut)) * 60.0f;
-      cal.set(Calendar.MINUTE, (int) minutes);
-      cal.set(Calendar.SECOND, (int) ((minutes - MathUtil.floor(minutes)) * 60.f));
-
-      // Calculate the hour angle and declination of the planet.
-      // TODO(serafini): Need to fix this for arbitrary RA/Dec locations.
-      Date tmp = cal.getTime();
-      HeliocentricCoordinates sunCoordinates =
-        HeliocentricCoordinates.getInstance(Planet.Sun, tmp);
-      RaDec raDec = RaDec.getInstance(this, tmp, sunCoordinates);
-
-      // GHA = GST - RA. (In degrees.)
-      float gst = TimeUtil.meanSiderealTime(tmp, 0);
-      float gha = gst - raDec.ra;
-
-      // The value of -0.83 works for the diameter of the Sun and Moon. We
-      // assume that other objects are simply points.
-      float bodySize = (this == Planet.Sun || this == Planet.Moon) ? -0.83f : 0.0f;
-      float hourAngle = calculateHourAngle(bodySize, loc.latitude, raDec.dec);
-
-      delta = (gha + loc.longitude + (sign * hourAngle)) / 15.0f;
-      while (delta < -24.0f) {
-        delta = delta + 24.0f;
+    long nowMillis = now.getTimeInMillis();
+    // The next day spans today and tomorrow in UT.  Today's first rise or set
+    // may already have passed, but not a second one.
+    for (int i = 0; i < 2; i++) {
+      Almanac.Day day =
+          AlmanacHolder.ALMANAC.getDay(loc, nowMillis + i * TimeConstants.MILLISECONDS_PER_DAY);
+      long time = indicator == RiseSetIndicator.RISE ? day.getRiseTimeAfter(this, nowMillis)
+                                                     : day.getSetTimeAfter(this, nowMillis);
+      if (time != Almanac.NONE && time <= nowMillis + TimeConstants.MILLISECONDS_PER_DAY) {
+        Calendar riseSetTime = Calendar.getInstance();
+        riseSetTime.setTimeInMillis(time);
+        return riseSetTime;
       }
-      while (delta > 24.0f) {
-        delta = delta - 24.0f;
-      }
-      ut = ut - delta;
-
-      // I think we need to normalize UT
-      while (ut < 0.0f) {
-        ut = ut + 24.0f;
-      }
-      while (ut > 24.0f) {
-        ut = ut - 24.0f;
-      }
-
-      ++counter;
     }
-
-    // Return failure if we didn't converge.
-    if (counter == MAX_ITERATIONS) {
-      Log.d(TAG, "Rise/Set calculation didn't converge.");
-      return -1.0f;
-    }
-
-    // TODO(serafini): Need to handle latitudes above 60
-    // At latitudes above 60, we need to calculate the following:
-    // sin h = sin phi sin delta + cos phi cos delta cos (gha + lambda)
-    return ut;
+    return null;
   }
 
-
   // Calculates the hour angle of a given declination for the given location.
   // This is a helper application for the rise and set calculations. Its
   // probably not worth using as a general purpose method.
@@ -26,8 +26,6 @@ import com.google.android.stardroid.source.impl.ImageSourceImpl;
 import com.google.android.stardroid.source.impl.PointSourceImpl;
 import com.google.android.stardroid.source.impl.TextSourceImpl;
 import com.google.android.stardroid.units.GeocentricCoordinates;
-import com.google.android.stardroid.units.HeliocentricCoordinates;
-import com.google.android.stardroid.units.RaDec;
 import com.google.android.stardroid.units.Vector3;
 
 import android.content.SharedPreferences;
@@ -58,20 +56,26 @@ public class PlanetSource extends AbstractAstronomicalSource {
   private final Planet planet;
   private final Resources resources;
   private final AstronomerModel model;
+  private final EphemerisCache ephemeris;
+  private final PositionPipeline pipeline;
   private final String name;
   private final SharedPreferences preferences;
   private final GeocentricCoordinates currentCoords = new GeocentricCoordinates(0, 0, 0);
-  private HeliocentricCoordinates sunCoords;
+  // The Earth's heliocentric position, used as the up vector for images.
+  private final Vector3 sunCoords = new Vector3(0, 0, 0);
   private int imageId = -1;
 
   private long lastUpdateTimeMs  = 0L;
 
   public PlanetSource(Planet planet, Resources resources,
-      AstronomerModel model, SharedPreferences prefs) {
+      AstronomerModel model, EphemerisCache ephemeris, PositionPipeline pipeline,
+      SharedPreferences prefs) {
 
     this.planet = planet;
     this.resources = resources;
     this.model = model;
+    this.ephemeris = ephemeris;
+    this.pipeline = pipeline;
     this.name = resources.getString(planet.getNameResourceId());
     this.preferences = prefs;
   }
@@ -88,8 +92,14 @@ public class PlanetSource extends AbstractAstronomicalSource {
 
   private void updateCoords(Date time) {
     this.lastUpdateTimeMs = time.getTime();
-    this.sunCoords = HeliocentricCoordinates.getInstance(Planet.Sun, time);
-    this.currentCoords.updateFromRaDec(RaDec.getInstance(planet, time, sunCoords));
+    if (!pipeline.getPosition(planet, lastUpdateTimeMs, currentCoords, sunCoords)
+        && (!ephemeris.getPosition(planet, lastUpdateTimeMs, currentCoords)
+            || !ephemeris.getEarthPosition(lastUpdateTimeMs, sunCoords))) {
+      // Not fitted yet.  Every planet updated at this time shares the same frame.
+      EphemerisFrame frame = EphemerisFrame.forTime(lastUpdateTimeMs);
+      frame.getEarthPosition(sunCoords);
+      this.currentCoords.updateFromRaDec(frame.getRa(planet), frame.getDec(planet));
+    }
     for (ImageSourceImpl imageSource : imageSources) {
       imageSource.setUpVector(sunCoords);  // TODO(johntaylor): figure out why we do this.
     }
@@ -134,7 +144,10 @@ public class PlanetSource extends AbstractAstronomicalSource {
         imageSources.get(0).setUpVector(sunCoords);
 
         // update image:
-        int newImageId = planet.getImageResourceId(modelTime);
+        int newImageId = pipeline.getMoonImageId(modelTime.getTime());
+        if (newImageId == -1) {
+          newImageId = planet.getImageResourceId(modelTime);
+        }
         if (newImageId != imageId) {
           imageId = newImageId;
           imageSources.get(0).setImageId(imageId);
@@ -145,6 +158,16 @@ public class PlanetSource extends AbstractAstronomicalSource {
     return updates;
   }
 
+  @Override
+  public long getNextUpdateTimeMillis() {
+    return lastUpdateTimeMs + planet.getUpdateFrequencyMs() + 1;
+  }
+
+  @Override
+  public long getPreviousUpdateTimeMillis() {
+    return lastUpdateTimeMs - planet.getUpdateFrequencyMs() - 1;
+  }
+
   @Override
   public List<? extends ImageSource> getImages() {
     return imageSources;
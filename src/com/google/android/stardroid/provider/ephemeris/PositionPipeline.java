@@ -0,0 +1,280 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.units.Vector3;
+import com.google.android.stardroid.util.MiscUtil;
+
+import android.util.Log;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the planets' positions for the model times coming up, so that
+ * while time travel is playing the simulation thread only has to look them
+ * up.
+ *
+ * <p>The pipeline infers how model time is moving from the times it is asked
+ * for: successive times a steady step apart, such as the whole days by which
+ * fast time travel moves, are extrapolated into a ring of samples at that
+ * step which a background thread keeps filled ahead of the model time.
+ * Times between samples are interpolated.  A time outside the ring, or a
+ * step that changes direction or size, means the user has jumped or changed
+ * speed: the ring is flushed and refilled from the new time, and until then
+ * lookups miss and the caller computes positions itself.
+ */
+public class PositionPipeline {
+  private static final String TAG = MiscUtil.getTag(PositionPipeline.class);
+  private static final Executor WORKER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "PositionPipeline");
+      // Don't compete with the UI or simulation threads.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private static final Planet[] PLANETS = Planet.values();
+  // The Earth's heliocentric position is stored after the planets'.
+  private static final int EARTH = PLANETS.length;
+  private static final int BODY_COUNT = PLANETS.length + 1;
+  // Samples computed ahead; at the simulation thread's rate of about 60 a
+  // second, about a second's worth.
+  private static final int LOOK_AHEAD = 64;
+  // A step this many times larger or smaller than the ring's is a change of
+  // speed.
+  private static final int MAX_STEP_RATIO = 4;
+
+  private static final class Sample {
+    final float[] positions = new float[BODY_COUNT * 3];
+    int moonImageId;
+  }
+
+  private final EphemerisCache ephemeris;
+
+  // All guarded by this.  Sample n, counting from the anchor, is at
+  // anchorMillis + n * stepMillis and is held in ring[n % LOOK_AHEAD] while
+  // first <= n < produced.
+  private final Sample[] ring = new Sample[LOOK_AHEAD];
+  private long anchorMillis;
+  private long stepMillis = 0;
+  private long first = 0;
+  private long produced = 0;
+  // Incremented by each flush, so that the worker can tell whether the
+  // sample it is computing is still wanted.
+  private int generation = 0;
+  private boolean filling = false;
+  private long lastTimeMillis;
+  private boolean hasLastTime = false;
+  private int hits = 0;
+  private int misses = 0;
+
+  /** Samples are computed from the given cache where it covers them. */
+  public PositionPipeline(EphemerisCache ephemeris) {
+    this.ephemeris = ephemeris;
+    for (int i = 0; i < LOOK_AHEAD; i++) {
+      ring[i] = new Sample();
+    }
+  }
+
+  /**
+   * Writes the planet's geocentric direction at the given time, as a unit
+   * vector in equatorial coordinates, and the Earth's heliocentric ecliptic
+   * position into the results.  Returns false, leaving them unchanged, if the
+   * pipeline hasn't computed the time.
+   */
+  public synchronized boolean getPosition(Planet planet, long timeMillis, Vector3 position,
+      Vector3 earthPosition) {
+    int index = find(timeMillis);
+    if (index < 0) {
+      return false;
+    }
+    float[] p0 = ring[index].positions;
+    float[] p1 = ring[(index + 1) % LOOK_AHEAD].positions;
+    float fraction = (float) ((double) (timeMillis - sampleTime(index)) / stepMillis);
+    interpolate(p0, p1, 3 * planet.ordinal(), fraction, position);
+    float length = position.length();
+    position.assign(position.x / length, position.y / length, position.z / length);
+    interpolate(p0, p1, 3 * EARTH, fraction, earthPosition);
+    return true;
+  }
+
+  /**
+   * Returns the resource id of the Moon's image at the given time, or -1 if
+   * the pipeline hasn't computed the time.
+   */
+  public synchronized int getMoonImageId(long timeMillis) {
+    int index = find(timeMillis);
+    return index < 0 ? -1 : ring[index].moonImageId;
+  }
+
+  /**
+   * Returns the ring index of the sample at or before the given time, with
+   * the one after it also computed unless the time is exactly on a sample,
+   * or -1.  Notes the time to track how model time is moving.
+   */
+  private int find(long timeMillis) {
+    if (!hasLastTime || timeMillis != lastTimeMillis) {
+      observe(timeMillis);
+    }
+    long n = sampleNumber(timeMillis);
+    boolean between = n >= 0 && (timeMillis - anchorMillis) % stepMillis != 0;
+    if (n < first || n >= produced || (between && n + 1 >= produced)) {
+      misses++;
+      return -1;
+    }
+    hits++;
+    return (int) (n % LOOK_AHEAD);
+  }
+
+  /**
+   * Returns the number of the last sample at or before the given time in
+   * the direction of travel, or -1 if the time is behind the anchor.
+   */
+  private long sampleNumber(long timeMillis) {
+    long offset = timeMillis - anchorMillis;
+    if (stepMillis == 0 || (offset != 0 && (offset > 0) != (stepMillis > 0))) {
+      return -1;
+    }
+    return offset / stepMillis;
+  }
+
+  private long sampleTime(int index) {
+    // The ring holds a contiguous run, so the sample's number is the one in
+    // [first, first + LOOK_AHEAD) with this index.
+    long n = first + ((index - first % LOOK_AHEAD) + LOOK_AHEAD) % LOOK_AHEAD;
+    return anchorMillis + n * stepMillis;
+  }
+
+  /** Moves the ring on to a new model time, or flushes it. */
+  private void observe(long timeMillis) {
+    long step = timeMillis - lastTimeMillis;
+    boolean firstTime = !hasLastTime;
+    lastTimeMillis = timeMillis;
+    hasLastTime = true;
+    if (firstTime) {
+      return;
+    }
+
+    long n = sampleNumber(timeMillis);
+    boolean sameSpeed = stepMillis != 0
+        && (step > 0) == (stepMillis > 0)
+        && Math.abs(step) <= MAX_STEP_RATIO * Math.abs(stepMillis)
+        && MAX_STEP_RATIO * Math.abs(step) >= Math.abs(stepMillis);
+    if (sameSpeed && n >= first && n < produced) {
+      // Still on course: drop the samples behind.
+      first = n;
+      requestFill();
+      return;
+    }
+
+    if (stepMillis != 0) {
+      Log.d(TAG, "Flushing after " + hits + " hits, " + misses + " misses");
+    }
+    generation++;
+    anchorMillis = timeMillis;
+    stepMillis = step;
+    first = 0;
+    produced = 0;
+    hits = 0;
+    misses = 0;
+    requestFill();
+  }
+
+  private void requestFill() {
+    if (filling || produced - first >= LOOK_AHEAD) {
+      return;
+    }
+    filling = true;
+    WORKER.execute(new Runnable() {
+      public void run() {
+        fill();
+      }
+    });
+  }
+
+  /** Computes samples until the ring is full, or flushed. */
+  private void fill() {
+    Sample scratch = new Sample();
+    GeocentricCoordinates position = new GeocentricCoordinates(0, 0, 0);
+    while (true) {
+      long n;
+      long timeMillis;
+      int fillGeneration;
+      synchronized (this) {
+        if (produced - first >= LOOK_AHEAD) {
+          filling = false;
+          return;
+        }
+        n = produced;
+        timeMillis = anchorMillis + n * stepMillis;
+        fillGeneration = generation;
+      }
+
+      compute(timeMillis, scratch, position);
+
+      synchronized (this) {
+        if (fillGeneration == generation) {
+          int index = (int) (n % LOOK_AHEAD);
+          Sample replaced = ring[index];
+          ring[index] = scratch;
+          scratch = replaced;
+          produced = n + 1;
+        }
+      }
+    }
+  }
+
+  private void compute(long timeMillis, Sample sample, GeocentricCoordinates position) {
+    float[] positions = sample.positions;
+    EphemerisFrame frame = null;
+    for (Planet planet : PLANETS) {
+      if (!ephemeris.getPosition(planet, timeMillis, position)) {
+        if (frame == null) {
+          frame = new EphemerisFrame(timeMillis);
+        }
+        position.updateFromRaDec(frame.getRa(planet), frame.getDec(planet));
+      }
+      set(positions, 3 * planet.ordinal(), position);
+    }
+    if (!ephemeris.getEarthPosition(timeMillis, position)) {
+      if (frame == null) {
+        frame = new EphemerisFrame(timeMillis);
+      }
+      frame.getEarthPosition(position);
+    }
+    set(positions, 3 * EARTH, position);
+    sample.moonImageId = Planet.Moon.getImageResourceId(new Date(timeMillis));
+  }
+
+  private static void set(float[] positions, int offset, Vector3 v) {
+    positions[offset] = v.x;
+    positions[offset + 1] = v.y;
+    positions[offset + 2] = v.z;
+  }
+
+  private static void interpolate(float[] p0, float[] p1, int offset, float fraction,
+      Vector3 result) {
+    result.assign(p0[offset] + fraction * (p1[offset] - p0[offset]),
+                  p0[offset + 1] + fraction * (p1[offset + 1] - p0[offset + 1]),
+                  p0[offset + 2] + fraction * (p1[offset + 2] - p0[offset + 2]));
+  }
+}
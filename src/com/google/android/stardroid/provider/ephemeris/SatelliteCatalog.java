@@ -0,0 +1,205 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Matrix33;
+import com.google.android.stardroid.util.Geometry;
+import com.google.android.stardroid.util.MiscUtil;
+import com.google.android.stardroid.util.TimeFrame;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of satellites read from a file of two-line element sets, which can be
+ * propagated together to find where each appears from a given place.
+ *
+ * <p>The satellites are propagated in batches on a pool with a thread per
+ * core.  The results are packed into one float array, three floats per
+ * satellite, ready to be copied into the layer's points.
+ */
+public class SatelliteCatalog {
+  private static final String TAG = MiscUtil.getTag(SatelliteCatalog.class);
+  // Big enough that a batch takes a fraction of a millisecond, which dwarfs
+  // the cost of handing it to a thread.
+  private static final int BATCH_SIZE = 512;
+  // WGS-72, to match the elements.
+  private static final double EARTH_RADIUS_KM = 6378.135;
+  private static final double FLATTENING = 1 / 298.26;
+
+  private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "SatelliteCatalog-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      // Don't compete with the UI thread.
+      thread.setPriority(Thread.NORM_PRIORITY - 1);
+      return thread;
+    }
+  };
+  // Shared by every catalog, as a catalog is replaced whenever its file is.
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(), THREAD_FACTORY);
+
+  private final List<Sgp4> satellites;
+
+  public SatelliteCatalog(List<Sgp4> satellites) {
+    this.satellites = Collections.unmodifiableList(new ArrayList<Sgp4>(satellites));
+  }
+
+  /**
+   * Reads element sets, with or without title lines, skipping any which
+   * can't be parsed.
+   */
+  public static SatelliteCatalog read(BufferedReader in) throws IOException {
+    ArrayList<Sgp4> satellites = new ArrayList<Sgp4>();
+    String title = null;
+    String line1 = null;
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.startsWith("1 ") && line1 == null) {
+        line1 = line;
+      } else if (line.startsWith("2 ") && line1 != null) {
+        try {
+          satellites.add(new Sgp4(title, line1, line));
+        } catch (IllegalArgumentException e) {
+          Log.w(TAG, "Skipping bad element set for " + title + ": " + e.getMessage());
+        } catch (StringIndexOutOfBoundsException e) {
+          Log.w(TAG, "Skipping truncated element set for " + title);
+        }
+        title = null;
+        line1 = null;
+      } else if (line.trim().length() > 0) {
+        title = line;
+        line1 = null;
+      }
+    }
+    Log.d(TAG, "Read " + satellites.size() + " satellites");
+    return new SatelliteCatalog(satellites);
+  }
+
+  public int size() {
+    return satellites.size();
+  }
+
+  public Sgp4 get(int index) {
+    return satellites.get(index);
+  }
+
+  /**
+   * Writes the direction of each satellite as seen from the observer at the
+   * given time into directions, as unit vectors in celestial coordinates.
+   * The satellite at index i goes at 3 * i.  Satellites for which the
+   * elements give no position, usually because they've since decayed, are
+   * written as NaNs.
+   *
+   * @return the number of satellites positioned
+   */
+  public int propagate(long timeMillis, LatLong observer, float[] directions)
+      throws InterruptedException {
+    TimeFrame frame = TimeFrame.forTime(timeMillis);
+    // The elements' TEME frame is taken as the mean equator and equinox of
+    // date, which is out by the nutation, some tens of arcseconds.
+    final Matrix33 precession = frame.getPrecession(new Matrix33());
+    final double[] observerPosition = getObserverPosition(frame, observer);
+    final long time = timeMillis;
+    final float[] result = directions;
+
+    int n = satellites.size();
+    List<Callable<Integer>> batches = new ArrayList<Callable<Integer>>();
+    for (int start = 0; start < n; start += BATCH_SIZE) {
+      final int from = start;
+      final int to = Math.min(n, start + BATCH_SIZE);
+      batches.add(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          return propagate(from, to, time, precession, observerPosition, result);
+        }
+      });
+    }
+    int count = 0;
+    for (Future<Integer> batch : EXECUTOR.invokeAll(batches)) {
+      try {
+        count += batch.get();
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    return count;
+  }
+
+  private int propagate(int from, int to, long timeMillis, Matrix33 p,
+      double[] observerPosition, float[] directions) {
+    double[] teme = new double[3];
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (!satellites.get(i).getPosition(timeMillis, teme)) {
+        directions[3 * i] = Float.NaN;
+        directions[3 * i + 1] = Float.NaN;
+        directions[3 * i + 2] = Float.NaN;
+        continue;
+      }
+      // Back to J2000 by the transpose of the precession, then relative to
+      // the observer.
+      double x = p.xx * teme[0] + p.yx * teme[1] + p.zx * teme[2] - observerPosition[0];
+      double y = p.xy * teme[0] + p.yy * teme[1] + p.zy * teme[2] - observerPosition[1];
+      double z = p.xz * teme[0] + p.yz * teme[1] + p.zz * teme[2] - observerPosition[2];
+      double scale = 1 / Math.sqrt(x * x + y * y + z * z);
+      directions[3 * i] = (float) (x * scale);
+      directions[3 * i + 1] = (float) (y * scale);
+      directions[3 * i + 2] = (float) (z * scale);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the observer's position in kilometers from the center of the
+   * Earth, in celestial coordinates, taking them to be at sea level.  For a
+   * satellite a few hundred kilometers up, placing the observer on a sphere
+   * instead of the ellipsoid would put it out by a few degrees.
+   */
+  private static double[] getObserverPosition(TimeFrame frame, LatLong observer) {
+    double latitude = observer.latitude * Geometry.DEGREES_TO_RADIANS;
+    double longitude = observer.longitude * Geometry.DEGREES_TO_RADIANS;
+    double e2 = FLATTENING * (2 - FLATTENING);
+    double sinLatitude = Math.sin(latitude);
+    double n = EARTH_RADIUS_KM / Math.sqrt(1 - e2 * sinLatitude * sinLatitude);
+    double x = n * Math.cos(latitude) * Math.cos(longitude);
+    double y = n * Math.cos(latitude) * Math.sin(longitude);
+    double z = n * (1 - e2) * sinLatitude;
+    Matrix33 r = frame.getEarthRotation(new Matrix33());
+    return new double[] {
+        r.xx * x + r.xy * y + r.xz * z,
+        r.yx * x + r.yy * y + r.yz * z,
+        r.zx * x + r.zy * y + r.zz * z};
+  }
+}
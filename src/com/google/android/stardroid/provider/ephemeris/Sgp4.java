@@ -0,0 +1,386 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * The orbit of an Earth satellite, propagated with SGP4 from a NORAD two-line
+ * element set.
+ *
+ * <p>This follows the revised SGP4 of Vallado et al., "Revisiting Spacetrack
+ * Report #3" (2006), with WGS-72 constants, which is what the published
+ * element sets are fitted with.  Positions are in kilometers in the TEME
+ * frame (the true equator and mean equinox of date).
+ *
+ * <p>Only the near-Earth theory is implemented.  Objects with periods of 225
+ * minutes or more, which SDP4 would also perturb for the Sun and Moon and for
+ * resonances with the Earth's gravity field, are propagated with the secular
+ * gravity and drag terms alone.  For the navigation and geostationary
+ * satellites this is within a few tens of kilometers, a small fraction of a
+ * degree at their distance, for a week or two either side of the epoch.
+ */
+public final class Sgp4 {
+  private static final double TWO_PI = 2 * Math.PI;
+  private static final double DEGREES_TO_RADIANS = Math.PI / 180;
+  // WGS-72.
+  private static final double EARTH_RADIUS_KM = 6378.135;
+  private static final double MU = 398600.8;
+  private static final double XKE = 60.0 / Math.sqrt(EARTH_RADIUS_KM * EARTH_RADIUS_KM
+      * EARTH_RADIUS_KM / MU);
+  private static final double J2 = 0.001082616;
+  private static final double J3 = -0.00000253881;
+  private static final double J4 = -0.00000165597;
+  private static final double J3OJ2 = J3 / J2;
+  private static final double X2O3 = 2.0 / 3.0;
+  private static final double DEEP_SPACE_PERIOD_MINUTES = 225;
+
+  private final String name;
+  private final int catalogNumber;
+  private final long epochMillis;
+
+  // Elements at epoch; angles in radians, mean motion in radians per minute.
+  private final double bstar;
+  private final double inclination;
+  private final double node;
+  private final double eccentricity;
+  private final double perigee;
+  private final double meanAnomaly;
+  private final double meanMotion;
+
+  // Constants of the propagation, named as in the report.
+  private boolean isimp;
+  private double aycof;
+  private double con41;
+  private double cc1;
+  private double cc4;
+  private double cc5;
+  private double d2;
+  private double d3;
+  private double d4;
+  private double delmo;
+  private double eta;
+  private double argpdot;
+  private double omgcof;
+  private double sinmao;
+  private double t2cof;
+  private double t3cof;
+  private double t4cof;
+  private double t5cof;
+  private double x1mth2;
+  private double x7thm1;
+  private double mdot;
+  private double nodedot;
+  private double xlcof;
+  private double xmcof;
+  private double nodecf;
+
+  /**
+   * Reads an element set.  The name is the optional title line which precedes
+   * the two lines of elements.
+   *
+   * @throws IllegalArgumentException if the lines aren't a valid element set
+   */
+  public Sgp4(String name, String line1, String line2) {
+    if (line1.length() < 69 || line2.length() < 69
+        || line1.charAt(0) != '1' || line2.charAt(0) != '2') {
+      throw new IllegalArgumentException("Not a two-line element set: " + line1);
+    }
+    catalogNumber = Integer.parseInt(line1.substring(2, 7).trim());
+    this.name = name != null ? name.trim() : String.valueOf(catalogNumber);
+
+    int year = Integer.parseInt(line1.substring(18, 20).trim());
+    double days = Double.parseDouble(line1.substring(20, 32).trim());
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.clear();
+    calendar.set(year < 57 ? 2000 + year : 1900 + year, Calendar.JANUARY, 1);
+    epochMillis = calendar.getTimeInMillis() + Math.round((days - 1) * 86400000.0);
+    bstar = parseExponent(line1.substring(53, 61));
+
+    inclination = Double.parseDouble(line2.substring(8, 16).trim()) * DEGREES_TO_RADIANS;
+    node = Double.parseDouble(line2.substring(17, 25).trim()) * DEGREES_TO_RADIANS;
+    eccentricity = Double.parseDouble("0." + line2.substring(26, 33).trim());
+    perigee = Double.parseDouble(line2.substring(34, 42).trim()) * DEGREES_TO_RADIANS;
+    meanAnomaly = Double.parseDouble(line2.substring(43, 51).trim()) * DEGREES_TO_RADIANS;
+    double revolutionsPerDay = Double.parseDouble(line2.substring(52, 63).trim());
+    if (revolutionsPerDay <= 0 || eccentricity >= 1) {
+      throw new IllegalArgumentException("Not a closed orbit: " + line2);
+    }
+
+    // Recover the original mean motion from the Kozai mean motion in the
+    // element set.
+    double noKozai = revolutionsPerDay * TWO_PI / 1440;
+    double cosio = Math.cos(inclination);
+    double cosio2 = cosio * cosio;
+    double omeosq = 1 - eccentricity * eccentricity;
+    double rteosq = Math.sqrt(omeosq);
+    double ak = Math.pow(XKE / noKozai, X2O3);
+    double d1 = 0.75 * J2 * (3 * cosio2 - 1) / (rteosq * omeosq);
+    double del = d1 / (ak * ak);
+    double adel = ak * (1 - del * del - del * (1.0 / 3 + 134 * del * del / 81));
+    del = d1 / (adel * adel);
+    meanMotion = noKozai / (1 + del);
+    initialize(cosio, cosio2, omeosq, rteosq);
+  }
+
+  // Parses a field such as " 12345-3", meaning 0.12345e-3.
+  private static double parseExponent(String field) {
+    String s = field.trim();
+    if (s.length() == 0) {
+      return 0;
+    }
+    int sign = 1;
+    if (s.charAt(0) == '-' || s.charAt(0) == '+') {
+      sign = s.charAt(0) == '-' ? -1 : 1;
+      s = s.substring(1);
+    }
+    int split = Math.max(s.lastIndexOf('-'), s.lastIndexOf('+'));
+    if (split <= 0) {
+      return sign * Double.parseDouble("0." + s);
+    }
+    return sign * Double.parseDouble("0." + s.substring(0, split))
+        * Math.pow(10, Integer.parseInt(s.substring(split).replace("+", "")));
+  }
+
+  private void initialize(double cosio, double cosio2, double omeosq, double rteosq) {
+    double ao = Math.pow(XKE / meanMotion, X2O3);
+    double sinio = Math.sin(inclination);
+    double po = ao * omeosq;
+    double con42 = 1 - 5 * cosio2;
+    con41 = -con42 - cosio2 - cosio2;
+    double posq = po * po;
+    double rp = ao * (1 - eccentricity);
+
+    // Drag is modelled by an atmosphere whose density falls off above s, which
+    // is lowered for satellites with low perigees.
+    double ss = 78 / EARTH_RADIUS_KM + 1;
+    double qzms2t = Math.pow((120 - 78) / EARTH_RADIUS_KM, 4);
+    isimp = rp < 220 / EARTH_RADIUS_KM + 1
+        || TWO_PI / meanMotion >= DEEP_SPACE_PERIOD_MINUTES;
+    double sfour = ss;
+    double qzms24 = qzms2t;
+    double perige = (rp - 1) * EARTH_RADIUS_KM;
+    if (perige < 156) {
+      sfour = perige < 98 ? 20 : perige - 78;
+      qzms24 = Math.pow((120 - sfour) / EARTH_RADIUS_KM, 4);
+      sfour = sfour / EARTH_RADIUS_KM + 1;
+    }
+    double pinvsq = 1 / posq;
+    double tsi = 1 / (ao - sfour);
+    eta = ao * eccentricity * tsi;
+    double etasq = eta * eta;
+    double eeta = eccentricity * eta;
+    double psisq = Math.abs(1 - etasq);
+    double coef = qzms24 * Math.pow(tsi, 4);
+    double coef1 = coef / Math.pow(psisq, 3.5);
+    double cc2 = coef1 * meanMotion * (ao * (1 + 1.5 * etasq + eeta * (4 + etasq))
+        + 0.375 * J2 * tsi / psisq * con41 * (8 + 3 * etasq * (8 + etasq)));
+    cc1 = bstar * cc2;
+    double cc3 = 0;
+    if (eccentricity > 1.0e-4) {
+      cc3 = -2 * coef * tsi * J3OJ2 * meanMotion * sinio / eccentricity;
+    }
+    x1mth2 = 1 - cosio2;
+    cc4 = 2 * meanMotion * coef1 * ao * omeosq * (eta * (2 + 0.5 * etasq)
+        + eccentricity * (0.5 + 2 * etasq)
+        - J2 * tsi / (ao * psisq) * (-3 * con41 * (1 - 2 * eeta + etasq * (1.5 - 0.5 * eeta))
+            + 0.75 * x1mth2 * (2 * etasq - eeta * (1 + etasq)) * Math.cos(2 * perigee)));
+    cc5 = 2 * coef1 * ao * omeosq * (1 + 2.75 * (etasq + eeta) + eeta * etasq);
+
+    double cosio4 = cosio2 * cosio2;
+    double temp1 = 1.5 * J2 * pinvsq * meanMotion;
+    double temp2 = 0.5 * temp1 * J2 * pinvsq;
+    double temp3 = -0.46875 * J4 * pinvsq * pinvsq * meanMotion;
+    mdot = meanMotion + 0.5 * temp1 * rteosq * con41
+        + 0.0625 * temp2 * rteosq * (13 - 78 * cosio2 + 137 * cosio4);
+    argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2 * (7 - 114 * cosio2 + 395 * cosio4)
+        + temp3 * (3 - 36 * cosio2 + 49 * cosio4);
+    double xhdot1 = -temp1 * cosio;
+    nodedot = xhdot1 + (0.5 * temp2 * (4 - 19 * cosio2) + 2 * temp3 * (3 - 7 * cosio2)) * cosio;
+    omgcof = bstar * cc3 * Math.cos(perigee);
+    xmcof = 0;
+    if (eccentricity > 1.0e-4) {
+      xmcof = -X2O3 * coef * bstar / eeta;
+    }
+    nodecf = 3.5 * omeosq * xhdot1 * cc1;
+    t2cof = 1.5 * cc1;
+    // Avoids dividing by zero for an inclination of 180 degrees.
+    double denominator = Math.abs(cosio + 1) > 1.5e-12 ? 1 + cosio : 1.5e-12;
+    xlcof = -0.25 * J3OJ2 * sinio * (3 + 5 * cosio) / denominator;
+    aycof = -0.5 * J3OJ2 * sinio;
+    double delmotemp = 1 + eta * Math.cos(meanAnomaly);
+    delmo = delmotemp * delmotemp * delmotemp;
+    sinmao = Math.sin(meanAnomaly);
+    x7thm1 = 7 * cosio2 - 1;
+
+    if (!isimp) {
+      double cc1sq = cc1 * cc1;
+      d2 = 4 * ao * tsi * cc1sq;
+      double temp = d2 * tsi * cc1 / 3;
+      d3 = (17 * ao + sfour) * temp;
+      d4 = 0.5 * temp * ao * tsi * (221 * ao + 31 * sfour) * cc1;
+      t3cof = d2 + 2 * cc1sq;
+      t4cof = 0.25 * (3 * d3 + cc1 * (12 * d2 + 10 * cc1sq));
+      t5cof = 0.2 * (3 * d4 + 12 * cc1 * d3 + 6 * d2 * d2 + 15 * cc1sq * (2 * d2 + cc1sq));
+    }
+  }
+
+  /** Returns the satellite's name, or its catalog number if the set had no name. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the satellite's NORAD catalog number. */
+  public int getCatalogNumber() {
+    return catalogNumber;
+  }
+
+  /** Returns the epoch of the elements, in milliseconds since the Unix epoch. */
+  public long getEpochMillis() {
+    return epochMillis;
+  }
+
+  /**
+   * Writes the satellite's TEME position in kilometers at the given time into
+   * result, which must have three elements.
+   *
+   * @return false if the elements don't give a position at that time, as when
+   *     drag has brought the satellite down
+   */
+  public boolean getPosition(long timeMillis, double[] result) {
+    return getPosition((timeMillis - epochMillis) / 60000.0, result);
+  }
+
+  /**
+   * As {@link #getPosition(long, double[])}, for a time in minutes since the
+   * epoch of the elements.
+   */
+  public boolean getPosition(double t, double[] result) {
+    // Secular effects of gravity and drag.
+    double xmdf = meanAnomaly + mdot * t;
+    double argpdf = perigee + argpdot * t;
+    double nodedf = node + nodedot * t;
+    double argpm = argpdf;
+    double mm = xmdf;
+    double t2 = t * t;
+    double nodem = nodedf + nodecf * t2;
+    double tempa = 1 - cc1 * t;
+    double tempe = bstar * cc4 * t;
+    double templ = t2cof * t2;
+    if (!isimp) {
+      double delomg = omgcof * t;
+      double delmtemp = 1 + eta * Math.cos(xmdf);
+      double delm = xmcof * (delmtemp * delmtemp * delmtemp - delmo);
+      double temp = delomg + delm;
+      mm = xmdf + temp;
+      argpm = argpdf - temp;
+      double t3 = t2 * t;
+      double t4 = t3 * t;
+      tempa = tempa - d2 * t2 - d3 * t3 - d4 * t4;
+      tempe = tempe + bstar * cc5 * (Math.sin(mm) - sinmao);
+      templ = templ + t3cof * t3 + t4 * (t4cof + t * t5cof);
+    }
+
+    double am = Math.pow(XKE / meanMotion, X2O3) * tempa * tempa;
+    double nm = XKE / Math.pow(am, 1.5);
+    double em = eccentricity - tempe;
+    if (am <= 0 || em >= 1 || em < -0.001) {
+      return false;
+    }
+    if (em < 1.0e-6) {
+      em = 1.0e-6;
+    }
+    mm = mm + meanMotion * templ;
+    double xlm = mm + argpm + nodem;
+    nodem = nodem % TWO_PI;
+    argpm = argpm % TWO_PI;
+    xlm = xlm % TWO_PI;
+    mm = (xlm - argpm - nodem) % TWO_PI;
+
+    // Long period periodics.
+    double sinip = Math.sin(inclination);
+    double cosip = Math.cos(inclination);
+    double axnl = em * Math.cos(argpm);
+    double temp = 1 / (am * (1 - em * em));
+    double aynl = em * Math.sin(argpm) + temp * aycof;
+    double xl = mm + argpm + nodem + temp * xlcof * axnl;
+
+    // Kepler's equation.
+    double u = (xl - nodem) % TWO_PI;
+    double eo1 = u;
+    double sineo1 = 0;
+    double coseo1 = 1;
+    double tem5 = 9999.9;
+    for (int i = 0; i < 10 && Math.abs(tem5) >= 1.0e-12; i++) {
+      sineo1 = Math.sin(eo1);
+      coseo1 = Math.cos(eo1);
+      tem5 = 1 - coseo1 * axnl - sineo1 * aynl;
+      tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+      if (Math.abs(tem5) >= 0.95) {
+        tem5 = tem5 > 0 ? 0.95 : -0.95;
+      }
+      eo1 += tem5;
+    }
+
+    // Short period periodics.
+    double ecose = axnl * coseo1 + aynl * sineo1;
+    double esine = axnl * sineo1 - aynl * coseo1;
+    double el2 = axnl * axnl + aynl * aynl;
+    double pl = am * (1 - el2);
+    if (pl < 0) {
+      return false;
+    }
+    double rl = am * (1 - ecose);
+    double betal = Math.sqrt(1 - el2);
+    temp = esine / (1 + betal);
+    double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+    double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+    double su = Math.atan2(sinu, cosu);
+    double sin2u = (cosu + cosu) * sinu;
+    double cos2u = 1 - 2 * sinu * sinu;
+    temp = 1 / pl;
+    double temp1 = 0.5 * J2 * temp;
+    double temp2 = temp1 * temp;
+
+    double mrt = rl * (1 - 1.5 * temp2 * betal * con41) + 0.5 * temp1 * x1mth2 * cos2u;
+    if (mrt < 1) {
+      return false;  // Below the surface.
+    }
+    su = su - 0.25 * temp2 * x7thm1 * sin2u;
+    double xnode = nodem + 1.5 * temp2 * cosip * sin2u;
+    double xinc = inclination + 1.5 * temp2 * cosip * sinip * cos2u;
+
+    double sinsu = Math.sin(su);
+    double cossu = Math.cos(su);
+    double snod = Math.sin(xnode);
+    double cnod = Math.cos(xnode);
+    double sini = Math.sin(xinc);
+    double cosi = Math.cos(xinc);
+    double xmx = -snod * cosi;
+    double xmy = cnod * cosi;
+    double r = mrt * EARTH_RADIUS_KM;
+    result[0] = r * (xmx * sinsu + cnod * cossu);
+    result[1] = r * (xmy * sinsu + snod * cossu);
+    result[2] = r * sini * sinsu;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + catalogNumber + ")";
+  }
+}
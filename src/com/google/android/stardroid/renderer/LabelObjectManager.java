@@ -18,10 +18,12 @@ import android.graphics.Paint;
 import android.graphics.Typeface;
 
 import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.LabelDeclutterer;
 import com.google.android.stardroid.renderer.util.LabelMaker;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
+import com.google.android.stardroid.source.PositionSource;
 import com.google.android.stardroid.source.TextSource;
 import com.google.android.stardroid.units.GeocentricCoordinates;
 import com.google.android.stardroid.units.Vector3;
@@ -33,14 +35,22 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 
 /**
  * Manages rendering of text labels.
+ *
+ * <p>Each frame, the labels which are on screen are ranked by importance:
+ * bigger fonts first, then those closest to the center of the screen.  The
+ * most important ones are then placed on a {@link LabelDeclutterer} shared by
+ * all of the label managers, and any label which would overlap one already
+ * drawn (by this manager or one for an earlier layer) is skipped.
  * 
  * @author James Powell
  *
@@ -56,6 +66,19 @@ public class LabelObjectManager extends RendererObjectManager {
   private SkyRegionMap<ArrayList<Label>> mSkyRegions = new SkyRegionMap<ArrayList<Label>>(); 
   
   private IntBuffer mQuadBuffer;
+
+  // Ranks labels by how important it is to draw them, most important first.
+  private static final Comparator<Label> BY_PRIORITY = new Comparator<Label>() {
+    @Override
+    public int compare(Label l1, Label l2) {
+      return Float.compare(l2.priority, l1.priority);
+    }
+  };
+
+  // The on screen labels of the current frame, most important at the head.
+  // Its array only grows, so ranking doesn't allocate once it fits a frame.
+  private PriorityQueue<Label> mCandidates = new PriorityQueue<Label>(64, BY_PRIORITY);
+  private Vector3 mScratch = new Vector3(0, 0, 0);
   
   // These are intermediate variables set in beginDrawing() and used in
   // draw() to make the transformations more efficient
@@ -113,6 +136,13 @@ public class LabelObjectManager extends RendererObjectManager {
     if (!fullReload && mLabelMaker != null) {
       mLabelMaker.shutdown(gl);
     }
+    if (mLabels.length == 0) {
+      // Don't hold on to a texture while there are no labels, as when the
+      // layer has been released.
+      mLabelMaker = null;
+      mTexture = null;
+      return;
+    }
     
     mLabelMaker = new LabelMaker(true);
     mTexture = mLabelMaker.initialize(gl, mLabelPaint, mLabels,
@@ -127,6 +157,15 @@ public class LabelObjectManager extends RendererObjectManager {
         mLabels[i] = new Label(labels.get(i));
       }
       queueForReload(false);
+    } else if (updateType.contains(UpdateType.Append)) {
+      Label[] oldLabels = mLabels;
+      mLabels = new Label[oldLabels.length + labels.size()];
+      System.arraycopy(oldLabels, 0, mLabels, 0, oldLabels.length);
+      for (int i = 0; i < labels.size(); i++) {
+        mLabels[oldLabels.length + i] = new Label(labels.get(i));
+      }
+      // The label texture has to be regenerated to include the new labels.
+      queueForReload(false);
     } else if (updateType.contains(UpdateType.UpdatePositions)) {
       if (labels.size() != mLabels.length) {
         logUpdateMismatch("LabelObjectManager", mLabels.length, labels.size(), updateType);
@@ -143,16 +182,17 @@ public class LabelObjectManager extends RendererObjectManager {
       }
     }
     
-    // Put all of the labels in their sky regions.
-    // TODO(jpowell): Get this from the label source itself once it supports
-    // this.
+    // Put all of the labels in their sky regions, using the region from the
+    // label source if it has one.
     mSkyRegions.clear();
     for (Label l : mLabels) {
       int region;
-      if (COMPUTE_REGIONS) {
-        region = SkyRegionMap.getObjectRegion(new GeocentricCoordinates(l.x, l.y, l.z));
-      } else {
+      if (!COMPUTE_REGIONS) {
         region = SkyRegionMap.CATCHALL_REGION_ID;
+      } else if (l.region != PositionSource.UNKNOWN_REGION) {
+        region = l.region;
+      } else {
+        region = SkyRegionMap.getObjectRegion(l.x, l.y, l.z);
       }
       mSkyRegions.getRegionData(region).add(l);
     }
@@ -160,6 +200,9 @@ public class LabelObjectManager extends RendererObjectManager {
 
   @Override
   protected void drawInternal(GL10 gl) {
+    if (mTexture == null) {
+      return;
+    }
     gl.glTexEnvx(GL10.GL_TEXTURE_ENV, GL10.GL_TEXTURE_ENV_MODE, 
                  GL10.GL_MODULATE);
 
@@ -174,13 +217,28 @@ public class LabelObjectManager extends RendererObjectManager {
 
     beginDrawing(gl);
     
-    // Draw the labels for the active sky regions.
+    // Rank the labels for the active sky regions.
+    LabelDeclutterer declutterer = getRenderState().getLabelDeclutterer();
+    mCandidates.clear();
     SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
     ArrayList<ArrayList<Label>> allActiveLabels =
         mSkyRegions.getDataForActiveRegions(activeRegions);
     
     for (ArrayList<Label> labelsInRegion : allActiveLabels) {
       for (Label l : labelsInRegion) {
+        if (projectLabel(l)) {
+          mCandidates.add(l);
+        }
+      }
+    }
+
+    // Draw them most important first, skipping any which would overlap
+    // labels that have already been drawn, until the frame's budget of drawn
+    // labels is used up.
+    Label l;
+    while (declutterer.getRemainingBudget() > 0 && (l = mCandidates.poll()) != null) {
+      if (declutterer.place(l.screenX - l.halfScreenWidth, l.screenY - l.halfScreenHeight,
+                            l.screenX + l.halfScreenWidth, l.screenY + l.halfScreenHeight)) {
         drawLabel(gl, l);
       }
     }
@@ -266,6 +324,7 @@ public class LabelObjectManager extends RendererObjectManager {
       z = ts.getLocation().z;
       
       offset = ts.getOffset();
+      region = ts.getRegion();
       
       int rgb = ts.getColor();
       int a = 0xff;
@@ -290,25 +349,42 @@ public class LabelObjectManager extends RendererObjectManager {
     public int fixedG;
     public int fixedB;
     public int fixedA;
+
+    // The precomputed region of the label, or PositionSource.UNKNOWN_REGION.
+    public int region;
+
+    // Set for the current frame by projectLabel: the screen position, half
+    // the extent of the (rotated) label on screen, and its priority.
+    public float screenX;
+    public float screenY;
+    public float halfScreenWidth;
+    public float halfScreenHeight;
+    public float priority;
   }
   
 
-  private void drawLabel(GL10 gl, Label label) {
-    Vector3 lookDir = getRenderState().getLookDir();
-    if (lookDir.x * label.x + lookDir.y * label.y + lookDir.z * label.z < mDotProductThreshold) {
-      return;
+  /**
+   * Computes where the label is on screen for this frame, and its priority.
+   * Returns false if it is off the screen.
+   */
+  private boolean projectLabel(Label label) {
+    RenderStateInterface rs = getRenderState();
+    Vector3 lookDir = rs.getLookDir();
+    float lookDot = lookDir.x * label.x + lookDir.y * label.y + lookDir.z * label.z;
+    if (lookDot < mDotProductThreshold) {
+      return false;
     }
     
     // Offset the label to be underneath the given position (so a label will 
     // always appear underneath a star no matter how the phone is rotated) 
-    Vector3 v = new Vector3(
+    mScratch.assign(
         label.x - mLabelOffset.x * label.offset,
         label.y - mLabelOffset.y * label.offset,
         label.z - mLabelOffset.z * label.offset);
     
     Vector3 screenPos = Matrix4x4.transformVector(
-        getRenderState().getTransformToScreenMatrix(),
-        v);
+        rs.getTransformToScreenMatrix(),
+        mScratch, mScratch);
     
     // We want this to align consistently with the pixels on the screen, so we
     // snap to the nearest x/y coordinate, and add a magic offset of less than
@@ -316,12 +392,34 @@ public class LabelObjectManager extends RendererObjectManager {
     // top of a label to be one pixel off, which results in a noticeable
     // distortion in the text.
     final float MAGIC_OFFSET = 0.25f;
-    screenPos.x = (int)screenPos.x + MAGIC_OFFSET;
-    screenPos.y = (int)screenPos.y + MAGIC_OFFSET;
+    label.screenX = (int)screenPos.x + MAGIC_OFFSET;
+    label.screenY = (int)screenPos.y + MAGIC_OFFSET;
+
+    // The label is rotated by the up angle, so use the bounds of the
+    // rotated rectangle.
+    float cos = Math.abs(rs.getCosUpAngle());
+    float sin = Math.abs(rs.getSinUpAngle());
+    float width = label.getWidthInPixels();
+    float height = label.getHeightInPixels();
+    label.halfScreenWidth = 0.5f * (width * cos + height * sin);
+    label.halfScreenHeight = 0.5f * (width * sin + height * cos);
+    if (label.screenX + label.halfScreenWidth < 0
+        || label.screenX - label.halfScreenWidth > rs.getScreenWidth()
+        || label.screenY + label.halfScreenHeight < 0
+        || label.screenY - label.halfScreenHeight > rs.getScreenHeight()) {
+      return false;
+    }
 
+    // Font size dominates; lookDot (at most 1) breaks ties in favor of the
+    // labels nearest the center of the screen.
+    label.priority = label.getFontSize() + lookDot;
+    return true;
+  }
+
+  private void drawLabel(GL10 gl, Label label) {
     gl.glPushMatrix();
     
-    gl.glTranslatef(screenPos.x, screenPos.y, 0);
+    gl.glTranslatef(label.screenX, label.screenY, 0);
     gl.glRotatef(MathUtil.RADIANS_TO_DEGREES * getRenderState().getUpAngle(), 0, 0, -1);
     gl.glScalef(label.getWidthInPixels(), label.getHeightInPixels(), 1);
    
@@ -17,19 +17,25 @@ package com.google.android.stardroid.renderer;
 import android.util.Log;
 
 import com.google.android.stardroid.R;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
 import com.google.android.stardroid.renderer.util.IndexBuffer;
 import com.google.android.stardroid.renderer.util.NightVisionColorBuffer;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TexCoordBuffer;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
 import com.google.android.stardroid.renderer.util.VertexBuffer;
 import com.google.android.stardroid.source.PointSource;
+import com.google.android.stardroid.source.PositionSource;
 import com.google.android.stardroid.units.Vector3;
 import com.google.android.stardroid.util.MathUtil;
-import com.google.android.stardroid.util.VectorUtil;
+import com.google.android.stardroid.util.StarAttributeCalculator;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -41,15 +47,204 @@ public class PointObjectManager extends RendererObjectManager {
   // Right now, I'm arbitrarily setting the threshold to 200.
   private static final int MINIMUM_NUM_POINTS_FOR_REGIONS = 200;
 
-  private class RegionData {
-    // TODO(jpowell): This is a convenient hack until the catalog tells us the
-    // region for all of its sources.  Remove this once we add that.
+  // By inspecting the perspective projection matrix, you can show that,
+  // to have a quad at the center of the screen to be of size k by k
+  // pixels, the width and height are both:
+  // k * tan(fovy / 2) / screenHeight
+  // This is not difficult to derive.  Look at the transformation matrix
+  // in SkyRenderer if you're interested in seeing why this is true.
+  // I'm arbitrarily deciding that at a 60 degree field of view, and 480
+  // pixels high, a size of 1 means "1 pixel," so calculate sizeFactor
+  // based on this.  These numbers mostly come from the fact that that's
+  // what I think looks reasonable.
+  private static final float SIZE_FACTOR = MathUtil.tan(60 * MathUtil.PI / 180.0f * 0.5f) / 480;
+
+  // Memory budget for the stars paged in from a tiled catalog.
+  private static final int TILE_CACHE_BYTES = 8 * 1024 * 1024;
+
+  /**
+   * The buffers for a set of point quads.  These only live in CPU memory
+   * until they are first drawn, so they can be filled off the GL thread.
+   *
+   * <p>Quads should be added brightest first, so that the quads brighter than
+   * a magnitude limit can be drawn as a prefix of the index buffer.
+   */
+  static class QuadBuffers {
+    // Quads are indexed with shorts, so this is the most one set can hold.
+    static final int MAX_QUADS = Short.MAX_VALUE / 4;
+
+    // Per quad: 4 fixed point vertices, 4 normal and 4 red colors, 4 fixed
+    // point tex coords and 6 short indices.
+    static final int BYTES_PER_QUAD = 4 * 12 + 4 * 8 + 4 * 8 + 6 * 2;
+
+    private final VertexBuffer mVertexBuffer;
+    private final NightVisionColorBuffer mColorBuffer;
+    private final TexCoordBuffer mTexCoordBuffer;
+    private final IndexBuffer mIndexBuffer;
+    private float[] mMagnitudes = new float[0];
+    private short mIndex = 0;
+
+    QuadBuffers(boolean useVbo) {
+      mVertexBuffer = new VertexBuffer(useVbo);
+      mColorBuffer = new NightVisionColorBuffer(useVbo);
+      mTexCoordBuffer = new TexCoordBuffer(useVbo);
+      mIndexBuffer = new IndexBuffer(useVbo);
+    }
+
+    void reset(int numQuads) {
+      mVertexBuffer.reset(4 * numQuads);
+      mColorBuffer.reset(4 * numQuads);
+      mTexCoordBuffer.reset(4 * numQuads);
+      mIndexBuffer.reset(6 * numQuads);
+      mMagnitudes = new float[numQuads];
+      mIndex = 0;
+    }
+
+    /**
+     * Uses the buffers of a snapshot mesh, as written by {@link #toMesh},
+     * instead of building new ones.
+     */
+    void reset(GeometrySnapshot.Mesh mesh) {
+      mVertexBuffer.reset(mesh.vertices);
+      mColorBuffer.reset(mesh.colors, mesh.nightVisionColors);
+      mTexCoordBuffer.reset(mesh.texCoords);
+      mIndexBuffer.reset(mesh.indices);
+      FloatBuffer magnitudes = mesh.magnitudes.duplicate();
+      magnitudes.clear();
+      mMagnitudes = new float[magnitudes.capacity()];
+      magnitudes.get(mMagnitudes);
+      mIndex = (short) mesh.getNumVertices();
+    }
+
+    GeometrySnapshot.Mesh toMesh(int region) {
+      return new GeometrySnapshot.Mesh(GeometrySnapshot.TYPE_POINTS, region,
+          mVertexBuffer.getData(), mColorBuffer.getData(), mColorBuffer.getNightVisionData(),
+          mTexCoordBuffer.getData(), FloatBuffer.wrap(mMagnitudes), mIndexBuffer.getData());
+    }
+
+    int getNumQuads() {
+      return mVertexBuffer.size() / 4;
+    }
+
+    int getSizeInBytes() {
+      return getNumQuads() * BYTES_PER_QUAD;
+    }
+
+    /**
+     * Adds a square facing the origin, centered on the unit vector (x, y, z).
+     * The magnitude must be no brighter than that of the previous quad.
+     */
+    void addQuad(float x, float y, float z, int color, int size, int imageIndex,
+                 float magnitude) {
+      mMagnitudes[mIndex / 4] = magnitude;
+      color |= 0xff000000;  // Force alpha to 0xff
+      short bottomLeft = mIndex++;
+      short topLeft = mIndex++;
+      short bottomRight = mIndex++;
+      short topRight = mIndex++;
+
+      // First triangle
+      mIndexBuffer.addIndex(bottomLeft);
+      mIndexBuffer.addIndex(topLeft);
+      mIndexBuffer.addIndex(bottomRight);
+
+      // Second triangle
+      mIndexBuffer.addIndex(topRight);
+      mIndexBuffer.addIndex(bottomRight);
+      mIndexBuffer.addIndex(topLeft);
+
+      float starWidthInTexels = 1.0f / NUM_STARS_IN_TEXTURE;
+      float texOffsetU = starWidthInTexels * imageIndex;
+
+      mTexCoordBuffer.addTexCoords(texOffsetU, 1);
+      mTexCoordBuffer.addTexCoords(texOffsetU, 0);
+      mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 1);
+      mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 0);
+
+      // u = normalized(pos x up), v = u x pos, with up = (0, 1, 0).
+      float uLength = MathUtil.sqrt(z * z + x * x);
+      float ux = -z / uLength;
+      float uz = x / uLength;
+      float vx = -uz * y;
+      float vy = uz * x - ux * z;
+      float vz = ux * y;
+
+      float s = size * SIZE_FACTOR;
+      float sux = s * ux;
+      float suz = s * uz;
+      float svx = s * vx;
+      float svy = s * vy;
+      float svz = s * vz;
+
+      // Add the vertices
+      mVertexBuffer.addPoint(x - sux - svx, y - svy, z - suz - svz);  // bottom left
+      mColorBuffer.addColor(color);
+
+      mVertexBuffer.addPoint(x - sux + svx, y + svy, z - suz + svz);  // top left
+      mColorBuffer.addColor(color);
+
+      mVertexBuffer.addPoint(x + sux - svx, y - svy, z + suz - svz);  // bottom right
+      mColorBuffer.addColor(color);
+
+      mVertexBuffer.addPoint(x + sux + svx, y + svy, z + suz + svz);  // top right
+      mColorBuffer.addColor(color);
+    }
+
+    void reload() {
+      mVertexBuffer.reload();
+      mColorBuffer.reload();
+      mTexCoordBuffer.reload();
+      mIndexBuffer.reload();
+    }
+
+    // Frees the OpenGL buffers; call before dropping the quads.
+    void release() {
+      mVertexBuffer.release();
+      mColorBuffer.release();
+      mTexCoordBuffer.release();
+      mIndexBuffer.release();
+    }
+
+    /**
+     * Draws the quads which are at least as bright as the given magnitude.
+     */
+    void draw(GL10 gl, boolean nightVisionMode, float magnitudeLimit) {
+      int numQuads = getNumQuadsBrighterThan(magnitudeLimit);
+      if (numQuads == 0) {
+        return;
+      }
+      mVertexBuffer.set(gl);
+      mColorBuffer.set(gl, nightVisionMode);
+      mTexCoordBuffer.set(gl);
+      mIndexBuffer.draw(gl, GL10.GL_TRIANGLES, 6 * numQuads);
+    }
+
+    private int getNumQuadsBrighterThan(float magnitudeLimit) {
+      // Binary search for the first quad fainter than the limit.
+      int low = 0;
+      int high = getNumQuads();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (mMagnitudes[mid] <= magnitudeLimit) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private static class RegionData {
+    // These are kept after the buffers are built so that points can be
+    // appended to the region later.
     List<PointSource> sources = new ArrayList<PointSource>();
 
-    private VertexBuffer mVertexBuffer = new VertexBuffer(true);
-    private NightVisionColorBuffer mColorBuffer = new NightVisionColorBuffer(true);
-    private TexCoordBuffer mTexCoordBuffer = new TexCoordBuffer(true);
-    private IndexBuffer mIndexBuffer = new IndexBuffer(true);
+    private final QuadBuffers mBuffers;
+
+    RegionData(boolean useVbo) {
+      mBuffers = new QuadBuffers(useVbo);
+    }
   }
   // Should we compute the regions for the points?
   // If false, we just put them in the catchall region.
@@ -58,6 +253,22 @@ public class PointObjectManager extends RendererObjectManager {
 
   private SkyRegionMap<RegionData> mSkyRegions = new SkyRegionMap<RegionData>();
 
+  // Sorts points brightest first.
+  private static final Comparator<PointSource> BRIGHTEST_FIRST = new Comparator<PointSource>() {
+    @Override
+    public int compare(PointSource p1, PointSource p2) {
+      return Float.compare(getMagnitude(p1), getMagnitude(p2));
+    }
+  };
+
+  // Prebuilt geometry for all of the points, used instead of building it from
+  // the point sources.
+  private GeometrySnapshot mSnapshot = null;
+
+  // Stars paged in from a tiled catalog, on top of the point sources.
+  private StarTileCache mTileCache = null;
+  private final ArrayList<QuadBuffers> mActiveTiles = new ArrayList<QuadBuffers>();
+
   private TextureReference mTextureRef = null;
 
   public PointObjectManager(int layer, TextureManager textureManager) {
@@ -65,14 +276,119 @@ public class PointObjectManager extends RendererObjectManager {
     // We want to initialize the labels of a sky region to an empty set of data.
     mSkyRegions.setRegionDataFactory(
         new SkyRegionMap.RegionDataFactory<RegionData>() {
-          public RegionData construct() { return new RegionData(); }
+          public RegionData construct() { return new RegionData(true); }
         });
   }
 
+  /**
+   * Returns the faintest magnitude worth drawing at the given field of view
+   * (in degrees).  This is 5.5 at the default field of view of 45 degrees,
+   * enough for every star in the standard catalog, and changes by 5
+   * magnitudes for every 10x zoom: fully zoomed out at 90 degrees only
+   * stars brighter than 4 are drawn, and the 6.5 naked eye limit is reached
+   * at about 28 degrees.
+   */
+  static float getMagnitudeLimit(float radiusOfView) {
+    return 5.5f + 5 * (float) Math.log10(45 / radiusOfView);
+  }
+
+  /**
+   * Returns the magnitude of a point, as encoded in its color.
+   */
+  private static float getMagnitude(PointSource point) {
+    return StarAttributeCalculator.getMagnitude(point.getColor());
+  }
+
+  /**
+   * Draws stars from the given catalog in addition to the point sources,
+   * paging in the tiles which are on screen and bright enough for the current
+   * field of view.  Pass null to stop using a catalog.
+   */
+  public void setTiledCatalog(TiledStarCatalog catalog) {
+    if (mTileCache != null) {
+      mTileCache.clear();
+    }
+    mTileCache = catalog == null ? null : new StarTileCache(catalog, TILE_CACHE_BYTES);
+  }
+
+  /**
+   * Draws the point meshes of the given snapshot rather than building them
+   * from the point sources, which are then ignored.  Only suitable for
+   * points which never move, and the snapshot must have been built from the
+   * same points (see {@link #buildSnapshotMeshes}).  Pass null to go back to
+   * building from the sources on the next reset.
+   */
+  public void setGeometrySnapshot(GeometrySnapshot snapshot) {
+    mSnapshot = snapshot;
+  }
+
+  /**
+   * Builds the meshes for the given points exactly as they would be built
+   * by this manager, so that they can be saved in a {@link GeometrySnapshot}.
+   * Regions without points are left out.  Safe to call from any thread.
+   */
+  public static List<GeometrySnapshot.Mesh> buildSnapshotMeshes(List<PointSource> points) {
+    SkyRegionMap<RegionData> regions = new SkyRegionMap<RegionData>();
+    regions.setRegionDataFactory(
+        new SkyRegionMap.RegionDataFactory<RegionData>() {
+          public RegionData construct() { return new RegionData(false); }
+        });
+    for (PointSource point : points) {
+      regions.getRegionData(getRegion(point, points.size())).sources.add(point);
+    }
+    ArrayList<GeometrySnapshot.Mesh> meshes = new ArrayList<GeometrySnapshot.Mesh>();
+    for (int region = SkyRegionMap.CATCHALL_REGION_ID;
+         region < SkyRegionMap.REGION_CENTERS.length; region++) {
+      RegionData data = regions.getRegionData(region);
+      if (!data.sources.isEmpty()) {
+        buildRegion(data);
+        meshes.add(data.mBuffers.toMesh(region));
+      }
+    }
+    return meshes;
+  }
+
+  /**
+   * Returns the region that a point goes in, when there are the given number
+   * of points in total.
+   */
+  private static int getRegion(PointSource point, int numPoints) {
+    return numPoints < MINIMUM_NUM_POINTS_FOR_REGIONS
+        ? SkyRegionMap.CATCHALL_REGION_ID
+        : getRegion(point);
+  }
+
+  /**
+   * Returns the region that a point goes in, using the one from the catalog
+   * if it's there.
+   */
+  private static int getRegion(PointSource point) {
+    if (!COMPUTE_REGIONS) {
+      return SkyRegionMap.CATCHALL_REGION_ID;
+    }
+    int region = point.getRegion();
+    if (region != PositionSource.UNKNOWN_REGION) {
+      return region;
+    }
+    Vector3 location = point.getLocation();
+    return SkyRegionMap.getObjectRegion(location.x, location.y, location.z);
+  }
+
   public void updateObjects(List<PointSource> points, EnumSet<UpdateType> updateType) {
     boolean onlyUpdatePoints = true;
+    // Resetting to no points clears the manager, even if it has a snapshot.
+    if (mSnapshot != null && !points.isEmpty()) {
+      // The snapshot already has every point, so appended ones are ignored.
+      if (updateType.contains(UpdateType.Reset)) {
+        loadSnapshot();
+      }
+      return;
+    }
     // We only care about updates to positions, ignore any other updates.
-    if (updateType.contains(UpdateType.Reset)) {
+    if (updateType.contains(UpdateType.Append)) {
+      appendObjects(points);
+      return;
+    } else if (updateType.contains(UpdateType.Reset)) {
       onlyUpdatePoints = false;
     } else if (updateType.contains(UpdateType.UpdatePositions)) {
       // Sanity check: make sure the number of points is unchanged.
@@ -88,125 +404,83 @@ public class PointObjectManager extends RendererObjectManager {
 
     mNumPoints = points.size();
 
-    mSkyRegions.clear();
+    clearRegions();
 
-    if (COMPUTE_REGIONS) {
-      // Find the region for each point, and put it in a separate list
-      // for that region.
-      for (PointSource point : points) {
-        int region = points.size() < MINIMUM_NUM_POINTS_FOR_REGIONS
-            ? SkyRegionMap.CATCHALL_REGION_ID
-            : SkyRegionMap.getObjectRegion(point.getLocation());
-        mSkyRegions.getRegionData(region).sources.add(point);
-      }
-    } else {
-      mSkyRegions.getRegionData(SkyRegionMap.CATCHALL_REGION_ID).sources = points;
+    // Find the region for each point, and put it in a separate list
+    // for that region.
+    for (PointSource point : points) {
+      mSkyRegions.getRegionData(getRegion(point, points.size())).sources.add(point);
     }
 
     // Generate the resources for all of the regions.
     for (RegionData data : mSkyRegions.getDataForAllRegions()) {
-      int numVertices = 4 * data.sources.size();
-      int numIndices = 6 * data.sources.size();
-
-      data.mVertexBuffer.reset(numVertices);
-      data.mColorBuffer.reset(numVertices);
-      data.mTexCoordBuffer.reset(numVertices);
-      data.mIndexBuffer.reset(numIndices);
-
-      Vector3 up = new Vector3(0, 1, 0);
-
-      // By inspecting the perspective projection matrix, you can show that,
-      // to have a quad at the center of the screen to be of size k by k
-      // pixels, the width and height are both:
-      // k * tan(fovy / 2) / screenHeight
-      // This is not difficult to derive.  Look at the transformation matrix
-      // in SkyRenderer if you're interested in seeing why this is true.
-      // I'm arbitrarily deciding that at a 60 degree field of view, and 480
-      // pixels high, a size of 1 means "1 pixel," so calculate sizeFactor
-      // based on this.  These numbers mostly come from the fact that that's
-      // what I think looks reasonable.
-      float fovyInRadians = 60 * MathUtil.PI / 180.0f;
-      float sizeFactor = MathUtil.tan(fovyInRadians * 0.5f) / 480;
-
-      Vector3 bottomLeftPos = new Vector3(0, 0, 0);
-      Vector3 topLeftPos = new Vector3(0, 0, 0);
-      Vector3 bottomRightPos = new Vector3(0, 0, 0);
-      Vector3 topRightPos = new Vector3(0, 0, 0);
-
-      Vector3 su = new Vector3(0, 0, 0);
-      Vector3 sv = new Vector3(0, 0, 0);
-
-      short index = 0;
-
-      float starWidthInTexels = 1.0f / NUM_STARS_IN_TEXTURE;
-
-      for (PointSource p : data.sources) {
-        int color = 0xff000000 | p.getColor();  // Force alpha to 0xff
-        short bottomLeft = index++;
-        short topLeft = index++;
-        short bottomRight = index++;
-        short topRight = index++;
-
-        // First triangle
-        data.mIndexBuffer.addIndex(bottomLeft);
-        data.mIndexBuffer.addIndex(topLeft);
-        data.mIndexBuffer.addIndex(bottomRight);
-
-        // Second triangle
-        data.mIndexBuffer.addIndex(topRight);
-        data.mIndexBuffer.addIndex(bottomRight);
-        data.mIndexBuffer.addIndex(topLeft);
-
-        int starIndex = p.getPointShape().getImageIndex();
-
-        float texOffsetU = starWidthInTexels * starIndex;
-
-        data.mTexCoordBuffer.addTexCoords(texOffsetU, 1);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU, 0);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 1);
-        data.mTexCoordBuffer.addTexCoords(texOffsetU + starWidthInTexels, 0);
-
-        Vector3 pos = p.getLocation();
-        Vector3 u = VectorUtil.normalized(VectorUtil.crossProduct(pos, up));
-        Vector3 v = VectorUtil.crossProduct(u, pos);
-
-        float s = p.getSize() * sizeFactor;
-
-        su.assign(s*u.x, s*u.y, s*u.z);
-        sv.assign(s*v.x, s*v.y, s*v.z);
+      buildRegion(data);
+    }
+  }
 
-        bottomLeftPos.assign(pos.x - su.x - sv.x, pos.y - su.y - sv.y, pos.z - su.z - sv.z);
-        topLeftPos.assign(pos.x - su.x + sv.x, pos.y - su.y + sv.y, pos.z - su.z + sv.z);
-        bottomRightPos.assign(pos.x + su.x - sv.x, pos.y + su.y - sv.y, pos.z + su.z - sv.z);
-        topRightPos.assign(pos.x + su.x + sv.x, pos.y + su.y + sv.y, pos.z + su.z + sv.z);
+  private void loadSnapshot() {
+    clearRegions();
+    mNumPoints = 0;
+    for (GeometrySnapshot.Mesh mesh : mSnapshot.getMeshes(GeometrySnapshot.TYPE_POINTS)) {
+      RegionData data = mSkyRegions.getRegionData(mesh.region);
+      data.mBuffers.reset(mesh);
+      mNumPoints += data.mBuffers.getNumQuads();
+    }
+    Log.i("PointObjectManager", "Quads from snapshot: " + mNumPoints);
+  }
 
-        // Add the vertices
-        data.mVertexBuffer.addPoint(bottomLeftPos);
-        data.mColorBuffer.addColor(color);
+  /** Drops every region, freeing the regions' OpenGL buffers. */
+  private void clearRegions() {
+    for (RegionData data : mSkyRegions.getDataForAllRegions()) {
+      data.mBuffers.release();
+    }
+    mSkyRegions.clear();
+  }
 
-        data.mVertexBuffer.addPoint(topLeftPos);
-        data.mColorBuffer.addColor(color);
+  /**
+   * Adds the given points to the regions they belong in, rebuilding the
+   * buffers of only those regions.  Points which are already set stay in the
+   * region they were put in, even if that was the catchall region.
+   */
+  private void appendObjects(List<PointSource> points) {
+    ArrayList<RegionData> changedRegions = new ArrayList<RegionData>();
+    for (PointSource point : points) {
+      RegionData data = mSkyRegions.getRegionData(getRegion(point));
+      data.sources.add(point);
+      if (!changedRegions.contains(data)) {
+        changedRegions.add(data);
+      }
+    }
+    mNumPoints += points.size();
 
-        data.mVertexBuffer.addPoint(bottomRightPos);
-        data.mColorBuffer.addColor(color);
+    for (RegionData data : changedRegions) {
+      buildRegion(data);
+    }
+  }
 
-        data.mVertexBuffer.addPoint(topRightPos);
-        data.mColorBuffer.addColor(color);
-      }
-      Log.i("PointObjectManager",
-            "Vertices: " + data.mVertexBuffer.size() + ", Indices: " + data.mIndexBuffer.size());
-      data.sources = null;
+  /**
+   * Regenerates the vertex, color, texture coordinate and index buffers of a
+   * region from its sources, sorted brightest first.
+   */
+  private static void buildRegion(RegionData data) {
+    Collections.sort(data.sources, BRIGHTEST_FIRST);
+    data.mBuffers.reset(data.sources.size());
+    for (PointSource p : data.sources) {
+      Vector3 pos = p.getLocation();
+      data.mBuffers.addQuad(pos.x, pos.y, pos.z, p.getColor(), p.getSize(),
+                            p.getPointShape().getImageIndex(), getMagnitude(p));
     }
+    Log.i("PointObjectManager", "Quads: " + data.mBuffers.getNumQuads());
   }
 
   @Override
   public void reload(GL10 gl, boolean fullReload) {
     mTextureRef = textureManager().getTextureFromResource(gl, R.drawable.stars_texture);
     for (RegionData data : mSkyRegions.getDataForAllRegions()) {
-      data.mVertexBuffer.reload();
-      data.mColorBuffer.reload();
-      data.mTexCoordBuffer.reload();
-      data.mIndexBuffer.reload();
+      data.mBuffers.reload();
+    }
+    if (mTileCache != null && fullReload) {
+      mTileCache.reload();
     }
   }
 
@@ -232,15 +506,19 @@ public class PointObjectManager extends RendererObjectManager {
     // Render all of the active sky regions.
     SkyRegionMap.ActiveRegionData activeRegions = getRenderState().getActiveSkyRegions();
     ArrayList<RegionData> activeRegionData = mSkyRegions.getDataForActiveRegions(activeRegions);
+    // Only the bright end of each region is drawn when zoomed out.
+    boolean nightVisionMode = getRenderState().getNightVisionMode();
+    float magnitudeLimit = getMagnitudeLimit(getRenderState().getRadiusOfView());
     for (RegionData data : activeRegionData) {
-      if (data.mVertexBuffer.size() == 0) {
-        continue;
-      }
+      data.mBuffers.draw(gl, nightVisionMode, magnitudeLimit);
+    }
 
-      data.mVertexBuffer.set(gl);
-      data.mColorBuffer.set(gl, getRenderState().getNightVisionMode());
-      data.mTexCoordBuffer.set(gl);
-      data.mIndexBuffer.draw(gl, GL10.GL_TRIANGLES);
+    if (mTileCache != null) {
+      mActiveTiles.clear();
+      mTileCache.getTiles(activeRegions, magnitudeLimit, mActiveTiles);
+      for (QuadBuffers tile : mActiveTiles) {
+        tile.draw(gl, nightVisionMode, magnitudeLimit);
+      }
     }
 
     gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
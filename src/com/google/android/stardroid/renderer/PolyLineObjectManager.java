@@ -15,8 +15,10 @@
 package com.google.android.stardroid.renderer;
 
 import com.google.android.stardroid.R;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
 import com.google.android.stardroid.renderer.util.IndexBuffer;
 import com.google.android.stardroid.renderer.util.NightVisionColorBuffer;
+import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TexCoordBuffer;
 import com.google.android.stardroid.renderer.util.TextureManager;
 import com.google.android.stardroid.renderer.util.TextureReference;
@@ -27,6 +29,8 @@ import com.google.android.stardroid.units.Vector3;
 import com.google.android.stardroid.util.MathUtil;
 import com.google.android.stardroid.util.VectorUtil;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -39,10 +43,43 @@ public class PolyLineObjectManager extends RendererObjectManager {
   private IndexBuffer mIndexBuffer = new IndexBuffer(true);
   private TextureReference mTexRef = null;
   private boolean mOpaque = true;
+  // Prebuilt geometry for the lines, used instead of building it from the
+  // line sources.
+  private GeometrySnapshot mSnapshot = null;
   
   public PolyLineObjectManager(int layer, TextureManager textureManager) {
     super(layer, textureManager);
   }
+
+  /**
+   * Draws the line mesh of the given snapshot rather than building it from
+   * the line sources, which are then ignored.  Only suitable for lines which
+   * never move, and the snapshot must have been built from the same lines
+   * (see {@link #buildSnapshotMesh}).  Pass null to go back to building from
+   * the sources on the next reset.
+   */
+  public void setGeometrySnapshot(GeometrySnapshot snapshot) {
+    mSnapshot = snapshot;
+  }
+
+  /**
+   * Builds the mesh for the given lines exactly as this manager would, so
+   * that it can be saved in a {@link GeometrySnapshot}.  Returns null if
+   * there is nothing to draw.  Safe to call from any thread.
+   */
+  public static GeometrySnapshot.Mesh buildSnapshotMesh(List<LineSource> lines) {
+    VertexBuffer vb = new VertexBuffer();
+    NightVisionColorBuffer cb = new NightVisionColorBuffer();
+    TexCoordBuffer tb = new TexCoordBuffer();
+    IndexBuffer ib = new IndexBuffer();
+    buildLines(lines, vb, cb, tb, ib);
+    if (ib.size() == 0) {
+      return null;
+    }
+    return new GeometrySnapshot.Mesh(GeometrySnapshot.TYPE_LINES,
+        SkyRegionMap.CATCHALL_REGION_ID, vb.getData(), cb.getData(), cb.getNightVisionData(),
+        tb.getData(), FloatBuffer.allocate(0), ib.getData());
+  }
   
   public void updateObjects(List<LineSource> lines, EnumSet<UpdateType> updateType) {
     // We only care about updates to positions, ignore any other updates.
@@ -50,6 +87,51 @@ public class PolyLineObjectManager extends RendererObjectManager {
         !updateType.contains(UpdateType.UpdatePositions)) {
       return;
     }
+    // Resetting to no lines clears the manager, even if it has a snapshot.
+    if (mSnapshot != null && !lines.isEmpty()) {
+      if (updateType.contains(UpdateType.Reset)) {
+        loadSnapshot();
+      }
+      return;
+    }
+    mOpaque = buildLines(lines, mVertexBuffer, mColorBuffer, mTexCoordBuffer, mIndexBuffer);
+    if (mIndexBuffer.size() == 0) {
+      // Nothing to draw, so free the OpenGL buffers until there is.
+      mVertexBuffer.release();
+      mColorBuffer.release();
+      mTexCoordBuffer.release();
+      mIndexBuffer.release();
+    }
+  }
+
+  private void loadSnapshot() {
+    mVertexBuffer.reset(0);
+    mColorBuffer.reset(0);
+    mTexCoordBuffer.reset(0);
+    mIndexBuffer.reset(0);
+    mOpaque = true;
+    // All of the lines are built as a single mesh.
+    List<GeometrySnapshot.Mesh> meshes = mSnapshot.getMeshes(GeometrySnapshot.TYPE_LINES);
+    if (!meshes.isEmpty()) {
+      GeometrySnapshot.Mesh mesh = meshes.get(0);
+      mVertexBuffer.reset(mesh.vertices);
+      mColorBuffer.reset(mesh.colors, mesh.nightVisionColors);
+      mTexCoordBuffer.reset(mesh.texCoords);
+      mIndexBuffer.reset(mesh.indices);
+      IntBuffer colors = mesh.colors.duplicate();
+      colors.clear();
+      while (colors.hasRemaining()) {
+        mOpaque &= (colors.get() & 0xff000000) == 0xff000000;
+      }
+    }
+  }
+
+  /**
+   * Fills the given buffers with quads for the lines, returning whether they
+   * are all opaque.
+   */
+  private static boolean buildLines(List<LineSource> lines, VertexBuffer vb,
+      NightVisionColorBuffer cb, TexCoordBuffer tb, IndexBuffer ib) {
     int numLineSegments = 0;
     for (LineSource l : lines) {
       numLineSegments += l.getVertices().size() - 1;
@@ -60,13 +142,9 @@ public class PolyLineObjectManager extends RendererObjectManager {
     int numVertices = 4 * numLineSegments;
     int numIndices = 6 * numLineSegments;
     
-    VertexBuffer vb = mVertexBuffer;
     vb.reset(4 * numLineSegments);
-    NightVisionColorBuffer cb = mColorBuffer;
     cb.reset(4 * numLineSegments);
-    TexCoordBuffer tb = mTexCoordBuffer;
     tb.reset(numVertices);
-    IndexBuffer ib = mIndexBuffer;
     ib.reset(numIndices);
     
     // See comment in PointObjectManager for justification of this calculation.
@@ -139,7 +217,7 @@ public class PolyLineObjectManager extends RendererObjectManager {
         ib.addIndex(topRight);
       }
     }
-    mOpaque = opaque;
+    return opaque;
   }
   
   @Override
@@ -14,6 +14,9 @@
 
 package com.google.android.stardroid.renderer;
 
+import com.google.android.stardroid.renderer.util.SimulationThread;
+import com.google.android.stardroid.renderer.util.UpdateClosure;
+
 import android.opengl.GLSurfaceView;
 
 import java.util.LinkedList;
@@ -65,6 +68,11 @@ public class RendererController extends RendererControllerBase {
   }
 
   private final EventQueuer mQueuer;
+  private volatile SimulationThread mSimulationThread = null;
+  // The number of atomic sections queued so far.  Guarded by mAtomicLock,
+  // which is held while each is queued so they're counted in queue order.
+  private final Object mAtomicLock = new Object();
+  private long mAtomicSectionsQueued = 0;
 
   @Override
   protected EventQueuer getQueuer() {
@@ -85,17 +93,59 @@ public class RendererController extends RendererControllerBase {
     return "RendererController";
   }
 
+  /**
+   * Runs the update closures added from now on on the given thread, rather
+   * than on the render thread.
+   */
+  public void setSimulationThread(SimulationThread thread) {
+    mSimulationThread = thread;
+  }
+
+  @Override
+  public void addUpdateClosure(UpdateClosure closure) {
+    SimulationThread thread = mSimulationThread;
+    if (thread != null) {
+      thread.addUpdateClosure(closure);
+    } else {
+      super.addUpdateClosure(closure);
+    }
+  }
+
+  @Override
+  public void removeUpdateCallback(UpdateClosure closure) {
+    SimulationThread thread = mSimulationThread;
+    if (thread != null) {
+      thread.removeUpdateClosure(closure);
+    } else {
+      super.removeUpdateCallback(closure);
+    }
+  }
+
   public AtomicSection createAtomic() {
     return new AtomicSection(mRenderer);
   }
 
   public void queueAtomic(final AtomicSection atomic) {
     String msg = "Applying " + atomic.toString();
-    queueRunnable(msg, CommandType.Synchronization, new Runnable() { public void run() {
-      Queue<Runnable> events = atomic.releaseEvents();
-      for (Runnable r : events) {
-        r.run();
-      }
-    }});
+    synchronized (mAtomicLock) {
+      queueRunnable(msg, CommandType.Synchronization, new Runnable() { public void run() {
+        Queue<Runnable> events = atomic.releaseEvents();
+        for (Runnable r : events) {
+          r.run();
+        }
+        mRenderer.onAtomicSectionApplied();
+      }});
+      mAtomicSectionsQueued++;
+    }
+  }
+
+  /**
+   * Returns the number of atomic sections queued so far, for
+   * {@link com.google.android.stardroid.renderer.util.FrameSnapshot#atomicSections}.
+   */
+  public long getAtomicSectionsQueued() {
+    synchronized (mAtomicLock) {
+      return mAtomicSectionsQueued;
+    }
   }
 }
@@ -14,12 +14,17 @@
 
 package com.google.android.stardroid.renderer;
 
+import com.google.android.stardroid.renderer.util.FrameSnapshot;
+import com.google.android.stardroid.renderer.util.GeometrySnapshot;
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
+import com.google.android.stardroid.renderer.util.TripleBuffer;
 import com.google.android.stardroid.renderer.util.UpdateClosure;
 import com.google.android.stardroid.source.ImageSource;
 import com.google.android.stardroid.source.LineSource;
 import com.google.android.stardroid.source.PointSource;
 import com.google.android.stardroid.source.TextSource;
 import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.util.Matrix4x4;
 
 import android.os.ConditionVariable;
 import android.util.Log;
@@ -52,6 +57,18 @@ public abstract class RendererControllerBase {
       }});
     }
 
+    /**
+     * Sets the manager's model matrix (see
+     * {@link RendererObjectManager#setModelMatrix}).  The matrix mustn't be
+     * changed afterwards.
+     */
+    public void queueModelMatrix(final Matrix4x4 matrix, RendererControllerBase controller) {
+      String msg = "Setting manager model matrix";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        mManager.setModelMatrix(matrix);
+      }});
+    }
+
     public abstract void queueObjects(
         final List<E> objects,
         final EnumSet<RendererObjectManager.UpdateType> updateType,
@@ -77,6 +94,22 @@ public abstract class RendererControllerBase {
         ((PointObjectManager) mManager).updateObjects(points, updateType);
       }});
     }
+
+    public void queueTiledCatalog(final TiledStarCatalog catalog,
+                                  RendererControllerBase controller) {
+      String msg = "Setting tiled star catalog";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((PointObjectManager) mManager).setTiledCatalog(catalog);
+      }});
+    }
+
+    public void queueGeometrySnapshot(final GeometrySnapshot snapshot,
+                                      RendererControllerBase controller) {
+      String msg = "Setting point geometry snapshot";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((PointObjectManager) mManager).setGeometrySnapshot(snapshot);
+      }});
+    }
   }
 
   /**
@@ -96,6 +129,14 @@ public abstract class RendererControllerBase {
         ((PolyLineObjectManager) mManager).updateObjects(lines, updateType);
       }});
     }
+
+    public void queueGeometrySnapshot(final GeometrySnapshot snapshot,
+                                      RendererControllerBase controller) {
+      String msg = "Setting line geometry snapshot";
+      controller.queueRunnable(msg, CommandType.Data, new Runnable() { public void run() {
+        ((PolyLineObjectManager) mManager).setGeometrySnapshot(snapshot);
+      }});
+    }
   }
 
   /**
@@ -213,6 +254,13 @@ public abstract class RendererControllerBase {
     }});
   }
 
+  public void queueFrameSnapshots(final TripleBuffer<FrameSnapshot> frames) {
+    final String msg = "Setting frame snapshots";
+    queueRunnable(msg, CommandType.View, new Runnable() { public void run() {
+      mRenderer.setFrameSnapshots(frames);
+    }});
+  }
+
   public void queueSetViewOrientation(final float dirX, final float dirY, final float dirZ,
                                       final float upX, final float upY, final float upZ) {
     final String msg = "Setting view orientation";
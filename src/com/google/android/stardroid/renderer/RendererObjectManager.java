@@ -17,6 +17,7 @@ package com.google.android.stardroid.renderer;
 import android.util.Log;
 
 import com.google.android.stardroid.renderer.util.TextureManager;
+import com.google.android.stardroid.util.Matrix4x4;
 
 import java.util.EnumSet;
 
@@ -28,7 +29,9 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
   public enum UpdateType {
     Reset,            // Throw away any previous data and set entirely new data.
     UpdatePositions,  // Only update positions of existing objects.
-    UpdateImages      // Only update images of existing objects.
+    UpdateImages,     // Only update images of existing objects.
+    Append            // Add the given objects to the existing ones.  Only supported by
+                      // the point and label managers.
   }
 
   public RendererObjectManager(int layer, TextureManager textureManager) {
@@ -47,6 +50,18 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
     mMaxRadiusOfView = radiusOfView;
   }
 
+  /**
+   * Sets the transformation from the coordinates of this manager's objects to
+   * celestial coordinates, or null if they are in celestial coordinates.
+   * Objects fixed to the Earth can then be built once and rotated as time
+   * passes.  Only for managers which leave placing their objects to OpenGL:
+   * the label manager positions labels itself, and the point and image
+   * managers cull by sky region.
+   */
+  public void setModelMatrix(Matrix4x4 modelMatrix) {
+    mModelMatrix = modelMatrix;
+  }
+
   public int compareTo(RendererObjectManager rom) {
     if (getClass() != rom.getClass()) {
       return getClass().getName().compareTo(rom.getClass().getName());
@@ -66,7 +81,14 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
 
   final void draw(GL10 gl) {
     if (mEnabled && mRenderState.getRadiusOfView() <= mMaxRadiusOfView) {
+      if (mModelMatrix == null) {
+        drawInternal(gl);
+        return;
+      }
+      gl.glPushMatrix();
+      gl.glMultMatrixf(mModelMatrix.getFloatArray(), 0);
       drawInternal(gl);
+      gl.glPopMatrix();
     }
   }
   final void setRenderState(RenderStateInterface state) {
@@ -119,6 +141,7 @@ public abstract class RendererObjectManager implements Comparable<RendererObject
   private RenderStateInterface mRenderState = null;
   private UpdateListener mListener = null;
   private float mMaxRadiusOfView = 360;  // in degrees
+  private Matrix4x4 mModelMatrix = null;
   private int mLayer;
   private int mIndex;
   private final TextureManager mTextureManager;
@@ -14,9 +14,12 @@
 
 package com.google.android.stardroid.renderer;
 
+import com.google.android.stardroid.renderer.util.FrameSnapshot;
 import com.google.android.stardroid.renderer.util.GLBuffer;
+import com.google.android.stardroid.renderer.util.LabelDeclutterer;
 import com.google.android.stardroid.renderer.util.SkyRegionMap;
 import com.google.android.stardroid.renderer.util.TextureManager;
+import com.google.android.stardroid.renderer.util.TripleBuffer;
 import com.google.android.stardroid.renderer.util.UpdateClosure;
 import com.google.android.stardroid.units.GeocentricCoordinates;
 import com.google.android.stardroid.units.Vector3;
@@ -38,6 +41,7 @@ import java.util.TreeSet;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
 
 public class SkyRenderer implements GLSurfaceView.Renderer {
   private SkyBox mSkyBox = null;
@@ -54,6 +58,12 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
   private boolean mMustUpdateProjection = true;
 
   private Set<UpdateClosure> mUpdateClosures = new TreeSet<UpdateClosure>();
+  // Views published by the simulation thread, if there is one.
+  private TripleBuffer<FrameSnapshot> mFrames = null;
+  // A view waiting for the atomic sections queued before it to be applied.
+  private final FrameSnapshot mDeferredFrame = new FrameSnapshot();
+  private boolean mHasDeferredFrame = false;
+  private long mAtomicSectionsApplied = 0;
 
   private RendererObjectManager.UpdateListener mUpdateListener =
       new RendererObjectManager.UpdateListener() {
@@ -105,12 +115,36 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
 
   // Returns true if the buffers should be swapped, false otherwise.
   public void onDrawFrame(GL10 gl) {
+    // Free the buffers of objects which have been removed.
+    if (GLBuffer.canUseVBO()) {
+      GLBuffer.deleteReleasedBuffers((GL11) gl);
+    }
+
     // Initialize any of the unloaded managers.
     for (ManagerReloadData data : mManagersToReload) {
       data.manager.reload(gl, data.fullReload);
     }
     mManagersToReload.clear();
 
+    if (mFrames != null) {
+      if (mHasDeferredFrame) {
+        // The queue has been run since, so its layers are up to date.
+        setView(mDeferredFrame);
+        mHasDeferredFrame = false;
+      }
+      FrameSnapshot frame = mFrames.acquire();
+      if (frame != null) {
+        if (frame.atomicSections > mAtomicSectionsApplied) {
+          // Some of its tick's layer changes were queued after the queue was
+          // run for this frame, so it's shown with them on the next one.
+          mDeferredFrame.assign(frame);
+          mHasDeferredFrame = true;
+        } else {
+          setView(frame);
+        }
+      }
+    }
+
     maybeUpdateMatrices(gl);
 
     // Determine which sky regions should be rendered.
@@ -120,6 +154,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
             mRenderState.getRadiusOfView(),
             (float) mRenderState.getScreenWidth() / mRenderState.getScreenHeight()));
 
+    mRenderState.getLabelDeclutterer().reset(
+        mRenderState.getScreenWidth(), mRenderState.getScreenHeight());
+
     gl.glClear(GL10.GL_COLOR_BUFFER_BIT);
 
     for (int layer : mLayersToManagersMap.keySet()) {
@@ -154,8 +191,9 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     gl.glDisable(GL10.GL_DEPTH_TEST);
 
 
-    // Release references to all of the old textures.
+    // Release references to all of the old textures and buffers.
     mTextureManager.reset();
+    GLBuffer.discardReleasedBuffers();
 
     String extensions = gl.glGetString(GL10.GL_EXTENSIONS);
     Log.i("SkyRenderer", "GL extensions: " + extensions);
@@ -221,6 +259,30 @@ public class SkyRenderer implements GLSurfaceView.Renderer {
     mUpdateClosures.add(update);
   }
 
+  /**
+   * Takes the view from the latest of the given snapshots at the start of
+   * each frame.
+   */
+  public void setFrameSnapshots(TripleBuffer<FrameSnapshot> frames) {
+    mFrames = frames;
+  }
+
+  /** Called as each atomic section is applied. */
+  void onAtomicSectionApplied() {
+    mAtomicSectionsApplied++;
+  }
+
+  private void setView(FrameSnapshot frame) {
+    setViewOrientation(frame.lookDir.x, frame.lookDir.y, frame.lookDir.z,
+                       frame.upDir.x, frame.upDir.y, frame.upDir.z);
+    setTextAngle(frame.textAngle);
+    // The overlay doesn't keep the vector, so the snapshot's can be passed.
+    setViewerUpDirection(frame.zenith);
+    if (frame.fieldOfView != mRenderState.getRadiusOfView()) {
+      setRadiusOfView(frame.fieldOfView);
+    }
+  }
+
   public void removeUpdateCallback(UpdateClosure update) {
     mUpdateClosures.remove(update);
   }
@@ -437,6 +499,7 @@ interface RenderStateInterface {
   public Resources getResources();
   public boolean getNightVisionMode();
   public SkyRegionMap.ActiveRegionData getActiveSkyRegions();
+  public LabelDeclutterer getLabelDeclutterer();
 }
 
 // TODO(jpowell): RenderState is a bad name.  This class is a grab-bag of
@@ -457,6 +520,7 @@ class RenderState implements RenderStateInterface {
   public Resources getResources() { return mRes; }
   public boolean getNightVisionMode() { return mNightVisionMode; }
   public SkyRegionMap.ActiveRegionData getActiveSkyRegions() { return mActiveSkyRegionSet; }
+  public LabelDeclutterer getLabelDeclutterer() { return mLabelDeclutterer; }
 
   public void setCameraPos(GeocentricCoordinates pos) { mCameraPos = pos.copy(); }
   public void setLookDir(GeocentricCoordinates dir) { mLookDir = dir.copy(); }
@@ -496,4 +560,6 @@ class RenderState implements RenderStateInterface {
   private Resources mRes;
   private boolean mNightVisionMode = false;
   private SkyRegionMap.ActiveRegionData mActiveSkyRegionSet = null;
+  // At most 40 labels a frame, in a grid of 32 pixel cells.
+  private LabelDeclutterer mLabelDeclutterer = new LabelDeclutterer(32, 40);
 }
@@ -0,0 +1,188 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.renderer;
+
+import com.google.android.stardroid.renderer.PointObjectManager.QuadBuffers;
+import com.google.android.stardroid.renderer.util.SkyRegionMap;
+import com.google.android.stardroid.renderer.util.TiledStarCatalog;
+import com.google.android.stardroid.source.PointSource;
+import com.google.android.stardroid.util.MiscUtil;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Pages the tiles of a {@link TiledStarCatalog} in and out of memory for a
+ * {@link PointObjectManager}.  Tiles are built into quad buffers on a
+ * background thread the first time they are asked for, and the least
+ * recently drawn tiles are dropped once the built tiles go over a byte
+ * budget.
+ *
+ * <p>Tile buffers don't use VBOs, so that an evicted tile's memory can simply
+ * be garbage collected.
+ */
+class StarTileCache {
+  private static final String TAG = MiscUtil.getTag(StarTileCache.class);
+  private static final Executor LOADER = Executors.newSingleThreadExecutor();
+
+  // Point size of the faintest stars.
+  private static final int MIN_STAR_SIZE = 1;
+
+  private final TiledStarCatalog catalog;
+  private final int byteBudget;
+  // In least recently used order.
+  private final LinkedHashMap<Integer, QuadBuffers[]> tiles =
+      new LinkedHashMap<Integer, QuadBuffers[]>(16, 0.75f, true);
+  private final Set<Integer> pendingTiles = new HashSet<Integer>();
+  private int residentBytes = 0;
+  private boolean cleared = false;
+
+  StarTileCache(TiledStarCatalog catalog, int byteBudget) {
+    this.catalog = catalog;
+    this.byteBudget = byteBudget;
+  }
+
+  /**
+   * Adds the buffers of the resident tiles for the given regions which have
+   * stars brighter than magnitudeLimit to the given list, and starts loading
+   * those which aren't resident yet.
+   *
+   * <p>Tiles are taken a band at a time, brightest first, and only as many as
+   * fit in the byte budget together: asking for more would evict tiles drawn
+   * in this same frame, and they would be rebuilt every frame.
+   */
+  synchronized void getTiles(SkyRegionMap.ActiveRegionData activeRegions, float magnitudeLimit,
+      ArrayList<QuadBuffers> result) {
+    long requestedBytes = 0;
+    for (int band = 0; band < catalog.getNumBands(); band++) {
+      if (catalog.getBandMinimumMagnitude(band) >= magnitudeLimit) {
+        return;
+      }
+      for (int region : activeRegions.getActiveStandardRegions()) {
+        int tileId = catalog.getTileId(region, band);
+        int numStars = catalog.getStarCount(tileId);
+        if (numStars == 0) {
+          continue;
+        }
+        // A single tile over budget is still drawn, as eviction keeps it.
+        long tileBytes = (long) numStars * QuadBuffers.BYTES_PER_QUAD;
+        if (requestedBytes > 0 && requestedBytes + tileBytes > byteBudget) {
+          return;
+        }
+        requestedBytes += tileBytes;
+        QuadBuffers[] tile = tiles.get(tileId);
+        if (tile == null) {
+          requestTile(tileId);
+          continue;
+        }
+        for (QuadBuffers buffers : tile) {
+          result.add(buffers);
+        }
+      }
+    }
+  }
+
+  /** Drops all tiles, and any which are still loading. */
+  synchronized void clear() {
+    tiles.clear();
+    residentBytes = 0;
+    cleared = true;
+  }
+
+  /** Call when the OpenGL surface has been recreated. */
+  synchronized void reload() {
+    for (QuadBuffers[] tile : tiles.values()) {
+      for (QuadBuffers buffers : tile) {
+        buffers.reload();
+      }
+    }
+  }
+
+  private void requestTile(final int tileId) {
+    if (!pendingTiles.add(tileId)) {
+      return;
+    }
+    LOADER.execute(new Runnable() {
+      public void run() {
+        QuadBuffers[] tile = buildTile(tileId);
+        synchronized (StarTileCache.this) {
+          pendingTiles.remove(tileId);
+          if (cleared) {
+            return;
+          }
+          tiles.put(tileId, tile);
+          for (QuadBuffers buffers : tile) {
+            residentBytes += buffers.getSizeInBytes();
+          }
+          evict(tileId);
+        }
+      }
+    });
+  }
+
+  /** Drops least recently used tiles, other than the given one, until under budget. */
+  private void evict(int keepTileId) {
+    Iterator<Entry<Integer, QuadBuffers[]>> it = tiles.entrySet().iterator();
+    while (residentBytes > byteBudget && it.hasNext()) {
+      Entry<Integer, QuadBuffers[]> entry = it.next();
+      if (entry.getKey() == keepTileId) {
+        continue;
+      }
+      for (QuadBuffers buffers : entry.getValue()) {
+        residentBytes -= buffers.getSizeInBytes();
+      }
+      it.remove();
+    }
+  }
+
+  private QuadBuffers[] buildTile(int tileId) {
+    ByteBuffer stars = catalog.getTile(tileId);
+    int numStars = catalog.getStarCount(tileId);
+    int numChunks = (numStars + QuadBuffers.MAX_QUADS - 1) / QuadBuffers.MAX_QUADS;
+    QuadBuffers[] tile = new QuadBuffers[numChunks];
+    int imageIndex = PointSource.Shape.CIRCLE.getImageIndex();
+    for (int chunk = 0; chunk < numChunks; chunk++) {
+      int chunkSize = Math.min(QuadBuffers.MAX_QUADS, numStars - chunk * QuadBuffers.MAX_QUADS);
+      QuadBuffers buffers = new QuadBuffers(false);
+      buffers.reset(chunkSize);
+      for (int i = 0; i < chunkSize; i++) {
+        float x = stars.getFloat();
+        float y = stars.getFloat();
+        float z = stars.getFloat();
+        int color = stars.getInt();
+        float magnitude = stars.getFloat();
+        buffers.addQuad(x, y, z, color, getSize(magnitude), imageIndex, magnitude);
+      }
+      tile[chunk] = buffers;
+    }
+    Log.d(TAG, "Loaded tile " + tileId + ": " + numStars + " stars");
+    return tile;
+  }
+
+  // The same scale as StarAttributeCalculator#getSize, but carried on down
+  // to a single pixel for the faint stars.
+  private static int getSize(float magnitude) {
+    return Math.max(MIN_STAR_SIZE, 5 - (int) magnitude);
+  }
+}
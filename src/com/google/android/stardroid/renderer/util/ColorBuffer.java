@@ -45,11 +45,29 @@ public class ColorBuffer {
     regenerateBuffer();
   }
 
+  // Uses the given colors instead of allocating a new buffer.  The buffer must
+  // be direct and in native byte order.
+  public void reset(IntBuffer colors) {
+    mNumVertices = colors.capacity();
+    mColorBuffer = colors;
+  }
+
+  public IntBuffer getData() {
+    IntBuffer data = mColorBuffer.duplicate();
+    data.clear();
+    return data;
+  }
+
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
   public void reload() {
     mGLBuffer.reload();
   }
 
+  // Call this before dropping the buffer, to free its OpenGL buffer (see GLBuffer.release).
+  public void release() {
+    mGLBuffer.release();
+  }
+
   public void addColor(int a, int r, int g, int b) {
     addColor(((a & 0xff) << 24) | ((b & 0xff) << 16) | ((g & 0xff) << 8) | (r & 0xff));
   }
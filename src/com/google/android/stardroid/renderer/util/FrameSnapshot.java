@@ -0,0 +1,61 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.renderer.util;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+
+/**
+ * The state of the view at one simulation tick: where the user is looking,
+ * which way is up, and how much of the sky they can see.
+ *
+ * <p>Snapshots are filled in by the simulation thread and handed to the
+ * render thread through a {@link TripleBuffer}.  Once published a snapshot
+ * isn't changed until the render thread has moved on to a newer one, so the
+ * renderer never sees half of one tick and half of the next.
+ *
+ * <p>The layers' changes can't be dropped as snapshots can, so they go to the
+ * renderer through its command queue.  A snapshot instead records how many
+ * atomic sections had been queued by the end of its tick, and the renderer
+ * doesn't show it until it has applied that many, so each tick's view is
+ * drawn with that tick's layers.
+ */
+public class FrameSnapshot {
+  /** The direction the user is looking in. */
+  public final GeocentricCoordinates lookDir = new GeocentricCoordinates(1, 0, 0);
+  /** The direction of the top of the screen. */
+  public final GeocentricCoordinates upDir = new GeocentricCoordinates(0, 1, 0);
+  /** The user's zenith. */
+  public final GeocentricCoordinates zenith = new GeocentricCoordinates(0, 0, 1);
+  /** The roll of the device, in radians, used to orient the labels. */
+  public float textAngle;
+  /** The field of view, in degrees. */
+  public float fieldOfView;
+  /** The model time of the snapshot, in milliseconds. */
+  public long timeMillis;
+  /** The number of atomic sections queued to the renderer by this tick. */
+  public long atomicSections;
+
+  /** Copies the given snapshot into this one. */
+  public void assign(FrameSnapshot other) {
+    lookDir.assign(other.lookDir);
+    upDir.assign(other.upDir);
+    zenith.assign(other.zenith);
+    textAngle = other.textAngle;
+    fieldOfView = other.fieldOfView;
+    timeMillis = other.timeMillis;
+    atomicSections = other.atomicSections;
+  }
+}
@@ -19,6 +19,7 @@ import android.util.Log;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.Buffer;
+import java.util.ArrayList;
 
 import javax.microedition.khronos.opengles.GL11;
 
@@ -35,6 +36,8 @@ public class GLBuffer {
   // this rather than a static constant.  I should refactor this accordingly
   // when I get a chance.
   private static boolean sCanUseVBO = false;
+  // Buffers which have been released but not yet deleted.  Guarded by itself.
+  private static final ArrayList<Integer> sReleasedBufferIDs = new ArrayList<Integer>();
 
   private Buffer mBuffer = null;
   private int mBufferSize = 0;
@@ -89,6 +92,42 @@ public class GLBuffer {
     mGLBufferID = -1;
   }
 
+  // Gives up the OpenGL buffer, if one has been allocated, for deletion by the next call to
+  // deleteReleasedBuffers.  Call this before dropping a GLBuffer, or the buffer leaks on the GL
+  // side.  Binding this GLBuffer again allocates a new buffer.
+  public void release() {
+    if (mGLBufferID != -1) {
+      synchronized (sReleasedBufferIDs) {
+        sReleasedBufferIDs.add(mGLBufferID);
+      }
+    }
+    reload();
+  }
+
+  // Deletes the buffers released since the last call.  Must be called on the GL thread.
+  public static void deleteReleasedBuffers(GL11 gl) {
+    int[] ids;
+    synchronized (sReleasedBufferIDs) {
+      if (sReleasedBufferIDs.isEmpty()) {
+        return;
+      }
+      ids = new int[sReleasedBufferIDs.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = sReleasedBufferIDs.get(i);
+      }
+      sReleasedBufferIDs.clear();
+    }
+    gl.glDeleteBuffers(ids.length, ids, 0);
+  }
+
+  // Forgets the released buffers without deleting them.  Call this when the surface has been
+  // recreated, since the old context's buffers are gone already.
+  public static void discardReleasedBuffers() {
+    synchronized (sReleasedBufferIDs) {
+      sReleasedBufferIDs.clear();
+    }
+  }
+
   private void maybeRegenerateBuffer(GL11 gl, Buffer buffer, int bufferSize) {
     if (buffer != mBuffer || bufferSize != mBufferSize) {
       mBuffer = buffer;
@@ -0,0 +1,245 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.renderer.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The render geometry of a layer, as built by the object managers, saved so
+ * that it can be memory mapped and drawn directly the next time the app
+ * starts instead of being rebuilt from the layer's sources.
+ *
+ * <p>The file is in the device's native byte order, so that the mapped
+ * buffers can be handed straight to OpenGL, and laid out as:
+ * <pre>
+ *   int    magic ("SKYG")
+ *   int    format version
+ *   int    byte order mark (0x01020304)
+ *   long   version of the data the geometry was built from
+ *   int    number of meshes
+ *   meshes: int type, int region, int number of vertices, int number of
+ *     indices, int number of magnitudes, then the vertices (3 fixed point
+ *     ints per vertex), colors, night vision colors, texture coordinates
+ *     (2 fixed point ints per vertex), magnitudes (floats) and indices
+ *     (shorts, padded to a multiple of 4 bytes).
+ * </pre>
+ */
+public class GeometrySnapshot {
+  private static final int MAGIC = 0x534b5947;  // "SKYG"
+  private static final int FORMAT_VERSION = 1;
+  private static final int BYTE_ORDER_MARK = 0x01020304;
+  private static final int HEADER_BYTES = 4 * 4 + 8;
+  private static final int MESH_HEADER_BYTES = 5 * 4;
+
+  /** Meshes of point quads, one per sky region, as built by the point manager. */
+  public static final int TYPE_POINTS = 0;
+  /** Meshes of line quads, as built by the line manager. */
+  public static final int TYPE_LINES = 1;
+
+  /**
+   * The buffers for one set of quads.  The buffers of a mapped snapshot are
+   * views of the mapped file, and must not be modified.
+   */
+  public static class Mesh {
+    public final int type;
+    public final int region;
+    public final IntBuffer vertices;
+    public final IntBuffer colors;
+    public final IntBuffer nightVisionColors;
+    public final IntBuffer texCoords;
+    public final FloatBuffer magnitudes;
+    public final ShortBuffer indices;
+
+    public Mesh(int type, int region, IntBuffer vertices, IntBuffer colors,
+        IntBuffer nightVisionColors, IntBuffer texCoords, FloatBuffer magnitudes,
+        ShortBuffer indices) {
+      this.type = type;
+      this.region = region;
+      this.vertices = vertices;
+      this.colors = colors;
+      this.nightVisionColors = nightVisionColors;
+      this.texCoords = texCoords;
+      this.magnitudes = magnitudes;
+      this.indices = indices;
+    }
+
+    public int getNumVertices() {
+      return colors.capacity();
+    }
+
+    private int getSizeInBytes() {
+      int indexBytes = 2 * indices.capacity();
+      return MESH_HEADER_BYTES + 4 * (7 * getNumVertices() + magnitudes.capacity())
+          + (indexBytes + 3) / 4 * 4;
+    }
+  }
+
+  private final List<Mesh> meshes;
+
+  private GeometrySnapshot(List<Mesh> meshes) {
+    this.meshes = meshes;
+  }
+
+  /** Returns the meshes of the given type. */
+  public List<Mesh> getMeshes(int type) {
+    ArrayList<Mesh> result = new ArrayList<Mesh>();
+    for (Mesh mesh : meshes) {
+      if (mesh.type == type) {
+        result.add(mesh);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Memory maps a snapshot file.  Returns null if there isn't one, or if it
+   * was built from a different version of the data or on a device with a
+   * different byte order.
+   *
+   * @throws IOException if the file can't be read or is corrupt.
+   */
+  public static GeometrySnapshot map(File file, long version) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    RandomAccessFile in = new RandomAccessFile(file, "rw");
+    ByteBuffer buffer;
+    try {
+      // The mapping stays valid after the file is closed.  It's a private
+      // mapping rather than a read only one, as not all GL implementations
+      // accept read only buffers; nothing is ever written to it.
+      buffer = in.getChannel().map(FileChannel.MapMode.PRIVATE, 0, in.length());
+    } finally {
+      in.close();
+    }
+    buffer.order(ByteOrder.nativeOrder());
+    if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+        || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != BYTE_ORDER_MARK
+        || buffer.getLong(12) != version) {
+      return null;
+    }
+    int numMeshes = buffer.getInt(20);
+    ArrayList<Mesh> meshes = new ArrayList<Mesh>(numMeshes);
+    buffer.position(HEADER_BYTES);
+    for (int i = 0; i < numMeshes; i++) {
+      if (buffer.remaining() < MESH_HEADER_BYTES) {
+        throw new IOException("Snapshot " + file + " is truncated");
+      }
+      int type = buffer.getInt();
+      int region = buffer.getInt();
+      int numVertices = buffer.getInt();
+      int numIndices = buffer.getInt();
+      int numMagnitudes = buffer.getInt();
+      if (numVertices < 0 || numIndices < 0 || numMagnitudes < 0
+          || 4L * (7L * numVertices + numMagnitudes) + 2L * numIndices > buffer.remaining()) {
+        throw new IOException("Snapshot " + file + " is truncated");
+      }
+      IntBuffer vertices = slice(buffer, 4 * 3 * numVertices).asIntBuffer();
+      IntBuffer colors = slice(buffer, 4 * numVertices).asIntBuffer();
+      IntBuffer nightVisionColors = slice(buffer, 4 * numVertices).asIntBuffer();
+      IntBuffer texCoords = slice(buffer, 4 * 2 * numVertices).asIntBuffer();
+      FloatBuffer magnitudes = slice(buffer, 4 * numMagnitudes).asFloatBuffer();
+      ShortBuffer indices = slice(buffer, 2 * numIndices).asShortBuffer();
+      buffer.position((buffer.position() + 3) / 4 * 4);
+      meshes.add(new Mesh(type, region, vertices, colors, nightVisionColors, texCoords,
+                          magnitudes, indices));
+    }
+    return new GeometrySnapshot(Collections.unmodifiableList(meshes));
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int numBytes) {
+    ByteBuffer slice = buffer.slice();
+    slice.limit(numBytes);
+    slice.order(ByteOrder.nativeOrder());
+    buffer.position(buffer.position() + numBytes);
+    return slice;
+  }
+
+  /**
+   * Writes a snapshot file.  The file is written under a temporary name and
+   * then renamed, so a reader never sees a partly written snapshot.
+   */
+  public static void write(File file, long version, List<Mesh> meshes) throws IOException {
+    int size = HEADER_BYTES;
+    for (Mesh mesh : meshes) {
+      size += mesh.getSizeInBytes();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.order(ByteOrder.nativeOrder());
+    buffer.putInt(MAGIC);
+    buffer.putInt(FORMAT_VERSION);
+    buffer.putInt(BYTE_ORDER_MARK);
+    buffer.putLong(version);
+    buffer.putInt(meshes.size());
+    for (Mesh mesh : meshes) {
+      buffer.putInt(mesh.type);
+      buffer.putInt(mesh.region);
+      buffer.putInt(mesh.getNumVertices());
+      buffer.putInt(mesh.indices.capacity());
+      buffer.putInt(mesh.magnitudes.capacity());
+      put(buffer, mesh.vertices);
+      put(buffer, mesh.colors);
+      put(buffer, mesh.nightVisionColors);
+      put(buffer, mesh.texCoords);
+      FloatBuffer magnitudes = mesh.magnitudes.duplicate();
+      magnitudes.clear();
+      buffer.asFloatBuffer().put(magnitudes);
+      buffer.position(buffer.position() + 4 * magnitudes.capacity());
+      ShortBuffer indices = mesh.indices.duplicate();
+      indices.clear();
+      buffer.asShortBuffer().put(indices);
+      buffer.position((buffer.position() + 2 * indices.capacity() + 3) / 4 * 4);
+    }
+    buffer.flip();
+
+    File directory = file.getParentFile();
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    File temp = new File(file.getPath() + ".tmp");
+    FileOutputStream out = new FileOutputStream(temp);
+    try {
+      FileChannel channel = out.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      out.close();
+    }
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("Unable to rename " + temp + " to " + file);
+    }
+  }
+
+  private static void put(ByteBuffer buffer, IntBuffer data) {
+    IntBuffer source = data.duplicate();
+    source.clear();
+    buffer.asIntBuffer().put(source);
+    buffer.position(buffer.position() + 4 * source.capacity());
+  }
+}
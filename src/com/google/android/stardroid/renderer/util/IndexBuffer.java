@@ -49,11 +49,29 @@ public class IndexBuffer {
     regenerateBuffer();
   }
 
+  // Uses the given indices instead of allocating a new buffer.  The buffer
+  // must be direct and in native byte order.
+  public void reset(ShortBuffer indices) {
+    mNumIndices = indices.capacity();
+    mIndexBuffer = indices;
+  }
+
+  public ShortBuffer getData() {
+    ShortBuffer data = mIndexBuffer.duplicate();
+    data.clear();
+    return data;
+  }
+
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
   public void reload() {
     mGLBuffer.reload();
   }
 
+  // Call this before dropping the buffer, to free its OpenGL buffer (see GLBuffer.release).
+  public void release() {
+    mGLBuffer.release();
+  }
+
   private void regenerateBuffer() {
     if (mNumIndices == 0) {
       return;
@@ -71,17 +89,22 @@ public class IndexBuffer {
   }
 
   public void draw(GL10 gl, int primitiveType) {
-    if (mNumIndices == 0) {
+    draw(gl, primitiveType, size());
+  }
+
+  // Draws only the first numIndices indices.
+  public void draw(GL10 gl, int primitiveType, int numIndices) {
+    if (numIndices == 0) {
       return;
     }
     mIndexBuffer.position(0);
     if (mUseVbo && GLBuffer.canUseVBO()) {
       GL11 gl11 = (GL11)gl;
       mGLBuffer.bind(gl11, mIndexBuffer, 2 * mIndexBuffer.capacity());
-      gl11.glDrawElements(primitiveType, size(), GL10.GL_UNSIGNED_SHORT, 0);
+      gl11.glDrawElements(primitiveType, numIndices, GL10.GL_UNSIGNED_SHORT, 0);
       GLBuffer.unbind(gl11);
     } else {
-      gl.glDrawElements(primitiveType, size(), GL10.GL_UNSIGNED_SHORT, mIndexBuffer);
+      gl.glDrawElements(primitiveType, numIndices, GL10.GL_UNSIGNED_SHORT, mIndexBuffer);
     }
   }
 
@@ -0,0 +1,131 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.renderer.util;
+
+/**
+ * Keeps track of the screen space taken by the labels drawn so far in a
+ * frame, so that labels which would overlap one already drawn can be
+ * skipped, and caps the number of labels per frame.  The placed rectangles
+ * are bucketed into a grid of square cells so that each placement only has to
+ * be checked against the labels near it.
+ *
+ * <p>Labels are placed first come first served, so callers should offer the
+ * most important labels first.  Nothing is allocated per frame once the grid
+ * has grown to fit the screen.
+ */
+public class LabelDeclutterer {
+  private final int cellSize;
+  private final int budget;
+
+  // Rectangles of the placed labels: left, bottom, right, top.
+  private final float[] rects;
+  private int numRects = 0;
+
+  private int numColumns = 0;
+  private int numRows = 0;
+  // For each cell, the indices of the placed rectangles overlapping it.
+  private int[][] cellRects = new int[0][];
+  private int[] cellCounts = new int[0];
+
+  /**
+   * @param cellSizeInPixels edge of a grid cell; about the height of a label
+   *     works well
+   * @param budget the maximum number of labels placed per frame
+   */
+  public LabelDeclutterer(int cellSizeInPixels, int budget) {
+    this.cellSize = cellSizeInPixels;
+    this.budget = budget;
+    this.rects = new float[4 * budget];
+  }
+
+  /**
+   * Clears all placed labels.  Call at the start of every frame.
+   */
+  public void reset(int screenWidth, int screenHeight) {
+    int columns = (screenWidth + cellSize - 1) / cellSize;
+    int rows = (screenHeight + cellSize - 1) / cellSize;
+    if (columns != numColumns || rows != numRows) {
+      numColumns = Math.max(columns, 1);
+      numRows = Math.max(rows, 1);
+      cellRects = new int[numColumns * numRows][];
+      cellCounts = new int[numColumns * numRows];
+      for (int i = 0; i < cellRects.length; i++) {
+        cellRects[i] = new int[4];
+      }
+    } else {
+      for (int i = 0; i < cellCounts.length; i++) {
+        cellCounts[i] = 0;
+      }
+    }
+    numRects = 0;
+  }
+
+  public int getRemainingBudget() {
+    return budget - numRects;
+  }
+
+  /**
+   * Claims the given screen rectangle for a label if it doesn't overlap a
+   * label which has already been placed and the budget isn't used up.
+   *
+   * @return true if the label should be drawn.
+   */
+  public boolean place(float left, float bottom, float right, float top) {
+    if (numRects == budget) {
+      return false;
+    }
+    int minColumn = clamp((int) Math.floor(left / cellSize), numColumns);
+    int maxColumn = clamp((int) Math.floor(right / cellSize), numColumns);
+    int minRow = clamp((int) Math.floor(bottom / cellSize), numRows);
+    int maxRow = clamp((int) Math.floor(top / cellSize), numRows);
+
+    for (int row = minRow; row <= maxRow; row++) {
+      for (int column = minColumn; column <= maxColumn; column++) {
+        int cell = row * numColumns + column;
+        int[] indices = cellRects[cell];
+        for (int i = 0; i < cellCounts[cell]; i++) {
+          int r = 4 * indices[i];
+          if (left < rects[r + 2] && right > rects[r]
+              && bottom < rects[r + 3] && top > rects[r + 1]) {
+            return false;
+          }
+        }
+      }
+    }
+
+    int index = numRects++;
+    rects[4 * index] = left;
+    rects[4 * index + 1] = bottom;
+    rects[4 * index + 2] = right;
+    rects[4 * index + 3] = top;
+    for (int row = minRow; row <= maxRow; row++) {
+      for (int column = minColumn; column <= maxColumn; column++) {
+        int cell = row * numColumns + column;
+        if (cellCounts[cell] == cellRects[cell].length) {
+          int[] grown = new int[2 * cellRects[cell].length];
+          System.arraycopy(cellRects[cell], 0, grown, 0, cellCounts[cell]);
+          cellRects[cell] = grown;
+        }
+        cellRects[cell][cellCounts[cell]++] = index;
+      }
+    }
+    return true;
+  }
+
+  // Labels partly off the screen are bucketed into the edge cells.
+  private static int clamp(int cell, int numCells) {
+    return Math.max(0, Math.min(numCells - 1, cell));
+  }
+}
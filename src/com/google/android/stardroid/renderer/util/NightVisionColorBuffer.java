@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.renderer.util;
 
+import java.nio.IntBuffer;
+
 import javax.microedition.khronos.opengles.GL10;
 
 /// Encapsulates a color vertex buffer where night vision can be enabled or diabled by a function call.
@@ -41,11 +43,32 @@ public class NightVisionColorBuffer {
     mRedBuffer.reset(numVertices);
   }
   
+  // Uses the given buffers instead of allocating new ones.  See
+  // ColorBuffer.reset(IntBuffer).
+  public void reset(IntBuffer colors, IntBuffer nightVisionColors) {
+    mNormalBuffer.reset(colors);
+    mRedBuffer.reset(nightVisionColors);
+  }
+
+  public IntBuffer getData() {
+    return mNormalBuffer.getData();
+  }
+
+  public IntBuffer getNightVisionData() {
+    return mRedBuffer.getData();
+  }
+
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
   public void reload() {
     mNormalBuffer.reload();
     mRedBuffer.reload();
   }
+
+  // Call this before dropping the buffer, to free its OpenGL buffers (see GLBuffer.release).
+  public void release() {
+    mNormalBuffer.release();
+    mRedBuffer.release();
+  }
   
   public void addColor(int a, int r, int g, int b) {
     mNormalBuffer.addColor(a, r, g, b);
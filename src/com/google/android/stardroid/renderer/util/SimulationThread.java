@@ -0,0 +1,133 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.renderer.util;
+
+import com.google.android.stardroid.util.MiscUtil;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs {@link UpdateClosure}s at a fixed rate on a thread of their own,
+ * rather than on the render thread between frames.
+ *
+ * <p>The closures read the model and update the layers; the render thread
+ * then only has to draw.  They publish their results to the renderer either
+ * through its command queue or, for the view, as {@link FrameSnapshot}s.
+ * A {@link TickListener} is called around the closures of each tick, to
+ * update the model before them and publish the view after them.  If a tick
+ * overruns, the next one starts straight away rather than trying to catch
+ * up.
+ */
+public class SimulationThread {
+  private static final String TAG = MiscUtil.getTag(SimulationThread.class);
+
+  /** Called on the simulation thread at the start and end of every tick. */
+  public interface TickListener {
+    /** Called before the tick's closures run. */
+    void onTickStart();
+
+    /** Called after the tick's closures have run. */
+    void onTickEnd();
+  }
+
+  private final long tickMs;
+  private final CopyOnWriteArrayList<UpdateClosure> closures =
+      new CopyOnWriteArrayList<UpdateClosure>();
+  // The running thread, or null when stopped.  A thread exits as soon as it
+  // is no longer this one, so a quick stop and start never leaves two.
+  private volatile Thread thread;
+  private volatile TickListener listener = null;
+
+  public SimulationThread(long tickMs) {
+    this.tickMs = tickMs;
+  }
+
+  public void setTickListener(TickListener listener) {
+    this.listener = listener;
+  }
+
+  public void addUpdateClosure(UpdateClosure closure) {
+    closures.addIfAbsent(closure);
+  }
+
+  public void removeUpdateClosure(UpdateClosure closure) {
+    closures.remove(closure);
+  }
+
+  /** Starts running the closures, if they aren't already. */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runLoop();
+      }
+    }, "Simulation");
+    thread.start();
+    Log.d(TAG, "Started");
+  }
+
+  /** Stops running the closures once the current tick is done. */
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    thread = null;
+    Log.d(TAG, "Stopped");
+  }
+
+  private void runLoop() {
+    Thread self = Thread.currentThread();
+    long nextTick = SystemClock.uptimeMillis();
+    while (thread == self) {
+      TickListener listener = this.listener;
+      if (listener != null) {
+        listener.onTickStart();
+      }
+      for (int i = 0; i < closures.size(); i++) {
+        UpdateClosure closure;
+        try {
+          closure = closures.get(i);
+        } catch (IndexOutOfBoundsException e) {
+          // Removed while we were running the others.
+          break;
+        }
+        try {
+          closure.run();
+        } catch (RuntimeException e) {
+          Log.e(TAG, "Update failed", e);
+        }
+      }
+      if (listener != null) {
+        listener.onTickEnd();
+      }
+
+      long now = SystemClock.uptimeMillis();
+      nextTick = Math.max(nextTick + tickMs, now);
+      try {
+        Thread.sleep(nextTick - now);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+}
@@ -22,6 +22,7 @@ import com.google.android.stardroid.util.VectorUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -104,6 +105,14 @@ public class SkyRegionMap<RegionRenderingData> {
     // look direction and screen angle.
     private final ArrayList<Integer> activeStandardRegions;
 
+    /**
+     * Returns the ids of the standard regions which are active.  The list
+     * is shared, so don't modify it.
+     */
+    public List<Integer> getActiveStandardRegions() {
+      return activeStandardRegions;
+    }
+
     /**
      * Returns true if a non-standard region is active.
      * @param region The ID of the region to check
@@ -307,6 +316,24 @@ public class SkyRegionMap<RegionRenderingData> {
     return getObjectRegionData(position).region;
   }
 
+  /**
+   * Returns the region the point (x, y, z) belongs in.  Unlike
+   * {@link #getObjectRegion(GeocentricCoordinates)}, this doesn't allocate.
+   */
+  public static int getObjectRegion(float x, float y, float z) {
+    int region = CATCHALL_REGION_ID;
+    float maxDotProduct = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < REGION_CENTERS.length; i++) {
+      GeocentricCoordinates center = REGION_CENTERS[i];
+      float dotProduct = center.x * x + center.y * y + center.z * z;
+      if (dotProduct > maxDotProduct) {
+        maxDotProduct = dotProduct;
+        region = i;
+      }
+    }
+    return region;
+  }
+
   /**
    * Returns the region a point belongs in, as well as the dot product of the
    * region center and the position.  The latter is a measure of how close it
@@ -52,10 +52,29 @@ public class TexCoordBuffer {
     regenerateBuffer();
   }
 
+  // Uses the given fixed point texture coordinates, 2 per vertex, instead of
+  // allocating a new buffer.  The buffer must be direct and in native byte
+  // order.
+  public void reset(IntBuffer texCoords) {
+    mNumVertices = texCoords.capacity() / 2;
+    mTexCoordBuffer = texCoords;
+  }
+
+  public IntBuffer getData() {
+    IntBuffer data = mTexCoordBuffer.duplicate();
+    data.clear();
+    return data;
+  }
+
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
   public void reload() {
     mGLBuffer.reload();
   }
+
+  // Call this before dropping the buffer, to free its OpenGL buffer (see GLBuffer.release).
+  public void release() {
+    mGLBuffer.release();
+  }
   
   public void addTexCoords(float u, float v) {
     mTexCoordBuffer.put(FixedPoint.floatToFixedPoint(u));
@@ -0,0 +1,210 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.stardroid.renderer.util;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A star catalog which is too large to keep on the heap, stored as tiles
+ * which can be read directly out of a memory mapped file.  Tiles are keyed by
+ * {@link SkyRegionMap} region and by magnitude band, so that only the tiles
+ * which are on screen and bright enough for the current zoom need to be
+ * touched.
+ *
+ * <p>The file is big endian, and laid out as:
+ * <pre>
+ *   int    magic ("SKYT")
+ *   int    version
+ *   int    number of regions (must match SkyRegionMap)
+ *   int    number of magnitude bands
+ *   float  upper magnitude limit of each band, increasing
+ *   for each region, for each band:
+ *     int  byte offset of the tile's first star
+ *     int  number of stars in the tile
+ *   stars: float x, float y, float z, int color (abgr), float magnitude
+ * </pre>
+ * Stars within a tile are sorted brightest first.
+ */
+public class TiledStarCatalog {
+  private static final int MAGIC = 0x534b5954;  // "SKYT"
+  private static final int VERSION = 1;
+  public static final int BYTES_PER_STAR = 5 * 4;
+
+  private final ByteBuffer buffer;
+  private final float[] bandLimits;
+  private final int[] tileOffsets;
+  private final int[] tileCounts;
+  private final int numRegions;
+
+  /**
+   * Creates a catalog backed by the given buffer, which should hold the whole
+   * catalog file.
+   *
+   * @throws IOException if the buffer doesn't hold a valid catalog.
+   */
+  public TiledStarCatalog(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.duplicate();
+    if (this.buffer.remaining() < 16 || this.buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a tiled star catalog");
+    }
+    if (this.buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported tiled star catalog version: " + this.buffer.getInt(4));
+    }
+    numRegions = this.buffer.getInt(8);
+    if (numRegions != SkyRegionMap.REGION_CENTERS.length) {
+      throw new IOException("Catalog has " + numRegions + " regions, expected "
+          + SkyRegionMap.REGION_CENTERS.length);
+    }
+    int numBands = this.buffer.getInt(12);
+    bandLimits = new float[numBands];
+    int position = 16;
+    for (int i = 0; i < numBands; i++, position += 4) {
+      bandLimits[i] = this.buffer.getFloat(position);
+    }
+    int numTiles = numRegions * numBands;
+    tileOffsets = new int[numTiles];
+    tileCounts = new int[numTiles];
+    for (int i = 0; i < numTiles; i++, position += 8) {
+      tileOffsets[i] = this.buffer.getInt(position);
+      tileCounts[i] = this.buffer.getInt(position + 4);
+      if (tileCounts[i] < 0 || tileOffsets[i] < 0
+          || tileOffsets[i] + (long) tileCounts[i] * BYTES_PER_STAR > this.buffer.limit()) {
+        throw new IOException("Tile " + i + " is outside of the catalog");
+      }
+    }
+  }
+
+  /**
+   * Memory maps the given section of a file (for example, an uncompressed
+   * asset) and creates a catalog from it.
+   */
+  public static TiledStarCatalog map(FileChannel channel, long offset, long length)
+      throws IOException {
+    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    return new TiledStarCatalog(mapped);
+  }
+
+  public int getNumBands() {
+    return bandLimits.length;
+  }
+
+  /** Returns the magnitude of the faintest stars in the given band. */
+  public float getBandMagnitudeLimit(int band) {
+    return bandLimits[band];
+  }
+
+  /**
+   * Returns the magnitude above which the given band has stars, which is
+   * the limit of the previous band.
+   */
+  public float getBandMinimumMagnitude(int band) {
+    return band == 0 ? Float.NEGATIVE_INFINITY : bandLimits[band - 1];
+  }
+
+  public int getTileId(int region, int band) {
+    return region * bandLimits.length + band;
+  }
+
+  public int getStarCount(int tileId) {
+    return tileCounts[tileId];
+  }
+
+  /**
+   * Returns a read only view of the given tile's stars, positioned at the
+   * first one.  Safe to call from any thread.
+   */
+  public ByteBuffer getTile(int tileId) {
+    ByteBuffer tile = buffer.asReadOnlyBuffer();
+    tile.position(tileOffsets[tileId]);
+    tile.limit(tileOffsets[tileId] + tileCounts[tileId] * BYTES_PER_STAR);
+    return tile.slice();
+  }
+
+  /**
+   * Writes a catalog file.  Stars fainter than the last band limit are left
+   * out.
+   *
+   * @param xyz the stars' positions as unit vectors, 3 floats per star
+   * @param colors the stars' colors
+   * @param magnitudes the stars' magnitudes
+   * @param bandLimits increasing upper magnitude limits of the bands
+   */
+  public static void write(float[] xyz, int[] colors, final float[] magnitudes,
+      float[] bandLimits, OutputStream out) throws IOException {
+    int numRegions = SkyRegionMap.REGION_CENTERS.length;
+    int numBands = bandLimits.length;
+    List<List<Integer>> tiles = new ArrayList<List<Integer>>();
+    for (int i = 0; i < numRegions * numBands; i++) {
+      tiles.add(new ArrayList<Integer>());
+    }
+    GeocentricCoordinates position = new GeocentricCoordinates(0, 0, 0);
+    for (int i = 0; i < magnitudes.length; i++) {
+      int band = Arrays.binarySearch(bandLimits, magnitudes[i]);
+      if (band < 0) {
+        band = -band - 1;
+      }
+      if (band >= numBands) {
+        continue;
+      }
+      position.assign(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+      tiles.get(SkyRegionMap.getObjectRegion(position) * numBands + band).add(i);
+    }
+
+    Comparator<Integer> brightestFirst = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Float.compare(magnitudes[a], magnitudes[b]);
+      }
+    };
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(numRegions);
+    data.writeInt(numBands);
+    for (float limit : bandLimits) {
+      data.writeFloat(limit);
+    }
+    int offset = 16 + 4 * numBands + 8 * tiles.size();
+    for (List<Integer> tile : tiles) {
+      data.writeInt(offset);
+      data.writeInt(tile.size());
+      offset += tile.size() * BYTES_PER_STAR;
+    }
+    for (List<Integer> tile : tiles) {
+      Collections.sort(tile, brightestFirst);
+      for (int i : tile) {
+        data.writeFloat(xyz[3 * i]);
+        data.writeFloat(xyz[3 * i + 1]);
+        data.writeFloat(xyz[3 * i + 2]);
+        data.writeInt(colors[i]);
+        data.writeFloat(magnitudes[i]);
+      }
+    }
+    data.flush();
+  }
+}
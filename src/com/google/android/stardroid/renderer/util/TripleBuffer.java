@@ -0,0 +1,75 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.renderer.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes the latest of a stream of objects from one producer thread to one
+ * consumer thread without locking or allocating.
+ *
+ * <p>There are three slots: the producer fills the back slot and publishes
+ * it, swapping it with the ready slot; the consumer swaps the ready slot with
+ * its front slot when something new has been published.  So the producer
+ * never waits for the consumer, the consumer always gets the most recently
+ * published object, and an object is never written while it's being read.
+ * Objects the consumer doesn't get to in time are simply reused.
+ */
+public class TripleBuffer<T> {
+  private static final int INDEX_MASK = 3;
+  // Set on the ready index when it holds an object the consumer hasn't seen.
+  private static final int FRESH = 4;
+
+  private final Object[] slots;
+  private final AtomicInteger ready = new AtomicInteger(1);
+  // Only used by the producer.
+  private int back = 0;
+  // Only used by the consumer.
+  private int front = 2;
+
+  public TripleBuffer(T first, T second, T third) {
+    slots = new Object[] {first, second, third};
+  }
+
+  /** Returns the object for the producer to fill in.  Producer only. */
+  @SuppressWarnings("unchecked")
+  public T getBack() {
+    return (T) slots[back];
+  }
+
+  /**
+   * Makes the object returned by {@link #getBack} available to the consumer,
+   * and gives the producer a new one to fill in.  Producer only.
+   */
+  public void publish() {
+    back = ready.getAndSet(back | FRESH) & INDEX_MASK;
+  }
+
+  /**
+   * Returns the most recently published object if it's newer than the last
+   * one returned, or null if nothing has been published since.  The object
+   * stays the consumer's until the next call that returns non-null.
+   * Consumer only.
+   */
+  @SuppressWarnings("unchecked")
+  public T acquire() {
+    if ((ready.get() & FRESH) == 0) {
+      return null;
+    }
+    front = ready.getAndSet(front) & INDEX_MASK;
+    return (T) slots[front];
+  }
+}
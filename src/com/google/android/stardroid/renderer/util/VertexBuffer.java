@@ -55,11 +55,30 @@ public class VertexBuffer {
     regenerateBuffer();
   }
 
+  // Uses the given fixed point positions, 3 per vertex, instead of allocating
+  // a new buffer.  The buffer must be direct and in native byte order.
+  public void reset(IntBuffer positions) {
+    mNumVertices = positions.capacity() / 3;
+    mPositionBuffer = positions;
+  }
+
+  // Returns the positions added so far, 3 fixed point values per vertex.
+  public IntBuffer getData() {
+    IntBuffer data = mPositionBuffer.duplicate();
+    data.clear();
+    return data;
+  }
+
   // Call this when we have to re-create the surface and reloading all OpenGL resources.
   public void reload() {
     mGLBuffer.reload();
   }
 
+  // Call this before dropping the buffer, to free its OpenGL buffer (see GLBuffer.release).
+  public void release() {
+    mGLBuffer.release();
+  }
+
   public void addPoint(Vector3 p) {
     addPoint(p.x, p.y, p.z);
   }
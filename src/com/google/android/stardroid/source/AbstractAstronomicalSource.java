@@ -39,6 +39,16 @@ public abstract class AbstractAstronomicalSource implements AstronomicalSource,
     return EnumSet.noneOf(UpdateType.class);
   }
 
+  @Override
+  public long getNextUpdateTimeMillis() {
+    return NEVER;
+  }
+
+  @Override
+  public long getPreviousUpdateTimeMillis() {
+    return Long.MIN_VALUE;
+  }
+
   /** Implementors of this method must implement {@link #getSearchLocation}. */
   @Override
   public List<String> getNames() {
@@ -28,6 +28,12 @@ import java.util.List;
  * @author Brent Bryan
  */
 public interface AstronomicalSource {
+  /**
+   * Returned by {@link #getNextUpdateTimeMillis} by sources which never need
+   * updating.
+   */
+  long NEVER = Long.MAX_VALUE;
+
   /**
    * Returns a list of names associated with this source. Names in this list
    * should be internationalized.
@@ -68,4 +74,19 @@ public interface AstronomicalSource {
    * UpdateType required to enact the changes required by this update.
    */
   EnumSet<UpdateType> update();
+
+  /**
+   * Returns the model time, in milliseconds, from which {@link #update} next
+   * has work to do if time runs forwards, or {@link #NEVER}. Sources which
+   * change with time must override this along with {@link #update}, as
+   * layers only call {@link #update} once a source is due.
+   */
+  long getNextUpdateTimeMillis();
+
+  /**
+   * As {@link #getNextUpdateTimeMillis}, for time running backwards: returns
+   * the model time at or before which {@link #update} next has work to do,
+   * or {@link Long#MIN_VALUE} if it never will.
+   */
+  long getPreviousUpdateTimeMillis();
 }
@@ -23,9 +23,19 @@ import com.google.android.stardroid.units.GeocentricCoordinates;
  * @author Brent Bryan
  */
 public interface PositionSource {
+  /** Returned by {@link #getRegion} when the region isn't known in advance. */
+  public static final int UNKNOWN_REGION = Integer.MIN_VALUE;
 
   /**
    * Returns the location of the source in Geocentric Euclidean coordinates.
    */
   public GeocentricCoordinates getLocation();
+
+  /**
+   * Returns the {@link com.google.android.stardroid.renderer.util.SkyRegionMap}
+   * region containing the source, if the catalog it came from says so, or
+   * {@link #UNKNOWN_REGION} if the renderer has to work it out.  Only sources
+   * which never move can know their region.
+   */
+  public int getRegion();
 }
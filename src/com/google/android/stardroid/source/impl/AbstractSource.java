@@ -42,6 +42,7 @@ public abstract class AbstractSource implements Colorable, PositionSource {
   private final int color;
   private final GeocentricCoordinates xyz;
   private List<String> names;
+  private int region = UNKNOWN_REGION;
 
   @Deprecated
   AbstractSource() {
@@ -74,4 +75,13 @@ public abstract class AbstractSource implements Colorable, PositionSource {
   public GeocentricCoordinates getLocation() {
     return xyz;
   }
+
+  @Override
+  public int getRegion() {
+    return region;
+  }
+
+  public void setRegion(int region) {
+    this.region = region;
+  }
 }
\ No newline at end of file
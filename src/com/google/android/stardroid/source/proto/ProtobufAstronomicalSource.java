@@ -94,8 +94,12 @@ public class ProtobufAstronomicalSource extends AbstractAstronomicalSource {
     }
     ArrayList<PointSource> points = new ArrayList<PointSource>(proto.getPointCount());
     for (PointElementProto element : proto.getPointList()) {
-      points.add(new PointSourceImpl(getCoords(element.getLocation()),
-          element.getColor(), element.getSize(), shapeMap.get(element.getShape())));
+      PointSourceImpl point = new PointSourceImpl(getCoords(element.getLocation()),
+          element.getColor(), element.getSize(), shapeMap.get(element.getShape()));
+      if (element.hasRegion()) {
+        point.setRegion(element.getRegion());
+      }
+      points.add(point);
     }
     return points;
   }
@@ -107,9 +111,13 @@ public class ProtobufAstronomicalSource extends AbstractAstronomicalSource {
     }
     ArrayList<TextSource> points = new ArrayList<TextSource>(proto.getLabelCount());
     for (LabelElementProto element : proto.getLabelList()) {
-      points.add(new TextSourceImpl(getCoords(element.getLocation()),
+      TextSourceImpl label = new TextSourceImpl(getCoords(element.getLocation()),
           resources.getString(element.getStringIndex()),
-          element.getColor(), element.getOffset(), element.getFontSize()));
+          element.getColor(), element.getOffset(), element.getFontSize());
+      if (element.hasRegion()) {
+        label.setRegion(element.getRegion());
+      }
+      points.add(label);
     }
     return points;
 
@@ -399,6 +399,13 @@ public final class SourceProto {
     public boolean hasShape() { return hasShape; }
     public com.google.android.stardroid.source.proto.SourceProto.Shape getShape() { return shape_; }
     
+    // optional int32 region = 5;
+    public static final int REGION_FIELD_NUMBER = 5;
+    private boolean hasRegion;
+    private int region_ = 0;
+    public boolean hasRegion() { return hasRegion; }
+    public int getRegion() { return region_; }
+    
     private void initFields() {
       location_ = com.google.android.stardroid.source.proto.SourceProto.GeocentricCoordinatesProto.getDefaultInstance();
       shape_ = com.google.android.stardroid.source.proto.SourceProto.Shape.CIRCLE;
@@ -422,6 +429,9 @@ public final class SourceProto {
       if (hasShape()) {
         output.writeEnum(4, getShape().getNumber());
       }
+      if (hasRegion()) {
+        output.writeInt32(5, getRegion());
+      }
     }
     
     private int memoizedSerializedSize = -1;
@@ -446,6 +456,10 @@ public final class SourceProto {
         size += com.google.protobuf.CodedOutputStream
           .computeEnumSize(4, getShape().getNumber());
       }
+      if (hasRegion()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(5, getRegion());
+      }
       memoizedSerializedSize = size;
       return size;
     }
@@ -602,6 +616,9 @@ public final class SourceProto {
         if (other.hasShape()) {
           setShape(other.getShape());
         }
+        if (other.hasRegion()) {
+          setRegion(other.getRegion());
+        }
         return this;
       }
       
@@ -645,6 +662,10 @@ public final class SourceProto {
               }
               break;
             }
+            case 40: {
+              setRegion(input.readInt32());
+              break;
+            }
           }
         }
       }
@@ -744,6 +765,24 @@ public final class SourceProto {
         return this;
       }
       
+      // optional int32 region = 5;
+      public boolean hasRegion() {
+        return result.hasRegion();
+      }
+      public int getRegion() {
+        return result.getRegion();
+      }
+      public Builder setRegion(int value) {
+        result.hasRegion = true;
+        result.region_ = value;
+        return this;
+      }
+      public Builder clearRegion() {
+        result.hasRegion = false;
+        result.region_ = 0;
+        return this;
+      }
+      
       // @@protoc_insertion_point(builder_scope:stardroid_source.PointElementProto)
     }
     
@@ -808,6 +847,13 @@ public final class SourceProto {
     public boolean hasOffset() { return hasOffset; }
     public float getOffset() { return offset_; }
     
+    // optional int32 region = 6;
+    public static final int REGION_FIELD_NUMBER = 6;
+    private boolean hasRegion;
+    private int region_ = 0;
+    public boolean hasRegion() { return hasRegion; }
+    public int getRegion() { return region_; }
+    
     private void initFields() {
       location_ = com.google.android.stardroid.source.proto.SourceProto.GeocentricCoordinatesProto.getDefaultInstance();
     }
@@ -833,6 +879,9 @@ public final class SourceProto {
       if (hasOffset()) {
         output.writeFloat(5, getOffset());
       }
+      if (hasRegion()) {
+        output.writeInt32(6, getRegion());
+      }
     }
     
     private int memoizedSerializedSize = -1;
@@ -861,6 +910,10 @@ public final class SourceProto {
         size += com.google.protobuf.CodedOutputStream
           .computeFloatSize(5, getOffset());
       }
+      if (hasRegion()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(6, getRegion());
+      }
       memoizedSerializedSize = size;
       return size;
     }
@@ -1020,6 +1073,9 @@ public final class SourceProto {
         if (other.hasOffset()) {
           setOffset(other.getOffset());
         }
+        if (other.hasRegion()) {
+          setRegion(other.getRegion());
+        }
         return this;
       }
       
@@ -1063,6 +1119,10 @@ public final class SourceProto {
               setOffset(input.readFloat());
               break;
             }
+            case 48: {
+              setRegion(input.readInt32());
+              break;
+            }
           }
         }
       }
@@ -1177,6 +1237,24 @@ public final class SourceProto {
         return this;
       }
       
+      // optional int32 region = 6;
+      public boolean hasRegion() {
+        return result.hasRegion();
+      }
+      public int getRegion() {
+        return result.getRegion();
+      }
+      public Builder setRegion(int value) {
+        result.hasRegion = true;
+        result.region_ = value;
+        return this;
+      }
+      public Builder clearRegion() {
+        result.hasRegion = false;
+        result.region_ = 0;
+        return this;
+      }
+      
       // @@protoc_insertion_point(builder_scope:stardroid_source.LabelElementProto)
     }
     
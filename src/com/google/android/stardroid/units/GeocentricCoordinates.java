@@ -18,7 +18,7 @@ import android.util.FloatMath;
 import java.util.Date;
 
 import com.google.android.stardroid.util.Geometry;
-import static com.google.android.stardroid.util.Geometry.calculateRADecOfZenith;
+import com.google.android.stardroid.util.TimeFrame;
 import static com.google.android.stardroid.util.TimeUtil.normalizeAngle;
 
 /**
@@ -35,14 +35,24 @@ public class GeocentricCoordinates extends Vector3 {
   }
 
   public void updateFromLatLong(Date time, LatLong observer, LatLong target) {
-	  updateFromLatLong(time, observer.latitude, observer.longitude, target.latitude, target.longitude);
+	  // Use the sidereal time to adjust latlons for rotation of the Earth
+	  float gst = TimeFrame.forTime(time.getTime()).getGreenwichSiderealTime();
+	  updateFromLatLong(gst, observer.latitude, observer.longitude, target.latitude, target.longitude);
   }
 
-  private void updateFromLatLong(Date time, float latitude_o, float longitude_o, float latitude_t, float longitude_t) {
-	  // Get current zenith, use the RA to adjust latlons for rotation of the Earth 
-	  RaDec up = calculateRADecOfZenith(time, new LatLong(latitude_o, 0));
-	  longitude_o = (float)normalizeAngle(longitude_o + up.ra);
-	  longitude_t = (float)normalizeAngle(longitude_t + up.ra);
+  /**
+   * Sets these coordinates to the direction of the target as seen from the
+   * observer, in Earth-fixed coordinates (x through latitude and longitude 0,
+   * z through the North pole).  {@link TimeFrame#getEarthRotation} takes them
+   * to celestial coordinates.
+   */
+  public void updateFromLatLong(LatLong observer, LatLong target) {
+	  updateFromLatLong(0, observer.latitude, observer.longitude, target.latitude, target.longitude);
+  }
+
+  private void updateFromLatLong(float gst, float latitude_o, float longitude_o, float latitude_t, float longitude_t) {
+	  longitude_o = (float)normalizeAngle(longitude_o + gst);
+	  longitude_t = (float)normalizeAngle(longitude_t + gst);
 
 	  // Convert latlon (observer and target) to ECEF
 	  // See links from: http://en.wikipedia.org/wiki/ECEF
@@ -81,7 +91,8 @@ public class GeocentricCoordinates extends Vector3 {
 
   public static GeocentricCoordinates getInstanceLatLong(Date time, float latitude_o, float longitude_o, float latitude_t, float longitude_t) {
 	    GeocentricCoordinates coords = new GeocentricCoordinates(0.0f, 0.0f, 0.0f);
-	    coords.updateFromLatLong(time, latitude_o, longitude_o, latitude_t, longitude_t);
+	    float gst = TimeFrame.forTime(time.getTime()).getGreenwichSiderealTime();
+	    coords.updateFromLatLong(gst, latitude_o, longitude_o, latitude_t, longitude_t);
 	    return coords;
   }
 
@@ -92,7 +103,8 @@ public class GeocentricCoordinates extends Vector3 {
     updateFromRaDec(raDec.ra, raDec.dec);
   }
 
-  private void updateFromRaDec(float ra, float dec) {
+  /** Recomputes x, y, and z from a right ascension and declination in degrees. */
+  public void updateFromRaDec(float ra, float dec) {
     float raRadians = ra * Geometry.DEGREES_TO_RADIANS;
     float decRadians = dec * Geometry.DEGREES_TO_RADIANS;
 
@@ -25,7 +25,7 @@ public class HeliocentricCoordinates extends Vector3 {
   public float radius;  // Radius. (AU)
 
   // Value of the obliquity of the ecliptic for J2000
-  private static final float OBLIQUITY = 23.439281f * Geometry.DEGREES_TO_RADIANS;
+  public static final float OBLIQUITY = 23.439281f * Geometry.DEGREES_TO_RADIANS;
 
   public HeliocentricCoordinates(float radius, float xh, float yh, float zh) {
     super(xh, yh, zh);
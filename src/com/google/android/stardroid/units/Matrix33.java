@@ -94,6 +94,39 @@ public class Matrix33 implements Cloneable {
     }
   }
 
+  /**
+   * Sets every element of the matrix, in place.
+   */
+  public void assign(float xx, float xy, float xz,
+                     float yx, float yy, float yz,
+                     float zx, float zy, float zz) {
+    this.xx = xx;
+    this.xy = xy;
+    this.xz = xz;
+    this.yx = yx;
+    this.yy = yy;
+    this.yz = yz;
+    this.zx = zx;
+    this.zy = zy;
+    this.zz = zz;
+  }
+
+  /**
+   * Sets the matrix from three vectors, in place, as
+   * {@link #Matrix33(Vector3, Vector3, Vector3, boolean)} does.
+   */
+  public void assign(Vector3 v1, Vector3 v2, Vector3 v3, boolean columnVectors) {
+    if (columnVectors) {
+      assign(v1.x, v2.x, v3.x,
+             v1.y, v2.y, v3.y,
+             v1.z, v2.z, v3.z);
+    } else {
+      assign(v1.x, v1.y, v1.z,
+             v2.x, v2.y, v2.z,
+             v3.x, v3.y, v3.z);
+    }
+  }
+
   // TODO(widdows): rename this to something like copyOf().
   @Override
   public Matrix33 clone() {
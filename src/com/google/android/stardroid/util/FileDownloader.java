@@ -0,0 +1,102 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.util;
+
+import com.google.android.stardroid.base.Closeables;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Downloads data files, such as orbital elements, into the app's storage.
+ * A file is only replaced once a complete copy has been downloaded and
+ * checked, so a failed download leaves the old one in place.
+ */
+public class FileDownloader {
+  private static final String TAG = MiscUtil.getTag(FileDownloader.class);
+  private static final int TIMEOUT_MS = 30000;
+
+  /** Checks that a downloaded file is usable, say by parsing it. */
+  public interface Validator {
+    boolean isValid(File file);
+  }
+
+  private FileDownloader() {}
+
+  /**
+   * Returns true if the given file is missing or was last written more than
+   * maxAgeMillis ago.
+   */
+  public static boolean isStale(File file, long maxAgeMillis) {
+    long modified = file.lastModified();
+    return modified == 0 || System.currentTimeMillis() - modified > maxAgeMillis;
+  }
+
+  /**
+   * Downloads the given URL to destination, if the download succeeds and
+   * passes the validator.  Blocks, so call from a background thread.
+   *
+   * @return true if destination was replaced.
+   */
+  public static boolean download(String url, File destination, Validator validator) {
+    File download = new File(destination.getPath() + ".download");
+    InputStream in = null;
+    OutputStream out = null;
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.setConnectTimeout(TIMEOUT_MS);
+      connection.setReadTimeout(TIMEOUT_MS);
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        Log.w(TAG, "Unable to download " + url + ": HTTP " + connection.getResponseCode());
+        return false;
+      }
+      in = connection.getInputStream();
+      out = new FileOutputStream(download);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      out.close();
+      out = null;
+      // Don't replace a good file with, say, an error page.
+      if (!validator.isValid(download) || !download.renameTo(destination)) {
+        Log.w(TAG, "Discarding the download of " + url);
+        return false;
+      }
+      Log.d(TAG, "Downloaded " + url + " to " + destination);
+      return true;
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to download " + url + ": " + e.getMessage());
+      return false;
+    } finally {
+      Closeables.closeSilently(in);
+      Closeables.closeSilently(out);
+      if (connection != null) {
+        connection.disconnect();
+      }
+      download.delete();
+    }
+  }
+}
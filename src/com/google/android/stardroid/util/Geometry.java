@@ -71,9 +71,18 @@ public class Geometry {
   }
 
   public static Vector3 vectorProduct(Vector3 v1, Vector3 v2) {
-    return new Vector3(v1.y * v2.z - v1.z * v2.y,
-                      -v1.x * v2.z + v1.z * v2.x,
-                      v1.x * v2.y - v1.y * v2.x);
+    return vectorProduct(v1, v2, new Vector3(0, 0, 0));
+  }
+
+  /**
+   * As {@link #vectorProduct(Vector3, Vector3)}, but writes the product into
+   * result, which may be one of the arguments, and returns it.
+   */
+  public static Vector3 vectorProduct(Vector3 v1, Vector3 v2, Vector3 result) {
+    result.assign(v1.y * v2.z - v1.z * v2.y,
+                  -v1.x * v2.z + v1.z * v2.x,
+                  v1.x * v2.y - v1.y * v2.x);
+    return result;
   }
 
   /**
@@ -117,34 +126,49 @@ public class Geometry {
    * Compute celestial coordinates of zenith from utc, lat long.
    */
   public static RaDec calculateRADecOfZenith(Date utc, LatLong location) {
-    // compute overhead RA in degrees
-    float my_ra = TimeUtil.meanSiderealTime(utc, location.longitude);
-    float my_dec = location.latitude;
-    return new RaDec(my_ra, my_dec);
+    return TimeFrame.forTime(utc.getTime()).getZenith(location);
   }
 
   /**
    * Multiply two 3X3 matrices m1 * m2.
    */
   public static Matrix33 matrixMultiply(Matrix33 m1, Matrix33 m2) {
-    return new Matrix33(m1.xx*m2.xx + m1.xy*m2.yx + m1.xz*m2.zx,
-                        m1.xx*m2.xy + m1.xy*m2.yy + m1.xz*m2.zy,
-                        m1.xx*m2.xz + m1.xy*m2.yz + m1.xz*m2.zz,
-                        m1.yx*m2.xx + m1.yy*m2.yx + m1.yz*m2.zx,
-                        m1.yx*m2.xy + m1.yy*m2.yy + m1.yz*m2.zy,
-                        m1.yx*m2.xz + m1.yy*m2.yz + m1.yz*m2.zz,
-                        m1.zx*m2.xx + m1.zy*m2.yx + m1.zz*m2.zx,
-                        m1.zx*m2.xy + m1.zy*m2.yy + m1.zz*m2.zy,
-                        m1.zx*m2.xz + m1.zy*m2.yz + m1.zz*m2.zz);
+    return matrixMultiply(m1, m2, new Matrix33());
+  }
+
+  /**
+   * As {@link #matrixMultiply(Matrix33, Matrix33)}, but writes the product
+   * into result, which may be one of the arguments, and returns it.
+   */
+  public static Matrix33 matrixMultiply(Matrix33 m1, Matrix33 m2, Matrix33 result) {
+    result.assign(m1.xx*m2.xx + m1.xy*m2.yx + m1.xz*m2.zx,
+                  m1.xx*m2.xy + m1.xy*m2.yy + m1.xz*m2.zy,
+                  m1.xx*m2.xz + m1.xy*m2.yz + m1.xz*m2.zz,
+                  m1.yx*m2.xx + m1.yy*m2.yx + m1.yz*m2.zx,
+                  m1.yx*m2.xy + m1.yy*m2.yy + m1.yz*m2.zy,
+                  m1.yx*m2.xz + m1.yy*m2.yz + m1.yz*m2.zz,
+                  m1.zx*m2.xx + m1.zy*m2.yx + m1.zz*m2.zx,
+                  m1.zx*m2.xy + m1.zy*m2.yy + m1.zz*m2.zy,
+                  m1.zx*m2.xz + m1.zy*m2.yz + m1.zz*m2.zz);
+    return result;
   }
 
   /**
    * Calculate w = m * v where m is a 3X3 matrix and v a column vector.
    */
   public static Vector3 matrixVectorMultiply(Matrix33 m, Vector3 v) {
-    return new Vector3(m.xx*v.x + m.xy*v.y + m.xz*v.z,
-                       m.yx*v.x + m.yy*v.y + m.yz*v.z,
-                       m.zx*v.x + m.zy*v.y + m.zz*v.z);
+    return matrixVectorMultiply(m, v, new Vector3(0, 0, 0));
+  }
+
+  /**
+   * As {@link #matrixVectorMultiply(Matrix33, Vector3)}, but writes the
+   * product into result, which may be v, and returns it.
+   */
+  public static Vector3 matrixVectorMultiply(Matrix33 m, Vector3 v, Vector3 result) {
+    result.assign(m.xx*v.x + m.xy*v.y + m.xz*v.z,
+                  m.yx*v.x + m.yy*v.y + m.yz*v.z,
+                  m.zx*v.x + m.zy*v.y + m.zz*v.z);
+    return result;
   }
 
   /**
@@ -154,6 +178,14 @@ public class Geometry {
    * @param axis - must be a unit vector.
    */
   public static Matrix33 calculateRotationMatrix(float degrees, Vector3 axis) {
+    return calculateRotationMatrix(degrees, axis, new Matrix33());
+  }
+
+  /**
+   * As {@link #calculateRotationMatrix(float, Vector3)}, but writes the
+   * matrix into result and returns it.
+   */
+  public static Matrix33 calculateRotationMatrix(float degrees, Vector3 axis, Matrix33 result) {
     // Construct the rotation matrix about this vector
     float cosD = MathUtil.cos(degrees * Geometry.DEGREES_TO_RADIANS);
     float sinD = MathUtil.sin(degrees * Geometry.DEGREES_TO_RADIANS);
@@ -175,9 +207,9 @@ public class Geometry {
     float yzm = y * zm;
     float zxm = z * xm;
 
-    Matrix33 rotationMatrix = new Matrix33(x * xm + cosD, xym + zs, zxm - ys,
-                                           xym - zs, y * ym+cosD, yzm + xs,
-                                           zxm + ys, yzm - xs, z * zm + cosD);
-    return rotationMatrix;
+    result.assign(x * xm + cosD, xym + zs, zxm - ys,
+                  xym - zs, y * ym+cosD, yzm + xs,
+                  zxm + ys, yzm - xs, z * zm + cosD);
+    return result;
   }
 }
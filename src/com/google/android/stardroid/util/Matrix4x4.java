@@ -14,6 +14,7 @@
 
 package com.google.android.stardroid.util;
 
+import com.google.android.stardroid.units.Matrix33;
 import com.google.android.stardroid.units.Vector3;
 
 public class Matrix4x4 {
@@ -93,6 +94,15 @@ public class Matrix4x4 {
     return new Matrix4x4(m);
   }
 
+  /** Returns the 4x4 form of the given 3x3 rotation. */
+  public static Matrix4x4 createRotation(Matrix33 rotation) {
+    return new Matrix4x4(new float[] {
+        rotation.xx, rotation.yx, rotation.zx, 0,
+        rotation.xy, rotation.yy, rotation.zy, 0,
+        rotation.xz, rotation.yz, rotation.zz, 0,
+        0, 0, 0, 1});
+  }
+
   public static Matrix4x4 createPerspectiveProjection(float width, float height, float fovyInRadians) {
     float near = 0.01f;
     float far = 10000.0f;
@@ -186,14 +196,22 @@ public class Matrix4x4 {
    * component of the result, as needed when doing perspective projections.
    */
   public static Vector3 transformVector(Matrix4x4 mat, Vector3 v) {
-    Vector3 trans = multiplyMV(mat, v);
+    return transformVector(mat, v, new Vector3(0, 0, 0));
+  }
+
+  /**
+   * As {@link #transformVector(Matrix4x4, Vector3)}, but writes the result
+   * into the given vector, which may be v itself, and returns it.
+   */
+  public static Vector3 transformVector(Matrix4x4 mat, Vector3 v, Vector3 result) {
     float[] m = mat.mValues;
-    float w = m[3]*v.x + m[7]*v.y + m[11]*v.z + m[15];
-    float oneOverW = 1.0f / w;
-    trans.x *= oneOverW;
-    trans.y *= oneOverW;
+    float oneOverW = 1.0f / (m[3]*v.x + m[7]*v.y + m[11]*v.z + m[15]);
+    float x = m[0]*v.x + m[4]*v.y + m[8]*v.z + m[12];
+    float y = m[1]*v.x + m[5]*v.y + m[9]*v.z + m[13];
+    float z = m[2]*v.x + m[6]*v.y + m[10]*v.z + m[14];
     // Don't transform z, we just leave it as a "pseudo-depth".
-    return trans;
+    result.assign(x * oneOverW, y * oneOverW, z);
+    return result;
   }
 
   public float[] getFloatArray() {
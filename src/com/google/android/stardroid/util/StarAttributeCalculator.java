@@ -79,6 +79,17 @@ public class StarAttributeCalculator {
     }
   }
 
+  /**
+   * Estimates a star's magnitude from its color, assuming the color came from
+   * {@link #getColor} with a white base color, which is how the star catalog
+   * records brightness.  For other colors this still orders points by how
+   * bright they are drawn.  Anything black comes out as magnitude 8.
+   */
+  public static float getMagnitude(int color) {
+    int value = Math.max(color & 0xFF, Math.max((color >> 8) & 0xFF, (color >> 16) & 0xFF));
+    return 8.0f * (1.0f - value / 255.0f);
+  }
+
   public static int getSize(float magnitude) {
     return Math.max(5 - (int)(magnitude), 2);
   }
@@ -0,0 +1,225 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.util;
+
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Matrix33;
+import com.google.android.stardroid.units.RaDec;
+import com.google.android.stardroid.units.Vector3;
+
+/**
+ * The Earth's orientation at one instant: the Julian Day, Greenwich mean
+ * sidereal time, and the rotation from Earth-fixed to celestial coordinates.
+ *
+ * <p>Celestial coordinates are those of the J2000 equator and equinox, which
+ * the star catalogs use.  The Earth's axis precesses away from the J2000 pole
+ * by about 1.4 degrees a century, so sidereal time and the zenith, which are
+ * measured from the equinox of date, are rotated back to J2000 by the
+ * precession matrix (IAU 1976, good for a few thousand years either side of
+ * J2000).  Rotating the observer rather than every star keeps time travel
+ * across centuries free.
+ *
+ * <p>Everything that places objects at a given model time needs these, often
+ * many times over (once per continent vertex, say), so frames are shared:
+ * {@link #forTime} computes a frame once per distinct timestamp and hands the
+ * same one to every caller until the time changes.  Frames are immutable and
+ * safe to use from any thread.
+ */
+public final class TimeFrame {
+  // The most recently requested frame.
+  private static volatile TimeFrame latest = new TimeFrame(0L);
+
+  private final long timeMillis;
+  private final double julianDay;
+  private final double julianCenturies;
+  private final float greenwichSiderealTime;
+  // Takes J2000 coordinates to mean coordinates of date.
+  private final Matrix33 precession = new Matrix33();
+
+  private TimeFrame(long timeMillis) {
+    this.timeMillis = timeMillis;
+    julianDay = TimeUtil.calculateJulianDay(timeMillis);
+    julianCenturies = (julianDay - TimeUtil.JULIAN_DAY_J2000) / 36525.0;
+    greenwichSiderealTime =
+        (float) TimeUtil.normalizeAngle(TimeUtil.greenwichMeanSiderealTime(timeMillis));
+    setPrecession(julianCenturies, precession);
+  }
+
+  /**
+   * Sets result to the precession matrix for the given number of Julian
+   * centuries since J2000.0 (Lieske et al. 1977).
+   */
+  private static void setPrecession(double t, Matrix33 result) {
+    double arcsecondsToRadians = Math.PI / (180 * 3600);
+    double zeta = (2306.2181 + (0.30188 + 0.017998 * t) * t) * t * arcsecondsToRadians;
+    double z = (2306.2181 + (1.09468 + 0.018203 * t) * t) * t * arcsecondsToRadians;
+    double theta = (2004.3109 - (0.42665 + 0.041833 * t) * t) * t * arcsecondsToRadians;
+    double cosZeta = Math.cos(zeta);
+    double sinZeta = Math.sin(zeta);
+    double cosZ = Math.cos(z);
+    double sinZ = Math.sin(z);
+    double cosTheta = Math.cos(theta);
+    double sinTheta = Math.sin(theta);
+    result.assign(
+        (float) (cosZeta * cosTheta * cosZ - sinZeta * sinZ),
+        (float) (-sinZeta * cosTheta * cosZ - cosZeta * sinZ),
+        (float) (-sinTheta * cosZ),
+        (float) (cosZeta * cosTheta * sinZ + sinZeta * cosZ),
+        (float) (-sinZeta * cosTheta * sinZ + cosZeta * cosZ),
+        (float) (-sinTheta * sinZ),
+        (float) (cosZeta * sinTheta),
+        (float) (-sinZeta * sinTheta),
+        (float) cosTheta);
+  }
+
+  /**
+   * Returns the frame for the given time in milliseconds since the Unix
+   * epoch, reusing the last one if the time hasn't changed.
+   */
+  public static TimeFrame forTime(long timeMillis) {
+    TimeFrame frame = latest;
+    if (frame.timeMillis != timeMillis) {
+      frame = new TimeFrame(timeMillis);
+      latest = frame;
+    }
+    return frame;
+  }
+
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  public double getJulianDay() {
+    return julianDay;
+  }
+
+  /** Returns the number of Julian centuries since J2000.0. */
+  public double getJulianCenturies() {
+    return julianCenturies;
+  }
+
+  /** Returns Greenwich mean sidereal time in degrees, in [0, 360). */
+  public float getGreenwichSiderealTime() {
+    return greenwichSiderealTime;
+  }
+
+  /**
+   * Returns local mean sidereal time in degrees, in [0, 360), for a
+   * longitude in degrees (negative to the west).  This is also the right
+   * ascension of the zenith.
+   */
+  public float getLocalSiderealTime(float longitude) {
+    return (float) TimeUtil.normalizeAngle(greenwichSiderealTime + longitude);
+  }
+
+  /**
+   * Returns the coordinates of the zenith at the given location, referred to
+   * the equator and equinox of date.
+   */
+  public RaDec getZenith(LatLong location) {
+    return new RaDec(getLocalSiderealTime(location.longitude), location.latitude);
+  }
+
+  /**
+   * Writes the celestial direction of the zenith at the given location into
+   * result, and returns it.
+   */
+  public Vector3 getZenith(LatLong location, Vector3 result) {
+    float ra = getLocalSiderealTime(location.longitude) * Geometry.DEGREES_TO_RADIANS;
+    float dec = location.latitude * Geometry.DEGREES_TO_RADIANS;
+    float x = MathUtil.cos(ra) * MathUtil.cos(dec);
+    float y = MathUtil.sin(ra) * MathUtil.cos(dec);
+    float z = MathUtil.sin(dec);
+    return fromDate(x, y, z, result);
+  }
+
+  /**
+   * Writes the celestial direction of the North pole of date, about which the
+   * sky turns, into result, and returns it.
+   */
+  public Vector3 getPole(Vector3 result) {
+    return fromDate(0, 0, 1, result);
+  }
+
+  /** Writes into result the matrix taking celestial coordinates to those of date. */
+  public Matrix33 getPrecession(Matrix33 result) {
+    Matrix33 p = precession;
+    result.assign(p.xx, p.xy, p.xz, p.yx, p.yy, p.yz, p.zx, p.zy, p.zz);
+    return result;
+  }
+
+  /** Returns the celestial coordinates of a position given for the equinox of date. */
+  public RaDec toCelestial(RaDec ofDate) {
+    return precess(ofDate, true);
+  }
+
+  /** Returns the coordinates, for the equinox of date, of a celestial position. */
+  public RaDec toDate(RaDec celestial) {
+    return precess(celestial, false);
+  }
+
+  private RaDec precess(RaDec raDec, boolean inverse) {
+    float ra = raDec.ra * Geometry.DEGREES_TO_RADIANS;
+    float dec = raDec.dec * Geometry.DEGREES_TO_RADIANS;
+    float x = MathUtil.cos(ra) * MathUtil.cos(dec);
+    float y = MathUtil.sin(ra) * MathUtil.cos(dec);
+    float z = MathUtil.sin(dec);
+    Matrix33 p = precession;
+    float px;
+    float py;
+    float pz;
+    if (inverse) {
+      px = p.xx * x + p.yx * y + p.zx * z;
+      py = p.xy * x + p.yy * y + p.zy * z;
+      pz = p.xz * x + p.yz * y + p.zz * z;
+    } else {
+      px = p.xx * x + p.xy * y + p.xz * z;
+      py = p.yx * x + p.yy * y + p.yz * z;
+      pz = p.zx * x + p.zy * y + p.zz * z;
+    }
+    return new RaDec(
+        Geometry.mod2pi(MathUtil.atan2(py, px)) * Geometry.RADIANS_TO_DEGREES,
+        MathUtil.asin(Math.max(-1, Math.min(1, pz))) * Geometry.RADIANS_TO_DEGREES);
+  }
+
+  /** Rotates coordinates of date to celestial coordinates. */
+  private Vector3 fromDate(float x, float y, float z, Vector3 result) {
+    // The inverse of a rotation is its transpose.
+    Matrix33 p = precession;
+    result.assign(p.xx * x + p.yx * y + p.zx * z,
+                  p.xy * x + p.yy * y + p.zy * z,
+                  p.xz * x + p.yz * y + p.zz * z);
+    return result;
+  }
+
+  /**
+   * Writes into result the rotation taking Earth-fixed coordinates (x through
+   * latitude and longitude 0, z through the North pole) to celestial
+   * coordinates, and returns it.
+   */
+  public Matrix33 getEarthRotation(Matrix33 result) {
+    float gstRadians = greenwichSiderealTime * Geometry.DEGREES_TO_RADIANS;
+    float cosGst = MathUtil.cos(gstRadians);
+    float sinGst = MathUtil.sin(gstRadians);
+    // The transpose of the precession times the rotation about the pole of
+    // date by sidereal time.
+    Matrix33 p = precession;
+    result.assign(p.xx * cosGst + p.yx * sinGst, -p.xx * sinGst + p.yx * cosGst, p.zx,
+                  p.xy * cosGst + p.yy * sinGst, -p.xy * sinGst + p.yy * cosGst, p.zy,
+                  p.xz * cosGst + p.yz * sinGst, -p.xz * sinGst + p.yz * cosGst, p.zz);
+    return result;
+  }
+}
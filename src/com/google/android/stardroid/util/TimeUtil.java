@@ -14,6 +14,8 @@
 
 package com.google.android.stardroid.util;
 
+import com.google.android.stardroid.base.TimeConstants;
+
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -25,41 +27,39 @@ import java.util.TimeZone;
  * @author Brent Bryan
  */
 public class TimeUtil {
+  /** The Julian Day of the Unix epoch, 1970-01-01T00:00:00Z. */
+  public static final double JULIAN_DAY_OF_UNIX_EPOCH = 2440587.5;
+  /** The Julian Day of the J2000.0 epoch. */
+  public static final double JULIAN_DAY_J2000 = 2451545.0;
+
   private TimeUtil() {}
   /**
    * Calculate the number of Julian Centuries from the epoch 2000.0
    * (equivalent to Julian Day 2451545.0).
    */
   public static double julianCenturies(Date date) {
-    double jd = calculateJulianDay(date);
-    double delta = jd - 2451545.0;
-    return delta/36525.0;
+    return julianCenturies(date.getTime());
+  }
+
+  /** As {@link #julianCenturies(Date)}, for milliseconds since the Unix epoch. */
+  public static double julianCenturies(long millis) {
+    return (calculateJulianDay(millis) - JULIAN_DAY_J2000) / 36525.0;
   }
 
   /**
-   * Calculate the Julian Day for a given date using the following formula:
-   * JD = 367 * Y - INT(7 * (Y + INT((M + 9)/12))/4) + INT(275 * M / 9)
-   *      + D + 1721013.5 + UT/24
-   *
-   * Note that this is only valid for the year range 1900 - 2099.
+   * Calculate the Julian Day for a given date.
    */
   public static double calculateJulianDay(Date date) {
-    Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-    cal.setTime(date);
-
-    double hour = cal.get(Calendar.HOUR_OF_DAY)
-        + cal.get(Calendar.MINUTE)/60.0f
-        + cal.get(Calendar.SECOND)/3600.0f;
-
-    int year = cal.get(Calendar.YEAR);
-    int month = cal.get(Calendar.MONTH) + 1;
-    int day = cal.get(Calendar.DAY_OF_MONTH);
+    return calculateJulianDay(date.getTime());
+  }
 
-    double jd = 367.0 * year - Math.floor(7.0 * (year
-                    + Math.floor((month + 9.0) / 12.0)) / 4.0)
-                + Math.floor(275.0 * month / 9.0) + day
-                + 1721013.5 + hour/24.0;
-    return jd;
+  /**
+   * Calculate the Julian Day for a time in milliseconds since the Unix epoch.
+   * Julian Days and Unix time both count days of 86400 seconds, so this is a
+   * single division, valid for any date.
+   */
+  public static double calculateJulianDay(long millis) {
+    return millis / (double) TimeConstants.MILLISECONDS_PER_DAY + JULIAN_DAY_OF_UNIX_EPOCH;
   }
   
   /**
@@ -96,15 +96,17 @@ public static Date calculateGregorianDate(double jd) {
    * negative for western longitude values.
    */
   public static float meanSiderealTime(Date date, float longitude) {
-    // First, calculate number of Julian days since J2000.0.
-    double jd = calculateJulianDay(date);
-    double delta = jd - 2451545.0f;
-
-    // Calculate the global and local sidereal times
-    double gst = 280.461f + 360.98564737f * delta;
-    double lst = normalizeAngle(gst + longitude);
+    return (float) normalizeAngle(greenwichMeanSiderealTime(date.getTime()) + longitude);
+  }
 
-    return (float) lst;
+  /**
+   * Calculate Greenwich mean sidereal time in degrees, not normalized, for a
+   * time in milliseconds since the Unix epoch.
+   */
+  public static double greenwichMeanSiderealTime(long millis) {
+    // Number of Julian days since J2000.0.
+    double delta = calculateJulianDay(millis) - JULIAN_DAY_J2000;
+    return 280.46061837 + 360.98564736629 * delta;
   }
 
   /**
@@ -27,9 +27,15 @@ public class VectorUtil {
   }
   
   public static Vector3 crossProduct(Vector3 p1, Vector3 p2) {
-    return new Vector3(p1.y * p2.z - p1.z * p2.y,
-                      -p1.x * p2.z + p1.z * p2.x,
-                       p1.x * p2.y - p1.y * p2.x);
+    return crossProduct(p1, p2, zero());
+  }
+
+  /** Writes p1 x p2 into result, which may be p1 or p2, and returns it. */
+  public static Vector3 crossProduct(Vector3 p1, Vector3 p2, Vector3 result) {
+    result.assign(p1.y * p2.z - p1.z * p2.y,
+                  -p1.x * p2.z + p1.z * p2.x,
+                  p1.x * p2.y - p1.y * p2.x);
+    return result;
   }
   
   public static float angleBetween(Vector3 p1, Vector3 p2) {
@@ -63,6 +69,16 @@ public class VectorUtil {
   public static Vector3 projectOntoPlane(Vector3 v, Vector3 unitNormal) {
     return difference(v, projectOntoUnit(v, unitNormal)); 
   }
+
+  /**
+   * Writes the projection of v onto the plane with the given unit normal
+   * into result, which may be v, and returns it.
+   */
+  public static Vector3 projectOntoPlane(Vector3 v, Vector3 unitNormal, Vector3 result) {
+    float dot = dotProduct(v, unitNormal);
+    result.assign(v.x - dot * unitNormal.x, v.y - dot * unitNormal.y, v.z - dot * unitNormal.z);
+    return result;
+  }
   
   public static Vector3 negate(Vector3 v) {
     return new Vector3(-v.x, -v.y, -v.z);
@@ -71,6 +87,12 @@ public class VectorUtil {
   public static Vector3 sum(Vector3 v1, Vector3 v2) {
     return new Vector3(v1.x + v2.x, v1.y + v2.y, v1.z + v2.z);
   }
+
+  /** Writes v1 + v2 into result, which may be either of them, and returns it. */
+  public static Vector3 sum(Vector3 v1, Vector3 v2, Vector3 result) {
+    result.assign(v1.x + v2.x, v1.y + v2.y, v1.z + v2.z);
+    return result;
+  }
   
   public static Vector3 difference(Vector3 v1, Vector3 v2) {
     return sum(v1, negate(v2));
@@ -82,5 +104,11 @@ public class VectorUtil {
   
   public static Vector3 scale(Vector3 v, float factor) {
     return scale(factor, v);
+  }
+
+  /** Writes v * factor into result, which may be v, and returns it. */
+  public static Vector3 scale(Vector3 v, float factor, Vector3 result) {
+    result.assign(v.x * factor, v.y * factor, v.z * factor);
+    return result;
   }  
 }
@@ -0,0 +1,163 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.stardroid.control.AstronomerModel.Pointing;
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.Vector3;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ThreadConfinedAstronomerModelTest {
+  private static final float TOLERANCE = 1e-6f;
+
+  private final ThreadConfinedAstronomerModel model =
+      new ThreadConfinedAstronomerModel(new ZeroMagneticDeclinationCalculator());
+  // Stands in for the simulation thread.
+  private ExecutorService owner;
+
+  @Before
+  public void setUp() throws Exception {
+    owner = Executors.newSingleThreadExecutor();
+    update();
+  }
+
+  @After
+  public void tearDown() {
+    owner.shutdownNow();
+  }
+
+  private void update() throws Exception {
+    onOwner(new Callable<Void>() {
+      @Override
+      public Void call() {
+        model.update();
+        return null;
+      }
+    });
+  }
+
+  private <T> T onOwner(Callable<T> callable) throws Exception {
+    return owner.submit(callable).get();
+  }
+
+  @Test
+  public void changesFromOtherThreadsWaitForTheUpdate() throws Exception {
+    float before = model.getFieldOfView();
+    model.setFieldOfView(before / 2);
+    assertEquals(before, model.getFieldOfView(), 0);
+    update();
+    assertEquals(before / 2, model.getFieldOfView(), 0);
+  }
+
+  @Test
+  public void commandsRunOnTheOwner() throws Exception {
+    final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+    model.queueCommand(new Runnable() {
+      @Override
+      public void run() {
+        ranOn.set(Thread.currentThread());
+      }
+    });
+    assertEquals(null, ranOn.get());
+    update();
+    Thread ownerThread = onOwner(new Callable<Thread>() {
+      @Override
+      public Thread call() {
+        return Thread.currentThread();
+      }
+    });
+    assertSame(ownerThread, ranOn.get());
+  }
+
+  @Test
+  public void commandsOnTheOwnerRunStraightAway() throws Exception {
+    boolean ran = onOwner(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        final boolean[] ran = {false};
+        model.queueCommand(new Runnable() {
+          @Override
+          public void run() {
+            ran[0] = true;
+          }
+        });
+        return ran[0];
+      }
+    });
+    assertTrue(ran);
+  }
+
+  @Test
+  public void onlyTheLatestSensorValuesArePassedOn() throws Exception {
+    model.setPhoneSensorValues(new Vector3(1, 0, 0), new Vector3(0, 1, 0));
+    model.setPhoneSensorValues(new Vector3(0, 0, -9.8f), new Vector3(0, -1, 0));
+    update();
+    Vector3 acceleration = model.getPhoneAcceleration();
+    assertEquals(0, acceleration.x, 0);
+    assertEquals(0, acceleration.y, 0);
+    assertEquals(-9.8f, acceleration.z, 0);
+  }
+
+  @Test
+  public void publishesTheOwnersDirections() throws Exception {
+    model.setLocation(new LatLong(51.5f, -0.1f));
+    update();
+    GeocentricCoordinates[] expected = onOwner(new Callable<GeocentricCoordinates[]>() {
+      @Override
+      public GeocentricCoordinates[] call() {
+        return new GeocentricCoordinates[] {
+            model.getZenith(), model.getNadir(), model.getNorth(),
+            model.getSouth(), model.getEast(), model.getWest()};
+      }
+    });
+    GeocentricCoordinates[] published = {
+        model.getZenith(), model.getNadir(), model.getNorth(),
+        model.getSouth(), model.getEast(), model.getWest()};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].x, published[i].x, TOLERANCE);
+      assertEquals(expected[i].y, published[i].y, TOLERANCE);
+      assertEquals(expected[i].z, published[i].z, TOLERANCE);
+    }
+    assertEquals(51.5f, model.getLocation().latitude, 0);
+  }
+
+  @Test
+  public void setPointingCopiesItsArguments() throws Exception {
+    model.setAutoUpdatePointing(false);
+    Vector3 lineOfSight = new Vector3(0, 0, 1);
+    Vector3 perpendicular = new Vector3(1, 0, 0);
+    model.setPointing(lineOfSight, perpendicular);
+    lineOfSight.assign(1, 0, 0);
+    perpendicular.assign(0, 1, 0);
+    update();
+    Pointing pointing = model.getPointing();
+    assertEquals(1, pointing.getLineOfSightZ(), 0);
+    assertEquals(1, pointing.getPerpendicularX(), 0);
+  }
+}
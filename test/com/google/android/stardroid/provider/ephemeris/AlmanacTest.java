@@ -0,0 +1,125 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.stardroid.units.LatLong;
+import com.google.android.stardroid.units.RaDec;
+
+import org.junit.Test;
+
+public class AlmanacTest {
+  private static final long MINUTE_MS = 60 * 1000;
+  private static final long HOUR_MS = 60 * MINUTE_MS;
+  // Midnight UTC on 2024-06-21, 2024-12-21 and 2025-03-08.
+  private static final long SOLSTICE = 1718928000000L;
+  private static final long WINTER_SOLSTICE = 1734739200000L;
+  private static final long MARCH_8 = 1741392000000L;
+
+  private static final LatLong LONDON = new LatLong(51.5f, -0.1f);
+
+  private final Almanac almanac = new Almanac();
+
+  // Compares times as longs; assertEquals with a delta would round them to
+  // floats, a couple of minutes apart at this size.
+  private static void assertNear(long expected, long actual, long tolerance) {
+    assertTrue("expected " + expected + " but was " + actual,
+        Math.abs(expected - actual) <= tolerance);
+  }
+
+  @Test
+  public void sunriseAndSunsetInLondon() {
+    // Published times are 03:43, 12:02 and 20:21 UTC.
+    Almanac.Day day = almanac.getDay(LONDON, SOLSTICE + 12 * HOUR_MS);
+    assertEquals(SOLSTICE, day.getStartMillis());
+    assertNear(SOLSTICE + 3 * HOUR_MS + 43 * MINUTE_MS,
+        day.getRiseTime(Planet.Sun), 2 * MINUTE_MS);
+    assertNear(SOLSTICE + 12 * HOUR_MS + 2 * MINUTE_MS,
+        day.getTransitTime(Planet.Sun), 2 * MINUTE_MS);
+    assertNear(SOLSTICE + 20 * HOUR_MS + 21 * MINUTE_MS,
+        day.getSetTime(Planet.Sun), 2 * MINUTE_MS);
+    assertFalse(day.isAlwaysUp(Planet.Sun));
+    assertFalse(day.isAlwaysDown(Planet.Sun));
+  }
+
+  @Test
+  public void midnightSunAndPolarNight() {
+    LatLong svalbard = new LatLong(78.2f, 15.6f);
+    Almanac.Day summer = almanac.getDay(svalbard, SOLSTICE);
+    assertTrue(summer.isAlwaysUp(Planet.Sun));
+    assertEquals(Almanac.NONE, summer.getRiseTime(Planet.Sun));
+    assertEquals(Almanac.NONE, summer.getSetTime(Planet.Sun));
+
+    Almanac.Day winter = almanac.getDay(svalbard, WINTER_SOLSTICE);
+    assertTrue(winter.isAlwaysDown(Planet.Sun));
+    assertEquals(Almanac.NONE, winter.getRiseTime(Planet.Sun));
+    assertEquals(Almanac.NONE, winter.getSetTime(Planet.Sun));
+  }
+
+  @Test
+  public void findsASecondRiseInTheSameDay() {
+    // Here the Sun rises just after the day starts and again just before it
+    // ends, at about 00:01 and 23:59 UTC.
+    Almanac.Day day = almanac.getDay(new LatLong(50, 97), MARCH_8);
+    long first = day.getRiseTime(Planet.Sun);
+    assertNear(MARCH_8 + MINUTE_MS, first, 2 * MINUTE_MS);
+    long second = day.getRiseTimeAfter(Planet.Sun, first);
+    assertNear(MARCH_8 + 24 * HOUR_MS - MINUTE_MS, second, 2 * MINUTE_MS);
+    assertEquals(second, day.getRiseTimeAfter(Planet.Sun, first + HOUR_MS));
+    assertEquals(Almanac.NONE, day.getRiseTimeAfter(Planet.Sun, second));
+    // It sets only once, in between.
+    long set = day.getSetTimeAfter(Planet.Sun, MARCH_8 - 1);
+    assertTrue(set > first && set < second);
+    assertEquals(Almanac.NONE, day.getSetTimeAfter(Planet.Sun, set));
+  }
+
+  @Test
+  public void fixedObjectsRiseAndSetAboutTheirTransit() {
+    Almanac.Day day = almanac.getDay(LONDON, SOLSTICE);
+    RaDec sirius = new RaDec(101.29f, -16.72f);
+    long transit = day.getTransitTime(sirius);
+    long rise = day.getRiseTime(sirius);
+    long set = day.getSetTime(sirius);
+    assertTrue(transit >= SOLSTICE && transit < SOLSTICE + 24 * HOUR_MS);
+    // It rises and sets at hour angles of acos(-tan(latitude) tan(dec)),
+    // which pass at the sidereal rate.
+    double hourAngle = Math.toDegrees(Math.acos(
+        -Math.tan(Math.toRadians(51.5)) * Math.tan(Math.toRadians(-16.72))));
+    long halfArc = (long) (hourAngle / 360.98564736629 * 24 * HOUR_MS);
+    // Either may fall in the previous or next sidereal day from the transit.
+    long siderealDay = (long) (360 / 360.98564736629 * 24 * HOUR_MS);
+    assertNear(halfArc, (transit - rise + siderealDay) % siderealDay, MINUTE_MS);
+    assertNear(halfArc, (set - transit + siderealDay) % siderealDay, MINUTE_MS);
+
+    // Polaris never sets here.
+    RaDec polaris = new RaDec(37.95f, 89.26f);
+    assertEquals(Almanac.NONE, day.getRiseTime(polaris));
+    assertEquals(Almanac.NONE, day.getSetTime(polaris));
+  }
+
+  @Test
+  public void reusesDaysForNearbyTimesAndPlaces() {
+    Almanac.Day day = almanac.getDay(LONDON, SOLSTICE + HOUR_MS);
+    assertSame(day, almanac.getDay(LONDON, SOLSTICE + 23 * HOUR_MS));
+    assertSame(day, almanac.getDay(new LatLong(51.52f, -0.08f), SOLSTICE));
+    assertEquals(SOLSTICE + 24 * HOUR_MS,
+        almanac.getDay(LONDON, SOLSTICE + 24 * HOUR_MS).getStartMillis());
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.stardroid.units.GeocentricCoordinates;
+import com.google.android.stardroid.units.Vector3;
+
+import org.junit.Test;
+
+public class EphemerisCacheTest {
+  private static final long DAY_MS = 24L * 60 * 60 * 1000;
+  // 2015-01-01 00:00 UTC.
+  private static final long START = 1420070400000L;
+  // Nearer the ends of the window than this, a lookup starts fitting the next
+  // window, which could replace the table mid-test.
+  private static final long SPAN = 80 * DAY_MS;
+
+  private final EphemerisCache cache = new EphemerisCache();
+
+  // Asks for a position until the background fit covers the time.
+  private void waitForFit(long timeMillis) throws InterruptedException {
+    Vector3 ignored = new Vector3(0, 0, 0);
+    for (int i = 0; i < 500; i++) {
+      if (cache.getPosition(Planet.Moon, timeMillis, ignored)) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("The cache was never fitted");
+  }
+
+  // Returns the angle in degrees between two unit vectors.
+  private static double angleBetween(Vector3 a, GeocentricCoordinates b) {
+    double x = a.y * b.z - a.z * b.y;
+    double y = a.z * b.x - a.x * b.z;
+    double z = a.x * b.y - a.y * b.x;
+    return Math.toDegrees(Math.asin(Math.min(1, Math.sqrt(x * x + y * y + z * z))));
+  }
+
+  @Test
+  public void missesUntilFitted() throws InterruptedException {
+    Vector3 result = new Vector3(1, 2, 3);
+    assertFalse(cache.getPosition(Planet.Mars, START, result));
+    assertEquals(1, result.x, 0);
+    assertEquals(2, result.y, 0);
+    assertEquals(3, result.z, 0);
+    waitForFit(START);
+    assertTrue(cache.getPosition(Planet.Mars, START, result));
+  }
+
+  @Test
+  public void matchesTheEphemeris() throws InterruptedException {
+    waitForFit(START);
+    Vector3 position = new Vector3(0, 0, 0);
+    // An odd step, so that samples fall all over the segments.
+    for (long t = START - SPAN; t < START + SPAN; t += 5 * 3600000L + 7) {
+      EphemerisFrame frame = new EphemerisFrame(t);
+      for (Planet planet : Planet.values()) {
+        assertTrue(cache.getPosition(planet, t, position));
+        assertEquals(1, position.length(), 1e-5);
+        GeocentricCoordinates expected =
+            GeocentricCoordinates.getInstance(frame.getRa(planet), frame.getDec(planet));
+        // The sampled Moon itself is only good to about 0.02 degrees in
+        // single precision, so the fit can't follow it more closely.
+        double tolerance = planet == Planet.Moon ? 0.05 : 0.01;
+        assertEquals(planet + " at " + t, 0, angleBetween(position, expected), tolerance);
+      }
+    }
+  }
+
+  @Test
+  public void matchesTheEarthsPosition() throws InterruptedException {
+    waitForFit(START);
+    Vector3 cached = new Vector3(0, 0, 0);
+    Vector3 expected = new Vector3(0, 0, 0);
+    for (long t = START - SPAN; t < START + SPAN; t += DAY_MS / 3) {
+      assertTrue(cache.getEarthPosition(t, cached));
+      new EphemerisFrame(t).getEarthPosition(expected);
+      // Distances are in AU.
+      assertEquals(expected.x, cached.x, 5e-5);
+      assertEquals(expected.y, cached.y, 5e-5);
+      assertEquals(expected.z, cached.z, 5e-5);
+    }
+  }
+
+  @Test
+  public void missesOutsideTheWindow() throws InterruptedException {
+    waitForFit(START);
+    Vector3 result = new Vector3(0, 0, 0);
+    assertFalse(cache.getPosition(Planet.Venus, START + 1000 * DAY_MS, result));
+    assertFalse(cache.getEarthPosition(START - 1000 * DAY_MS, result));
+  }
+}
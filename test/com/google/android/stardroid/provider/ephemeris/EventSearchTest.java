@@ -0,0 +1,125 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.stardroid.provider.ephemeris.EventSearch.Event;
+import com.google.android.stardroid.provider.ephemeris.EventSearch.EventType;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+public class EventSearchTest {
+  private static final long MINUTE_MS = 60 * 1000;
+  private static final long HOUR_MS = 60 * MINUTE_MS;
+  private static final long DAY_MS = 24 * HOUR_MS;
+
+  private static long utc(int year, int month, int day, int hour, int minute) {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.clear();
+    calendar.set(year, month - 1, day, hour, minute);
+    return calendar.getTimeInMillis();
+  }
+
+  // Compares times as longs; assertEquals with a delta would round them to
+  // floats, a couple of minutes apart at this size.
+  private static void assertNear(long expected, long actual, long tolerance) {
+    assertTrue("expected " + expected + " but was " + actual,
+        Math.abs(expected - actual) <= tolerance);
+  }
+
+  @Test
+  public void findsLunarPhases() {
+    List<Event> events =
+        EventSearch.findEvents(Planet.Moon, utc(2024, 1, 1, 0, 0), utc(2024, 2, 1, 0, 0));
+    assertEquals(2, events.size());
+    assertEquals(EventType.NEW_MOON, events.get(0).getType());
+    assertEquals(Planet.Moon, events.get(0).getPlanet());
+    assertNear(utc(2024, 1, 11, 11, 57), events.get(0).getTimeMillis(), 30 * MINUTE_MS);
+    assertEquals(EventType.FULL_MOON, events.get(1).getType());
+    assertNear(utc(2024, 1, 25, 17, 54), events.get(1).getTimeMillis(), 30 * MINUTE_MS);
+  }
+
+  @Test
+  public void findNextIsStrictlyAfter() {
+    Event full = EventSearch.findNext(EventType.FULL_MOON, Planet.Moon, utc(2024, 1, 20, 0, 0));
+    assertNear(utc(2024, 1, 25, 17, 54), full.getTimeMillis(), 30 * MINUTE_MS);
+    Event next = EventSearch.findNext(EventType.FULL_MOON, Planet.Moon, full.getTimeMillis());
+    assertNear(utc(2024, 2, 24, 12, 30), next.getTimeMillis(), 30 * MINUTE_MS);
+  }
+
+  @Test
+  public void findsPlanetaryEvents() {
+    // Slow bodies cross slowly, so small errors in longitude move the times
+    // by hours.
+    Event opposition =
+        EventSearch.findNext(EventType.OPPOSITION, Planet.Jupiter, utc(2023, 10, 1, 0, 0));
+    assertNear(utc(2023, 11, 3, 5, 0), opposition.getTimeMillis(), 6 * HOUR_MS);
+    opposition = EventSearch.findNext(EventType.OPPOSITION, Planet.Mars, utc(2024, 6, 1, 0, 0));
+    assertNear(utc(2025, 1, 16, 2, 32), opposition.getTimeMillis(), 6 * HOUR_MS);
+    Event conjunction =
+        EventSearch.findNext(EventType.CONJUNCTION, Planet.Venus, utc(2025, 1, 1, 0, 0));
+    assertNear(utc(2025, 3, 23, 1, 0), conjunction.getTimeMillis(), 6 * HOUR_MS);
+    // Elongation changes very slowly near its greatest.
+    Event elongation = EventSearch.findNext(
+        EventType.GREATEST_ELONGATION, Planet.Venus, utc(2024, 12, 1, 0, 0));
+    assertNear(utc(2025, 1, 10, 3, 0), elongation.getTimeMillis(), DAY_MS);
+    elongation = EventSearch.findNext(
+        EventType.GREATEST_ELONGATION, Planet.Mercury, utc(2024, 3, 1, 0, 0));
+    assertNear(utc(2024, 3, 24, 23, 0), elongation.getTimeMillis(), DAY_MS);
+  }
+
+  @Test
+  public void findsOnlyEventsEachBodyHas() {
+    List<Event> events = EventSearch.findEvents(utc(2024, 1, 1, 0, 0), utc(2025, 1, 1, 0, 0));
+    assertFalse(events.isEmpty());
+    long previous = Long.MIN_VALUE;
+    for (Event event : events) {
+      assertTrue(event.getTimeMillis() >= previous);
+      previous = event.getTimeMillis();
+      Planet planet = event.getPlanet();
+      assertFalse(planet == Planet.Sun);
+      boolean inferior = planet == Planet.Mercury || planet == Planet.Venus;
+      switch (event.getType()) {
+        case NEW_MOON:
+        case FULL_MOON:
+          assertEquals(Planet.Moon, planet);
+          break;
+        case OPPOSITION:
+          assertFalse(inferior);
+          break;
+        case GREATEST_ELONGATION:
+          assertTrue(inferior);
+          break;
+        default:
+          assertFalse(planet == Planet.Moon);
+      }
+    }
+  }
+
+  @Test
+  public void findNextGivesUpOnImpossibleEvents() {
+    assertNull(EventSearch.findNext(EventType.OPPOSITION, Planet.Venus, utc(2024, 1, 1, 0, 0)));
+    assertNull(EventSearch.findNext(EventType.FULL_MOON, Planet.Mars, utc(2024, 1, 1, 0, 0)));
+  }
+}
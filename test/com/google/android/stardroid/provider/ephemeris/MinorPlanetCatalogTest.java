@@ -0,0 +1,212 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+
+public class MinorPlanetCatalogTest {
+  private static final long DAY_MS = 24L * 60 * 60 * 1000;
+  // 2000 January 1.5, the epoch of the elements below.
+  private static final long J2000 = 946728000000L;
+  // 2016 March 10.0, the comets' time of perihelion.
+  private static final long PERIHELION = 1457568000000L;
+
+  // Mars's mean J2000 elements (Standish, JPL), which is what EphemerisFrame
+  // uses for Mars, as an MPCORB.DAT line.
+  private static final String MARS = asteroid("00004", "(4) Mars", -1.5, 0.15);
+  // A few of the comet elements are the same for every comet here.
+  private static final String PARABOLIC = comet("C/2099 A1 (Parabolic)", 1.0);
+  private static final String NEAR_ELLIPTIC = comet("C/2099 B1 (Elliptic)", 0.99999);
+  private static final String NEAR_HYPERBOLIC = comet("C/2099 C1 (Hyperbolic)", 1.00001);
+
+  // Writes value into line starting at the given column, counted from 1 as
+  // in the MPC's format descriptions.
+  private static String put(String line, int column, String value) {
+    StringBuilder result = new StringBuilder(line);
+    while (result.length() < column - 1 + value.length()) {
+      result.append(' ');
+    }
+    result.replace(column - 1, column - 1 + value.length(), value);
+    return result.toString();
+  }
+
+  private static String asteroid(String number, String name, double h, double g) {
+    double a = 1.52371034;
+    double e = 0.09339410;
+    double longitude = -4.55343205;
+    double perihelionLongitude = -23.94362959;
+    double node = 49.55953891;
+    double meanMotion = Math.toDegrees(0.01720209895 / Math.pow(a, 1.5));
+    // The mean longitude is for noon, the epoch for the preceding midnight.
+    double meanAnomaly = mod360(longitude - perihelionLongitude - 0.5 * meanMotion);
+    String line = put("", 1, number);
+    line = put(line, 9, format("%5.2f", h));
+    line = put(line, 15, format("%5.2f", g));
+    line = put(line, 21, "K0011");
+    line = put(line, 27, format("%9.5f", meanAnomaly));
+    line = put(line, 38, format("%9.5f", mod360(perihelionLongitude - node)));
+    line = put(line, 49, format("%9.5f", node));
+    line = put(line, 60, format("%9.5f", 1.84969142));
+    line = put(line, 71, format("%9.7f", e));
+    line = put(line, 81, format("%11.8f", meanMotion));
+    line = put(line, 93, format("%11.7f", a));
+    return put(line, 167, name);
+  }
+
+  private static String comet(String name, double e) {
+    String line = put("", 1, "    C");
+    line = put(line, 15, "2016 03 10.0000");
+    line = put(line, 31, format("%9.6f", 0.9));
+    line = put(line, 42, format("%8.6f", e));
+    line = put(line, 52, "112.2414");
+    line = put(line, 62, " 59.4173");
+    line = put(line, 72, "162.1885");
+    line = put(line, 82, "20250416");
+    line = put(line, 92, " 4.0");
+    line = put(line, 97, " 6.0");
+    return put(line, 103, name);
+  }
+
+  private static String format(String format, double value) {
+    return String.format(Locale.US, format, value);
+  }
+
+  private static double mod360(double degrees) {
+    return (degrees % 360 + 360) % 360;
+  }
+
+  private static MinorPlanetCatalog read(float maxAbsoluteMagnitude, String... lines)
+      throws IOException {
+    StringBuilder file = new StringBuilder();
+    for (String line : lines) {
+      file.append(line).append('\n');
+    }
+    return MinorPlanetCatalog.read(
+        new BufferedReader(new StringReader(file.toString())), maxAbsoluteMagnitude);
+  }
+
+  // Returns the angle in degrees between the directions at 3 * i and 3 * j.
+  private static double angleBetween(float[] a, int i, float[] b, int j) {
+    double x = a[3 * i + 1] * b[3 * j + 2] - a[3 * i + 2] * b[3 * j + 1];
+    double y = a[3 * i + 2] * b[3 * j] - a[3 * i] * b[3 * j + 2];
+    double z = a[3 * i] * b[3 * j + 1] - a[3 * i + 1] * b[3 * j];
+    return Math.toDegrees(Math.asin(Math.min(1, Math.sqrt(x * x + y * y + z * z))));
+  }
+
+  @Test
+  public void readsAsteroidsAndComets() throws IOException {
+    MinorPlanetCatalog catalog = read(15,
+        "MPCORB header",
+        "----------------------------------------------------",
+        MARS,
+        // Without a magnitude, then too faint.
+        put(asteroid("00005", "(5) Unmeasured", 0, 0.15), 9, "     "),
+        asteroid("00006", "(6) Faint", 16.5, 0.15),
+        PARABOLIC,
+        "Not an orbit at all");
+    assertEquals(2, catalog.size());
+    assertEquals("Mars", catalog.getName(0));
+    assertFalse(catalog.isComet(0));
+    assertEquals("C/2099 A1 (Parabolic)", catalog.getName(1));
+    assertTrue(catalog.isComet(1));
+  }
+
+  @Test
+  public void keepsFaintComets() throws IOException {
+    // The limit is on asteroids' absolute magnitudes; comets' are on a
+    // different scale.
+    MinorPlanetCatalog catalog = read(-2, MARS, PARABOLIC);
+    assertEquals(1, catalog.size());
+    assertTrue(catalog.isComet(0));
+  }
+
+  @Test
+  public void solvesKeplersEquationLikeTheEphemeris() throws Exception {
+    MinorPlanetCatalog catalog = read(15, MARS);
+    float[] directions = new float[3];
+    float[] magnitudes = new float[1];
+    float[] expected = new float[3];
+    // Over nearly a full orbit, to cover every mean anomaly.
+    for (long t = J2000; t < J2000 + 680 * DAY_MS; t += 17 * DAY_MS) {
+      catalog.propagate(t, null, directions, magnitudes);
+      assertEquals(1, directions[0] * directions[0] + directions[1] * directions[1]
+          + directions[2] * directions[2], 1e-5);
+      EphemerisFrame frame = new EphemerisFrame(t);
+      double ra = Math.toRadians(frame.getRa(Planet.Mars));
+      double dec = Math.toRadians(frame.getDec(Planet.Mars));
+      expected[0] = (float) (Math.cos(ra) * Math.cos(dec));
+      expected[1] = (float) (Math.sin(ra) * Math.cos(dec));
+      expected[2] = (float) Math.sin(dec);
+      assertEquals("at " + t, 0, angleBetween(directions, 0, expected, 0), 0.03);
+      assertTrue(magnitudes[0] > -4 && magnitudes[0] < 3);
+    }
+  }
+
+  @Test
+  public void nearParabolicOrbitsAgree() throws Exception {
+    // The three orbits differ by 1e-5 in eccentricity, and each is solved a
+    // different way.
+    MinorPlanetCatalog catalog = read(15, NEAR_HYPERBOLIC, PARABOLIC, NEAR_ELLIPTIC);
+    assertEquals(3, catalog.size());
+    float[] directions = new float[9];
+    float[] magnitudes = new float[3];
+    for (long days = -40; days <= 40; days += 20) {
+      catalog.propagate(PERIHELION + days * DAY_MS, null, directions, magnitudes);
+      assertEquals(0, angleBetween(directions, 0, directions, 1), 0.01);
+      assertEquals(0, angleBetween(directions, 1, directions, 2), 0.01);
+      assertEquals(magnitudes[0], magnitudes[1], 0.01);
+      assertEquals(magnitudes[1], magnitudes[2], 0.01);
+    }
+  }
+
+  @Test
+  public void propagatesOnlyTheGivenBodies() throws Exception {
+    MinorPlanetCatalog catalog = read(15, MARS, PARABOLIC, NEAR_ELLIPTIC);
+    float[] all = new float[9];
+    float[] allMagnitudes = new float[3];
+    catalog.propagate(PERIHELION, null, all, allMagnitudes);
+    float[] some = new float[6];
+    float[] someMagnitudes = new float[2];
+    catalog.propagate(PERIHELION, new int[] {2, 0}, some, someMagnitudes);
+    assertEquals(0, angleBetween(some, 0, all, 2), 1e-6);
+    assertEquals(0, angleBetween(some, 1, all, 0), 1e-6);
+    assertEquals(allMagnitudes[2], someMagnitudes[0], 0);
+    assertEquals(allMagnitudes[0], someMagnitudes[1], 0);
+  }
+
+  @Test
+  public void selectsTheBrightest() {
+    float[] magnitudes = {9.5f, -1.0f, 12.0f, 3.25f, 11.0f, 3.0f};
+    assertArrayEquals(new int[] {1, 5, 3, 0},
+        MinorPlanetCatalog.selectBrightest(magnitudes, 6, 10, 10));
+    assertArrayEquals(new int[] {1, 5},
+        MinorPlanetCatalog.selectBrightest(magnitudes, 6, 10, 2));
+    // Only the first count magnitudes are considered.
+    assertArrayEquals(new int[] {1, 0},
+        MinorPlanetCatalog.selectBrightest(magnitudes, 3, 10, 10));
+    assertEquals(0, MinorPlanetCatalog.selectBrightest(magnitudes, 6, -5, 10).length);
+  }
+}
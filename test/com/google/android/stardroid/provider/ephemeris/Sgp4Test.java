@@ -0,0 +1,100 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.provider.ephemeris;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Checks positions against the verification vectors of Vallado et al.,
+ * "Revisiting Spacetrack Report #3" (AIAA 2006-6753).
+ */
+public class Sgp4Test {
+  // A near-Earth orbit with an eccentricity of 0.19.
+  private static final Sgp4 VANGUARD = new Sgp4(null,
+      "1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+      "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667");
+  // A low, nearly circular orbit with heavy drag.
+  private static final Sgp4 DELTA = new Sgp4("DELTA 1 DEB  ",
+      "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+      "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774");
+
+  // The reference vectors are printed to a hundredth of a millimeter; allow
+  // a centimeter for differences in rounding.
+  private static final double TOLERANCE_KM = 1e-5;
+
+  private static void assertPosition(Sgp4 sgp4, double minutes, double x, double y, double z) {
+    double[] position = new double[3];
+    assertTrue(sgp4.getPosition(minutes, position));
+    assertEquals(x, position[0], TOLERANCE_KM);
+    assertEquals(y, position[1], TOLERANCE_KM);
+    assertEquals(z, position[2], TOLERANCE_KM);
+  }
+
+  @Test
+  public void readsTheElementSet() {
+    assertEquals("5", VANGUARD.getName());
+    assertEquals(5, VANGUARD.getCatalogNumber());
+    assertEquals("DELTA 1 DEB", DELTA.getName());
+    assertEquals(6251, DELTA.getCatalogNumber());
+
+    // Day 179.78495062 of 2000 is June 27th at 18:50:19.734 UTC.
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.clear();
+    calendar.set(2000, Calendar.JUNE, 27, 18, 50, 19);
+    assertEquals(calendar.getTimeInMillis() + 734, VANGUARD.getEpochMillis(), 1);
+  }
+
+  @Test
+  public void matchesCase00005() {
+    assertPosition(VANGUARD, 0, 7022.46529266, -1400.08296755, 0.03995155);
+    assertPosition(VANGUARD, 360, -7154.03120202, -3783.17682504, -3536.19412294);
+  }
+
+  @Test
+  public void matchesCase06251() {
+    assertPosition(DELTA, 0, 3988.31022699, 5498.96657235, 0.90055879);
+    assertPosition(DELTA, 120, -3935.69800083, 409.10980837, 5471.33577327);
+  }
+
+  @Test
+  public void takesTimesAsMillisecondsOrMinutes() {
+    double[] fromMillis = new double[3];
+    double[] fromMinutes = new double[3];
+    assertTrue(DELTA.getPosition(DELTA.getEpochMillis() + 90 * 60 * 1000, fromMillis));
+    assertTrue(DELTA.getPosition(90.0, fromMinutes));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(fromMinutes[i], fromMillis[i], 1e-9);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsLinesInTheWrongOrder() {
+    new Sgp4(null,
+        "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667",
+        "1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsShortLines() {
+    new Sgp4(null, "1 00005U 58002B", "2 00005  34.2682");
+  }
+}
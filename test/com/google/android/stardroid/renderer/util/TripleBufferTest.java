@@ -0,0 +1,114 @@
+// Copyright 2011 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.android.stardroid.renderer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+  // A value written in two steps, so that a torn read shows up as a
+  // mismatch.
+  private static class Pair {
+    volatile long first;
+    volatile long second;
+  }
+
+  private final Pair a = new Pair();
+  private final Pair b = new Pair();
+  private final Pair c = new Pair();
+  private final TripleBuffer<Pair> buffer = new TripleBuffer<Pair>(a, b, c);
+
+  @Test
+  public void nothingToAcquireBeforePublishing() {
+    assertNull(buffer.acquire());
+  }
+
+  @Test
+  public void acquiresWhatWasPublished() {
+    Pair back = buffer.getBack();
+    back.first = 42;
+    buffer.publish();
+    assertSame(back, buffer.acquire());
+    assertEquals(42, back.first);
+    assertNull(buffer.acquire());
+  }
+
+  @Test
+  public void acquiresOnlyTheLatest() {
+    for (int i = 1; i <= 5; i++) {
+      buffer.getBack().first = i;
+      buffer.publish();
+    }
+    assertEquals(5, buffer.acquire().first);
+    assertNull(buffer.acquire());
+  }
+
+  @Test
+  public void producerNeverWritesTheConsumersObject() {
+    for (int i = 0; i < 20; i++) {
+      buffer.getBack().first = i;
+      buffer.publish();
+      if (i % 3 != 0) {
+        Pair front = buffer.acquire();
+        assertNotSame(front, buffer.getBack());
+        // Publishing again must not hand the producer the front object.
+        buffer.publish();
+        assertNotSame(front, buffer.getBack());
+      }
+    }
+  }
+
+  @Test
+  public void concurrentReadsAreNeverTornOrStale() throws InterruptedException {
+    final long count = 200000;
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (long i = 1; i <= count; i++) {
+          Pair back = buffer.getBack();
+          back.first = i;
+          back.second = i;
+          buffer.publish();
+        }
+      }
+    });
+    producer.start();
+    long last = 0;
+    while (true) {
+      // Checked first, so that once the producer has finished one more
+      // acquire is sure to see its last value.
+      boolean finished = !producer.isAlive();
+      Pair front = buffer.acquire();
+      if (front == null) {
+        if (finished) {
+          break;
+        }
+        continue;
+      }
+      long first = front.first;
+      long second = front.second;
+      assertEquals("Torn read", first, second);
+      assertTrue("Went backwards from " + last + " to " + first, first > last);
+      last = first;
+    }
+    assertEquals(count, last);
+  }
+}